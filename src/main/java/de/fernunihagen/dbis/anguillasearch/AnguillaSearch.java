@@ -1,6 +1,5 @@
 package de.fernunihagen.dbis.anguillasearch;
 
-import java.util.List;
 import java.util.Scanner;
 
 import org.slf4j.Logger;
@@ -9,8 +8,11 @@ import org.slf4j.LoggerFactory;
 import com.google.gson.Gson;
 
 import de.fernunihagen.dbis.anguillasearch.crawler.Crawler;
+import de.fernunihagen.dbis.anguillasearch.helpers.UrlDictionary;
 import de.fernunihagen.dbis.anguillasearch.index.ForwardIndex;
 import de.fernunihagen.dbis.anguillasearch.index.IndexSearcher;
+import de.fernunihagen.dbis.anguillasearch.index.QueryResultCache;
+import de.fernunihagen.dbis.anguillasearch.index.SearchResults;
 import de.fernunihagen.dbis.anguillasearch.index.VectorIndex;
 import de.fernunihagen.dbis.anguillasearch.pagerank.PageRankIndex;
 
@@ -22,6 +24,8 @@ public final class AnguillaSearch {
     private static final String ANSI_RESET = "\u001B[0m";
     private static final String ANSI_RED = "\u001B[31m";
     private static final Logger LOGGER = LoggerFactory.getLogger(AnguillaSearch.class);
+    // Number of results plus queries the search loop caches.
+    private static final long QUERY_CACHE_SIZE = 100000;
 
     private AnguillaSearch() {
     }
@@ -36,11 +40,13 @@ public final class AnguillaSearch {
         // Print start message to logger
         LOGGER.info("Starting AnguillaSearch...");
 
-        // Create a Crawler and let it crawl the given network.
-        ForwardIndex forwardIndex = new ForwardIndex();
-        VectorIndex reverseIndex = new VectorIndex();
-        PageRankIndex pageRankIndex = new PageRankIndex();
-        IndexSearcher indexSearcher = new IndexSearcher(reverseIndex);
+        // Create a Crawler and let it crawl the given network. All indices share one
+        // dictionary of URL ids.
+        UrlDictionary urlDictionary = new UrlDictionary();
+        ForwardIndex forwardIndex = new ForwardIndex(urlDictionary);
+        VectorIndex reverseIndex = new VectorIndex(urlDictionary);
+        PageRankIndex pageRankIndex = new PageRankIndex(urlDictionary);
+        IndexSearcher indexSearcher = new IndexSearcher(reverseIndex, new QueryResultCache(QUERY_CACHE_SIZE));
         Crawler crawler = new Crawler(forwardIndex, reverseIndex, pageRankIndex);
 
         try {
@@ -69,21 +75,22 @@ public final class AnguillaSearch {
         String input = scanner.nextLine();
 
         while (!input.equals("exit")) {
-            int i = 1;
-            List<String[]> queryResults = indexSearcher.searchQueryCosinePageRank(input, pageRankIndex);
+            SearchResults queryResults = indexSearcher.searchQueryCosinePageRankResults(input, pageRankIndex);
             if (queryResults.isEmpty())
                 LOGGER.info("No relevant websites were found.");
-            for (String[] entry : queryResults) {
-                LOGGER.info("Result %d", i);
-                LOGGER.info("URL: %s", entry[0]);
-                LOGGER.info("Title: %s", forwardIndex.getTitleOf(entry[0]));
-                i++;
+            for (int i = 0; i < queryResults.size(); i++) {
+                LOGGER.info("Result %d", i + 1);
+                LOGGER.info("URL: %s", queryResults.getUrl(i));
+                LOGGER.info("Title: %s", forwardIndex.getTitleOf(queryResults.getUrl(i)));
             }
             LOGGER.info("Enter search query (or 'exit' to quit):");
             input = scanner.nextLine();
         }
 
         scanner.close();
+        QueryResultCache cache = indexSearcher.getResultCache();
+        LOGGER.info("Query cache: {} hits, {} misses, {} evictions.", cache.getHitCount(), cache.getMissCount(),
+                cache.getEvictionCount());
 
         /*
          * Set the java.awt.headless property to true to prevent awt from opening
@@ -26,6 +26,7 @@ import com.mxgraph.view.mxGraph;
 
 import de.fernunihagen.dbis.anguillasearch.helpers.AVLTree;
 import de.fernunihagen.dbis.anguillasearch.helpers.Site;
+import de.fernunihagen.dbis.anguillasearch.helpers.UrlDictionary;
 import de.fernunihagen.dbis.anguillasearch.index.ForwardIndex;
 import de.fernunihagen.dbis.anguillasearch.index.IndexSearcher;
 import de.fernunihagen.dbis.anguillasearch.index.VectorIndex;
@@ -48,6 +49,7 @@ import static de.fernunihagen.dbis.anguillasearch.crawler.CrawlerConfig.*;
 public class Crawler {
 
     private UniqQueue queue;
+    private UrlDictionary dictionary;
     private VectorIndex vectorIndex;
     private AVLTree<Node> networkMap;
     private mxGraph networkGraph;
@@ -110,7 +112,18 @@ public class Crawler {
      * Instantiate a new empty webcrawler that will not save crawled websites.
      */
     public Crawler() {
-        queue = new UniqQueue();
+        this(new UrlDictionary());
+    }
+
+    /**
+     * Instantiate a new empty webcrawler that queues the found URLs by their id
+     * in the given UrlDictionary.
+     * 
+     * @param dictionary The dictionary assigning the URL ids.
+     */
+    private Crawler(UrlDictionary dictionary) {
+        this.dictionary = dictionary;
+        queue = new UniqQueue(dictionary);
         reset();
     }
 
@@ -119,7 +132,7 @@ public class Crawler {
      * given vector index.
      */
     public Crawler(ForwardIndex forwardIndex) {
-        this();
+        this(forwardIndex.getUrlDictionary());
         this.forwardIndex = forwardIndex;
     }
 
@@ -128,7 +141,7 @@ public class Crawler {
      * given vector index.
      */
     public Crawler(VectorIndex reverseIndex) {
-        this();
+        this(reverseIndex.getUrlDictionary());
         this.vectorIndex = reverseIndex;
     }
 
@@ -137,16 +150,18 @@ public class Crawler {
      * given page rank index.
      */
     public Crawler(PageRankIndex pageRankIndex) {
-        this();
+        this(pageRankIndex.getUrlDictionary());
         this.pageRankIndex = pageRankIndex;
     }
 
     /**
      * Instantiate a new empty webcrawler that will save the crawled websites to the
      * given indices.
+     * The queue uses the UrlDictionary of the forward index, so all URL ids are
+     * shared if the indices have been created on the same dictionary.
      */
     public Crawler(ForwardIndex forwardIndex, VectorIndex vectorIndex, PageRankIndex pageRankIndex) {
-        this();
+        this(forwardIndex.getUrlDictionary());
         this.forwardIndex = forwardIndex;
         this.vectorIndex = vectorIndex;
         this.pageRankIndex = pageRankIndex;
@@ -159,7 +174,7 @@ public class Crawler {
      * @param seedUrls A String[] of URLs, each a startpoint for crawling.
      */
     public void setSeed(String[] seedUrls) {
-        queue = new UniqQueue();
+        queue = new UniqQueue(dictionary);
         for (String url : seedUrls)
             queue.queue(url);
     }
@@ -1,31 +1,53 @@
 package de.fernunihagen.dbis.anguillasearch.crawler;
 
-import java.util.LinkedList;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.BitSet;
 import java.util.List;
 import java.util.NoSuchElementException;
 
-import de.fernunihagen.dbis.anguillasearch.helpers.AVLTree;
+import de.fernunihagen.dbis.anguillasearch.helpers.UrlDictionary;
 
 /**
  * An efficient implementation of a unique FIFO queue that only accepts elements
  * which haven't been queued before.
  * 
- * An queue() works in O(log(n)).
- * All other operations are O(1).
+ * The URLs are kept as ids of a UrlDictionary, which may be shared with the
+ * indices the crawled sites are stored in. The queue remembers the ids it has
+ * queued before in a bit set, so URLs added to the dictionary by someone else
+ * can still be queued once.
+ * 
+ * All operations work in O(1) on average.
  * 
  * @author Nico Beyer
  */
 public class UniqQueue {
 
-    private AVLTree<String> prevQueuedUrls;
-    private LinkedList<String> urls;
+    private UrlDictionary dictionary;
+    private BitSet prevQueuedUrls;
+    // The queued ids are ids[head..tail), no id is ever queued twice.
+    private int[] ids;
+    private int head;
+    private int tail;
 
     /**
-     * Instantiate a new empty UniqQueue object.
+     * Instantiate a new empty UniqQueue object with its own UrlDictionary.
      */
     public UniqQueue() {
-        prevQueuedUrls = new AVLTree<>();
-        urls = new LinkedList<>();
+        this(new UrlDictionary());
+    }
+
+    /**
+     * Instantiate a new empty UniqQueue object on the given UrlDictionary.
+     * 
+     * @param dictionary The dictionary assigning the ids of the queued URLs.
+     */
+    public UniqQueue(UrlDictionary dictionary) {
+        this.dictionary = dictionary;
+        prevQueuedUrls = new BitSet();
+        ids = new int[16];
+        head = 0;
+        tail = 0;
     }
 
     /**
@@ -34,10 +56,13 @@ public class UniqQueue {
      * @param url The URL to be added.
      */
     public void queue(String url) {
-        if (prevQueuedUrls.contains(url))
+        int id = dictionary.add(url);
+        if (prevQueuedUrls.get(id))
             return;
-        prevQueuedUrls.insert(url);
-        urls.addFirst(url);
+        prevQueuedUrls.set(id);
+        if (tail == ids.length)
+            ids = Arrays.copyOf(ids, ids.length * 2);
+        ids[tail++] = id;
     }
 
     /**
@@ -47,7 +72,9 @@ public class UniqQueue {
      * @throws NoSuchElementException If pop() is called on an empty queue.
      */
     public String pop() throws NoSuchElementException {
-        return urls.removeLast();
+        if (head == tail)
+            throw new NoSuchElementException("UniqQueue: The queue is empty!");
+        return dictionary.getUrl(ids[head++]);
     }
 
     /**
@@ -56,16 +83,28 @@ public class UniqQueue {
      * @return The number of currently queued URLs.
      */
     public int size() {
-        return urls.size();
+        return tail - head;
     }
 
     /**
-     * Get a List of all currently queued urls.
+     * Get a List of all currently queued urls, the most recently queued first.
      * 
      * @return A List of all currently queued urls.
      */
     public List<String> toList() {
-        return this.urls;
+        ArrayList<String> urls = new ArrayList<>(size());
+        for (int i = tail - 1; i >= head; i--)
+            urls.add(dictionary.getUrl(ids[i]));
+        return urls;
+    }
+
+    /**
+     * Get the UrlDictionary the ids of the queued URLs are taken from.
+     * 
+     * @return The dictionary of this queue.
+     */
+    public UrlDictionary getUrlDictionary() {
+        return dictionary;
     }
 
     /**
@@ -74,6 +113,6 @@ public class UniqQueue {
      * @return True if the queue is empty. False otherwise.
      */
     public boolean isEmpty() {
-        return urls.isEmpty();
+        return head == tail;
     }
 }
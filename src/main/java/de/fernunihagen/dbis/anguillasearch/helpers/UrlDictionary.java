@@ -0,0 +1,255 @@
+package de.fernunihagen.dbis.anguillasearch.helpers;
+
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+
+/**
+ * A dictionary that assigns a dense int id to each URL it is given.
+ *
+ * The ids are assigned in the order the URLs are added, starting at 0, and
+ * never change. A single dictionary can be shared by the crawler queue and all
+ * indices, so they can refer to a website by its id and join their data by
+ * plain array lookups instead of comparing URL strings.
+ *
+ * The URLs are front coded in blocks of BLOCK_SIZE: the first URL of a block is
+ * stored in full, every other URL only stores the length of the prefix it
+ * shares with its predecessor and the remaining suffix. URLs found on the same
+ * page usually share their host, so this takes a fraction of the space of the
+ * strings. URLs are found by an open addressing hash table over their ids.
+ *
+ * add() and getId() work in O(1) on average, getUrl() decodes at most one
+ * block.
+ *
+ * @author Nico Beyer
+ */
+public class UrlDictionary {
+    static final int BLOCK_SIZE = 16;
+
+    // The front coded URLs and the start of each block in data.
+    private byte[] data = new byte[1024];
+    private int dataSize = 0;
+    private int[] blockStarts = new int[16];
+    private byte[] lastUrl = new byte[0];
+    private int size = 0;
+
+    // The hash of each URL by id and a hash table of ids + 1, 0 marks a free slot.
+    private int[] hashes = new int[16];
+    private int[] slots = new int[32];
+
+    /**
+     * Create a new empty UrlDictionary.
+     */
+    public UrlDictionary() {
+        // The dictionary starts out empty.
+    }
+
+    /**
+     * Add a URL to the dictionary. URLs that have been added before keep their id.
+     *
+     * @param url The URL to be added.
+     * @return The id of the URL.
+     */
+    public int add(String url) {
+        byte[] bytes = url.getBytes(StandardCharsets.UTF_8);
+        int hash = url.hashCode();
+        int slot = findSlot(bytes, hash);
+        if (slots[slot] != 0)
+            return slots[slot] - 1;
+
+        int id = size;
+        append(bytes);
+        if (id == hashes.length)
+            hashes = Arrays.copyOf(hashes, id * 2);
+        hashes[id] = hash;
+        slots[slot] = id + 1;
+        size++;
+        if (size * 2 > slots.length)
+            rehash();
+        return id;
+    }
+
+    /**
+     * Get the id of the given URL.
+     *
+     * @param url The URL to be found.
+     * @return The id of the URL or -1 if it hasn't been added.
+     */
+    public int getId(String url) {
+        int slot = findSlot(url.getBytes(StandardCharsets.UTF_8), url.hashCode());
+        return slots[slot] - 1;
+    }
+
+    /**
+     * Check if the given URL has been added to the dictionary.
+     *
+     * @param url The URL to be checked for.
+     * @return True if the URL has been added, false otherwise.
+     */
+    public boolean contains(String url) {
+        return getId(url) != -1;
+    }
+
+    /**
+     * Get the URL with the given id.
+     *
+     * @param id The id of the URL.
+     * @return The URL.
+     * @throws IndexOutOfBoundsException If no URL has the given id.
+     */
+    public String getUrl(int id) throws IndexOutOfBoundsException {
+        if (id < 0 || id >= size)
+            throw new IndexOutOfBoundsException("UrlDictionary: No URL with id " + id + "!");
+        return new String(decode(id), StandardCharsets.UTF_8);
+    }
+
+    /**
+     * Get the number of URLs in the dictionary. All ids are smaller than this.
+     *
+     * @return The number of URLs.
+     */
+    public int size() {
+        return size;
+    }
+
+    /**
+     * Get the memory used by the front coded URLs.
+     *
+     * @return The size of the URL data and its block index in bytes.
+     */
+    public long getSizeInBytes() {
+        return dataSize + (long) ((size + BLOCK_SIZE - 1) / BLOCK_SIZE) * Integer.BYTES;
+    }
+
+    /**
+     * Find the hash table slot holding the given URL, or the free slot it would be
+     * stored in.
+     *
+     * @param bytes The encoded URL.
+     * @param hash  The hash code of the URL.
+     * @return The slot found.
+     */
+    private int findSlot(byte[] bytes, int hash) {
+        int mask = slots.length - 1;
+        int slot = mix(hash) & mask;
+        while (slots[slot] != 0) {
+            int id = slots[slot] - 1;
+            if (hashes[id] == hash && Arrays.equals(bytes, decode(id)))
+                return slot;
+            slot = (slot + 1) & mask;
+        }
+        return slot;
+    }
+
+    /**
+     * Double the size of the hash table.
+     */
+    private void rehash() {
+        slots = new int[slots.length * 2];
+        int mask = slots.length - 1;
+        for (int id = 0; id < size; id++) {
+            int slot = mix(hashes[id]) & mask;
+            while (slots[slot] != 0)
+                slot = (slot + 1) & mask;
+            slots[slot] = id + 1;
+        }
+    }
+
+    /**
+     * Spread the bits of a hash code, since String hashes of similar URLs differ
+     * mostly in their low bits.
+     *
+     * @param hash The hash code.
+     * @return The mixed hash code.
+     */
+    private static int mix(int hash) {
+        hash *= 0x9E3779B9;
+        return hash ^ (hash >>> 16);
+    }
+
+    /**
+     * Append an encoded URL to the front coded data.
+     *
+     * @param bytes The encoded URL.
+     */
+    private void append(byte[] bytes) {
+        int shared = 0;
+        if (size % BLOCK_SIZE == 0) {
+            int block = size / BLOCK_SIZE;
+            if (block == blockStarts.length)
+                blockStarts = Arrays.copyOf(blockStarts, block * 2);
+            blockStarts[block] = dataSize;
+        } else {
+            shared = Math.max(0, Arrays.mismatch(lastUrl, bytes));
+            writeVarInt(shared);
+        }
+        writeVarInt(bytes.length - shared);
+        ensureCapacity(bytes.length - shared);
+        System.arraycopy(bytes, shared, data, dataSize, bytes.length - shared);
+        dataSize += bytes.length - shared;
+        lastUrl = bytes;
+    }
+
+    /**
+     * Decode the URL with the given id from its block.
+     *
+     * @param id The id of the URL.
+     * @return The encoded URL.
+     */
+    private byte[] decode(int id) {
+        int[] pos = { blockStarts[id / BLOCK_SIZE] };
+        int length = readVarInt(pos);
+        byte[] url = Arrays.copyOfRange(data, pos[0], pos[0] + length);
+        pos[0] += length;
+        for (int i = 0; i < id % BLOCK_SIZE; i++) {
+            int shared = readVarInt(pos);
+            int suffix = readVarInt(pos);
+            byte[] next = Arrays.copyOf(url, shared + suffix);
+            System.arraycopy(data, pos[0], next, shared, suffix);
+            pos[0] += suffix;
+            url = next;
+        }
+        return url;
+    }
+
+    /**
+     * Make room for at least the given number of bytes in data.
+     *
+     * @param bytes The number of bytes to be written.
+     */
+    private void ensureCapacity(int bytes) {
+        if (dataSize + bytes > data.length)
+            data = Arrays.copyOf(data, Math.max(data.length * 2, dataSize + bytes));
+    }
+
+    /**
+     * Append an unsigned variable length int, 7 bits per byte.
+     *
+     * @param value The non negative value to be written.
+     */
+    private void writeVarInt(int value) {
+        ensureCapacity(5);
+        while ((value & ~0x7F) != 0) {
+            data[dataSize++] = (byte) ((value & 0x7F) | 0x80);
+            value >>>= 7;
+        }
+        data[dataSize++] = (byte) value;
+    }
+
+    /**
+     * Read a variable length int.
+     *
+     * @param pos The read position, advanced past the int.
+     * @return The int read.
+     */
+    private int readVarInt(int[] pos) {
+        int value = 0;
+        int shift = 0;
+        byte b;
+        do {
+            b = data[pos[0]++];
+            value |= (b & 0x7F) << shift;
+            shift += 7;
+        } while (b < 0);
+        return value;
+    }
+}
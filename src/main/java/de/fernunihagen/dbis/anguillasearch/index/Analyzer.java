@@ -0,0 +1,35 @@
+package de.fernunihagen.dbis.anguillasearch.index;
+
+import java.util.List;
+
+/**
+ * An Analyzer splits a text into tokens and reduces each token to its lemma.
+ *
+ * The indices and the IndexSearcher analyze the Sites and the search queries
+ * with the same Analyzer, so both are reduced to the same terms. Stopwords and
+ * special characters are filtered out by the callers afterwards.
+ *
+ * @author Nico Beyer
+ */
+public interface Analyzer {
+
+    /**
+     * Split the given text into tokens and lemmatize them.
+     *
+     * @param text The lowercase text to be analyzed.
+     * @return The lemma of each token, in the order of the text.
+     */
+    List<String> lemmatize(String text);
+
+    /**
+     * Get a new TokenStream handing out the same lemmas as lemmatize(). The
+     * default stream copies the lemmas of lemmatize() into its buffer, Analyzers
+     * that can split a text without creating objects for each token override
+     * this method.
+     *
+     * @return A new TokenStream for a single thread.
+     */
+    default TokenStream tokenStream() {
+        return new LemmaListTokenStream(this);
+    }
+}
@@ -0,0 +1,104 @@
+package de.fernunihagen.dbis.anguillasearch.index;
+
+/**
+ * A PostingsIterator over a slice of two parallel arrays holding the document
+ * numbers and weights of a posting list. The weights may be stored as
+ * QuantizedWeights instead.
+ */
+class ArrayPostingsIterator implements PostingsIterator {
+    private final int[] docs;
+    private final double[] weights;
+    private final QuantizedWeights quantizedWeights;
+    private final int term;
+    private final int start;
+    private final int end;
+    private int pos;
+    private int doc = -1;
+
+    /**
+     * Create a new iterator over docs[start..end) and weights[start..end).
+     *
+     * @param docs    The ascending document numbers.
+     * @param weights The weight of each posting.
+     * @param start   The first position of the posting list (inclusive).
+     * @param end     The last position of the posting list (exclusive).
+     */
+    ArrayPostingsIterator(int[] docs, double[] weights, int start, int end) {
+        this.docs = docs;
+        this.weights = weights;
+        this.quantizedWeights = null;
+        this.term = -1;
+        this.start = start;
+        this.end = end;
+        this.pos = start - 1;
+    }
+
+    /**
+     * Create a new iterator over docs[start..end) with quantized weights.
+     *
+     * @param docs    The ascending document numbers.
+     * @param weights The quantized weights of all postings.
+     * @param term    The term number of the posting list.
+     * @param start   The first position of the posting list (inclusive).
+     * @param end     The last position of the posting list (exclusive).
+     */
+    ArrayPostingsIterator(int[] docs, QuantizedWeights weights, int term, int start, int end) {
+        this.docs = docs;
+        this.weights = null;
+        this.quantizedWeights = weights;
+        this.term = term;
+        this.start = start;
+        this.end = end;
+        this.pos = start - 1;
+    }
+
+    @Override
+    public int docId() {
+        return doc;
+    }
+
+    @Override
+    public int nextDoc() {
+        pos++;
+        doc = pos < end ? docs[pos] : NO_MORE_DOCS;
+        return doc;
+    }
+
+    @Override
+    public int advance(int target) {
+        // Gallop from the current position, probing 1, 2, 4, ... postings ahead
+        // until the probe reaches target, then binary search the last step. Short
+        // jumps, as in the intersection of lists of similar length, stay cheap.
+        int low = Math.max(pos + 1, start);
+        int high = low;
+        int step = 1;
+        while (high < end && docs[high] < target) {
+            low = high + 1;
+            high = end - high <= step ? end : high + step;
+            step <<= 1;
+        }
+        high--;
+        while (low <= high) {
+            int mid = (low + high) >>> 1;
+            if (docs[mid] < target)
+                low = mid + 1;
+            else
+                high = mid - 1;
+        }
+        pos = low;
+        doc = pos < end ? docs[pos] : NO_MORE_DOCS;
+        return doc;
+    }
+
+    @Override
+    public double weight() {
+        if (quantizedWeights != null)
+            return quantizedWeights.get(pos, term, doc);
+        return weights[pos];
+    }
+
+    @Override
+    public int cost() {
+        return end - start;
+    }
+}
@@ -0,0 +1,333 @@
+package de.fernunihagen.dbis.anguillasearch.index;
+
+import java.io.ByteArrayOutputStream;
+import java.nio.ByteBuffer;
+
+/**
+ * A compressed posting list format.
+ *
+ * The postings of a term are split into blocks of BLOCK_SIZE postings. Inside
+ * a block the gaps between document numbers are bit packed with the smallest
+ * bit width fitting all gaps of the block and the weights are quantized to 16
+ * bit relative to the largest weight of the block.
+ *
+ * Each block starts with a small header holding the last document number of
+ * the block, the payload length and the maximum weight. These headers are the
+ * skip data: advance() jumps over whole blocks without decoding them.
+ *
+ * <pre>
+ * list    varint docCount, block*
+ * block   varint lastDocDelta, varint payloadBytes, float maxWeight,
+ *         byte bits, packed gaps, short[count] weights
+ * </pre>
+ */
+public final class BlockPostings {
+    private BlockPostings() {
+    }
+
+    static final int BLOCK_SIZE = 128;
+    // The largest quantized weight.
+    static final int WEIGHT_LEVELS = 0xFFFF;
+
+    /**
+     * Encode a posting list and append it to out.
+     *
+     * @param docs    The ascending document numbers.
+     * @param weights The weight of each posting.
+     * @param count   The number of postings to be encoded.
+     * @param out     The stream to append the encoded list to.
+     */
+    public static void encode(int[] docs, double[] weights, int count, ByteArrayOutputStream out) {
+        writeVarInt(out, count);
+        int prevLastDoc = -1;
+        for (int start = 0; start < count; start += BLOCK_SIZE) {
+            int end = Math.min(start + BLOCK_SIZE, count);
+
+            // Find the bit width of the gaps and the maximum weight of the block.
+            int maxGap = 0;
+            double maxWeight = 0.0;
+            int prev = prevLastDoc;
+            for (int i = start; i < end; i++) {
+                maxGap = Math.max(maxGap, docs[i] - prev - 1);
+                maxWeight = Math.max(maxWeight, weights[i]);
+                prev = docs[i];
+            }
+            int bits = 32 - Integer.numberOfLeadingZeros(maxGap);
+            // Round the maximum up, so it stays an upper bound of the block.
+            float maxWeightF = (float) maxWeight;
+            if (maxWeightF < maxWeight)
+                maxWeightF = Math.nextUp(maxWeightF);
+
+            int n = end - start;
+            int packedBytes = (n * bits + 7) / 8;
+            writeVarInt(out, docs[end - 1] - prevLastDoc);
+            writeVarInt(out, 1 + packedBytes + 2 * n);
+            writeInt(out, Float.floatToIntBits(maxWeightF));
+            out.write(bits);
+
+            // Bit pack the gaps, least significant bits first.
+            long acc = 0;
+            int accBits = 0;
+            prev = prevLastDoc;
+            for (int i = start; i < end; i++) {
+                acc |= ((long) (docs[i] - prev - 1)) << accBits;
+                accBits += bits;
+                prev = docs[i];
+                while (accBits >= 8) {
+                    out.write((int) acc & 0xFF);
+                    acc >>>= 8;
+                    accBits -= 8;
+                }
+            }
+            if (accBits > 0)
+                out.write((int) acc & 0xFF);
+
+            // Quantize the weights.
+            for (int i = start; i < end; i++) {
+                int level = maxWeightF == 0.0f ? 0 : (int) Math.round(weights[i] / maxWeightF * WEIGHT_LEVELS);
+                out.write(level >>> 8);
+                out.write(level & 0xFF);
+            }
+            prevLastDoc = docs[end - 1];
+        }
+    }
+
+    /**
+     * Read the number of postings of the list starting at offset.
+     *
+     * @param buffer The buffer holding the encoded list.
+     * @param offset The start of the list.
+     * @return The number of postings in the list.
+     */
+    public static int docCount(ByteBuffer buffer, int offset) {
+        int value = 0;
+        int shift = 0;
+        byte b;
+        do {
+            b = buffer.get(offset++);
+            value |= (b & 0x7F) << shift;
+            shift += 7;
+        } while (b < 0);
+        return value;
+    }
+
+    /**
+     * Append an unsigned variable length int, 7 bits per byte.
+     *
+     * @param out   The stream to be written to.
+     * @param value The non negative value to be written.
+     */
+    private static void writeVarInt(ByteArrayOutputStream out, int value) {
+        while ((value & ~0x7F) != 0) {
+            out.write((value & 0x7F) | 0x80);
+            value >>>= 7;
+        }
+        out.write(value);
+    }
+
+    /**
+     * Append a big endian int.
+     *
+     * @param out   The stream to be written to.
+     * @param value The value to be written.
+     */
+    private static void writeInt(ByteArrayOutputStream out, int value) {
+        out.write(value >>> 24);
+        out.write(value >>> 16);
+        out.write(value >>> 8);
+        out.write(value);
+    }
+
+    /**
+     * A PostingsIterator decoding a compressed posting list one block at a time.
+     *
+     * Decoding doesn't allocate: the iterator owns one buffer for the document
+     * numbers and weights of a block and can be reset() onto another list.
+     */
+    public static class Iterator implements PostingsIterator {
+        private final ByteBuffer buffer;
+        private final int[] blockDocs = new int[BLOCK_SIZE];
+        private final double[] blockWeights = new double[BLOCK_SIZE];
+
+        private int count;
+        // Read position of the next block header.
+        private int next;
+        // Postings not yet decoded into a block.
+        private int remaining;
+        private int lastDoc;
+        private int blockLength;
+        private double blockMax;
+        private int pos;
+        private int doc;
+
+        // Header of the next block, read ahead for skipping.
+        private int nextLastDoc;
+        private int nextPayload;
+        private float nextMaxWeight;
+
+        /**
+         * Create a new iterator over the list starting at offset.
+         *
+         * @param buffer The buffer holding the encoded list.
+         * @param offset The start of the list.
+         */
+        public Iterator(ByteBuffer buffer, int offset) {
+            this.buffer = buffer;
+            reset(offset);
+        }
+
+        /**
+         * Reposition the iterator onto the list starting at offset.
+         *
+         * @param offset The start of the list.
+         */
+        public void reset(int offset) {
+            next = offset;
+            count = readVarInt();
+            remaining = count;
+            lastDoc = -1;
+            blockLength = 0;
+            blockMax = 0.0;
+            pos = 0;
+            doc = -1;
+            if (remaining > 0)
+                readHeader();
+        }
+
+        /**
+         * Read a variable length int at the read position.
+         *
+         * @return The int read.
+         */
+        private int readVarInt() {
+            int value = 0;
+            int shift = 0;
+            byte b;
+            do {
+                b = buffer.get(next++);
+                value |= (b & 0x7F) << shift;
+                shift += 7;
+            } while (b < 0);
+            return value;
+        }
+
+        /**
+         * Read the header of the next block.
+         */
+        private void readHeader() {
+            nextLastDoc = lastDoc + readVarInt();
+            nextPayload = readVarInt();
+            nextMaxWeight = Float.intBitsToFloat(buffer.getInt(next));
+            next += Integer.BYTES;
+        }
+
+        /**
+         * Skip the next block without decoding it.
+         */
+        private void skipBlock() {
+            next += nextPayload;
+            remaining -= BLOCK_SIZE;
+            lastDoc = nextLastDoc;
+            if (remaining > 0)
+                readHeader();
+        }
+
+        /**
+         * Decode the next block into the block buffers.
+         */
+        private void decodeBlock() {
+            int n = Math.min(BLOCK_SIZE, remaining);
+            int bits = buffer.get(next);
+            int p = next + 1;
+            long mask = (1L << bits) - 1;
+
+            long acc = 0;
+            int accBits = 0;
+            int prev = lastDoc;
+            for (int i = 0; i < n; i++) {
+                while (accBits < bits) {
+                    acc |= ((long) (buffer.get(p++) & 0xFF)) << accBits;
+                    accBits += 8;
+                }
+                prev += (int) (acc & mask) + 1;
+                blockDocs[i] = prev;
+                acc >>>= bits;
+                accBits -= bits;
+            }
+
+            p = next + 1 + (n * bits + 7) / 8;
+            // level * max is exact, so no decoded weight exceeds the block maximum.
+            double max = nextMaxWeight;
+            for (int i = 0; i < n; i++) {
+                blockWeights[i] = (buffer.getShort(p) & 0xFFFF) * max / WEIGHT_LEVELS;
+                p += 2;
+            }
+
+            blockLength = n;
+            blockMax = nextMaxWeight;
+            pos = 0;
+            skipBlock();
+        }
+
+        @Override
+        public int docId() {
+            return doc;
+        }
+
+        @Override
+        public int nextDoc() {
+            if (doc != -1)
+                pos++;
+            if (pos >= blockLength) {
+                if (remaining <= 0) {
+                    doc = NO_MORE_DOCS;
+                    return doc;
+                }
+                decodeBlock();
+            }
+            doc = blockDocs[pos];
+            return doc;
+        }
+
+        @Override
+        public int advance(int target) {
+            if (doc == NO_MORE_DOCS)
+                return doc;
+            if (doc != -1)
+                pos++;
+            // Skip every block that ends before target without decoding it.
+            if (pos >= blockLength || blockDocs[blockLength - 1] < target) {
+                while (remaining > 0 && nextLastDoc < target)
+                    skipBlock();
+                if (remaining <= 0) {
+                    doc = NO_MORE_DOCS;
+                    return doc;
+                }
+                decodeBlock();
+            }
+            while (blockDocs[pos] < target)
+                pos++;
+            doc = blockDocs[pos];
+            return doc;
+        }
+
+        @Override
+        public double weight() {
+            return blockWeights[pos];
+        }
+
+        @Override
+        public int cost() {
+            return count;
+        }
+
+        /**
+         * Get the maximum weight of the block holding the current posting.
+         *
+         * @return An upper bound of all weights in the current block.
+         */
+        public double blockMaxWeight() {
+            return blockMax;
+        }
+    }
+}
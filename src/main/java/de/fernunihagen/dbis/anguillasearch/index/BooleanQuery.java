@@ -0,0 +1,482 @@
+package de.fernunihagen.dbis.anguillasearch.index;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.List;
+import java.util.function.Function;
+
+/**
+ * A parsed boolean search query. Words are combined by the operators AND, OR
+ * and NOT and grouped by parentheses, operators need to be written in upper
+ * case. NOT binds tighter than AND, AND binds tighter than OR. Words without an
+ * operator in between are combined by OR, like the words of a cosine search.
+ * NOT excludes documents from the other operands of an AND, so "a NOT b" means
+ * "a AND NOT b". A query or an OR can't only exclude documents.
+ *
+ * <pre>
+ * or     := and (["OR"] and)*
+ * and    := unary (("AND" | "NOT" ...) unary)*
+ * unary  := "NOT" unary | "(" or ")" | word
+ * </pre>
+ *
+ * The documents matching a query are found by walking the posting lists of its
+ * words document at a time. Conjunctions are led by their rarest operand, the
+ * other operands advance to its documents, skipping the postings in between.
+ */
+final class BooleanQuery {
+    private final String query;
+    private final List<String> tokens = new ArrayList<>();
+    private int next = 0;
+    private final Node root;
+
+    /**
+     * Parse a boolean query.
+     *
+     * @param query The query to be parsed.
+     * @throws IllegalArgumentException If the query is not a valid boolean query.
+     */
+    BooleanQuery(String query) {
+        this.query = query;
+        for (String word : query.trim().split("\\s+")) {
+            // Parentheses are tokens of their own, even without spaces around them.
+            int wordStart = 0;
+            for (int i = 0; i < word.length(); i++) {
+                char c = word.charAt(i);
+                if (c != '(' && c != ')')
+                    continue;
+                if (i > wordStart)
+                    tokens.add(word.substring(wordStart, i));
+                tokens.add(String.valueOf(c));
+                wordStart = i + 1;
+            }
+            if (wordStart < word.length())
+                tokens.add(word.substring(wordStart));
+        }
+        if (tokens.isEmpty()) {
+            root = null;
+            return;
+        }
+        root = parseOr();
+        if (next < tokens.size())
+            throw invalid("Unexpected " + tokens.get(next));
+        if (root instanceof Not)
+            throw invalid("The query only excludes documents");
+    }
+
+    private IllegalArgumentException invalid(String reason) {
+        return new IllegalArgumentException("BooleanQuery: " + reason + " in query " + query + "!");
+    }
+
+    private boolean isOperator(String token) {
+        return "AND".equals(token) || "OR".equals(token) || "NOT".equals(token) || ")".equals(token);
+    }
+
+    private Node parseOr() {
+        List<Node> operands = new ArrayList<>();
+        operands.add(parseAnd());
+        while (next < tokens.size() && !")".equals(tokens.get(next))) {
+            if ("OR".equals(tokens.get(next)))
+                next++;
+            operands.add(parseAnd());
+        }
+        if (operands.size() == 1)
+            return operands.get(0);
+        for (Node operand : operands)
+            if (operand instanceof Not)
+                throw invalid("OR can't only exclude documents");
+        return new Or(operands);
+    }
+
+    private Node parseAnd() {
+        List<Node> operands = new ArrayList<>();
+        operands.add(parseUnary());
+        while (next < tokens.size()) {
+            if ("AND".equals(tokens.get(next)))
+                next++;
+            else if (!"NOT".equals(tokens.get(next)))
+                break;
+            operands.add(parseUnary());
+        }
+        if (operands.size() == 1)
+            return operands.get(0);
+        if (operands.stream().allMatch(operand -> operand instanceof Not))
+            throw invalid("AND can't only exclude documents");
+        return new And(operands);
+    }
+
+    private Node parseUnary() {
+        if (next == tokens.size())
+            throw invalid("Missing word at the end");
+        String token = tokens.get(next++);
+        if ("NOT".equals(token)) {
+            Node operand = parseUnary();
+            if (operand instanceof Not)
+                throw invalid("NOT can't exclude NOT");
+            return new Not(operand);
+        }
+        if ("(".equals(token)) {
+            Node group = parseOr();
+            if (next == tokens.size() || !")".equals(tokens.get(next)))
+                throw invalid("Missing )");
+            next++;
+            return group;
+        }
+        if (isOperator(token))
+            throw invalid("Missing word before " + token);
+        return new Word(token);
+    }
+
+    /**
+     * Get the words of the query that aren't excluded by NOT, in query order.
+     *
+     * @return The included words.
+     */
+    List<String> getIncludedWords() {
+        List<String> words = new ArrayList<>();
+        if (root != null)
+            root.collectIncludedWords(words);
+        return words;
+    }
+
+    /**
+     * Get a Matcher over the documents matching the query.
+     *
+     * @param wordMatcher Finds the documents containing a word, returns null for
+     *                    words without tokens like stopwords.
+     * @return The Matcher or null if the query has no tokens.
+     */
+    Matcher matcher(Function<String, Matcher> wordMatcher) {
+        return root == null ? null : root.matcher(wordMatcher);
+    }
+
+    /**
+     * A node of the parsed query.
+     */
+    private abstract static class Node {
+        /**
+         * Get a Matcher over the documents matching this node, null if the node
+         * has no tokens, e.g. is a stopword. Words without tokens are left out of
+         * the operators they belong to.
+         */
+        abstract Matcher matcher(Function<String, Matcher> wordMatcher);
+
+        abstract void collectIncludedWords(List<String> words);
+    }
+
+    private static final class Word extends Node {
+        private final String word;
+
+        Word(String word) {
+            this.word = word;
+        }
+
+        @Override
+        Matcher matcher(Function<String, Matcher> wordMatcher) {
+            return wordMatcher.apply(word);
+        }
+
+        @Override
+        void collectIncludedWords(List<String> words) {
+            words.add(word);
+        }
+    }
+
+    private static final class Not extends Node {
+        private final Node operand;
+
+        Not(Node operand) {
+            this.operand = operand;
+        }
+
+        @Override
+        Matcher matcher(Function<String, Matcher> wordMatcher) {
+            // The parser only allows NOT as an operand of AND.
+            throw new IllegalStateException("BooleanQuery: NOT can't be matched on its own!");
+        }
+
+        @Override
+        void collectIncludedWords(List<String> words) {
+            // Excluded words don't add to the score.
+        }
+    }
+
+    private static final class And extends Node {
+        private final List<Node> operands;
+
+        And(List<Node> operands) {
+            this.operands = operands;
+        }
+
+        @Override
+        Matcher matcher(Function<String, Matcher> wordMatcher) {
+            List<Matcher> required = new ArrayList<>();
+            List<Matcher> excluded = new ArrayList<>();
+            for (Node operand : operands) {
+                boolean exclude = operand instanceof Not;
+                Matcher matcher = (exclude ? ((Not) operand).operand : operand).matcher(wordMatcher);
+                if (matcher != null)
+                    (exclude ? excluded : required).add(matcher);
+            }
+            if (required.isEmpty())
+                return null;
+            Matcher conjunction = Matcher.allOf(required);
+            if (excluded.isEmpty())
+                return conjunction;
+            return new Exclusion(conjunction, excluded.size() == 1 ? excluded.get(0) : new Disjunction(excluded));
+        }
+
+        @Override
+        void collectIncludedWords(List<String> words) {
+            for (Node operand : operands)
+                operand.collectIncludedWords(words);
+        }
+    }
+
+    private static final class Or extends Node {
+        private final List<Node> operands;
+
+        Or(List<Node> operands) {
+            this.operands = operands;
+        }
+
+        @Override
+        Matcher matcher(Function<String, Matcher> wordMatcher) {
+            List<Matcher> matchers = new ArrayList<>();
+            for (Node operand : operands) {
+                Matcher matcher = operand.matcher(wordMatcher);
+                if (matcher != null)
+                    matchers.add(matcher);
+            }
+            if (matchers.size() <= 1)
+                return matchers.isEmpty() ? null : matchers.get(0);
+            return new Disjunction(matchers);
+        }
+
+        @Override
+        void collectIncludedWords(List<String> words) {
+            for (Node operand : operands)
+                operand.collectIncludedWords(words);
+        }
+    }
+
+    /**
+     * Walks over matching documents in ascending order, like a PostingsIterator
+     * without weights. Before the first call of nextDoc() or advance() docId()
+     * returns -1.
+     */
+    abstract static class Matcher {
+        static final int NO_MORE_DOCS = PostingsIterator.NO_MORE_DOCS;
+
+        /**
+         * Get a Matcher without documents, e.g. for a term that isn't indexed.
+         */
+        static Matcher empty() {
+            return new Matcher() {
+                private int doc = -1;
+
+                @Override
+                int docId() {
+                    return doc;
+                }
+
+                @Override
+                int nextDoc() {
+                    doc = NO_MORE_DOCS;
+                    return doc;
+                }
+
+                @Override
+                int advance(int target) {
+                    return nextDoc();
+                }
+
+                @Override
+                long cost() {
+                    return 0;
+                }
+            };
+        }
+
+        abstract int docId();
+
+        abstract int nextDoc();
+
+        /**
+         * Move on to the first document greater or equal to target.
+         */
+        abstract int advance(int target);
+
+        /**
+         * Get the maximum number of documents matched, used to order operands.
+         */
+        abstract long cost();
+
+        /**
+         * Get a Matcher over the documents of a posting list.
+         */
+        static Matcher of(PostingsIterator postings) {
+            return new Matcher() {
+                @Override
+                int docId() {
+                    return postings.docId();
+                }
+
+                @Override
+                int nextDoc() {
+                    return postings.nextDoc();
+                }
+
+                @Override
+                int advance(int target) {
+                    return postings.advance(target);
+                }
+
+                @Override
+                long cost() {
+                    return postings.cost();
+                }
+            };
+        }
+
+        /**
+         * Get a Matcher over the documents matching all given Matchers.
+         */
+        static Matcher allOf(List<Matcher> matchers) {
+            return matchers.size() == 1 ? matchers.get(0) : new Conjunction(matchers);
+        }
+    }
+
+    /**
+     * Matches the documents of all operands. The rarest operand leads, the others
+     * advance to its documents. If one of them skips past the document, the lead
+     * advances to the document found instead.
+     */
+    private static final class Conjunction extends Matcher {
+        private final Matcher[] operands;
+        private int doc = -1;
+
+        Conjunction(List<Matcher> operands) {
+            this.operands = operands.toArray(new Matcher[0]);
+            Arrays.sort(this.operands, Comparator.comparingLong(Matcher::cost));
+        }
+
+        @Override
+        int docId() {
+            return doc;
+        }
+
+        @Override
+        int nextDoc() {
+            return doc = align(operands[0].nextDoc());
+        }
+
+        @Override
+        int advance(int target) {
+            return doc = align(operands[0].advance(target));
+        }
+
+        private int align(int target) {
+            while (target != NO_MORE_DOCS) {
+                int found = target;
+                for (int i = 1; i < operands.length && found == target; i++)
+                    found = operands[i].docId() < target ? operands[i].advance(target) : operands[i].docId();
+                if (found == target)
+                    return target;
+                target = operands[0].advance(found);
+            }
+            return NO_MORE_DOCS;
+        }
+
+        @Override
+        long cost() {
+            return operands[0].cost();
+        }
+    }
+
+    /**
+     * Matches the documents of any operand.
+     */
+    private static final class Disjunction extends Matcher {
+        private final Matcher[] operands;
+        private int doc = -1;
+
+        Disjunction(List<Matcher> operands) {
+            this.operands = operands.toArray(new Matcher[0]);
+        }
+
+        @Override
+        int docId() {
+            return doc;
+        }
+
+        @Override
+        int nextDoc() {
+            return advance(doc + 1);
+        }
+
+        @Override
+        int advance(int target) {
+            if (doc == NO_MORE_DOCS)
+                return doc;
+            int min = NO_MORE_DOCS;
+            for (Matcher operand : operands) {
+                int operandDoc = operand.docId() < target ? operand.advance(target) : operand.docId();
+                min = Math.min(min, operandDoc);
+            }
+            return doc = min;
+        }
+
+        @Override
+        long cost() {
+            long cost = 0;
+            for (Matcher operand : operands)
+                cost += operand.cost();
+            return cost;
+        }
+    }
+
+    /**
+     * Matches the documents of a required Matcher that an excluded Matcher
+     * doesn't match.
+     */
+    private static final class Exclusion extends Matcher {
+        private final Matcher required;
+        private final Matcher excluded;
+
+        Exclusion(Matcher required, Matcher excluded) {
+            this.required = required;
+            this.excluded = excluded;
+        }
+
+        @Override
+        int docId() {
+            return required.docId();
+        }
+
+        @Override
+        int nextDoc() {
+            return skipExcluded(required.nextDoc());
+        }
+
+        @Override
+        int advance(int target) {
+            return skipExcluded(required.advance(target));
+        }
+
+        private int skipExcluded(int doc) {
+            while (doc != NO_MORE_DOCS) {
+                int excludedDoc = excluded.docId() < doc ? excluded.advance(doc) : excluded.docId();
+                if (excludedDoc != doc)
+                    return doc;
+                doc = required.nextDoc();
+            }
+            return doc;
+        }
+
+        @Override
+        long cost() {
+            return required.cost();
+        }
+    }
+}
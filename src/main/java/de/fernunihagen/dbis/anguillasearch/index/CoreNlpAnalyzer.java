@@ -0,0 +1,64 @@
+package de.fernunihagen.dbis.anguillasearch.index;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import edu.stanford.nlp.ling.CoreLabel;
+import edu.stanford.nlp.pipeline.CoreDocument;
+import edu.stanford.nlp.pipeline.StanfordCoreNLP;
+
+/**
+ * An Analyzer running the StanfordCoreNLP annotators
+ * REVERSEINDEX_PIPELINE_ANNOTATORS. The lemmas are chosen by the part of
+ * speech of each token, which makes this the most accurate but also the
+ * slowest Analyzer.
+ *
+ * The pipelines are borrowed from a NlpPipelinePool for each text, so creating
+ * a CoreNlpAnalyzer is cheap and one analyzer can be used by several threads.
+ *
+ * @author Nico Beyer
+ */
+public class CoreNlpAnalyzer implements Analyzer {
+    private final NlpPipelinePool pool;
+
+    /**
+     * Create a new CoreNlpAnalyzer using the pipelines of the shared pool.
+     */
+    public CoreNlpAnalyzer() {
+        this(NlpPipelinePool.getShared());
+    }
+
+    /**
+     * Create a new CoreNlpAnalyzer using the pipelines of the given pool.
+     *
+     * @param pool The pool to borrow the pipelines from.
+     */
+    public CoreNlpAnalyzer(NlpPipelinePool pool) {
+        this.pool = pool;
+    }
+
+    @Override
+    public List<String> lemmatize(String text) {
+        CoreDocument content = new CoreDocument(text);
+        StanfordCoreNLP pipeline = pool.borrow();
+        try {
+            pipeline.annotate(content);
+        } finally {
+            pool.release(pipeline);
+        }
+
+        List<String> lemmas = new ArrayList<>(content.tokens().size());
+        for (CoreLabel tok : content.tokens())
+            lemmas.add(tok.lemma());
+        return lemmas;
+    }
+
+    /**
+     * Get the pool this Analyzer borrows its pipelines from.
+     *
+     * @return The pipeline pool.
+     */
+    public NlpPipelinePool getPool() {
+        return pool;
+    }
+}
@@ -0,0 +1,99 @@
+package de.fernunihagen.dbis.anguillasearch.index;
+
+import java.io.OutputStream;
+import java.nio.ByteBuffer;
+
+/**
+ * An OutputStream appending to a direct ByteBuffer outside of the Java heap.
+ *
+ * The buffer doubles its capacity when it is full. Everything written so far
+ * can be read back at any time by absolute gets on getBuffer().
+ */
+final class DirectBufferOutputStream extends OutputStream {
+    private ByteBuffer buffer;
+
+    /**
+     * Create a new empty stream.
+     *
+     * @param capacity The initial capacity in bytes.
+     */
+    DirectBufferOutputStream(int capacity) {
+        buffer = ByteBuffer.allocateDirect(Math.max(capacity, 16));
+    }
+
+    /**
+     * Make room for at least the given number of bytes.
+     *
+     * @param bytes The number of bytes to be written.
+     */
+    private void ensureCapacity(int bytes) {
+        if (buffer.remaining() >= bytes)
+            return;
+        ByteBuffer grown = ByteBuffer.allocateDirect(Math.max(buffer.capacity() * 2, buffer.position() + bytes));
+        buffer.flip();
+        grown.put(buffer);
+        // The old buffer is freed once it has been garbage collected.
+        buffer = grown;
+    }
+
+    @Override
+    public void write(int b) {
+        ensureCapacity(1);
+        buffer.put((byte) b);
+    }
+
+    @Override
+    public void write(byte[] bytes, int offset, int length) {
+        ensureCapacity(length);
+        buffer.put(bytes, offset, length);
+    }
+
+    /**
+     * Append a big endian int.
+     *
+     * @param value The int to be written.
+     */
+    void writeInt(int value) {
+        ensureCapacity(Integer.BYTES);
+        buffer.putInt(value);
+    }
+
+    /**
+     * Get the number of bytes written.
+     *
+     * @return The size of the written data.
+     */
+    int size() {
+        return buffer.position();
+    }
+
+    /**
+     * Get the current buffer. It is replaced when the stream grows, so it should
+     * not be kept across writes.
+     *
+     * @return The buffer holding the written data at [0..size()).
+     */
+    ByteBuffer getBuffer() {
+        return buffer;
+    }
+
+    /**
+     * Get the memory reserved by the stream.
+     *
+     * @return The capacity of the buffer in bytes.
+     */
+    int capacity() {
+        return buffer.capacity();
+    }
+
+    /**
+     * Copy the written data into a direct buffer of exactly its size.
+     *
+     * @return A new direct buffer holding the written data.
+     */
+    ByteBuffer toBuffer() {
+        ByteBuffer data = buffer.duplicate();
+        data.flip();
+        return ByteBuffer.allocateDirect(data.remaining()).put(data).flip();
+    }
+}
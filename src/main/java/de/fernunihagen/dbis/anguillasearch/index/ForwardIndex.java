@@ -1,24 +1,62 @@
 package de.fernunihagen.dbis.anguillasearch.index;
 
+import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.Set;
-import java.util.TreeMap;
 import java.util.Map.Entry;
 
 import de.fernunihagen.dbis.anguillasearch.helpers.Site;
+import de.fernunihagen.dbis.anguillasearch.helpers.UrlDictionary;
 
 /**
  * A ForwardIndex object is an index of Sites referenced by their URL.
  * For Each website a Site object as well as a vector of each token and their TF
  * value can be added and retrieved from the index.
+ * 
+ * The Sites are stored by the id their URL has in a UrlDictionary, which may be
+ * shared with the other indices.
+ * 
+ * An off heap ForwardIndex serializes the Sites into an OffHeapDocumentStore
+ * and returns a new Site object on each lookup. The Site vectors are not kept
+ * in this mode.
  */
 public class ForwardIndex {
-    TreeMap<String, Site> index = new TreeMap<>();
+    private UrlDictionary dictionary;
+    // The Site of each URL id, null for URLs without a Site in this index.
+    private ArrayList<Site> sites = new ArrayList<>();
+    // In off heap mode the store number + 1 of each URL id, 0 for none.
+    private OffHeapDocumentStore store = null;
+    private int[] storeNrs = null;
+    private int nrOfSites = 0;
 
     /**
-     * Create a new empty ForwardIndex object.
+     * Create a new empty ForwardIndex object with its own UrlDictionary.
      */
     public ForwardIndex() {
+        this(new UrlDictionary());
+    }
+
+    /**
+     * Create a new empty ForwardIndex object on the given UrlDictionary.
+     * 
+     * @param dictionary The dictionary assigning the ids of the Sites URLs.
+     */
+    public ForwardIndex(UrlDictionary dictionary) {
+        this.dictionary = dictionary;
+    }
 
+    /**
+     * Create a new empty ForwardIndex object on the given UrlDictionary.
+     * 
+     * @param dictionary The dictionary assigning the ids of the Sites URLs.
+     * @param offHeap    If true the Sites will be stored outside of the Java heap.
+     */
+    public ForwardIndex(UrlDictionary dictionary, boolean offHeap) {
+        this.dictionary = dictionary;
+        if (offHeap) {
+            store = new OffHeapDocumentStore();
+            storeNrs = new int[0];
+        }
     }
 
     /**
@@ -27,30 +65,106 @@ public class ForwardIndex {
      * @param site The site to be added.
      */
     public void addSite(Site site) {
-        if (index.containsKey(site.url))
+        int id = dictionary.add(site.url);
+        if (store != null) {
+            if (id >= storeNrs.length)
+                storeNrs = Arrays.copyOf(storeNrs, Math.max(id + 1, storeNrs.length * 2));
+            if (storeNrs[id] != 0)
+                return;
+            storeNrs[id] = store.add(site) + 1;
+            nrOfSites++;
+            return;
+        }
+        while (sites.size() <= id)
+            sites.add(null);
+        if (sites.get(id) != null)
+            return;
+        sites.set(id, site);
+        nrOfSites++;
+    }
+
+    /**
+     * Replace the Site with the same URL, or add it if it isn't indexed yet.
+     * 
+     * @param site The new version of the Site.
+     */
+    public void update(Site site) {
+        delete(site.url);
+        addSite(site);
+    }
+
+    /**
+     * Delete the Site with the given URL from the index. In off heap mode the
+     * space of the Site is reclaimed by compact().
+     * 
+     * @param url The URL of the Site to be deleted.
+     * @return True if the Site was deleted, false if it wasn't indexed.
+     */
+    public boolean delete(String url) {
+        int id = dictionary.getId(url);
+        if (getSite(id) == null)
+            return false;
+        if (store != null)
+            storeNrs[id] = 0;
+        else
+            sites.set(id, null);
+        nrOfSites--;
+        return true;
+    }
+
+    /**
+     * Reclaim the space of deleted Sites by copying the remaining Sites into a new
+     * OffHeapDocumentStore. Sites stored on the heap are released on deletion, so
+     * this does nothing for them.
+     */
+    public void compact() {
+        if (store == null || store.size() == nrOfSites)
             return;
-        index.put(site.url, site);
+        OffHeapDocumentStore compacted = new OffHeapDocumentStore();
+        for (int id = 0; id < storeNrs.length; id++)
+            if (storeNrs[id] != 0)
+                storeNrs[id] = compacted.add(store.get(storeNrs[id] - 1)) + 1;
+        store = compacted;
     }
 
     /**
      * Add a vector containing a list of tokens to the Site with the given URL.
+     * Off heap indices ignore the vector.
      * 
      * @param url    The URL of the Site to which the vector will be added.
      * @param vector The vector to be added.
      */
     public void addVector(String url, Set<Entry<String, Integer>> vector) {
-        if (index.containsKey(url))
-            index.get(url).setVector(vector);
+        Site site = store == null ? getSiteWithUrl(url) : null;
+        if (site != null)
+            site.setVector(vector);
     }
 
     /**
      * Get the indexed Site object with the given url from the index.
      * 
      * @param url The url of the website.
-     * @return The Site object for the given url.
+     * @return The Site object for the given url or null if it isn't indexed.
      */
     public Site getSiteWithUrl(String url) {
-        return index.get(url);
+        return getSite(dictionary.getId(url));
+    }
+
+    /**
+     * Get the indexed Site object with the given URL id from the index.
+     * 
+     * @param urlId The id of the websites URL in the UrlDictionary of this index.
+     * @return The Site object for the given id or null if it isn't indexed.
+     */
+    public Site getSite(int urlId) {
+        if (store != null) {
+            if (urlId < 0 || urlId >= storeNrs.length || storeNrs[urlId] == 0)
+                return null;
+            return store.get(storeNrs[urlId] - 1);
+        }
+        if (urlId < 0 || urlId >= sites.size())
+            return null;
+        return sites.get(urlId);
     }
 
     /**
@@ -60,7 +174,25 @@ public class ForwardIndex {
      * @return The title of the found Site.
      */
     public String getTitleOf(String url) {
-        return index.get(url).title;
+        return getSiteWithUrl(url).title;
+    }
+
+    /**
+     * Get the memory used by the stored Sites outside of the Java heap.
+     * 
+     * @return The off heap size in bytes, 0 if the Sites are stored on the heap.
+     */
+    public long getOffHeapSize() {
+        return store == null ? 0 : store.getOffHeapSize();
+    }
+
+    /**
+     * Get the UrlDictionary the ids of the indexed Sites are taken from.
+     * 
+     * @return The dictionary of this index.
+     */
+    public UrlDictionary getUrlDictionary() {
+        return dictionary;
     }
 
     /**
@@ -69,6 +201,6 @@ public class ForwardIndex {
      * @return The number of sites indexed.
      */
     public int getNrOfSites() {
-        return index.size();
+        return nrOfSites;
     }
 }
@@ -0,0 +1,522 @@
+package de.fernunihagen.dbis.anguillasearch.index;
+
+import static de.fernunihagen.dbis.anguillasearch.index.IndexConfig.HNSW_EF_CONSTRUCTION;
+import static de.fernunihagen.dbis.anguillasearch.index.IndexConfig.HNSW_EF_SEARCH;
+import static de.fernunihagen.dbis.anguillasearch.index.IndexConfig.HNSW_M;
+import static de.fernunihagen.dbis.anguillasearch.index.IndexConfig.HNSW_SEED;
+
+import java.util.Arrays;
+import java.util.BitSet;
+import java.util.Map;
+import java.util.Map.Entry;
+import java.util.Random;
+import java.util.function.IntBinaryOperator;
+
+/**
+ * An approximate nearest neighbor index of the document vectors of a finished
+ * index, a hierarchical navigable small world (HNSW) graph.
+ *
+ * Each live document is a node of the graph. A node is part of the lowest layer
+ * and, with an exponentially falling probability, of some layers above it. On
+ * each layer a node is linked to up to M similar nodes, on the lowest layer to
+ * 2 * M. A search walks greedily from the single node of the top layer down to
+ * the lowest layer, where the ef nodes most similar to the query found so far
+ * are expanded until none of their neighbors is more similar. So a search only
+ * scores the vectors of a small part of the documents, but may miss some of the
+ * most similar documents.
+ *
+ * The document vectors are stored as sparse unit vectors, so the cosine
+ * similarity of a document to the query is the dot product of both. A larger M
+ * and efConstruction build a better connected graph more slowly, a larger ef
+ * finds more of the most similar documents more slowly.
+ *
+ * The graph belongs to the generation of the index it was built from and can't
+ * be searched after the index changed. Searches can run in multiple threads.
+ *
+ * @author Nico Beyer
+ */
+public final class HnswIndex {
+    private final SearchableIndex index;
+    private final long generation;
+    private final int m;
+    private final int maxM0;
+    private final int efConstruction;
+    private final double levelFactor;
+    private final ScoringKernels kernels = ScoringKernels.getDefault();
+    private volatile int ef = HNSW_EF_SEARCH;
+
+    // The sparse unit vector of each document sorted by term number, null for
+    // documents that aren't part of the graph.
+    private final int[][] vectorTerms;
+    private final double[][] vectorWeights;
+    private final int termCount;
+
+    // The neighbors of each node on each of its layers and their number.
+    private final int[][][] links;
+    private final int[][] linkCounts;
+    private int entryPoint = -1;
+    private int maxLevel = -1;
+    private int nodeCount = 0;
+
+    private HnswIndex(SearchableIndex index, int m, int efConstruction) {
+        this.index = index;
+        this.generation = index.getGeneration();
+        this.m = m;
+        this.maxM0 = 2 * m;
+        this.efConstruction = efConstruction;
+        this.levelFactor = 1.0 / Math.log(m);
+        this.termCount = index.getNrOfTerms();
+        this.vectorTerms = new int[index.getDocumentCapacity()][];
+        this.vectorWeights = new double[index.getDocumentCapacity()][];
+        this.links = new int[index.getDocumentCapacity()][][];
+        this.linkCounts = new int[index.getDocumentCapacity()][];
+    }
+
+    /**
+     * Build the HNSW graph of the live documents of a finished index with the
+     * default parameters HNSW_M and HNSW_EF_CONSTRUCTION.
+     *
+     * @param index The finished index.
+     * @return The graph of the documents of index.
+     */
+    public static HnswIndex build(SearchableIndex index) {
+        return build(index, HNSW_M, HNSW_EF_CONSTRUCTION);
+    }
+
+    /**
+     * Build the HNSW graph of the live documents of a finished index.
+     *
+     * @param index          The finished index.
+     * @param m              The number of neighbors of each node above the lowest
+     *                       layer, at least 2.
+     * @param efConstruction The number of candidates considered while inserting
+     *                       a node, at least 1.
+     * @return The graph of the documents of index.
+     */
+    public static HnswIndex build(SearchableIndex index, int m, int efConstruction) {
+        if (m < 2)
+            throw new IllegalArgumentException("HnswIndex: M needs to be at least 2!");
+        if (efConstruction < 1)
+            throw new IllegalArgumentException("HnswIndex: efConstruction needs to be at least 1!");
+        HnswIndex hnswIndex = new HnswIndex(index, m, efConstruction);
+        hnswIndex.loadVectors();
+
+        Random random = new Random(HNSW_SEED);
+        double[] dense = new double[hnswIndex.termCount];
+        BitSet visited = new BitSet(index.getDocumentCapacity());
+        for (int doc = 0; doc < index.getDocumentCapacity(); doc++) {
+            if (hnswIndex.vectorTerms[doc] != null)
+                hnswIndex.insert(doc, (int) (-Math.log(1.0 - random.nextDouble()) * hnswIndex.levelFactor), dense,
+                        visited);
+        }
+        return hnswIndex;
+    }
+
+    /**
+     * Collect the unit vector of each live document from the posting lists.
+     */
+    private void loadVectors() {
+        int capacity = index.getDocumentCapacity();
+        int[] counts = new int[capacity];
+        for (int termId = 0; termId < termCount; termId++) {
+            PostingsIterator postings = index.getPostings(termId);
+            while (postings.nextDoc() != PostingsIterator.NO_MORE_DOCS)
+                counts[postings.docId()]++;
+        }
+        for (int doc = 0; doc < capacity; doc++) {
+            double norm = index.isNormalized() ? 1.0 : index.getNorm(doc);
+            if (counts[doc] > 0 && index.isLive(doc) && norm != 0.0) {
+                vectorTerms[doc] = new int[counts[doc]];
+                vectorWeights[doc] = new double[counts[doc]];
+            }
+        }
+
+        // The terms are visited in order, so each vector is sorted by term number.
+        Arrays.fill(counts, 0);
+        for (int termId = 0; termId < termCount; termId++) {
+            PostingsIterator postings = index.getPostings(termId);
+            while (postings.nextDoc() != PostingsIterator.NO_MORE_DOCS) {
+                int doc = postings.docId();
+                if (vectorTerms[doc] == null)
+                    continue;
+                vectorTerms[doc][counts[doc]] = termId;
+                vectorWeights[doc][counts[doc]++] = index.isNormalized() ? postings.weight()
+                        : postings.weight() / index.getNorm(doc);
+            }
+        }
+    }
+
+    /**
+     * Insert a document into the graph.
+     *
+     * @param doc     The document number.
+     * @param level   The highest layer of the new node.
+     * @param dense   A zeroed array of termCount entries to be used as the dense
+     *                vector of the document.
+     * @param visited A BitSet to mark the visited nodes.
+     */
+    private void insert(int doc, int level, double[] dense, BitSet visited) {
+        links[doc] = new int[level + 1][];
+        linkCounts[doc] = new int[level + 1];
+        for (int layer = 0; layer <= level; layer++)
+            links[doc][layer] = new int[layer == 0 ? maxM0 : m];
+        nodeCount++;
+        if (entryPoint == -1) {
+            entryPoint = doc;
+            maxLevel = level;
+            return;
+        }
+
+        scatter(doc, dense);
+        int[] entries = { greedySearch(dense, entryPoint, maxLevel, level + 1) };
+        for (int layer = Math.min(level, maxLevel); layer >= 0; layer--) {
+            NodeQueue found = searchLayer(dense, entries, efConstruction, layer, visited);
+            int foundCount = found.size();
+            int[] candidates = new int[foundCount];
+            double[] similarities = new double[foundCount];
+            for (int i = foundCount - 1; i >= 0; i--) {
+                similarities[i] = found.peekSimilarity();
+                candidates[i] = found.pop();
+            }
+
+            // Link the new node and its neighbors in both directions.
+            int maxLinks = layer == 0 ? maxM0 : m;
+            int count = selectNeighbors(candidates, similarities, foundCount, m, links[doc][layer]);
+            linkCounts[doc][layer] = count;
+            for (int i = 0; i < count; i++)
+                link(links[doc][layer][i], doc, layer, maxLinks);
+            entries = candidates;
+        }
+        clear(doc, dense);
+        if (level > maxLevel) {
+            maxLevel = level;
+            entryPoint = doc;
+        }
+    }
+
+    /**
+     * Add a link from node to neighbor. If node already has maxLinks neighbors
+     * on the layer, its neighbors are selected again among all of them.
+     */
+    private void link(int node, int neighbor, int layer, int maxLinks) {
+        int[] neighbors = links[node][layer];
+        int count = linkCounts[node][layer];
+        if (count < maxLinks) {
+            neighbors[count] = neighbor;
+            linkCounts[node][layer]++;
+            return;
+        }
+
+        // The candidates are the old neighbors and the new one, sorted by their
+        // similarity to node.
+        int[] candidates = Arrays.copyOf(neighbors, count + 1);
+        candidates[count] = neighbor;
+        double[] similarities = new double[count + 1];
+        for (int i = 0; i <= count; i++)
+            similarities[i] = similarity(node, candidates[i]);
+        sortBySimilarity(candidates, similarities);
+        linkCounts[node][layer] = selectNeighbors(candidates, similarities, count + 1, maxLinks, neighbors);
+    }
+
+    /**
+     * Select the neighbors of a node among candidates by the heuristic of the
+     * HNSW paper: a candidate is skipped if it is more similar to a neighbor
+     * already selected than to the node, so the links point in different
+     * directions. Skipped candidates fill up the neighbors left.
+     *
+     * @param candidates   The candidates sorted by descending similarity.
+     * @param similarities The similarity of each candidate to the node.
+     * @param count        The number of candidates.
+     * @param maxCount     The maximum number of neighbors.
+     * @param neighbors    Filled with the selected neighbors.
+     * @return The number of selected neighbors.
+     */
+    private int selectNeighbors(int[] candidates, double[] similarities, int count, int maxCount,
+            int[] neighbors) {
+        int selected = 0;
+        boolean[] skipped = new boolean[count];
+        for (int i = 0; i < count && selected < maxCount; i++) {
+            for (int j = 0; j < selected && !skipped[i]; j++)
+                skipped[i] = similarity(candidates[i], neighbors[j]) > similarities[i];
+            if (!skipped[i])
+                neighbors[selected++] = candidates[i];
+        }
+        for (int i = 0; i < count && selected < maxCount; i++) {
+            if (skipped[i])
+                neighbors[selected++] = candidates[i];
+        }
+        return selected;
+    }
+
+    /**
+     * Walk from node to the most similar neighbor on each layer from fromLevel
+     * down to toLevel, until no neighbor is more similar.
+     *
+     * @return The most similar node found on toLevel.
+     */
+    private int greedySearch(double[] query, int node, int fromLevel, int toLevel) {
+        double similarity = similarity(node, query);
+        for (int layer = fromLevel; layer >= toLevel; layer--) {
+            boolean changed = true;
+            while (changed) {
+                changed = false;
+                for (int i = 0; i < linkCounts[node][layer]; i++) {
+                    int neighbor = links[node][layer][i];
+                    double neighborSimilarity = similarity(neighbor, query);
+                    if (neighborSimilarity > similarity) {
+                        similarity = neighborSimilarity;
+                        node = neighbor;
+                        changed = true;
+                    }
+                }
+            }
+        }
+        return node;
+    }
+
+    /**
+     * Find the nodes of a layer most similar to the query, starting at the entry
+     * nodes. The most similar candidate is expanded next until it is less similar
+     * than all of the ef best nodes found.
+     *
+     * @return The ef best nodes found, least similar first.
+     */
+    private NodeQueue searchLayer(double[] query, int[] entries, int ef, int layer, BitSet visited) {
+        NodeQueue candidates = new NodeQueue(true);
+        NodeQueue found = new NodeQueue(false);
+        visited.clear();
+        for (int entry : entries) {
+            double similarity = similarity(entry, query);
+            visited.set(entry);
+            candidates.push(entry, similarity);
+            found.push(entry, similarity);
+            if (found.size() > ef)
+                found.pop();
+        }
+        while (candidates.size() > 0) {
+            if (found.size() >= ef && candidates.peekSimilarity() < found.peekSimilarity())
+                break;
+            int node = candidates.pop();
+            for (int i = 0; i < linkCounts[node][layer]; i++) {
+                int neighbor = links[node][layer][i];
+                if (visited.get(neighbor))
+                    continue;
+                visited.set(neighbor);
+                double similarity = similarity(neighbor, query);
+                if (found.size() < ef || similarity > found.peekSimilarity()) {
+                    candidates.push(neighbor, similarity);
+                    found.push(neighbor, similarity);
+                    if (found.size() > ef)
+                        found.pop();
+                }
+            }
+        }
+        return found;
+    }
+
+    /**
+     * Find the k live documents most similar to a query vector.
+     *
+     * @param queryVector The query weight of each term number.
+     * @param k           The maximum number of documents.
+     * @param scale       The factor applied to the dot products, e.g. to divide
+     *                    them by the norm of the query.
+     * @param tieOrder    The order of documents with the same score.
+     * @return The heap of the found documents with a non zero score.
+     */
+    TopKHeap search(Map<Integer, Double> queryVector, int k, double scale, IntBinaryOperator tieOrder) {
+        if (index.getGeneration() != generation)
+            throw new IllegalStateException("HnswIndex: The index has changed since the graph was built!");
+        TopKHeap topDocs = new TopKHeap(Math.max(0, Math.min(k, nodeCount)), tieOrder);
+        if (entryPoint == -1 || queryVector.isEmpty() || k <= 0)
+            return topDocs;
+
+        double[] query = new double[termCount];
+        for (Entry<Integer, Double> entry : queryVector.entrySet())
+            query[entry.getKey()] = entry.getValue();
+        int[] entries = { greedySearch(query, entryPoint, maxLevel, 1) };
+        NodeQueue found = searchLayer(query, entries, Math.max(ef, k), 0,
+                new BitSet(index.getDocumentCapacity()));
+        while (found.size() > 0) {
+            double similarity = found.peekSimilarity();
+            int doc = found.pop();
+            if (similarity != 0.0 && index.isLive(doc))
+                topDocs.offer(doc, similarity * scale);
+        }
+        return topDocs;
+    }
+
+    private double similarity(int doc, double[] query) {
+        return kernels.sparseDot(vectorTerms[doc], vectorWeights[doc], vectorTerms[doc].length, query);
+    }
+
+    /**
+     * Get the dot product of the vectors of two documents.
+     */
+    private double similarity(int a, int b) {
+        int[] termsA = vectorTerms[a];
+        int[] termsB = vectorTerms[b];
+        double sum = 0.0;
+        int i = 0;
+        int j = 0;
+        while (i < termsA.length && j < termsB.length) {
+            if (termsA[i] < termsB[j])
+                i++;
+            else if (termsA[i] > termsB[j])
+                j++;
+            else
+                sum += vectorWeights[a][i++] * vectorWeights[b][j++];
+        }
+        return sum;
+    }
+
+    private void scatter(int doc, double[] dense) {
+        for (int i = 0; i < vectorTerms[doc].length; i++)
+            dense[vectorTerms[doc][i]] = vectorWeights[doc][i];
+    }
+
+    private void clear(int doc, double[] dense) {
+        for (int term : vectorTerms[doc])
+            dense[term] = 0.0;
+    }
+
+    /**
+     * Sort the candidates by descending similarity, insertion sort for the few
+     * neighbors of a node.
+     */
+    private static void sortBySimilarity(int[] candidates, double[] similarities) {
+        for (int i = 1; i < candidates.length; i++) {
+            int candidate = candidates[i];
+            double similarity = similarities[i];
+            int j = i - 1;
+            for (; j >= 0 && similarities[j] < similarity; j--) {
+                candidates[j + 1] = candidates[j];
+                similarities[j + 1] = similarities[j];
+            }
+            candidates[j + 1] = candidate;
+            similarities[j + 1] = similarity;
+        }
+    }
+
+    /**
+     * Get the index the graph was built from.
+     */
+    public SearchableIndex getIndex() {
+        return index;
+    }
+
+    /**
+     * Get the number of neighbors of each node above the lowest layer.
+     */
+    public int getM() {
+        return m;
+    }
+
+    /**
+     * Get the number of candidates considered while inserting a node.
+     */
+    public int getEfConstruction() {
+        return efConstruction;
+    }
+
+    /**
+     * Get the number of candidates considered by a search.
+     */
+    public int getEf() {
+        return ef;
+    }
+
+    /**
+     * Set the number of candidates considered by a search. A search for k
+     * documents considers at least k candidates.
+     *
+     * @param ef The number of candidates, at least 1.
+     */
+    public void setEf(int ef) {
+        if (ef < 1)
+            throw new IllegalArgumentException("HnswIndex: ef needs to be at least 1!");
+        this.ef = ef;
+    }
+
+    /**
+     * Get the number of documents in the graph.
+     */
+    public int getNrOfNodes() {
+        return nodeCount;
+    }
+
+    /**
+     * Get the highest layer of the graph, -1 for an empty graph.
+     */
+    public int getMaxLevel() {
+        return maxLevel;
+    }
+
+    /**
+     * A growing binary heap of nodes and their similarity, either the most or the
+     * least similar node first.
+     */
+    private static final class NodeQueue {
+        private final boolean mostSimilarFirst;
+        private int[] nodes = new int[16];
+        private double[] similarities = new double[16];
+        private int size = 0;
+
+        NodeQueue(boolean mostSimilarFirst) {
+            this.mostSimilarFirst = mostSimilarFirst;
+        }
+
+        int size() {
+            return size;
+        }
+
+        double peekSimilarity() {
+            return similarities[0];
+        }
+
+        void push(int node, double similarity) {
+            if (size == nodes.length) {
+                nodes = Arrays.copyOf(nodes, size * 2);
+                similarities = Arrays.copyOf(similarities, size * 2);
+            }
+            int i = size++;
+            while (i > 0) {
+                int parent = (i - 1) >>> 1;
+                if (!before(similarity, similarities[parent]))
+                    break;
+                nodes[i] = nodes[parent];
+                similarities[i] = similarities[parent];
+                i = parent;
+            }
+            nodes[i] = node;
+            similarities[i] = similarity;
+        }
+
+        int pop() {
+            int top = nodes[0];
+            size--;
+            int node = nodes[size];
+            double similarity = similarities[size];
+            int i = 0;
+            while (true) {
+                int child = 2 * i + 1;
+                if (child >= size)
+                    break;
+                if (child + 1 < size && before(similarities[child + 1], similarities[child]))
+                    child++;
+                if (!before(similarities[child], similarity))
+                    break;
+                nodes[i] = nodes[child];
+                similarities[i] = similarities[child];
+                i = child;
+            }
+            nodes[i] = node;
+            similarities[i] = similarity;
+            return top;
+        }
+
+        private boolean before(double a, double b) {
+            return mostSimilarFirst ? a > b : a < b;
+        }
+    }
+}
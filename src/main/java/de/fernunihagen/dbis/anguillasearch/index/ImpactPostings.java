@@ -0,0 +1,230 @@
+package de.fernunihagen.dbis.anguillasearch.index;
+
+import static de.fernunihagen.dbis.anguillasearch.index.IndexConfig.IMPACT_BLOCK_SIZE;
+
+import java.util.Arrays;
+
+/**
+ * The posting lists of an index ordered by descending impact instead of by
+ * document number.
+ *
+ * The impact of a posting is the share the posting adds to the cosine
+ * similarity of its document for a query weight of 1.0, i.e. the weight of the
+ * term in the document divided by the norm of the document vector. Walking the
+ * postings of all query terms from the highest to the lowest impact finds the
+ * best documents first, so a score at a time search can stop as soon as the
+ * impacts left can't change its top results anymore.
+ *
+ * Postings with an impact of 0.0, e.g. of terms contained in every document,
+ * can't change any score and are left out.
+ *
+ * For document at a time searches the maximum impact of each term is kept as
+ * well as the maximum impact of each block of IMPACT_BLOCK_SIZE postings in
+ * document order. A block covers the documents after the last document of the
+ * previous block up to its own last document.
+ *
+ * @author Nico Beyer
+ */
+public final class ImpactPostings {
+    // The start of each terms postings, followed by the end of the last terms
+    // postings.
+    private final int[] starts;
+    private final int[] docs;
+    private final double[] impacts;
+    // The first block of each term, followed by the end of the last terms blocks.
+    private final int[] blockStarts;
+    private final int[] blockLastDocs;
+    private final double[] blockMaxImpacts;
+
+    private ImpactPostings(int[] starts, int[] docs, double[] impacts, int[] blockStarts, int[] blockLastDocs,
+            double[] blockMaxImpacts) {
+        this.starts = starts;
+        this.docs = docs;
+        this.impacts = impacts;
+        this.blockStarts = blockStarts;
+        this.blockLastDocs = blockLastDocs;
+        this.blockMaxImpacts = blockMaxImpacts;
+    }
+
+    /**
+     * Build the impact ordered postings of a finished index. Postings with the same
+     * impact are ordered by document number.
+     *
+     * @param index The index whose posting lists will be reordered.
+     * @return The impact ordered postings of the index.
+     */
+    public static ImpactPostings build(SearchableIndex index) {
+        int termCount = index.getNrOfTerms();
+        int postingCount = 0;
+        for (int term = 0; term < termCount; term++)
+            postingCount += index.getDocFrequency(term);
+
+        int[] starts = new int[termCount + 1];
+        int[] docs = new int[postingCount];
+        double[] impacts = new double[postingCount];
+        int[] blockStarts = new int[termCount + 1];
+        int[] blockLastDocs = new int[postingCount / IMPACT_BLOCK_SIZE + termCount];
+        double[] blockMaxImpacts = new double[blockLastDocs.length];
+        int size = 0;
+        int blocks = 0;
+        for (int term = 0; term < termCount; term++) {
+            starts[term] = size;
+            blockStarts[term] = blocks;
+            PostingsIterator postings = index.getPostings(term);
+            while (postings.nextDoc() != PostingsIterator.NO_MORE_DOCS) {
+                double norm = index.getNorm(postings.docId());
+                if (postings.weight() == 0.0 || norm == 0.0)
+                    continue;
+                docs[size] = postings.docId();
+                impacts[size] = postings.weight() / norm;
+                size++;
+            }
+
+            // The postings are still in document order, find the maximum of each block.
+            for (int start = starts[term]; start < size; start += IMPACT_BLOCK_SIZE) {
+                int end = Math.min(start + IMPACT_BLOCK_SIZE, size);
+                double maxImpact = 0.0;
+                for (int pos = start; pos < end; pos++)
+                    maxImpact = Math.max(maxImpact, impacts[pos]);
+                blockLastDocs[blocks] = docs[end - 1];
+                blockMaxImpacts[blocks] = maxImpact;
+                blocks++;
+            }
+            sortByImpact(docs, impacts, starts[term], size);
+        }
+        starts[termCount] = size;
+        blockStarts[termCount] = blocks;
+        return new ImpactPostings(starts, Arrays.copyOf(docs, size), Arrays.copyOf(impacts, size), blockStarts,
+                Arrays.copyOf(blockLastDocs, blocks), Arrays.copyOf(blockMaxImpacts, blocks));
+    }
+
+    /**
+     * Sort docs[start..end) and impacts[start..end) by descending impact. The
+     * slice is in ascending order of document numbers and the sort is stable.
+     */
+    private static void sortByImpact(int[] docs, double[] impacts, int start, int end) {
+        Integer[] order = new Integer[end - start];
+        for (int i = 0; i < order.length; i++)
+            order[i] = start + i;
+        Arrays.sort(order, (p, other) -> Double.compare(impacts[other], impacts[p]));
+
+        int[] sortedDocs = new int[order.length];
+        double[] sortedImpacts = new double[order.length];
+        for (int i = 0; i < order.length; i++) {
+            sortedDocs[i] = docs[order[i]];
+            sortedImpacts[i] = impacts[order[i]];
+        }
+        System.arraycopy(sortedDocs, 0, docs, start, order.length);
+        System.arraycopy(sortedImpacts, 0, impacts, start, order.length);
+    }
+
+    /**
+     * Get the position of the first posting of the given term.
+     *
+     * @param termId The term number.
+     * @return The position of the posting with the highest impact.
+     */
+    public int getStart(int termId) {
+        return starts[termId];
+    }
+
+    /**
+     * Get the position after the last posting of the given term.
+     *
+     * @param termId The term number.
+     * @return The end of the terms postings (exclusive).
+     */
+    public int getEnd(int termId) {
+        return starts[termId + 1];
+    }
+
+    /**
+     * Get the document number of the posting at the given position.
+     *
+     * @param pos The position of the posting.
+     * @return The document number.
+     */
+    public int getDoc(int pos) {
+        return docs[pos];
+    }
+
+    /**
+     * Get the impact of the posting at the given position.
+     *
+     * @param pos The position of the posting.
+     * @return The impact of the posting.
+     */
+    public double getImpact(int pos) {
+        return impacts[pos];
+    }
+
+    /**
+     * Get the highest impact of the given term.
+     *
+     * @param termId The term number.
+     * @return The highest impact or 0.0 if the term has no postings with an impact.
+     */
+    public double getMaxImpact(int termId) {
+        return starts[termId] == starts[termId + 1] ? 0.0 : impacts[starts[termId]];
+    }
+
+    /**
+     * Find the block of the given term covering a document.
+     *
+     * @param termId The term number.
+     * @param doc    The document number.
+     * @return The block number or -1 if the document is after the last block of
+     *         the term.
+     */
+    public int findBlock(int termId, int doc) {
+        int low = blockStarts[termId];
+        int high = blockStarts[termId + 1] - 1;
+        while (low <= high) {
+            int mid = (low + high) >>> 1;
+            if (blockLastDocs[mid] < doc)
+                low = mid + 1;
+            else
+                high = mid - 1;
+        }
+        return low < blockStarts[termId + 1] ? low : -1;
+    }
+
+    /**
+     * Get the last document number covered by the given block.
+     *
+     * @param block The block number.
+     * @return The last document number of the block.
+     */
+    public int getBlockLastDoc(int block) {
+        return blockLastDocs[block];
+    }
+
+    /**
+     * Get the highest impact of the postings of the given block.
+     *
+     * @param block The block number.
+     * @return The highest impact of the block.
+     */
+    public double getBlockMaxImpact(int block) {
+        return blockMaxImpacts[block];
+    }
+
+    /**
+     * Get the number of postings with an impact.
+     *
+     * @return The number of postings.
+     */
+    public int size() {
+        return docs.length;
+    }
+
+    /**
+     * Get the memory used by the impact ordered postings.
+     *
+     * @return The size in bytes.
+     */
+    public long getSizeInBytes() {
+        return (long) (starts.length + blockStarts.length) * Integer.BYTES
+                + (long) (docs.length + blockLastDocs.length) * (Integer.BYTES + Double.BYTES);
+    }
+}
@@ -36,6 +36,48 @@ public final class IndexConfig {
                         "]", "?", "-", "–", "_", "/", "\\", "{", "}", "@", "^", "(", ")", "<", ">", "\"", "%", "©",
                         "—", "$");
 
+        // The stopwords and special characters to be looked up by characters.
+        static final PerfectHashSet STOPWORD_SET = new PerfectHashSet(REVERSEINDEX_STOPWORDS);
+        static final PerfectHashSet SPECIAL_CHARACTER_SET = new PerfectHashSet(REVERSEINDEX_SPECIAL_CHARACTERS);
+
         static final String REVERSEINDEX_PIPELINE_ANNOTATORS = "tokenize, ssplit, pos, lemma";
 
+        // Number of impact ordered postings scored between two checks if a top k
+        // search can stop.
+        static final int IMPACT_CHECK_INTERVAL = 16;
+        // Tolerance for rounding errors of the partial scores of a top k search.
+        static final double IMPACT_SCORE_EPSILON = 1e-9;
+        // Number of postings of a term in document order sharing one maximum impact,
+        // used by the Block-Max WAND search to skip blocks.
+        static final int IMPACT_BLOCK_SIZE = 64;
+        // Maximum number of CoreNLP pipelines of the shared pool, each pipeline is
+        // used by one thread at a time.
+        static final int NLP_PIPELINE_POOL_SIZE = Math.max(1, Math.min(4, Runtime.getRuntime().availableProcessors()));
+        // Maximum number of query texts whose lemmas are remembered per Analyzer.
+        static final int LEMMA_CACHE_SIZE = 50000;
+        // Minimum number of postings of a query to be scored in parallel by
+        // default, smaller queries are scored on the calling thread.
+        static final long PARALLEL_SCORING_MIN_POSTINGS = 200000;
+        // Minimum number of documents of a partition scored by one thread.
+        static final int PARALLEL_MIN_PARTITION_DOCS = 4096;
+        // System property to disable the SIMD ScoringKernels by setting it to false.
+        static final String VECTOR_KERNELS_PROPERTY = "anguillasearch.vectorKernels";
+        // Default number of neighbors of each HNSW graph node above the lowest
+        // layer, the nodes of the lowest layer keep twice as many.
+        static final int HNSW_M = 16;
+        // Default number of candidates considered while inserting into the HNSW graph.
+        static final int HNSW_EF_CONSTRUCTION = 100;
+        // Default number of candidates considered by an HNSW search.
+        static final int HNSW_EF_SEARCH = 64;
+        // Seed of the random node levels, so HNSW graphs are built reproducibly.
+        static final long HNSW_SEED = 42;
+        // Default maximum number of index terms a wildcard query word or a fuzzy
+        // query token expands to.
+        static final int MAX_TERM_EXPANSIONS = 128;
+        // Largest edit distance of a fuzzy query, larger distances match too many
+        // terms to be useful.
+        static final int MAX_FUZZY_EDITS = 2;
+        // Default share of its weight a term found by a fuzzy query loses per edit.
+        static final double FUZZY_EDIT_PENALTY = 0.3;
+
 }
@@ -0,0 +1,340 @@
+package de.fernunihagen.dbis.anguillasearch.index;
+
+import java.io.BufferedOutputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Arrays;
+
+/**
+ * The on-disk format of a finished reverse index.
+ *
+ * An index file is written once by write() and is opened read only as a
+ * MappedVectorIndex. The same image can be kept in a direct buffer outside of
+ * the Java heap, see MappedVectorIndex.loadOffHeap(). All values are stored
+ * big endian in the following sections:
+ *
+ * <pre>
+ * header          int magic, int version, int flags, int docCount,
+ *                 int termCount, int postingCount, int postingBytes,
+ *                 int urlBytes, int termBytes, int analyzer
+ * urlStarts       int[docCount + 1]    offsets of each URL in urlData
+ * docsByUrl       int[docCount]        document numbers sorted by URL
+ * norms           double[docCount]     norm of each document vector
+ * postingStarts   int[termCount + 1]   start of each terms postings
+ * postingData     byte[postingBytes]   the posting lists
+ * urlData         byte[urlBytes]       UTF-8 URLs by document number
+ * termData        byte[termBytes]      the front coded TermDictionary
+ * </pre>
+ *
+ * The analyzer id names the Analyzer of the documents, so the queries of a
+ * file are analyzed in the same way. Only the Analyzers of this package can be
+ * stored.
+ *
+ * Term numbers are the rank of the term in the sorted term dictionary, so a
+ * term is found by a binary search over the sampled dictionary blocks.
+ *
+ * The posting lists are stored in one of two layouts. By default postingData
+ * holds int[postingCount] ascending document numbers per term followed by
+ * double[postingCount] weights and postingStarts counts postings. If the
+ * compressed flag is set, postingData holds one BlockPostings list per term
+ * and postingStarts holds byte offsets into postingData.
+ */
+public final class IndexFile {
+    private IndexFile() {
+    }
+
+    // "ANGS" in ASCII.
+    static final int MAGIC = 0x414E4753;
+    static final int VERSION = 4;
+    static final int HEADER_SIZE = 10 * Integer.BYTES;
+
+    // Flags stored in the header.
+    static final int FLAG_NORMALIZED = 1;
+    static final int FLAG_COMPRESSED = 2;
+
+    // Analyzer ids stored in the header.
+    static final int ANALYZER_CORE_NLP = 0;
+    static final int ANALYZER_RULE_BASED = 1;
+
+    /**
+     * Write the given index to file with uncompressed posting lists. An existing
+     * file will be overwritten.
+     *
+     * @param index The finished index to be written.
+     * @param file  The path of the index file.
+     * @throws IOException If the file can't be written.
+     */
+    public static void write(SearchableIndex index, Path file) throws IOException {
+        write(index, file, false);
+    }
+
+    /**
+     * Write the given index to file. An existing file will be overwritten.
+     *
+     * Compressed posting lists take a fraction of the space, but their weights
+     * are quantized to 16 bit per block.
+     *
+     * @param index      The finished index to be written.
+     * @param file       The path of the index file.
+     * @param compressed If true the posting lists will be stored as
+     *                   BlockPostings.
+     * @throws IOException If the file can't be written.
+     */
+    public static void write(SearchableIndex index, Path file, boolean compressed) throws IOException {
+        try (OutputStream out = Files.newOutputStream(file)) {
+            write(index, out, compressed);
+        }
+    }
+
+    /**
+     * Write the given index into a new direct ByteBuffer outside of the Java heap.
+     *
+     * @param index      The finished index to be written.
+     * @param compressed If true the posting lists will be stored as
+     *                   BlockPostings.
+     * @return The direct buffer holding the index file.
+     * @throws IOException If the index can't be written.
+     */
+    static ByteBuffer writeDirect(SearchableIndex index, boolean compressed) throws IOException {
+        DirectBufferOutputStream out = new DirectBufferOutputStream(1 << 20);
+        write(index, out, compressed);
+        return out.toBuffer();
+    }
+
+    /**
+     * Write the given index to a stream. The stream is flushed but not closed.
+     *
+     * @param index      The finished index to be written.
+     * @param stream     The stream to be written to.
+     * @param compressed If true the posting lists will be stored as
+     *                   BlockPostings.
+     * @throws IOException If the stream can't be written.
+     */
+    private static void write(SearchableIndex index, OutputStream stream, boolean compressed) throws IOException {
+        int docCount = index.getNrOfSites();
+        if (index.getDocumentCapacity() != docCount)
+            throw new IOException("index file: Deleted documents need to be compacted first!");
+        int termCount = index.getNrOfTerms();
+        int analyzer = getAnalyzerId(index.getAnalyzer());
+
+        // Encode all URLs and terms up front to know the section sizes.
+        byte[][] urls = new byte[docCount][];
+        for (int d = 0; d < docCount; d++)
+            urls[d] = index.getDocumentId(d).getBytes(StandardCharsets.UTF_8);
+        byte[][] terms = new byte[termCount][];
+        for (int t = 0; t < termCount; t++)
+            terms[t] = index.getTerm(t).getBytes(StandardCharsets.UTF_8);
+
+        // The files term numbers follow the bytewise order of the terms.
+        Integer[] termOrder = sortedOrder(terms);
+        Integer[] docsByUrl = sortedOrder(urls);
+        byte[][] sortedTerms = new byte[termCount][];
+        for (int i = 0; i < termCount; i++)
+            sortedTerms[i] = terms[termOrder[i]];
+        byte[] termDictionary = TermDictionary.encode(sortedTerms);
+
+        long postingCount = 0;
+        for (int t = 0; t < termCount; t++)
+            postingCount += index.getDocFrequency(t);
+        long urlBytes = totalLength(urls);
+        if (!compressed)
+            checkFileSize(docCount, termCount, postingCount * (Integer.BYTES + Double.BYTES), urlBytes,
+                    termDictionary.length);
+
+        // Encode the compressed posting lists up front to know their offsets.
+        ByteArrayOutputStream compressedPostings = null;
+        int[] compressedStarts = null;
+        if (compressed) {
+            compressedPostings = new ByteArrayOutputStream();
+            compressedStarts = new int[termCount + 1];
+            int[] docs = new int[index.getNrOfSites()];
+            double[] weights = new double[index.getNrOfSites()];
+            for (int i = 0; i < termCount; i++) {
+                compressedStarts[i] = compressedPostings.size();
+                PostingsIterator postings = index.getPostings(termOrder[i]);
+                int n = 0;
+                while (postings.nextDoc() != PostingsIterator.NO_MORE_DOCS) {
+                    docs[n] = postings.docId();
+                    weights[n] = postings.weight();
+                    n++;
+                }
+                BlockPostings.encode(docs, weights, n, compressedPostings);
+            }
+            compressedStarts[termCount] = compressedPostings.size();
+        }
+        long postingBytes = compressed ? compressedPostings.size()
+                : postingCount * (Integer.BYTES + Double.BYTES);
+        checkFileSize(docCount, termCount, postingBytes, urlBytes, termDictionary.length);
+        int flags = (index.isNormalized() ? FLAG_NORMALIZED : 0) | (compressed ? FLAG_COMPRESSED : 0);
+
+        DataOutputStream out = new DataOutputStream(new BufferedOutputStream(stream));
+
+        // Header.
+        out.writeInt(MAGIC);
+        out.writeInt(VERSION);
+        out.writeInt(flags);
+        out.writeInt(docCount);
+        out.writeInt(termCount);
+        // All sizes fit into an int, the whole file does.
+        out.writeInt((int) postingCount);
+        out.writeInt((int) postingBytes);
+        out.writeInt((int) urlBytes);
+        out.writeInt(termDictionary.length);
+        out.writeInt(analyzer);
+
+        // Document sections.
+        writeStarts(out, urls);
+        for (int doc : docsByUrl)
+            out.writeInt(doc);
+        for (int d = 0; d < docCount; d++)
+            out.writeDouble(index.getNorm(d));
+
+        // Posting sections.
+        if (compressed) {
+            for (int start : compressedStarts)
+                out.writeInt(start);
+            compressedPostings.writeTo(out);
+        } else
+            writePostings(out, index, termOrder);
+
+        // String data.
+        for (byte[] url : urls)
+            out.write(url);
+        out.write(termDictionary);
+        out.flush();
+    }
+
+    /**
+     * Get the id of an Analyzer stored in the header.
+     *
+     * @param analyzer The Analyzer of the index.
+     * @return The analyzer id.
+     * @throws IOException If the file format can't store the Analyzer.
+     */
+    static int getAnalyzerId(Analyzer analyzer) throws IOException {
+        if (analyzer.getClass() == CoreNlpAnalyzer.class)
+            return ANALYZER_CORE_NLP;
+        if (analyzer.getClass() == RuleBasedAnalyzer.class)
+            return ANALYZER_RULE_BASED;
+        throw new IOException("index file: The analyzer " + analyzer.getClass().getName() + " can't be stored!");
+    }
+
+    /**
+     * Get a new Analyzer for an analyzer id stored in the header.
+     *
+     * @param id The analyzer id.
+     * @return The Analyzer of the documents in the file.
+     * @throws IOException If the id is unknown.
+     */
+    static Analyzer createAnalyzer(int id) throws IOException {
+        switch (id) {
+            case ANALYZER_CORE_NLP:
+                return new CoreNlpAnalyzer();
+            case ANALYZER_RULE_BASED:
+                return new RuleBasedAnalyzer();
+            default:
+                throw new IOException("index file: Unknown analyzer " + id + "!");
+        }
+    }
+
+    /**
+     * Check that an index file with the given sections can be mapped into a
+     * single buffer, i.e. that all offsets into the file fit into an int.
+     *
+     * @param docCount     The number of documents.
+     * @param termCount    The number of terms.
+     * @param postingBytes The size of the posting lists.
+     * @param urlBytes     The size of the encoded URLs.
+     * @param termBytes    The size of the encoded TermDictionary.
+     * @return The size of the file in bytes.
+     * @throws IOException If the file would be larger than 2 GB.
+     */
+    static long checkFileSize(int docCount, int termCount, long postingBytes, long urlBytes, long termBytes)
+            throws IOException {
+        long size = HEADER_SIZE + (docCount + 1L) * Integer.BYTES + (long) docCount * (Integer.BYTES + Double.BYTES)
+                + (termCount + 1L) * Integer.BYTES + postingBytes + urlBytes + termBytes;
+        if (size > Integer.MAX_VALUE)
+            throw new IOException("index file: The index needs " + size + " bytes, more than the "
+                    + Integer.MAX_VALUE + " bytes of an index file!");
+        return size;
+    }
+
+    /**
+     * Write the posting list starts and the uncompressed posting lists of all
+     * terms in the given order.
+     *
+     * @param out       The stream to be written to.
+     * @param index     The index holding the posting lists.
+     * @param termOrder The order the terms are stored in.
+     * @throws IOException If the stream can't be written.
+     */
+    private static void writePostings(DataOutputStream out, SearchableIndex index, Integer[] termOrder)
+            throws IOException {
+        int start = 0;
+        for (int termId : termOrder) {
+            out.writeInt(start);
+            start += index.getDocFrequency(termId);
+        }
+        out.writeInt(start);
+        for (int termId : termOrder) {
+            PostingsIterator postings = index.getPostings(termId);
+            while (postings.nextDoc() != PostingsIterator.NO_MORE_DOCS)
+                out.writeInt(postings.docId());
+        }
+        for (int termId : termOrder) {
+            PostingsIterator postings = index.getPostings(termId);
+            while (postings.nextDoc() != PostingsIterator.NO_MORE_DOCS)
+                out.writeDouble(postings.weight());
+        }
+    }
+
+    /**
+     * Get the positions of values in the unsigned bytewise order of the values.
+     *
+     * @param values The values to be sorted.
+     * @return The positions of the values in sorted order.
+     */
+    private static Integer[] sortedOrder(byte[][] values) {
+        Integer[] order = new Integer[values.length];
+        for (int i = 0; i < order.length; i++)
+            order[i] = i;
+        Arrays.sort(order, (a, b) -> Arrays.compareUnsigned(values[a], values[b]));
+        return order;
+    }
+
+    /**
+     * Get the summed up length of all values.
+     *
+     * @param values The values to be summed up.
+     * @return The sum of all lengths.
+     */
+    private static long totalLength(byte[][] values) {
+        long length = 0;
+        for (byte[] value : values)
+            length += value.length;
+        return length;
+    }
+
+    /**
+     * Write the start offsets of values stored back to back, followed by the end
+     * offset of the last value.
+     *
+     * @param out    The stream to be written to.
+     * @param values The values to be stored.
+     * @throws IOException If the stream can't be written.
+     */
+    private static void writeStarts(DataOutputStream out, byte[][] values) throws IOException {
+        int start = 0;
+        for (byte[] value : values) {
+            out.writeInt(start);
+            start += value.length;
+        }
+        out.writeInt(start);
+    }
+}
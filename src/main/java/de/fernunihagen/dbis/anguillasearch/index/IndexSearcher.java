@@ -1,43 +1,204 @@
 package de.fernunihagen.dbis.anguillasearch.index;
 
 import static de.fernunihagen.dbis.anguillasearch.helpers.HelperFunctions.max;
+import static de.fernunihagen.dbis.anguillasearch.index.IndexConfig.FUZZY_EDIT_PENALTY;
+import static de.fernunihagen.dbis.anguillasearch.index.IndexConfig.IMPACT_CHECK_INTERVAL;
+import static de.fernunihagen.dbis.anguillasearch.index.IndexConfig.IMPACT_SCORE_EPSILON;
+import static de.fernunihagen.dbis.anguillasearch.index.IndexConfig.MAX_FUZZY_EDITS;
+import static de.fernunihagen.dbis.anguillasearch.index.IndexConfig.MAX_TERM_EXPANSIONS;
+import static de.fernunihagen.dbis.anguillasearch.index.IndexConfig.PARALLEL_MIN_PARTITION_DOCS;
+import static de.fernunihagen.dbis.anguillasearch.index.IndexConfig.PARALLEL_SCORING_MIN_POSTINGS;
 
-import java.util.AbstractMap;
 import java.util.ArrayList;
-import java.util.Collections;
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
 import java.util.LinkedList;
 import java.util.List;
 import java.util.Map;
 import java.util.Map.Entry;
 import java.util.TreeMap;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveTask;
+import java.util.function.Supplier;
 
+import de.fernunihagen.dbis.anguillasearch.helpers.UrlDictionary;
 import de.fernunihagen.dbis.anguillasearch.pagerank.PageRankIndex;
 
-import edu.stanford.nlp.ling.CoreLabel;
-import edu.stanford.nlp.pipeline.CoreDocument;
-import edu.stanford.nlp.pipeline.StanfordCoreNLP;
 
 /**
  * This class contains algorithms to perform search operations on a reverse
  * index.
+ * 
+ * The searches walk the posting lists of the query tokens only, so documents
+ * that share no token with the query are never visited. If the index has
+ * impact ordered postings, searchQueryCosineTopK() only walks the postings
+ * that can still change its top results, searchQueryCosineWand() skips the
+ * documents that can't enter its top results. searchQueryCosineHnsw() finds
+ * approximate top results in the HNSW graph of the index instead. The top k
+ * searches only keep their k best results in a TopKHeap instead of sorting all
+ * found documents.
+ * Queries with many postings are scored in parallel by partitions of the
+ * document numbers, see setParallelScoring().
+ * 
+ * Phrase and proximity searches intersect the posting lists of the query
+ * tokens and match the token positions stored in the index.
+ * Boolean queries are matched document at a time as well, conjunctions skip
+ * ahead to the documents of their rarest operand.
+ * Query words with wildcards and fuzzy query tokens expand to the matching
+ * terms of the sorted TermDictionary of the index.
  */
 public class IndexSearcher {
 
-    private VectorIndex index;
-    private StanfordCoreNLP pipeline;
+    private SearchableIndex index;
+    private Analyzer analyzer;
+    private LemmaCache lemmaCache;
     private List<String> specialCharacters;
     private List<String> stopwords;
+    private long lastScoredPostings = 0;
+    private QueryResultCache resultCache = null;
+    private ForkJoinPool parallelPool = ForkJoinPool.commonPool();
+    private long parallelMinPostings = PARALLEL_SCORING_MIN_POSTINGS;
+    private int maxExpansions = MAX_TERM_EXPANSIONS;
+    private double fuzzyPenalty = FUZZY_EDIT_PENALTY;
 
     /**
      * Get a new IndexSearcher object.
      * 
-     * @param vectorIndex
+     * @param searchableIndex The index to be searched, e.g. a VectorIndex or a
+     *                        MappedVectorIndex.
      */
-    public IndexSearcher(VectorIndex vectorIndex) {
-        this.index = vectorIndex;
+    public IndexSearcher(SearchableIndex searchableIndex) {
+        this.index = searchableIndex;
         this.specialCharacters = index.getSpecialCharacters();
         this.stopwords = index.getStopWords();
-        pipeline = index.getNlpPipeline();
+        analyzer = index.getAnalyzer();
+        lemmaCache = LemmaCache.forAnalyzer(analyzer);
+    }
+
+    /**
+     * Get a new IndexSearcher object that caches the results of the TfIdf, cosine
+     * and cosine page rank searches over all results.
+     * 
+     * @param searchableIndex The index to be searched, e.g. a VectorIndex or a
+     *                        MappedVectorIndex.
+     * @param resultCache     The cache for the search results, only shared with
+     *                        IndexSearchers of the same index.
+     * @throws IllegalArgumentException If the cache belongs to another index.
+     */
+    public IndexSearcher(SearchableIndex searchableIndex, QueryResultCache resultCache) {
+        this(searchableIndex);
+        resultCache.bind(searchableIndex);
+        this.resultCache = resultCache;
+    }
+
+    /**
+     * Get the cache of the search results.
+     * 
+     * @return The QueryResultCache or null if results aren't cached.
+     */
+    public QueryResultCache getResultCache() {
+        return resultCache;
+    }
+
+    /**
+     * Set how the cosine searches scoring all postings of a query use multiple
+     * threads. The document numbers are split into partitions, each partition is
+     * scored into its own TopKHeap on the given pool and the heaps are merged.
+     * Queries with less postings are scored on the calling thread. By default the
+     * common ForkJoinPool is used for queries with at least
+     * PARALLEL_SCORING_MIN_POSTINGS postings.
+     * 
+     * @param pool        The pool to score on, null to always score on the
+     *                    calling thread.
+     * @param minPostings The minimum number of postings of a query to be scored
+     *                    in parallel.
+     */
+    public void setParallelScoring(ForkJoinPool pool, long minPostings) {
+        if (minPostings < 0)
+            throw new IllegalArgumentException("IndexSearcher: The minimum number of postings can't be negative!");
+        this.parallelPool = pool;
+        this.parallelMinPostings = minPostings;
+    }
+
+    /**
+     * Set the maximum number of index terms a query word with wildcards or a
+     * fuzzy query token expands to, see searchQueryWildcard() and
+     * searchQueryFuzzy(). By default MAX_TERM_EXPANSIONS.
+     * 
+     * @param maxExpansions The maximum number of terms per query word.
+     */
+    public void setMaxExpansions(int maxExpansions) {
+        if (maxExpansions < 1)
+            throw new IllegalArgumentException("IndexSearcher: A query word needs to expand to at least one term!");
+        this.maxExpansions = maxExpansions;
+    }
+
+    /**
+     * Get the maximum number of index terms a query word with wildcards or a
+     * fuzzy query token expands to.
+     * 
+     * @return The maximum number of terms per query word.
+     */
+    public int getMaxExpansions() {
+        return maxExpansions;
+    }
+
+    /**
+     * Set the share of its weight a term found by searchQueryFuzzy() loses per
+     * edit. By default FUZZY_EDIT_PENALTY.
+     * 
+     * @param penalty The penalty per edit, at least 0 and less than 1.
+     */
+    public void setFuzzyPenalty(double penalty) {
+        if (!(penalty >= 0.0 && penalty < 1.0))
+            throw new IllegalArgumentException(
+                    "IndexSearcher: The fuzzy penalty needs to be at least 0 and less than 1!");
+        this.fuzzyPenalty = penalty;
+    }
+
+    /**
+     * Get the share of its weight a term found by searchQueryFuzzy() loses per
+     * edit.
+     * 
+     * @return The penalty per edit.
+     */
+    public double getFuzzyPenalty() {
+        return fuzzyPenalty;
+    }
+
+    /**
+     * Get the results of a search from the result cache, if there is one. A
+     * cache hit scores no postings.
+     * 
+     * @param mode          The scoring mode.
+     * @param query         The search query.
+     * @param weights       The query weights, null for the default weights.
+     * @param pageRankIndex The PageRankIndex used by the search or null.
+     * @param search        Runs the search.
+     * @return The results of the search.
+     */
+    private SearchResults searchCached(QueryResultCache.Mode mode, String query, Map<String, Double> weights,
+            PageRankIndex pageRankIndex, Supplier<SearchResults> search) {
+        if (resultCache == null)
+            return search.get();
+        lastScoredPostings = 0;
+        return resultCache.get(index, new QueryResultCache.Key(mode, query, weights, pageRankIndex), search);
+    }
+
+    /**
+     * Lemmatize a String as a whole, so its words are lemmatized in context like
+     * the words of the documents. The lemmas are taken from the LemmaCache of the
+     * Analyzer, so each String is only analyzed once.
+     * 
+     * @param text The String to be lemmatized.
+     * @return The lemmas of all tokens of text in order.
+     */
+    private List<String> lemmatize(String text) {
+        String normalized = text.trim().toLowerCase().replaceAll("\\s+", " ");
+        if (normalized.isEmpty())
+            return List.of();
+        return lemmaCache.lemmatize(analyzer, normalized);
     }
 
     /**
@@ -50,13 +211,9 @@ public class IndexSearcher {
     private LinkedList<String> formatQuery(String query) {
         LinkedList<String> tokens = new LinkedList<>();
 
-        // Format tokenize and lemmatize the query string.
-        CoreDocument content = new CoreDocument(query.toLowerCase());
-        pipeline.annotate(content);
-
-        // Remove stopwords and special characters.
-        for (CoreLabel tok : content.tokens()) {
-            String lemma = tok.lemma();
+        // Format tokenize and lemmatize the query string and remove stopwords and
+        // special characters.
+        for (String lemma : lemmatize(query)) {
             if (specialCharacters.contains(lemma) || stopwords.contains(lemma))
                 continue;
             tokens.addLast(lemma);
@@ -64,6 +221,217 @@ public class IndexSearcher {
         return tokens;
     }
 
+    /**
+     * Format a String into lemmatized tokens free of stopwords and special
+     * characters together with their positions in the String. Stopwords keep their
+     * position the same way they do in the indexed documents.
+     * 
+     * @param query     The String to be formated.
+     * @param tokens    Filled with the tokens found in query.
+     * @param positions Filled with the position of each token.
+     */
+    private void formatQuery(String query, List<String> tokens, List<Integer> positions) {
+        int position = 0;
+        for (String lemma : lemmatize(query)) {
+            if (specialCharacters.contains(lemma))
+                continue;
+            position++;
+            if (stopwords.contains(lemma))
+                continue;
+            tokens.add(lemma);
+            positions.add(position - 1);
+        }
+    }
+
+    /**
+     * Find the sites of the index containing the given phrase, i.e. all tokens of
+     * the phrase in the same order without other words in between. Stopwords of
+     * the phrase match any word.
+     * 
+     * The matching sites are sorted by the cosine similarity between the phrase
+     * and the site, sites without similarity are kept. The Index needs to be
+     * finished first and store token positions.
+     * 
+     * @param phrase The phrase to be found.
+     * @return A List of String[2] sorted by cosine similarity in decending order.
+     *         String[0] containins a sites url
+     *         String[1] containins the sites cosine similarity.
+     * @throws IllegalStateException If the index stores no token positions.
+     */
+    public List<String[]> searchPhrase(String phrase) {
+        return searchPhraseResults(phrase).toStringArrays();
+    }
+
+    /**
+     * Find the sites of the index containing the given phrase, see
+     * searchPhrase().
+     * 
+     * @param phrase The phrase to be found.
+     * @return The matching sites sorted by cosine similarity in decending order.
+     * @throws IllegalStateException If the index stores no token positions.
+     */
+    public SearchResults searchPhraseResults(String phrase) {
+        return searchPositions(phrase, true, 0);
+    }
+
+    /**
+     * Find the sites of the index containing all tokens of the given query close
+     * to each other, in any order. The first and the last token of the closest
+     * occurrence may be at most maxDistance words apart, e.g. two neighboring
+     * words have a distance of 1.
+     * 
+     * The matching sites are sorted by the cosine similarity between the query
+     * and the site, sites without similarity are kept. The Index needs to be
+     * finished first and store token positions.
+     * 
+     * @param query       The search query to be used.
+     * @param maxDistance The largest distance between the query tokens.
+     * @return A List of String[2] sorted by cosine similarity in decending order.
+     *         String[0] containins a sites url
+     *         String[1] containins the sites cosine similarity.
+     * @throws IllegalStateException If the index stores no token positions.
+     */
+    public List<String[]> searchProximity(String query, int maxDistance) {
+        return searchProximityResults(query, maxDistance).toStringArrays();
+    }
+
+    /**
+     * Find the sites of the index containing all tokens of the given query close
+     * to each other, see searchProximity().
+     * 
+     * @param query       The search query to be used.
+     * @param maxDistance The largest distance between the query tokens.
+     * @return The matching sites sorted by cosine similarity in decending order.
+     * @throws IllegalStateException If the index stores no token positions.
+     */
+    public SearchResults searchProximityResults(String query, int maxDistance) {
+        return searchPositions(query, false, maxDistance);
+    }
+
+    /**
+     * Find the live documents matching a phrase or proximity query by their token
+     * positions and sort them by cosine similarity.
+     * 
+     * @param query       The search query to be used.
+     * @param phrase      True to match a phrase, false to match a proximity query.
+     * @param maxDistance The largest distance between the tokens of a proximity
+     *                    query.
+     * @return The matching sites sorted by cosine similarity in decending order.
+     */
+    private SearchResults searchPositions(String query, boolean phrase, int maxDistance) {
+        if (!index.hasPositions())
+            throw new IllegalStateException("IndexSearcher: The index stores no token positions!");
+        List<String> tokens = new ArrayList<>();
+        List<Integer> positions = new ArrayList<>();
+        formatQuery(query, tokens, positions);
+        if (tokens.isEmpty())
+            return new SearchResults(0);
+
+        // A proximity query needs each token only once.
+        if (!phrase) {
+            LinkedHashMap<String, Integer> distinct = new LinkedHashMap<>();
+            for (int i = 0; i < tokens.size(); i++)
+                distinct.putIfAbsent(tokens.get(i), positions.get(i));
+            tokens = new ArrayList<>(distinct.keySet());
+            positions = new ArrayList<>(distinct.values());
+        }
+        int[] termIds = new int[tokens.size()];
+        PostingsIterator[] postings = new PostingsIterator[tokens.size()];
+        for (int i = 0; i < termIds.length; i++) {
+            termIds[i] = index.getTermId(tokens.get(i));
+            if (termIds[i] == -1)
+                return new SearchResults(0);
+            postings[i] = index.getPostings(termIds[i]);
+        }
+
+        // Intersect the posting lists, led by the shortest one, and match the
+        // positions of each document containing all tokens.
+        Arrays.sort(postings, (a, b) -> Integer.compare(a.cost(), b.cost()));
+        ArrayList<Integer> foundDocs = new ArrayList<>();
+        int doc = postings[0].nextDoc();
+        while (doc != PostingsIterator.NO_MORE_DOCS) {
+            int next = doc;
+            for (int i = 1; i < postings.length && next == doc; i++) {
+                if (postings[i].docId() < doc)
+                    postings[i].advance(doc);
+                next = postings[i].docId();
+            }
+            if (next != doc) {
+                doc = postings[0].advance(next);
+                continue;
+            }
+            if (index.isLive(doc) && (phrase ? matchesPhrase(doc, termIds, positions)
+                    : matchesProximity(doc, termIds, maxDistance)))
+                foundDocs.add(doc);
+            doc = postings[0].nextDoc();
+        }
+
+        // Sites without similarity are kept as well.
+        double[] scores = calcCosineScores(query, null);
+        TopKHeap topDocs = new TopKHeap(foundDocs.size(), this::compareIds);
+        for (int found : foundDocs)
+            topDocs.offer(found, scores[found]);
+        return SearchResults.of(topDocs, index);
+    }
+
+    /**
+     * Check if a document contains the given terms at the given relative
+     * positions.
+     * 
+     * @param doc       The document number.
+     * @param termIds   The term numbers of the phrase.
+     * @param positions The position of each term in the phrase.
+     * @return True if the document contains the phrase.
+     */
+    private boolean matchesPhrase(int doc, int[] termIds, List<Integer> positions) {
+        int[][] docPositions = new int[termIds.length][];
+        for (int i = 0; i < termIds.length; i++)
+            docPositions[i] = index.getPositions(termIds[i], doc);
+
+        for (int first : docPositions[0]) {
+            int start = first - positions.get(0);
+            boolean matches = true;
+            for (int i = 1; i < termIds.length && matches; i++)
+                matches = Arrays.binarySearch(docPositions[i], start + positions.get(i)) >= 0;
+            if (matches)
+                return true;
+        }
+        return false;
+    }
+
+    /**
+     * Check if a document contains all given terms within a window of at most
+     * maxDistance words.
+     * 
+     * @param doc         The document number.
+     * @param termIds     The distinct term numbers of the query.
+     * @param maxDistance The largest distance between the first and last term.
+     * @return True if the document contains all terms close enough to each other.
+     */
+    private boolean matchesProximity(int doc, int[] termIds, int maxDistance) {
+        int[][] docPositions = new int[termIds.length][];
+        for (int i = 0; i < termIds.length; i++)
+            docPositions[i] = index.getPositions(termIds[i], doc);
+
+        // Slide a window over the positions by always moving on the term with the
+        // smallest current position.
+        int[] next = new int[termIds.length];
+        while (true) {
+            int min = 0;
+            int maxPosition = Integer.MIN_VALUE;
+            for (int i = 0; i < termIds.length; i++) {
+                if (docPositions[i][next[i]] < docPositions[min][next[min]])
+                    min = i;
+                maxPosition = Math.max(maxPosition, docPositions[i][next[i]]);
+            }
+            if (maxPosition - docPositions[min][next[min]] <= maxDistance)
+                return true;
+            next[min]++;
+            if (next[min] == docPositions[min].length)
+                return false;
+        }
+    }
+
     /**
      * Find the sites of the index most relevant to the given search query.
      * This method uses the term frequency and Inverse Document frequency (TFIDF) to
@@ -77,24 +445,171 @@ public class IndexSearcher {
      *         String[1] containins the sites calculated TfIdf score.
      */
     public List<String[]> searchQueryTfIdf(String query) {
-        ArrayList<Entry<Double, String>> foundSites = new ArrayList<>();
+        return searchQueryTfIdfResults(query).toStringArrays();
+    }
 
-        LinkedList<String> tokens = formatQuery(query);
+    /**
+     * Find the sites of the index most relevant to the given search query by
+     * TfIdf score, see searchQueryTfIdf().
+     * 
+     * @param query The search query to be used.
+     * @return The found sites sorted by TfIdf score in decending order.
+     */
+    public SearchResults searchQueryTfIdfResults(String query) {
+        return searchCached(QueryResultCache.Mode.TF_IDF, query, null, null,
+                () -> searchQueryTfIdfResults(query, Integer.MAX_VALUE));
+    }
 
-        // Get the TFIDF sum for each website in the index.
-        for (String docId : index.getStoredDocumentIds()) {
-            Double tfIdfScore;
-            tfIdfScore = index.getTfIdfSumOf(docId, tokens);
-            if (tfIdfScore == 0.0)
+    /**
+     * Find the k sites of the index most relevant to the given search query by
+     * TfIdf score. The results are the first k results of searchQueryTfIdf(), but
+     * only the best k sites are kept while ranking them.
+     * 
+     * @param query The search query to be used.
+     * @param k     The maximum number of results.
+     * @return A List of at most k String[2] sorted by TfIdf score in decending
+     *         order.
+     *         String[0] containins a sites url
+     *         String[1] containins the sites calculated TfIdf score.
+     */
+    public List<String[]> searchQueryTfIdf(String query, int k) {
+        return searchQueryTfIdfResults(query, k).toStringArrays();
+    }
+
+    /**
+     * Find the k sites of the index most relevant to the given search query by
+     * TfIdf score, see searchQueryTfIdf(String, int).
+     * 
+     * @param query The search query to be used.
+     * @param k     The maximum number of results.
+     * @return At most k sites sorted by TfIdf score in decending order.
+     */
+    public SearchResults searchQueryTfIdfResults(String query, int k) {
+        return SearchResults.of(selectTopDocs(calcTfIdfScores(query), 0, k), index);
+    }
+
+    /**
+     * Find the sites of the index matching the given boolean query, see
+     * BooleanQuery for its syntax. E.g. "cheese AND (gouda OR brie) NOT cheddar"
+     * finds the sites containing cheese and gouda or brie but not cheddar.
+     * 
+     * The matching sites are sorted by the cosine similarity between the words
+     * of the query that aren't excluded by NOT and the site, sites without
+     * similarity are kept. Only the postings of the query words are walked and
+     * conjunctions skip to the documents of their rarest operand, so restrictive
+     * queries only score the few documents they match.
+     * 
+     * @param query The boolean query to be used.
+     * @return A List of String[2] sorted by cosine similarity in decending order.
+     *         String[0] containins a sites url
+     *         String[1] containins the sites cosine similarity.
+     * @throws IllegalArgumentException If the query is not a valid boolean query.
+     */
+    public List<String[]> searchQueryBoolean(String query) {
+        return searchQueryBooleanResults(query).toStringArrays();
+    }
+
+    /**
+     * Find the sites of the index matching the given boolean query, see
+     * searchQueryBoolean().
+     * 
+     * @param query The boolean query to be used.
+     * @return The matching sites sorted by cosine similarity in decending order.
+     * @throws IllegalArgumentException If the query is not a valid boolean query.
+     */
+    public SearchResults searchQueryBooleanResults(String query) {
+        return searchQueryBooleanResults(query, Integer.MAX_VALUE);
+    }
+
+    /**
+     * Find the k sites of the index matching the given boolean query with the
+     * highest cosine similarity, the first k results of searchQueryBoolean().
+     * 
+     * @param query The boolean query to be used.
+     * @param k     The maximum number of results.
+     * @return At most k matching sites sorted by cosine similarity in decending
+     *         order.
+     * @throws IllegalArgumentException If the query is not a valid boolean query.
+     */
+    public SearchResults searchQueryBooleanResults(String query, int k) {
+        BooleanQuery booleanQuery = new BooleanQuery(query);
+        BooleanQuery.Matcher matcher = booleanQuery.matcher(this::matchWord);
+        lastScoredPostings = 0;
+        if (matcher == null || k <= 0)
+            return new SearchResults(0);
+
+        // Score the matching documents by the included words only, each posting
+        // list advances to the next match.
+        Map<Integer, Double> queryVector = getQueryVector(String.join(" ", booleanQuery.getIncludedWords()), null);
+        PostingsIterator[] postings = new PostingsIterator[queryVector.size()];
+        double[] queryWeights = new double[queryVector.size()];
+        double queryNorm = 0.0;
+        int t = 0;
+        for (Entry<Integer, Double> entry : queryVector.entrySet()) {
+            postings[t] = index.getPostings(entry.getKey());
+            queryWeights[t] = entry.getValue();
+            queryNorm += queryWeights[t] * queryWeights[t];
+            t++;
+        }
+        queryNorm = Math.sqrt(queryNorm);
+
+        TopKHeap topDocs = new TopKHeap(Math.min(k, index.getDocumentCapacity()), this::compareIds);
+        for (int doc = matcher.nextDoc(); doc != PostingsIterator.NO_MORE_DOCS; doc = matcher.nextDoc()) {
+            if (!index.isLive(doc))
                 continue;
-            Entry<Double, String> site = new AbstractMap.SimpleEntry<>(tfIdfScore, docId);
-            foundSites.add(site);
+            double score = 0.0;
+            for (t = 0; t < postings.length; t++) {
+                int termDoc = postings[t].docId() < doc ? postings[t].advance(doc) : postings[t].docId();
+                if (termDoc == doc) {
+                    score += queryWeights[t] * postings[t].weight();
+                    lastScoredPostings++;
+                }
+            }
+            if (!index.isNormalized()) {
+                double docNorm = index.getNorm(doc);
+                score = score != 0.0 && docNorm != 0.0 ? score / (queryNorm * docNorm) : 0.0;
+            }
+            topDocs.offer(doc, score);
         }
-        // Sort the found sites by TfIdf score.
-        Collections.sort(foundSites, (entry, other) -> other.getKey().compareTo(entry.getKey()));
+        return SearchResults.of(topDocs, index);
+    }
 
-        // Format for the specification and return.
-        return formatSearchOutput(foundSites);
+    /**
+     * Get a Matcher over the documents containing a word of a boolean query. A
+     * word analyzed into several tokens needs all of them.
+     * 
+     * @param word The word of the query.
+     * @return The Matcher or null if the word has no tokens, e.g. is a stopword.
+     */
+    private BooleanQuery.Matcher matchWord(String word) {
+        List<BooleanQuery.Matcher> matchers = new ArrayList<>();
+        for (String token : formatQuery(word)) {
+            int termId = index.getTermId(token);
+            matchers.add(termId == -1 ? BooleanQuery.Matcher.empty()
+                    : BooleanQuery.Matcher.of(index.getPostings(termId)));
+        }
+        return matchers.isEmpty() ? null : BooleanQuery.Matcher.allOf(matchers);
+    }
+
+    /**
+     * Add up the TfIdf of each query token for each website containing it.
+     * Repeated tokens are counted repeatedly.
+     * 
+     * @param query The search query to be used.
+     * @return The TfIdf score of each document number.
+     */
+    private double[] calcTfIdfScores(String query) {
+        LinkedList<String> tokens = formatQuery(query);
+        double[] scores = new double[index.getDocumentCapacity()];
+        for (String token : tokens) {
+            int termId = index.getTermId(token);
+            if (termId == -1)
+                continue;
+            PostingsIterator postings = index.getPostings(termId);
+            while (postings.nextDoc() != PostingsIterator.NO_MORE_DOCS)
+                scores[postings.docId()] += postings.weight();
+        }
+        return scores;
     }
 
     /**
@@ -108,11 +623,7 @@ public class IndexSearcher {
         Map<String, Double> ret = new TreeMap<>();
 
         for (Entry<String, Double> entry : weights.entrySet()) {
-            CoreDocument content = new CoreDocument(entry.getKey().toLowerCase());
-            pipeline.annotate(content);
-            for (CoreLabel label : content.tokens()) {
-                String lemma = label.lemma();
-
+            for (String lemma : lemmatize(entry.getKey())) {
                 if (specialCharacters.contains(lemma) || stopwords.contains(lemma))
                     continue;
 
@@ -149,39 +660,842 @@ public class IndexSearcher {
      * Normalize() may be called to increase this methods efficiency.
      * 
      * @param query   The search query to be used.
-     * @param weights The weights to be applied to the search query.
+     * @param weights The weights to be applied to the search query, null for a
+     *                weight of 1.0 per query word.
      * @return A List of String[2] sorted by TfIdf score in decending order.
      *         String[0] containins a sites url
      *         String[1] containins the sites calculated TfIdf score.
      */
     public List<String[]> searchQueryCosine(String query, Map<String, Double> weights) {
+        return searchQueryCosineResults(query, weights).toStringArrays();
+    }
+
+    /**
+     * Find the sites of the index most relevant to the given weighted search
+     * query by cosine similarity, see searchQueryCosine(String, Map).
+     * 
+     * @param query   The search query to be used.
+     * @param weights The weights to be applied to the search query, null for a
+     *                weight of 1.0 per query word.
+     * @return The found sites sorted by cosine similarity in decending order.
+     */
+    public SearchResults searchQueryCosineResults(String query, Map<String, Double> weights) {
+        return searchCached(QueryResultCache.Mode.COSINE, query, weights, null,
+                () -> SearchResults.of(selectCosineTopDocs(query, weights, Integer.MAX_VALUE), index));
+    }
+
+    /**
+     * Find the cosine similarity between the weighted query and each document of
+     * the index.
+     * 
+     * @param query   The search query to be used.
+     * @param weights The weights to be applied to the search query, null for a
+     *                weight of 1.0 per query word.
+     * @return The cosine similarity of each document number.
+     */
+    private double[] calcCosineScores(String query, Map<String, Double> weights) {
+        Map<Integer, Double> queryVector = getQueryVector(query, weights);
+        lastScoredPostings = countPostings(queryVector);
+        return calcCosineScores(queryVector, 0, index.getDocumentCapacity());
+    }
+
+    /**
+     * Find the cosine similarity between the query vector and each document of a
+     * range of document numbers. Only reads the index, so disjoint ranges can be
+     * scored by multiple threads.
+     * 
+     * @param queryVector The query weight of each term number.
+     * @param from        The first document number of the range.
+     * @param to          The document number after the range.
+     * @return The cosine similarity of each document number minus from.
+     */
+    private double[] calcCosineScores(Map<Integer, Double> queryVector, int from, int to) {
+        // Find the dot product between the query and each document sharing a token.
+        double queryNorm = 0.0;
+        double[] scores = new double[to - from];
+        for (Entry<Integer, Double> entry : queryVector.entrySet()) {
+            double queryWeight = entry.getValue();
+            queryNorm += queryWeight * queryWeight;
+            PostingsIterator postings = index.getPostings(entry.getKey());
+            int doc = from == 0 ? postings.nextDoc() : postings.advance(from);
+            for (; doc < to; doc = postings.nextDoc())
+                scores[doc - from] += queryWeight * postings.weight();
+        }
+        queryNorm = Math.sqrt(queryNorm);
+
+        // Turn the dot products into cosine similarities.
+        if (!index.isNormalized()) {
+            for (int i = 0; i < scores.length; i++) {
+                double docNorm = index.getNorm(from + i);
+                if (scores[i] != 0.0 && docNorm != 0.0)
+                    scores[i] = scores[i] / (queryNorm * docNorm);
+                else
+                    scores[i] = 0.0;
+            }
+        }
+        return scores;
+    }
+
+    /**
+     * Get the number of postings of the terms of a query vector.
+     */
+    private long countPostings(Map<Integer, Double> queryVector) {
+        long postingCount = 0;
+        for (int termId : queryVector.keySet())
+            postingCount += index.getPostings(termId).cost();
+        return postingCount;
+    }
+
+    /**
+     * Select the k live documents most similar to the weighted query by scoring
+     * all postings of the query terms. Queries with at least
+     * parallelMinPostings postings are scored in parallel by partitions of the
+     * document numbers, see setParallelScoring().
+     * 
+     * @param query   The search query to be used.
+     * @param weights The weights to be applied to the search query, null for a
+     *                weight of 1.0 per query word.
+     * @param k       The maximum number of documents.
+     * @return The heap of the selected documents.
+     */
+    private TopKHeap selectCosineTopDocs(String query, Map<String, Double> weights, int k) {
+        return selectCosineTopDocs(getQueryVector(query, weights), k);
+    }
+
+    /**
+     * Select the k live documents most similar to a query vector by scoring all
+     * postings of its terms, see selectCosineTopDocs(String, Map, int).
+     * 
+     * @param queryVector The query weight of each term number.
+     * @param k           The maximum number of documents.
+     * @return The heap of the selected documents.
+     */
+    private TopKHeap selectCosineTopDocs(Map<Integer, Double> queryVector, int k) {
+        lastScoredPostings = countPostings(queryVector);
+        int capacity = index.getDocumentCapacity();
+        if (parallelPool == null || parallelPool.getParallelism() < 2 || lastScoredPostings < parallelMinPostings
+                || capacity < 2 * PARALLEL_MIN_PARTITION_DOCS || k <= 0)
+            return selectTopDocs(calcCosineScores(queryVector, 0, capacity), 0, k);
+
+        // About four partitions per thread, so threads finishing early can steal
+        // the partitions left.
+        int partitionDocs = Math.max(PARALLEL_MIN_PARTITION_DOCS,
+                (capacity + 4 * parallelPool.getParallelism() - 1) / (4 * parallelPool.getParallelism()));
+        return parallelPool.invoke(new CosinePartition(queryVector, 0, capacity, partitionDocs, k));
+    }
+
+    /**
+     * Scores a range of document numbers into a local TopKHeap. Ranges larger
+     * than partitionDocs are split in halves that are scored in parallel, the
+     * heaps of both halves are merged afterwards.
+     */
+    private final class CosinePartition extends RecursiveTask<TopKHeap> {
+        private static final long serialVersionUID = 1L;
+
+        private final Map<Integer, Double> queryVector;
+        private final int from;
+        private final int to;
+        private final int partitionDocs;
+        private final int k;
+
+        CosinePartition(Map<Integer, Double> queryVector, int from, int to, int partitionDocs, int k) {
+            this.queryVector = queryVector;
+            this.from = from;
+            this.to = to;
+            this.partitionDocs = partitionDocs;
+            this.k = k;
+        }
+
+        @Override
+        protected TopKHeap compute() {
+            if (to - from <= partitionDocs)
+                return selectTopDocs(calcCosineScores(queryVector, from, to), from, k);
+            int middle = (from + to) >>> 1;
+            CosinePartition lower = new CosinePartition(queryVector, from, middle, partitionDocs, k);
+            lower.fork();
+            TopKHeap upper = new CosinePartition(queryVector, middle, to, partitionDocs, k).compute();
+            return mergeTopDocs(lower.join(), upper, k);
+        }
+    }
+
+    /**
+     * Merge the documents of two TopKHeaps into a new heap of the k best ones.
+     * Both heaps are sorted by this.
+     */
+    private TopKHeap mergeTopDocs(TopKHeap first, TopKHeap second, int k) {
+        TopKHeap merged = new TopKHeap(Math.min(k, first.size() + second.size()), this::compareIds);
+        for (TopKHeap topDocs : new TopKHeap[] { first, second }) {
+            topDocs.sort();
+            for (int rank = 0; rank < topDocs.size(); rank++)
+                merged.offer(topDocs.getDoc(rank), topDocs.getScore(rank));
+        }
+        return merged;
+    }
+
+    /**
+     * Find the sites of the index most relevant to the given search query by
+     * cosine similarity, where each query token also matches the index terms
+     * within an edit distance of maxEdits, e.g. "parmesean" finds the sites
+     * containing parmesan. The edit distance counts the insertions, deletions
+     * and substitutions of single characters (Levenshtein distance).
+     * 
+     * Each token expands to the closest terms, at most getMaxExpansions() of
+     * them. A term maxEdits away gets the weight of the token times
+     * (1 - getFuzzyPenalty()) per edit, so exact matches rank before close
+     * ones. The terms are found by intersecting a Levenshtein automaton of the
+     * token with the sorted TermDictionary of the index, which skips all terms
+     * whose prefix is already too far from the token.
+     * 
+     * @param query    The search query to be used.
+     * @param maxEdits The maximum edit distance, at most MAX_FUZZY_EDITS.
+     * @return A List of String[2] sorted by cosine similarity in decending order.
+     *         String[0] containins a sites url
+     *         String[1] containins the sites cosine similarity.
+     */
+    public List<String[]> searchQueryFuzzy(String query, int maxEdits) {
+        return searchQueryFuzzyResults(query, maxEdits).toStringArrays();
+    }
+
+    /**
+     * Find the sites of the index most relevant to the given search query with
+     * fuzzy matching tokens, see searchQueryFuzzy().
+     * 
+     * @param query    The search query to be used.
+     * @param maxEdits The maximum edit distance, at most MAX_FUZZY_EDITS.
+     * @return The found sites sorted by cosine similarity in decending order.
+     */
+    public SearchResults searchQueryFuzzyResults(String query, int maxEdits) {
+        return searchQueryFuzzyResults(query, maxEdits, Integer.MAX_VALUE);
+    }
+
+    /**
+     * Find the k sites of the index most relevant to the given search query with
+     * fuzzy matching tokens, the first k results of searchQueryFuzzy().
+     * 
+     * @param query    The search query to be used.
+     * @param maxEdits The maximum edit distance, at most MAX_FUZZY_EDITS.
+     * @param k        The maximum number of results.
+     * @return At most k sites sorted by cosine similarity in decending order.
+     */
+    public SearchResults searchQueryFuzzyResults(String query, int maxEdits, int k) {
+        if (maxEdits < 0 || maxEdits > MAX_FUZZY_EDITS)
+            throw new IllegalArgumentException(
+                    "IndexSearcher: The edit distance needs to be between 0 and " + MAX_FUZZY_EDITS + "!");
+        return SearchResults.of(selectCosineTopDocs(getFuzzyQueryVector(query, maxEdits), k), index);
+    }
+
+    /**
+     * Find the sites of the index most relevant to the given search query by
+     * cosine similarity, where query words may contain wildcards: '*' matches
+     * any number of characters and '?' matches a single character, e.g.
+     * "chedd*" finds the sites containing cheddar.
+     * 
+     * Each word with wildcards expands to the first index terms matching it in
+     * sorted order, at most getMaxExpansions() of them. The words are not
+     * lemmatized, they match the lemmatized terms of the index. The expanded
+     * terms are scored as a disjunction, each with the weight of the query word
+     * they were expanded from. Words without wildcards are analyzed like the
+     * words of searchQueryCosine(). The expansion only visits the terms starting
+     * with the characters before the first wildcard, in the sorted
+     * TermDictionary of the index.
+     * 
+     * @param query The search query to be used.
+     * @return A List of String[2] sorted by cosine similarity in decending order.
+     *         String[0] containins a sites url
+     *         String[1] containins the sites cosine similarity.
+     */
+    public List<String[]> searchQueryWildcard(String query) {
+        return searchQueryWildcardResults(query).toStringArrays();
+    }
+
+    /**
+     * Find the sites of the index most relevant to the given search query with
+     * wildcards, see searchQueryWildcard().
+     * 
+     * @param query The search query to be used.
+     * @return The found sites sorted by cosine similarity in decending order.
+     */
+    public SearchResults searchQueryWildcardResults(String query) {
+        return searchQueryWildcardResults(query, Integer.MAX_VALUE);
+    }
+
+    /**
+     * Find the k sites of the index most relevant to the given search query
+     * with wildcards, the first k results of searchQueryWildcard().
+     * 
+     * @param query The search query to be used.
+     * @param k     The maximum number of results.
+     * @return At most k sites sorted by cosine similarity in decending order.
+     */
+    public SearchResults searchQueryWildcardResults(String query, int k) {
+        return SearchResults.of(selectCosineTopDocs(getWildcardQueryVector(query), k), index);
+    }
+
+    /**
+     * Get the sparse query vector of a query whose words may contain wildcards,
+     * see getExpandedQueryVector().
+     * 
+     * @param query The search query to be used.
+     * @return The non zero query weight of each term number, in query order.
+     */
+    private Map<Integer, Double> getWildcardQueryVector(String query) {
+        // The terms of each distinct token or word with wildcards.
+        Map<String, Map<Integer, Double>> words = new LinkedHashMap<>();
+        for (String word : query.toLowerCase().split("\\s+")) {
+            if (word.isEmpty() || words.containsKey(word))
+                continue;
+            if (!WildcardPattern.hasWildcards(word)) {
+                for (String token : formatQuery(word))
+                    words.computeIfAbsent(token, tok -> Map.of(index.getTermId(tok), 1.0));
+                continue;
+            }
+            Map<Integer, Double> terms = new LinkedHashMap<>();
+            for (String term : new WildcardPattern(word).expand(index.getTermDictionary(), maxExpansions,
+                    this::isUsedTerm))
+                terms.put(index.getTermId(term), 1.0);
+            words.put(word, terms);
+        }
+        return getExpandedQueryVector(words);
+    }
+
+    /**
+     * Get the sparse query vector of a query whose tokens expand to the terms
+     * within maxEdits of them, see getExpandedQueryVector().
+     * 
+     * @param query    The search query to be used.
+     * @param maxEdits The maximum edit distance of an expanded term.
+     * @return The non zero query weight of each term number, in query order.
+     */
+    private Map<Integer, Double> getFuzzyQueryVector(String query, int maxEdits) {
+        Map<String, Map<Integer, Double>> words = new LinkedHashMap<>();
+        for (String token : formatQuery(query)) {
+            if (words.containsKey(token))
+                continue;
+            Map<String, Integer> distances = new LevenshteinAutomaton(token, maxEdits)
+                    .intersect(index.getTermDictionary(), this::isUsedTerm);
+
+            // Keep the closest terms, among terms of the same distance the ones
+            // found in more documents.
+            List<Integer> termIds = new ArrayList<>();
+            Map<Integer, Integer> termDistances = new LinkedHashMap<>();
+            for (Entry<String, Integer> entry : distances.entrySet()) {
+                int termId = index.getTermId(entry.getKey());
+                termIds.add(termId);
+                termDistances.put(termId, entry.getValue());
+            }
+            termIds.sort((a, b) -> termDistances.get(a).equals(termDistances.get(b))
+                    ? Integer.compare(index.getDocFrequency(b), index.getDocFrequency(a))
+                    : Integer.compare(termDistances.get(a), termDistances.get(b)));
+            Map<Integer, Double> terms = new LinkedHashMap<>();
+            for (int termId : termIds.subList(0, Math.min(maxExpansions, termIds.size())))
+                terms.put(termId, Math.pow(1.0 - fuzzyPenalty, termDistances.get(termId)));
+            words.put(token, terms);
+        }
+        return getExpandedQueryVector(words);
+    }
+
+    /**
+     * Get the sparse query vector of a query whose words expand to several index
+     * terms. Like the default weights of getQueryVector() each distinct word
+     * weighs the same, each term a word expands to gets the weight of the word
+     * times its factor. A term expanded from several words keeps its highest
+     * weight.
+     * 
+     * @param words The factor of each term number each word expands to.
+     * @return The non zero query weight of each term number, in query order.
+     */
+    private Map<Integer, Double> getExpandedQueryVector(Map<String, Map<Integer, Double>> words) {
+        double weight = 1.0 / Math.max(1, words.size());
+        Map<Integer, Double> queryVector = new LinkedHashMap<>();
+        for (Map<Integer, Double> terms : words.values()) {
+            for (Entry<Integer, Double> term : terms.entrySet()) {
+                if (term.getKey() != -1 && term.getValue() != 0.0)
+                    queryVector.merge(term.getKey(), weight * term.getValue(), Math::max);
+            }
+        }
+        return queryVector;
+    }
+
+    /**
+     * Check if an index term occurs in a document, so expanding to it can find
+     * results.
+     * 
+     * @param term The index term.
+     * @return True if the term has postings.
+     */
+    private boolean isUsedTerm(String term) {
+        int termId = index.getTermId(term);
+        return termId != -1 && index.getDocFrequency(termId) > 0;
+    }
+
+    /**
+     * Get the sparse query vector of a weighted query.
+     * 
+     * @param query   The search query to be used.
+     * @param weights The weights to be applied to the search query, null for a
+     *                weight of 1.0 per query word.
+     * @return The non zero query weight of each term number, in query order.
+     */
+    private Map<Integer, Double> getQueryVector(String query, Map<String, Double> weights) {
         LinkedList<String> tokens = formatQuery(query);
-        Map<String, Double> tokenizedWeights = formatWeights(weights);
-        List<Double> queryVector = index.getQueryVectorFor(tokens, tokenizedWeights);
 
-        // Find the cosine similarity for each of the documents and save.
-        ArrayList<Entry<Double, String>> foundSites = new ArrayList<>();
-        for (String docId : index.getStoredDocumentIds()) {
-            List<Double> documentVector = index.getVectorOf(docId);
+        // By default all distinct tokens weigh the same, so the weights are taken
+        // from the analyzed query instead of analyzing each query word again.
+        Map<String, Double> tokenizedWeights = weights == null ? null : formatWeights(weights);
+        double defaultWeight = 1.0 / Math.max(1, new HashSet<>(tokens).size());
+
+        // The query vector is sparse, only keep its non zero entries in query order.
+        Map<Integer, Double> queryVector = new LinkedHashMap<>();
+        for (String tok : tokens) {
+            int termId = index.getTermId(tok);
+            double weight = weights == null ? defaultWeight : tokenizedWeights.getOrDefault(tok, 0.0);
+            if (termId != -1 && weight != 0.0)
+                queryVector.put(termId, weight);
+        }
+        return queryVector;
+    }
+
+    /**
+     * Find the k sites of the index most relevant to the given search query by
+     * cosine similarity. The results are the first k results of
+     * searchQueryCosine().
+     * 
+     * If the index has impact ordered postings, they are scored score at a time:
+     * the posting with the highest impact left among all query terms is scored
+     * next, until the impacts left can't change which documents are the top k.
+     * Only these documents are scored exactly. Without impact ordered postings
+     * all postings are scored.
+     * 
+     * @param query   The search query to be used.
+     * @param weights The weights to be applied to the search query, null for a
+     *                weight of 1.0 per query word.
+     * @param k       The maximum number of results.
+     * @return A List of at most k String[2] sorted by cosine similarity in
+     *         decending order.
+     *         String[0] containins a sites url
+     *         String[1] containins the sites cosine similarity.
+     */
+    public List<String[]> searchQueryCosineTopK(String query, Map<String, Double> weights, int k) {
+        return searchQueryCosineTopKResults(query, weights, k).toStringArrays();
+    }
+
+    /**
+     * Find the k sites of the index most relevant to the given weighted search
+     * query by cosine similarity, see searchQueryCosineTopK(String, Map, int).
+     * 
+     * @param query   The search query to be used.
+     * @param weights The weights to be applied to the search query, null for a
+     *                weight of 1.0 per query word.
+     * @param k       The maximum number of results.
+     * @return At most k sites sorted by cosine similarity in decending order.
+     */
+    public SearchResults searchQueryCosineTopKResults(String query, Map<String, Double> weights, int k) {
+        // The impacts left only bound the scores for non negative query weights.
+        ImpactPostings impactPostings = index.getImpactPostings();
+        boolean negativeWeights = weights != null && weights.values().stream().anyMatch(weight -> weight < 0.0);
+        if (impactPostings == null || negativeWeights || k <= 0)
+            return SearchResults.of(selectCosineTopDocs(query, weights, k), index);
+        Map<Integer, Double> queryVector = getQueryVector(query, weights);
+
+        // The next posting and the end of the impact ordered postings of each term.
+        int termCount = queryVector.size();
+        int[] termIds = new int[termCount];
+        double[] queryWeights = new double[termCount];
+        int[] positions = new int[termCount];
+        int[] ends = new int[termCount];
+        int t = 0;
+        for (Entry<Integer, Double> entry : queryVector.entrySet()) {
+            termIds[t] = entry.getKey();
+            queryWeights[t] = entry.getValue();
+            positions[t] = impactPostings.getStart(termIds[t]);
+            ends[t] = impactPostings.getEnd(termIds[t]);
+            t++;
+        }
+
+        // Accumulate the partial scores of the documents found, highest impacts first.
+        double[] partialScores = new double[index.getDocumentCapacity()];
+        int[] found = new int[partialScores.length];
+        int foundCount = 0;
+        lastScoredPostings = 0;
+        while (true) {
+            // The largest score any document can still gain is the sum of the
+            // highest impacts left of each term.
+            int best = -1;
+            double bestImpact = 0.0;
+            double impactLeft = 0.0;
+            for (t = 0; t < termCount; t++) {
+                if (positions[t] == ends[t])
+                    continue;
+                double impact = queryWeights[t] * impactPostings.getImpact(positions[t]);
+                impactLeft += impact;
+                if (impact > bestImpact) {
+                    best = t;
+                    bestImpact = impact;
+                }
+            }
+            if (best == -1)
+                break;
+            if (lastScoredPostings % IMPACT_CHECK_INTERVAL == 0
+                    && isTopKFixed(partialScores, found, foundCount, k, impactLeft))
+                break;
+
+            int doc = impactPostings.getDoc(positions[best]);
+            positions[best]++;
+            lastScoredPostings++;
+            if (!index.isLive(doc))
+                continue;
+            if (partialScores[doc] == 0.0)
+                found[foundCount++] = doc;
+            partialScores[doc] += bestImpact;
+        }
+
+        // Score the documents that may be in the top k exactly, the same way
+        // calcCosineScores() does.
+        double threshold = foundCount < k ? 0.0 : getKthLargest(partialScores, found, foundCount, k)[0];
+        int[] candidates = new int[foundCount];
+        int candidateCount = 0;
+        for (int i = 0; i < foundCount; i++)
+            if (partialScores[found[i]] >= threshold - IMPACT_SCORE_EPSILON)
+                candidates[candidateCount++] = found[i];
+        Arrays.sort(candidates, 0, candidateCount);
+
+        double[] scores = new double[partialScores.length];
+        double queryNorm = 0.0;
+        for (t = 0; t < termCount; t++) {
+            queryNorm += queryWeights[t] * queryWeights[t];
+            PostingsIterator postings = index.getPostings(termIds[t]);
+            for (int i = 0; i < candidateCount; i++) {
+                int doc = candidates[i];
+                if (postings.docId() < doc && postings.advance(doc) == PostingsIterator.NO_MORE_DOCS)
+                    break;
+                if (postings.docId() == doc)
+                    scores[doc] += queryWeights[t] * postings.weight();
+            }
+        }
+        queryNorm = Math.sqrt(queryNorm);
+
+        TopKHeap topDocs = new TopKHeap(Math.min(k, candidateCount), this::compareIds);
+        for (int i = 0; i < candidateCount; i++) {
+            int doc = candidates[i];
+            if (!index.isNormalized())
+                scores[doc] = scores[doc] / (queryNorm * index.getNorm(doc));
+            if (scores[doc] != 0.0)
+                topDocs.offer(doc, scores[doc]);
+        }
+        return SearchResults.of(topDocs, index);
+    }
+
+    /**
+     * Find the k sites of the index most relevant to the given search query by
+     * cosine similarity. The results are the first k results of
+     * searchQueryCosine().
+     * 
+     * @param query The search query to be used.
+     * @param k     The maximum number of results.
+     * @return A List of at most k String[2] sorted by cosine similarity in
+     *         decending order.
+     *         String[0] containins a sites url
+     *         String[1] containins the sites cosine similarity.
+     */
+    public List<String[]> searchQueryCosineTopK(String query, int k) {
+        return searchQueryCosineTopKResults(query, k).toStringArrays();
+    }
+
+    /**
+     * Find the k sites of the index most relevant to the given search query by
+     * cosine similarity, see searchQueryCosineTopK(String, int).
+     * 
+     * @param query The search query to be used.
+     * @param k     The maximum number of results.
+     * @return At most k sites sorted by cosine similarity in decending order.
+     */
+    public SearchResults searchQueryCosineTopKResults(String query, int k) {
+        return searchQueryCosineTopKResults(query, null, k);
+    }
+
+    /**
+     * Find the k sites of the index most relevant to the given search query by
+     * cosine similarity, using dynamic pruning. The results are the first k
+     * results of searchQueryCosine().
+     * 
+     * The posting lists of the query terms are walked document at a time. The
+     * highest impact of each term bounds how much it can add to a documents
+     * score, so documents whose bound can't reach the current top k are skipped
+     * without being scored (WAND). With blockMax the highest impact of the
+     * block of postings around a document is used as a tighter bound, which
+     * skips whole blocks at a time (Block-Max WAND).
+     * 
+     * The index needs impact ordered postings, see VectorIndex.orderByImpact().
+     * Without them, or for negative query weights, all postings are scored.
+     * 
+     * @param query    The search query to be used.
+     * @param k        The maximum number of results.
+     * @param blockMax True to use the block maximum impacts as well.
+     * @return A List of at most k String[2] sorted by cosine similarity in
+     *         decending order.
+     *         String[0] containins a sites url
+     *         String[1] containins the sites cosine similarity.
+     */
+    public List<String[]> searchQueryCosineWand(String query, int k, boolean blockMax) {
+        return searchQueryCosineWandResults(query, null, k, blockMax).toStringArrays();
+    }
+
+    /**
+     * Find the k sites of the index most relevant to the given weighted search
+     * query by cosine similarity using dynamic pruning, see
+     * searchQueryCosineWand().
+     * 
+     * @param query    The search query to be used.
+     * @param weights  The weights to be applied to the search query, null for a
+     *                 weight of 1.0 per query word.
+     * @param k        The maximum number of results.
+     * @param blockMax True to use the block maximum impacts as well.
+     * @return At most k sites sorted by cosine similarity in decending order.
+     */
+    public SearchResults searchQueryCosineWandResults(String query, Map<String, Double> weights, int k,
+            boolean blockMax) {
+        // The impacts only bound the scores for non negative query weights.
+        ImpactPostings impactPostings = index.getImpactPostings();
+        boolean negativeWeights = weights != null && weights.values().stream().anyMatch(weight -> weight < 0.0);
+        if (impactPostings == null || negativeWeights || k <= 0)
+            return SearchResults.of(selectCosineTopDocs(query, weights, k), index);
+        Map<Integer, Double> queryVector = getQueryVector(query, weights);
+
+        // A score is the sum of query weight times impact of the documents terms,
+        // divided by the query norm unless the index is normalized.
+        double queryNorm = 0.0;
+        for (double queryWeight : queryVector.values())
+            queryNorm += queryWeight * queryWeight;
+        queryNorm = Math.sqrt(queryNorm);
+        double scale = index.isNormalized() ? 1.0 : 1.0 / queryNorm;
+
+        // The query terms in query order. Terms without impact add 0.0 to each
+        // score and are left out.
+        int termCount = 0;
+        int[] termIds = new int[queryVector.size()];
+        double[] queryWeights = new double[termIds.length];
+        double[] maxScores = new double[termIds.length];
+        PostingsIterator[] postings = new PostingsIterator[termIds.length];
+        for (Entry<Integer, Double> entry : queryVector.entrySet()) {
+            double maxScore = entry.getValue() * impactPostings.getMaxImpact(entry.getKey()) * scale;
+            if (maxScore == 0.0)
+                continue;
+            termIds[termCount] = entry.getKey();
+            queryWeights[termCount] = entry.getValue();
+            maxScores[termCount] = maxScore;
+            postings[termCount] = index.getPostings(entry.getKey());
+            postings[termCount].nextDoc();
+            termCount++;
+        }
+
+        int[] order = new int[termCount];
+        for (int t = 0; t < termCount; t++)
+            order[t] = t;
+        // The last block looked up for each term covers the documents from the
+        // document it was looked up for to its last document.
+        int[] blocks = new int[termCount];
+        int[] blockFrom = new int[termCount];
+        int[] blockTo = new int[termCount];
+        Arrays.fill(blockTo, -1);
+        TopKHeap topDocs = new TopKHeap(Math.min(k, index.getDocumentCapacity()), this::compareIds);
+        lastScoredPostings = 0;
+        while (true) {
+            sortByDoc(order, postings);
+
+            // A document has to beat the worst of the top k, until there are k
+            // results any score will do.
+            double threshold = topDocs.isFull() ? topDocs.getMinScore() - IMPACT_SCORE_EPSILON : 0.0;
+
+            // The pivot is the first document the terms up to it can lift above the
+            // threshold, no document before it can.
+            int pivot = -1;
+            double bound = 0.0;
+            for (int i = 0; i < termCount && postings[order[i]].docId() != PostingsIterator.NO_MORE_DOCS; i++) {
+                bound += maxScores[order[i]];
+                if (bound > threshold) {
+                    pivot = i;
+                    break;
+                }
+            }
+            if (pivot == -1)
+                break;
+            int pivotDoc = postings[order[pivot]].docId();
+            while (pivot + 1 < termCount && postings[order[pivot + 1]].docId() == pivotDoc)
+                pivot++;
+
+            if (blockMax) {
+                // The blocks around the pivot bound the scores of all documents up to
+                // the end of the first block or the next document of another term.
+                int nextDoc = PostingsIterator.NO_MORE_DOCS;
+                if (pivot + 1 < termCount)
+                    nextDoc = postings[order[pivot + 1]].docId();
+                double blockBound = 0.0;
+                for (int i = 0; i <= pivot; i++) {
+                    int t = order[i];
+                    if (pivotDoc < blockFrom[t] || pivotDoc > blockTo[t]) {
+                        blocks[t] = impactPostings.findBlock(termIds[t], pivotDoc);
+                        blockFrom[t] = pivotDoc;
+                        blockTo[t] = blocks[t] == -1 ? PostingsIterator.NO_MORE_DOCS
+                                : impactPostings.getBlockLastDoc(blocks[t]);
+                    }
+                    if (blocks[t] == -1)
+                        continue;
+                    blockBound += queryWeights[t] * impactPostings.getBlockMaxImpact(blocks[t]) * scale;
+                    nextDoc = Math.min(nextDoc, blockTo[t] + 1);
+                }
+                if (blockBound <= threshold) {
+                    for (int i = 0; i <= pivot; i++)
+                        if (postings[order[i]].docId() < nextDoc)
+                            postings[order[i]].advance(nextDoc);
+                    continue;
+                }
+            }
 
-            // Find the cosine similarity between the querys and the documents vectors.
-            double cosineSimilarity;
-            if (index.isNormalized())
-                cosineSimilarity = calcCosineSimilarityNormalized(queryVector, documentVector);
-            else
-                cosineSimilarity = calcCosineSimilarity(queryVector, documentVector);
+            // Move the terms before the pivot onto the pivot document first.
+            if (postings[order[0]].docId() != pivotDoc) {
+                for (int i = 0; i < pivot && postings[order[i]].docId() < pivotDoc; i++)
+                    postings[order[i]].advance(pivotDoc);
+                continue;
+            }
 
-            // Only add pages that share similiarity with the query.
-            if (cosineSimilarity != 0.0)
-                foundSites.add(new AbstractMap.SimpleEntry<>(cosineSimilarity, docId));
+            // Score the pivot document exactly, the same way calcCosineScores() does.
+            double score = 0.0;
+            for (int t = 0; t < termCount; t++) {
+                if (postings[t].docId() != pivotDoc)
+                    continue;
+                score += queryWeights[t] * postings[t].weight();
+                lastScoredPostings++;
+                postings[t].nextDoc();
+            }
+            if (!index.isNormalized()) {
+                double docNorm = index.getNorm(pivotDoc);
+                score = score != 0.0 && docNorm != 0.0 ? score / (queryNorm * docNorm) : 0.0;
+            }
+            if (score != 0.0 && index.isLive(pivotDoc))
+                topDocs.offer(pivotDoc, score);
+        }
+        return SearchResults.of(topDocs, index);
+    }
+
+    /**
+     * Sort the given term order by the current document of each terms postings.
+     * 
+     * @param order    The term numbers to be sorted, nearly sorted already.
+     * @param postings The postings of each term.
+     */
+    private static void sortByDoc(int[] order, PostingsIterator[] postings) {
+        for (int i = 1; i < order.length; i++) {
+            int term = order[i];
+            int doc = postings[term].docId();
+            int j = i;
+            while (j > 0 && postings[order[j - 1]].docId() > doc) {
+                order[j] = order[j - 1];
+                j--;
+            }
+            order[j] = term;
         }
+    }
 
-        // Sort the results by cosine similarity.
-        Collections.sort(foundSites, (entry, other) -> other.getKey().compareTo(entry.getKey()));
+    /**
+     * Find about the k sites of the index most relevant to the given search query
+     * by cosine similarity, using the HNSW graph of the index. The search only
+     * scores the documents the graph search visits, so it may miss some of the
+     * first k results of searchQueryCosine(). Their scores are the same, up to
+     * rounding.
+     * 
+     * @param query     The search query to be used.
+     * @param hnswIndex The HNSW graph built from the searched index.
+     * @param k         The maximum number of results.
+     * @return A List of at most k String[2] sorted by cosine similarity in
+     *         decending order.
+     *         String[0] containins a sites url
+     *         String[1] containins the sites cosine similarity.
+     */
+    public List<String[]> searchQueryCosineHnsw(String query, HnswIndex hnswIndex, int k) {
+        return searchQueryCosineHnswResults(query, null, hnswIndex, k).toStringArrays();
+    }
 
-        // Format the ordered results to List<String[]> and return.
-        return formatSearchOutput(foundSites);
+    /**
+     * Find about the k sites of the index most relevant to the given weighted
+     * search query by cosine similarity using the HNSW graph of the index, see
+     * searchQueryCosineHnsw().
+     * 
+     * @param query     The search query to be used.
+     * @param weights   The weights to be applied to the search query, null for a
+     *                  weight of 1.0 per query word.
+     * @param hnswIndex The HNSW graph built from the searched index.
+     * @param k         The maximum number of results.
+     * @return At most k sites sorted by cosine similarity in decending order.
+     */
+    public SearchResults searchQueryCosineHnswResults(String query, Map<String, Double> weights,
+            HnswIndex hnswIndex, int k) {
+        if (hnswIndex.getIndex() != index)
+            throw new IllegalArgumentException("IndexSearcher: The HnswIndex belongs to another index!");
+        Map<Integer, Double> queryVector = getQueryVector(query, weights);
 
+        // The graph holds unit document vectors, the scores of an index that isn't
+        // normalized are divided by the query norm as well.
+        double queryNorm = 0.0;
+        for (double queryWeight : queryVector.values())
+            queryNorm += queryWeight * queryWeight;
+        double scale = index.isNormalized() ? 1.0 : 1.0 / Math.sqrt(queryNorm);
+        lastScoredPostings = 0;
+        return SearchResults.of(hnswIndex.search(queryVector, k, scale, this::compareIds), index);
+    }
+
+    /**
+     * Get the number of postings the last cosine search scored. A top k search on
+     * impact ordered postings counts the postings visited before it stopped.
+     * 
+     * @return The number of postings scored.
+     */
+    public long getLastScoredPostings() {
+        return lastScoredPostings;
+    }
+
+    /**
+     * Check if the documents with the k highest partial scores are the top k
+     * documents, no matter how the impacts left are distributed. This is the case
+     * if no other document can reach the k-th partial score anymore.
+     * 
+     * @param partialScores The partial score of each document number.
+     * @param found         The document numbers with a partial score.
+     * @param foundCount    The number of documents in found.
+     * @param k             The number of results.
+     * @param impactLeft    The largest score a document can still gain.
+     * @return True if the top k documents can't change anymore.
+     */
+    private boolean isTopKFixed(double[] partialScores, int[] found, int foundCount, int k, double impactLeft) {
+        if (foundCount < k)
+            return false;
+        double[] kthLargest = getKthLargest(partialScores, found, foundCount, k);
+        return kthLargest[1] + impactLeft < kthLargest[0] - IMPACT_SCORE_EPSILON;
+    }
+
+    /**
+     * Find the k-th and the (k+1)-th largest partial score of the found documents.
+     * 
+     * @param partialScores The partial score of each document number.
+     * @param found         The document numbers with a partial score.
+     * @param foundCount    The number of documents in found, at least k.
+     * @param k             The rank to be found.
+     * @return {k-th largest score, (k+1)-th largest score or 0.0}
+     */
+    private double[] getKthLargest(double[] partialScores, int[] found, int foundCount, int k) {
+        // The k+1 largest scores in descending order.
+        double[] largest = new double[k + 1];
+        for (int i = 0; i < foundCount; i++) {
+            double score = partialScores[found[i]];
+            if (score <= largest[k])
+                continue;
+            int j = k;
+            while (j > 0 && largest[j - 1] < score) {
+                largest[j] = largest[j - 1];
+                j--;
+            }
+            largest[j] = score;
+        }
+        return new double[] { largest[k - 1], largest[k] };
     }
 
     /**
@@ -198,12 +1512,18 @@ public class IndexSearcher {
      *         String[1] containins the sites calculated TfIdf score.
      */
     public List<String[]> searchQueryCosine(String query) {
-        Map<String, Double> weights = new TreeMap<>();
-        for (String word : query.split(" ")) {
-            weights.put(word, 1.0);
-        }
+        return searchQueryCosineResults(query).toStringArrays();
+    }
 
-        return searchQueryCosine(query, weights);
+    /**
+     * Find the sites of the index most relevant to the given search query by
+     * cosine similarity, see searchQueryCosine(String).
+     * 
+     * @param query The search query to be used.
+     * @return The found sites sorted by cosine similarity in decending order.
+     */
+    public SearchResults searchQueryCosineResults(String query) {
+        return searchQueryCosineResults(query, null);
     }
 
     /**
@@ -224,31 +1544,142 @@ public class IndexSearcher {
      *         String[1] containins the sites calculated search score.
      */
     public List<String[]> searchQueryCosinePageRank(String query, PageRankIndex pageRankIndex) {
-        LinkedList<String[]> results = new LinkedList<>();
-        List<String[]> cosineResults = searchQueryCosine(query);
-        double maxSimilarity = Double.NEGATIVE_INFINITY;
-        double maxPageRank = Double.NEGATIVE_INFINITY;
+        return searchQueryCosinePageRankResults(query, pageRankIndex).toStringArrays();
+    }
+
+    /**
+     * Find one page of the sites of the index most relevant to the given search
+     * query by cosine similarity: the results of searchQueryCosine() of the
+     * ranks offset to offset + limit. Only the first offset + limit results are
+     * selected, see searchQueryCosineTopK().
+     * 
+     * @param query  The search query to be used.
+     * @param offset The rank of the first result of the page.
+     * @param limit  The maximum number of results of the page.
+     * @return The results of the page sorted by cosine similarity in decending
+     *         order.
+     */
+    public SearchResults searchQueryCosinePage(String query, int offset, int limit) {
+        if (offset < 0 || limit < 0)
+            throw new IllegalArgumentException("IndexSearcher: The offset and limit can't be negative!");
+        int k = (int) Math.min(Integer.MAX_VALUE, (long) offset + limit);
+        SearchResults topResults = searchQueryCosineTopKResults(query, k);
+        return topResults.range(Math.min(offset, topResults.size()), topResults.size());
+    }
 
-        // Find the maximum similarity and pageRank in the search results.
-        for (String[] entry : cosineResults) {
-            double similarityScore = Double.parseDouble(entry[1]);
-            double pageRank = pageRankIndex.getPageRankOf(entry[0]);
-            maxSimilarity = max(similarityScore, maxSimilarity);
-            maxPageRank = max(pageRank, maxPageRank);
+    /**
+     * Find the next page of the sites of the index most relevant to the given
+     * search query by cosine similarity: the first limit results of
+     * searchQueryCosine() ranked behind the result the token was taken from, see
+     * SearchResults.getSearchAfterToken(). Deep pages only keep limit results
+     * while selecting them, no matter how many pages come before them.
+     * 
+     * @param query       The search query to be used.
+     * @param searchAfter The search after token of the last result of the page
+     *                    before, null for the first page.
+     * @param limit       The maximum number of results of the page.
+     * @return The results of the page sorted by cosine similarity in decending
+     *         order.
+     */
+    public SearchResults searchQueryCosineAfter(String query, String searchAfter, int limit) {
+        if (limit < 0)
+            throw new IllegalArgumentException("IndexSearcher: The limit can't be negative!");
+        if (searchAfter == null)
+            return searchQueryCosineTopKResults(query, limit);
+        SearchAfterToken after = SearchAfterToken.parse(searchAfter);
+        double[] scores = calcCosineScores(query, null);
+        TopKHeap topDocs = new TopKHeap(Math.min(limit, scores.length), this::compareIds);
+        for (int doc = 0; doc < scores.length; doc++) {
+            if (scores[doc] != 0.0 && index.isLive(doc) && after.ranksBefore(scores[doc], doc, index))
+                topDocs.offer(doc, scores[doc]);
         }
+        return SearchResults.of(topDocs, index);
+    }
+
+    /**
+     * Open a cursor over the pages of the results of searchQueryCosine().
+     * 
+     * @param query    The search query to be used.
+     * @param pageSize The number of results of each page.
+     * @return A cursor before the first page.
+     */
+    public SearchCursor openCursor(String query, int pageSize) {
+        return new SearchCursor(this, query, pageSize, null);
+    }
 
-        // Calculate the combined score.
-        for (String[] entry : cosineResults) {
-            double similarityScore = Double.parseDouble(entry[1]);
-            double pageRank = pageRankIndex.getPageRankOf(entry[0]);
-            results.addLast(new String[] { entry[0],
-                    Double.toString(similarityScore / maxSimilarity + pageRank / maxPageRank) });
+    /**
+     * Open a cursor over the pages of the results of searchQueryCosine() that
+     * resumes after a search after token.
+     * 
+     * @param query       The search query to be used.
+     * @param pageSize    The number of results of each page.
+     * @param searchAfter The search after token of the last result seen, see
+     *                    SearchCursor.getSearchAfterToken().
+     * @return A cursor before the page after the token.
+     */
+    public SearchCursor openCursor(String query, int pageSize, String searchAfter) {
+        return new SearchCursor(this, query, pageSize, searchAfter);
+    }
+
+    /**
+     * Find the sites of the index most relevant to the given search query by
+     * cosine similarity and page rank, see searchQueryCosinePageRank().
+     * 
+     * The combined score of a site is its cosine similarity divided by the
+     * largest similarity found plus its page rank divided by the largest page rank
+     * found. Sites with the same combined score are ordered by their url.
+     * 
+     * @param query         The search query to be used.
+     * @param pageRankIndex The PageRankIndex to be used, calcPageRanks() needs to
+     *                      be called first.
+     * @return The found sites sorted by combined score in decending order.
+     */
+    public SearchResults searchQueryCosinePageRankResults(String query, PageRankIndex pageRankIndex) {
+        return searchCached(QueryResultCache.Mode.COSINE_PAGE_RANK, query, null, pageRankIndex,
+                () -> rankCosinePageRank(query, pageRankIndex));
+    }
+
+    /**
+     * Rank the sites found by cosine similarity by their combined score, see
+     * searchQueryCosinePageRankResults().
+     * 
+     * @param query         The search query to be used.
+     * @param pageRankIndex The PageRankIndex to be used.
+     * @return The found sites sorted by combined score in decending order.
+     */
+    private SearchResults rankCosinePageRank(String query, PageRankIndex pageRankIndex) {
+        double[] scores = calcCosineScores(query, null);
+        int[] foundDocs = new int[scores.length];
+        int foundCount = 0;
+        for (int doc = 0; doc < scores.length; doc++) {
+            if (scores[doc] != 0.0 && index.isLive(doc))
+                foundDocs[foundCount++] = doc;
         }
+        double maxSimilarity = Double.NEGATIVE_INFINITY;
+        double maxPageRank = Double.NEGATIVE_INFINITY;
 
-        // Sort the results by the new searchscore.
-        Collections.sort(results, (entry, other) -> other[1].compareTo(entry[1]));
+        // Join the found documents with their page rank by URL id. If both indices
+        // share a UrlDictionary this is a plain array lookup.
+        UrlDictionary dictionary = pageRankIndex.getUrlDictionary();
+        boolean shared = dictionary == index.getUrlDictionary();
+        double[] pageRanks = new double[foundCount];
+        for (int i = 0; i < foundCount; i++) {
+            int doc = foundDocs[i];
+            int urlId = shared ? index.getUrlId(doc) : dictionary.getId(index.getDocumentId(doc));
+            pageRanks[i] = pageRankIndex.getPageRank(urlId);
+
+            // Find the maximum similarity and pageRank in the search results.
+            maxSimilarity = max(scores[doc], maxSimilarity);
+            maxPageRank = max(pageRanks[i], maxPageRank);
+        }
 
-        return results;
+        // Calculate the combined score and sort the results by it.
+        TopKHeap topDocs = new TopKHeap(foundCount, this::compareIds);
+        for (int i = 0; i < foundCount; i++) {
+            int doc = foundDocs[i];
+            topDocs.offer(doc, scores[doc] / maxSimilarity + pageRanks[i] / maxPageRank);
+        }
+        return SearchResults.of(topDocs, index);
     }
 
     /**
@@ -261,19 +1692,21 @@ public class IndexSearcher {
      * @return The cosine similarity score.
      */
     public double calcCosineSimilarity(List<Double> a, List<Double> b) {
-        double numerator = 0.0;
-        double denomA = 0.0;
-        double denomB = 0.0;
-        for (int i = 0; i < a.size(); i++) {
-            double ai = a.get(i);
-            double bi = b.get(i);
-            numerator += ai * bi;
-            denomA += Math.pow(ai, 2);
-            denomB += Math.pow(bi, 2);
-        }
-        if ((denomA == 0.0) || (denomB == 0.0) || (numerator == 0.0))
-            return 0.0;
-        return numerator / (Math.sqrt(denomA) * Math.sqrt(denomB));
+        return calcCosineSimilarity(toArray(a), toArray(b));
+    }
+
+    /**
+     * Find the cosine similarity between two given vectors, see
+     * ScoringKernels.cosine().
+     * 
+     * Assumes that a and b have the same number of entries.
+     * 
+     * @param a The first vector.
+     * @param b The second vector.
+     * @return The cosine similarity score.
+     */
+    public double calcCosineSimilarity(double[] a, double[] b) {
+        return ScoringKernels.getDefault().cosine(a, b, a.length);
     }
 
     /**
@@ -286,27 +1719,57 @@ public class IndexSearcher {
      * @return The cosine similarity score.
      */
     public double calcCosineSimilarityNormalized(List<Double> a, List<Double> b) {
-        double sum = 0.0;
-        for (int i = 0; i < a.size(); i++) {
-            double ai = a.get(i);
-            double bi = b.get(i);
-            sum += ai * bi;
-        }
-        return sum;
+        return calcCosineSimilarityNormalized(toArray(a), toArray(b));
     }
 
     /**
-     * Format foundSites into a List of String[2] with
-     * String[1] = each sites url
-     * String[2] = each sites search score
+     * Find the cosine similarity between two given normalized vectors, which is
+     * their dot product, see ScoringKernels.dot().
+     * 
+     * Assumes that a and b have the same number of entries.
      * 
-     * @param foundSites A list of tuples (searchScore, url) to be formated.
-     * @return The formated list of String[2].
+     * @param a The first vector.
+     * @param b The second vector.
+     * @return The cosine similarity score.
      */
-    private List<String[]> formatSearchOutput(List<Entry<Double, String>> foundSites) {
-        LinkedList<String[]> results = new LinkedList<>();
-        for (Entry<Double, String> entry : foundSites)
-            results.addLast(new String[] { entry.getValue(), entry.getKey().toString() });
-        return results;
+    public double calcCosineSimilarityNormalized(double[] a, double[] b) {
+        return ScoringKernels.getDefault().dot(a, b, a.length);
+    }
+
+    /**
+     * Copy a vector into a primitive array.
+     */
+    private static double[] toArray(List<Double> vector) {
+        double[] array = new double[vector.size()];
+        int i = 0;
+        for (double value : vector)
+            array[i++] = value;
+        return array;
+    }
+
+    /**
+     * Compare the ids of two documents.
+     */
+    private int compareIds(int doc, int other) {
+        return index.getDocumentId(doc).compareTo(index.getDocumentId(other));
+    }
+
+    /**
+     * Select the k live documents with the highest non zero search score. Only k
+     * documents are kept while selecting them, documents with the same score are
+     * ranked by their id.
+     * 
+     * @param scores The search score of each document number minus offset.
+     * @param offset The document number of scores[0].
+     * @param k      The maximum number of documents.
+     * @return The heap of the selected documents.
+     */
+    private TopKHeap selectTopDocs(double[] scores, int offset, int k) {
+        TopKHeap topDocs = new TopKHeap(Math.max(0, Math.min(k, scores.length)), this::compareIds);
+        for (int i = 0; i < scores.length; i++) {
+            if (scores[i] != 0.0 && index.isLive(offset + i))
+                topDocs.offer(offset + i, scores[i]);
+        }
+        return topDocs;
     }
 }
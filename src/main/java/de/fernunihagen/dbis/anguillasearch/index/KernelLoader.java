@@ -0,0 +1,28 @@
+package de.fernunihagen.dbis.anguillasearch.index;
+
+import static de.fernunihagen.dbis.anguillasearch.index.IndexConfig.VECTOR_KERNELS_PROPERTY;
+
+/**
+ * Selects the ScoringKernels once per JVM. SimdKernels is loaded by name, so
+ * the JVM doesn't need the module jdk.incubator.vector unless it is used.
+ */
+final class KernelLoader {
+    static final ScoringKernels VECTORIZED = loadVectorized();
+    static final ScoringKernels DEFAULT = VECTORIZED != null
+            && !"false".equalsIgnoreCase(System.getProperty(VECTOR_KERNELS_PROPERTY)) ? VECTORIZED
+                    : ScalarKernels.INSTANCE;
+
+    private KernelLoader() {
+    }
+
+    private static ScoringKernels loadVectorized() {
+        if (ModuleLayer.boot().findModule("jdk.incubator.vector").isEmpty())
+            return null;
+        try {
+            return (ScoringKernels) Class.forName(KernelLoader.class.getPackageName() + ".SimdKernels")
+                    .getDeclaredConstructor().newInstance();
+        } catch (ReflectiveOperationException | LinkageError e) {
+            return null;
+        }
+    }
+}
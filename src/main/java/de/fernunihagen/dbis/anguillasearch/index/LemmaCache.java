@@ -0,0 +1,59 @@
+package de.fernunihagen.dbis.anguillasearch.index;
+
+import static de.fernunihagen.dbis.anguillasearch.index.IndexConfig.LEMMA_CACHE_SIZE;
+
+import java.util.List;
+import java.util.Map;
+import java.util.WeakHashMap;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * A memo of the lemmas of query texts, so repeated queries aren't analyzed
+ * again. Each text is analyzed as a whole, the lemmas of a word may depend on
+ * the words around it like in the analyzed documents. One cache is shared by
+ * all IndexSearchers using the same Analyzer and can be used by multiple
+ * threads.
+ *
+ * The cache is bounded by LEMMA_CACHE_SIZE texts. If it is full it is cleared,
+ * the hot queries fill it again quickly.
+ */
+final class LemmaCache {
+    private static final Map<Analyzer, LemmaCache> CACHES = new WeakHashMap<>();
+
+    private final int maxSize;
+    private final ConcurrentHashMap<String, List<String>> lemmas = new ConcurrentHashMap<>();
+
+    LemmaCache(int maxSize) {
+        this.maxSize = maxSize;
+    }
+
+    /**
+     * Get the LemmaCache shared by all users of the given Analyzer.
+     */
+    static synchronized LemmaCache forAnalyzer(Analyzer analyzer) {
+        // The cache doesn't reference the Analyzer, so both can be collected.
+        return CACHES.computeIfAbsent(analyzer, key -> new LemmaCache(LEMMA_CACHE_SIZE));
+    }
+
+    /**
+     * Get the lemmas of a text, the text is only analyzed if it isn't cached
+     * yet.
+     *
+     * @param analyzer The Analyzer this cache belongs to.
+     * @param text     The lowercase text with single spaces between its words.
+     * @return The unmodifiable lemmas of the tokens of the text.
+     */
+    List<String> lemmatize(Analyzer analyzer, String text) {
+        List<String> textLemmas = lemmas.get(text);
+        if (textLemmas != null)
+            return textLemmas;
+
+        // Concurrent misses of one text may analyze it twice, but the analysis
+        // isn't run while holding a lock.
+        textLemmas = List.copyOf(analyzer.lemmatize(text));
+        if (lemmas.size() >= maxSize)
+            lemmas.clear();
+        lemmas.put(text, textLemmas);
+        return textLemmas;
+    }
+}
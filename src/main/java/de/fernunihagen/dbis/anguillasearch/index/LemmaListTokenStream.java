@@ -0,0 +1,47 @@
+package de.fernunihagen.dbis.anguillasearch.index;
+
+import java.util.Collections;
+import java.util.Iterator;
+
+/**
+ * A TokenStream over the lemmas an Analyzer returns by lemmatize(), for
+ * Analyzers that can't split a text without creating objects anyway.
+ */
+final class LemmaListTokenStream implements TokenStream {
+    private final Analyzer analyzer;
+    private Iterator<String> lemmas = Collections.emptyIterator();
+    private char[] buffer = new char[32];
+    private int length = 0;
+
+    LemmaListTokenStream(Analyzer analyzer) {
+        this.analyzer = analyzer;
+    }
+
+    @Override
+    public void reset(CharSequence text) {
+        lemmas = analyzer.lemmatize(text.toString()).iterator();
+        length = 0;
+    }
+
+    @Override
+    public boolean incrementToken() {
+        if (!lemmas.hasNext())
+            return false;
+        String lemma = lemmas.next();
+        length = lemma.length();
+        if (length > buffer.length)
+            buffer = new char[Math.max(length, buffer.length * 2)];
+        lemma.getChars(0, length, buffer, 0);
+        return true;
+    }
+
+    @Override
+    public char[] termBuffer() {
+        return buffer;
+    }
+
+    @Override
+    public int termLength() {
+        return length;
+    }
+}
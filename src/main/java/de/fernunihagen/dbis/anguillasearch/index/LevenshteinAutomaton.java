@@ -0,0 +1,139 @@
+package de.fernunihagen.dbis.anguillasearch.index;
+
+import java.util.Arrays;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.function.Predicate;
+
+/**
+ * Accepts the terms within a maximum Levenshtein distance of a word, i.e. the
+ * terms the word can be turned into by at most maxEdits insertions, deletions
+ * or substitutions of single characters.
+ *
+ * A state of the automaton is a row of the edit distance matrix: the distance
+ * between each prefix of the word and the characters read so far, capped at
+ * maxEdits + 1. A state whose smallest entry exceeds maxEdits is dead, no term
+ * starting with the characters read can be accepted.
+ *
+ * The automaton is intersected with a sorted TermDictionary by walking its
+ * terms in order. Terms sharing a prefix with the term before reuse its
+ * states, and once a prefix leads into a dead state the terms with that prefix
+ * are skipped without reading them, the walk seeks past them in the
+ * dictionary if there are many. Only the terms whose prefixes
+ * stay within reach of the word are visited. An automaton is not thread safe.
+ */
+final class LevenshteinAutomaton {
+    // Number of terms with a dead prefix skipped one by one before the walk
+    // seeks past the rest of them.
+    static final int SEEK_SKIPPED_TERMS = 2 * TermDictionary.BLOCK_SIZE;
+
+    private final String word;
+    private final int maxEdits;
+
+    // The walk over the dictionary: the state after each prefix of the last
+    // term, valid for its first validDepth characters.
+    private int[][] rows;
+    private String previous = "";
+    private int validDepth = 0;
+    private String deadPrefix;
+    private int skippedTerms;
+
+    /**
+     * Get a new LevenshteinAutomaton.
+     *
+     * @param word     The word to be matched.
+     * @param maxEdits The maximum edit distance of an accepted term.
+     */
+    LevenshteinAutomaton(String word, int maxEdits) {
+        if (maxEdits < 0)
+            throw new IllegalArgumentException("LevenshteinAutomaton: The edit distance can't be negative!");
+        this.word = word;
+        this.maxEdits = maxEdits;
+        rows = new int[word.length() + maxEdits + 2][];
+        rows[0] = new int[word.length() + 1];
+        for (int i = 0; i <= word.length(); i++)
+            rows[0][i] = Math.min(i, maxEdits + 1);
+    }
+
+    /**
+     * Read a character in the given state.
+     *
+     * @param row  The current state.
+     * @param c    The character read.
+     * @param next Filled with the next state.
+     * @return The smallest entry of the next state, the state is dead if it is
+     *         greater than maxEdits.
+     */
+    private int step(int[] row, char c, int[] next) {
+        next[0] = Math.min(row[0] + 1, maxEdits + 1);
+        int min = next[0];
+        for (int i = 1; i < row.length; i++) {
+            int substitution = row[i - 1] + (word.charAt(i - 1) == c ? 0 : 1);
+            next[i] = Math.min(maxEdits + 1, Math.min(substitution, Math.min(row[i], next[i - 1]) + 1));
+            min = Math.min(min, next[i]);
+        }
+        return min;
+    }
+
+    /**
+     * Find all terms of a dictionary within maxEdits of the word.
+     *
+     * @param dictionary The sorted terms.
+     * @param accept     Filters the terms found, e.g. terms without live
+     *                   documents.
+     * @return The edit distance of each accepted term, in dictionary order.
+     */
+    Map<String, Integer> intersect(TermDictionary dictionary, Predicate<String> accept) {
+        Map<String, Integer> found = new LinkedHashMap<>();
+        int id = 0;
+        deadPrefix = null;
+        while (id < dictionary.size()) {
+            boolean[] seek = new boolean[1];
+            dictionary.forEachTerm(id, dictionary.size(), term -> {
+                seek[0] = !visit(term, accept, found);
+                return !seek[0];
+            });
+            if (!seek[0])
+                break;
+            // Seek past every term starting with the dead prefix.
+            id = dictionary.getPrefixRange(deadPrefix)[1];
+            deadPrefix = null;
+        }
+        return found;
+    }
+
+    /**
+     * Read a term of the walk, starting from the state of the prefix it shares
+     * with the term before. Terms starting with the last dead prefix are
+     * skipped, a few of them cost less to compare than to seek past.
+     *
+     * @return False to seek past the terms starting with deadPrefix.
+     */
+    private boolean visit(String term, Predicate<String> accept, Map<String, Integer> found) {
+        if (deadPrefix != null && term.startsWith(deadPrefix))
+            return ++skippedTerms < SEEK_SKIPPED_TERMS;
+        deadPrefix = null;
+        int depth = 0;
+        int shared = Math.min(validDepth, term.length());
+        while (depth < shared && previous.charAt(depth) == term.charAt(depth))
+            depth++;
+        previous = term;
+        for (; depth < term.length(); depth++) {
+            if (depth + 1 >= rows.length)
+                rows = Arrays.copyOf(rows, Math.max(depth + 2, 2 * rows.length));
+            if (rows[depth + 1] == null)
+                rows[depth + 1] = new int[word.length() + 1];
+            if (step(rows[depth], term.charAt(depth), rows[depth + 1]) > maxEdits) {
+                validDepth = depth;
+                deadPrefix = term.substring(0, depth + 1);
+                skippedTerms = 0;
+                return true;
+            }
+        }
+        validDepth = term.length();
+        int distance = rows[term.length()][word.length()];
+        if (distance <= maxEdits && accept.test(term))
+            found.put(term, distance);
+        return true;
+    }
+}
@@ -0,0 +1,457 @@
+package de.fernunihagen.dbis.anguillasearch.index;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.List;
+
+import static de.fernunihagen.dbis.anguillasearch.index.IndexConfig.*;
+import static de.fernunihagen.dbis.anguillasearch.index.IndexFile.*;
+import de.fernunihagen.dbis.anguillasearch.helpers.UrlDictionary;
+
+
+/**
+ * A read only reverse index backed by a memory mapped index file written by
+ * VectorIndex.save().
+ *
+ * Opening the index only maps the file and reads its header, nothing is
+ * deserialized into heap objects. Terms and URLs are found by binary search
+ * directly on the mapped bytes (the terms through a front coded
+ * TermDictionary) and posting lists are read in place, so the index is served
+ * straight from the page cache.
+ *
+ * Both the plain and the compressed (BlockPostings) posting layout can be
+ * read.
+ * 
+ * Instead of mapping a file, loadOffHeap() copies a finished index into a
+ * direct buffer. Either way the postings, norms, URLs and terms live outside of
+ * the Java heap and are never scanned by the garbage collector.
+ *
+ * @author Nico Beyer
+ */
+public class MappedVectorIndex implements SearchableIndex {
+    private final ByteBuffer buffer;
+    private final boolean normalized;
+    private final boolean compressed;
+    private final int docCount;
+    private final int termCount;
+
+    // Start positions of the sections in the file.
+    private final int urlStarts;
+    private final int docsByUrl;
+    private final int norms;
+    private final int postingStarts;
+    private final int postingData;
+    private final int postingWeights;
+    private final int urlData;
+    private final TermDictionary termDictionary;
+    private ImpactPostings impactPostings = null;
+
+    private List<String> specialCharacters;
+    private List<String> stopwords;
+    private Analyzer analyzer;
+
+    /**
+     * An iterator over a posting list read directly from the mapped file.
+     */
+    private class MappedPostingsIterator implements PostingsIterator {
+        private final int start;
+        private final int end;
+        private int pos;
+        private int doc = -1;
+
+        /**
+         * Create a new iterator over the postings [start..end) of the file.
+         *
+         * @param start The first posting of the list (inclusive).
+         * @param end   The last posting of the list (exclusive).
+         */
+        MappedPostingsIterator(int start, int end) {
+            this.start = start;
+            this.end = end;
+            this.pos = start - 1;
+        }
+
+        @Override
+        public int docId() {
+            return doc;
+        }
+
+        @Override
+        public int nextDoc() {
+            pos++;
+            doc = pos < end ? buffer.getInt(postingData + pos * Integer.BYTES) : NO_MORE_DOCS;
+            return doc;
+        }
+
+        @Override
+        public int advance(int target) {
+            // Gallop from the current position, see ArrayPostingsIterator.advance().
+            int low = Math.max(pos + 1, start);
+            int high = low;
+            int step = 1;
+            while (high < end && buffer.getInt(postingData + high * Integer.BYTES) < target) {
+                low = high + 1;
+                high = end - high <= step ? end : high + step;
+                step <<= 1;
+            }
+            high--;
+            while (low <= high) {
+                int mid = (low + high) >>> 1;
+                if (buffer.getInt(postingData + mid * Integer.BYTES) < target)
+                    low = mid + 1;
+                else
+                    high = mid - 1;
+            }
+            pos = low;
+            doc = pos < end ? buffer.getInt(postingData + pos * Integer.BYTES) : NO_MORE_DOCS;
+            return doc;
+        }
+
+        @Override
+        public double weight() {
+            return buffer.getDouble(postingWeights + pos * Double.BYTES);
+        }
+
+        @Override
+        public int cost() {
+            return end - start;
+        }
+    }
+
+    /**
+     * Create a new index on the given mapped index file content.
+     *
+     * @param buffer The mapped content of the index file.
+     * @throws IOException If the content is not a valid index file.
+     */
+    private MappedVectorIndex(ByteBuffer buffer) throws IOException {
+        this.buffer = buffer;
+        if (buffer.capacity() < HEADER_SIZE || buffer.getInt(0) != MAGIC)
+            throw new IOException("index file: Not an index file!");
+        if (buffer.getInt(4) != VERSION)
+            throw new IOException("index file: Unsupported version " + buffer.getInt(4) + "!");
+
+        normalized = (buffer.getInt(8) & FLAG_NORMALIZED) != 0;
+        compressed = (buffer.getInt(8) & FLAG_COMPRESSED) != 0;
+        docCount = buffer.getInt(12);
+        termCount = buffer.getInt(16);
+        int postingCount = buffer.getInt(20);
+        int postingBytes = buffer.getInt(24);
+        int urlBytes = buffer.getInt(28);
+
+        urlStarts = HEADER_SIZE;
+        docsByUrl = urlStarts + (docCount + 1) * Integer.BYTES;
+        norms = docsByUrl + docCount * Integer.BYTES;
+        postingStarts = norms + docCount * Double.BYTES;
+        postingData = postingStarts + (termCount + 1) * Integer.BYTES;
+        postingWeights = postingData + postingCount * Integer.BYTES;
+        urlData = postingData + postingBytes;
+        int termData = urlData + urlBytes;
+
+        if (termData + buffer.getInt(32) != buffer.capacity())
+            throw new IOException("index file: File is truncated or corrupt!");
+        termDictionary = new TermDictionary(buffer, termData);
+
+        this.specialCharacters = REVERSEINDEX_SPECIAL_CHARACTERS;
+        this.stopwords = REVERSEINDEX_STOPWORDS;
+        // Queries need to be analyzed like the documents of the file.
+        analyzer = createAnalyzer(buffer.getInt(36));
+    }
+
+    /**
+     * Open an index file written by VectorIndex.save().
+     *
+     * @param file The path of the index file.
+     * @return The index backed by the mapped file.
+     * @throws IOException If the file can't be read or is not a valid index file.
+     */
+    public static MappedVectorIndex open(Path file) throws IOException {
+        try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ)) {
+            // The mapping stays valid after the channel has been closed.
+            return new MappedVectorIndex(channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size()));
+        }
+    }
+
+    /**
+     * Copy a finished index into a direct buffer outside of the Java heap, without
+     * writing an index file.
+     * 
+     * @param index      The finished index to be copied, e.g. a VectorIndex.
+     * @param compressed If true the posting lists will be stored as
+     *                   BlockPostings.
+     * @return The index backed by the direct buffer.
+     * @throws IOException If the index can't be copied.
+     */
+    public static MappedVectorIndex loadOffHeap(SearchableIndex index, boolean compressed) throws IOException {
+        return new MappedVectorIndex(IndexFile.writeDirect(index, compressed));
+    }
+
+    /**
+     * Get the memory this index uses outside of the Java heap, either mapped or
+     * direct.
+     * 
+     * @return The size of the index image in bytes.
+     */
+    public long getOffHeapSize() {
+        return buffer.capacity();
+    }
+
+    /**
+     * Get the int at position i of the int array starting at section.
+     *
+     * @param section The start of the section.
+     * @param i       The position in the section.
+     * @return The int found.
+     */
+    private int intAt(int section, int i) {
+        return buffer.getInt(section + i * Integer.BYTES);
+    }
+
+    /**
+     * Decode the i-th string stored back to back in data.
+     *
+     * @param starts The section holding the offsets of the strings.
+     * @param data   The section holding the encoded strings.
+     * @param i      The position of the string.
+     * @return The decoded string.
+     */
+    private String stringAt(int starts, int data, int i) {
+        int start = intAt(starts, i);
+        byte[] bytes = new byte[intAt(starts, i + 1) - start];
+        buffer.get(data + start, bytes);
+        return new String(bytes, StandardCharsets.UTF_8);
+    }
+
+    /**
+     * Compare the given key bytewise with the i-th string stored in data.
+     *
+     * @param key    The encoded key.
+     * @param starts The section holding the offsets of the strings.
+     * @param data   The section holding the encoded strings.
+     * @param i      The position of the string.
+     * @return A negative number, zero or a positive number if key is less, equal
+     *         or greater than the stored string.
+     */
+    private int compareAt(byte[] key, int starts, int data, int i) {
+        int start = data + intAt(starts, i);
+        int length = intAt(starts, i + 1) - intAt(starts, i);
+        int n = Math.min(key.length, length);
+        for (int j = 0; j < n; j++) {
+            int cmp = Byte.toUnsignedInt(key[j]) - Byte.toUnsignedInt(buffer.get(start + j));
+            if (cmp != 0)
+                return cmp;
+        }
+        return key.length - length;
+    }
+
+    @Override
+    public int getNrOfSites() {
+        return docCount;
+    }
+
+    @Override
+    public int getDocumentCapacity() {
+        return docCount;
+    }
+
+    /**
+     * Index files only hold live documents.
+     * 
+     * @param doc The document number.
+     * @return Always true.
+     */
+    @Override
+    public boolean isLive(int doc) {
+        return true;
+    }
+
+    @Override
+    public int getNrOfTerms() {
+        return termCount;
+    }
+
+    @Override
+    public boolean isNormalized() {
+        return normalized;
+    }
+
+    @Override
+    public String getDocumentId(int doc) {
+        return stringAt(urlStarts, urlData, doc);
+    }
+
+    @Override
+    public int getDocumentNr(String documentId) {
+        byte[] key = documentId.getBytes(StandardCharsets.UTF_8);
+        int low = 0;
+        int high = docCount - 1;
+        while (low <= high) {
+            int mid = (low + high) >>> 1;
+            int doc = intAt(docsByUrl, mid);
+            int cmp = compareAt(key, urlStarts, urlData, doc);
+            if (cmp == 0)
+                return doc;
+            if (cmp > 0)
+                low = mid + 1;
+            else
+                high = mid - 1;
+        }
+        return -1;
+    }
+
+    /**
+     * A mapped index stores its URLs in the index file and has no UrlDictionary.
+     * 
+     * @return Always null.
+     */
+    @Override
+    public UrlDictionary getUrlDictionary() {
+        return null;
+    }
+
+    @Override
+    public int getUrlId(int doc) {
+        return -1;
+    }
+
+    @Override
+    public String getTerm(int termId) {
+        return termDictionary.getTerm(termId);
+    }
+
+    @Override
+    public int getTermId(String token) {
+        return termDictionary.getTermId(token);
+    }
+
+    /**
+     * Get the sorted term dictionary of this index. The ids of the dictionary are
+     * the term numbers of this index.
+     *
+     * @return The term dictionary.
+     */
+    @Override
+    public TermDictionary getTermDictionary() {
+        return termDictionary;
+    }
+
+    @Override
+    public int getDocFrequency(int termId) {
+        if (compressed)
+            return BlockPostings.docCount(buffer, postingData + intAt(postingStarts, termId));
+        return intAt(postingStarts, termId + 1) - intAt(postingStarts, termId);
+    }
+
+    @Override
+    public PostingsIterator getPostings(int termId) {
+        if (compressed)
+            return new BlockPostings.Iterator(buffer, postingData + intAt(postingStarts, termId));
+        return new MappedPostingsIterator(intAt(postingStarts, termId), intAt(postingStarts, termId + 1));
+    }
+
+    /**
+     * Additionally keep the posting lists ordered by descending impact on the heap,
+     * so IndexSearcher.searchQueryCosineTopK() can stop early.
+     */
+    public void orderByImpact() {
+        impactPostings = ImpactPostings.build(this);
+    }
+
+    @Override
+    public boolean hasPositions() {
+        return false;
+    }
+
+    @Override
+    public int[] getPositions(int termId, int doc) {
+        throw new UnsupportedOperationException("MappedVectorIndex: Index files store no token positions!");
+    }
+
+    @Override
+    public ImpactPostings getImpactPostings() {
+        return impactPostings;
+    }
+
+    /**
+     * Check if the posting lists of this index are compressed.
+     *
+     * @return True if the posting lists are stored as BlockPostings.
+     */
+    public boolean isCompressed() {
+        return compressed;
+    }
+
+    /**
+     * Get the size of all posting lists in the index file.
+     *
+     * @return The size of the posting lists in bytes.
+     */
+    public int getPostingsSize() {
+        return urlData - postingData;
+    }
+
+    @Override
+    public double getNorm(int doc) {
+        return buffer.getDouble(norms + doc * Double.BYTES);
+    }
+
+    /**
+     * Check if token is contained in the index.
+     *
+     * @param token The token to be checked for.
+     * @return True if the token is contained, else false.
+     */
+    public boolean containsToken(String token) {
+        return getTermId(token) != -1;
+    }
+
+    /**
+     * Get the TfIdf score for the given token for the given document id.
+     *
+     * @param token The (token-) word to be checked for.
+     * @param docId The document id of the TfIdf score.
+     * @return The found TfIdf score or null if either the token is not in the
+     *         document or the document is not in the index.
+     */
+    public Double getTfIdfOf(String token, String docId) {
+        int termId = getTermId(token);
+        int doc = getDocumentNr(docId);
+        if (termId == -1 || doc == -1)
+            return null;
+
+        PostingsIterator postings = getPostings(termId);
+        if (postings.advance(doc) != doc)
+            return null;
+        return postings.weight();
+    }
+
+    @Override
+    public List<String> getSpecialCharacters() {
+        return this.specialCharacters;
+    }
+
+    @Override
+    public List<String> getStopWords() {
+        return this.stopwords;
+    }
+
+    @Override
+    public Analyzer getAnalyzer() {
+        return this.analyzer;
+    }
+
+    /**
+     * Get the generation of this index. A MappedVectorIndex can't be changed, so
+     * its generation stays the same.
+     *
+     * @return Always 0.
+     */
+    @Override
+    public long getGeneration() {
+        return 0;
+    }
+}
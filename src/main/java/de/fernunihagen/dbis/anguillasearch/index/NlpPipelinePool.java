@@ -0,0 +1,124 @@
+package de.fernunihagen.dbis.anguillasearch.index;
+
+import static de.fernunihagen.dbis.anguillasearch.index.IndexConfig.NLP_PIPELINE_POOL_SIZE;
+import static de.fernunihagen.dbis.anguillasearch.index.IndexConfig.REVERSEINDEX_PIPELINE_ANNOTATORS;
+
+import java.util.Properties;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+
+import edu.stanford.nlp.pipeline.StanfordCoreNLP;
+
+/**
+ * A bounded pool of StanfordCoreNLP pipelines shared by all CoreNlpAnalyzers
+ * of the process.
+ *
+ * Creating a pipeline loads the part of speech model, which takes seconds and
+ * a lot of heap. The pool creates its pipelines lazily on the first borrow()
+ * that finds no idle pipeline, so the models are only loaded once they are
+ * needed and only once per process. A borrowed pipeline is used by a single
+ * thread until it is released, further threads wait if all pipelines of the
+ * pool are in use.
+ *
+ * @author Nico Beyer
+ */
+public final class NlpPipelinePool {
+    private final int size;
+    private final BlockingQueue<StanfordCoreNLP> idle;
+    private int created = 0;
+
+    /**
+     * Holds the shared pool, which is only created on the first call of
+     * getShared().
+     */
+    private static final class Shared {
+        private static final NlpPipelinePool POOL = new NlpPipelinePool(NLP_PIPELINE_POOL_SIZE);
+    }
+
+    /**
+     * Create a new empty pool.
+     *
+     * @param size The maximum number of pipelines of the pool.
+     */
+    public NlpPipelinePool(int size) {
+        if (size < 1)
+            throw new IllegalArgumentException("NlpPipelinePool: The pool needs at least one pipeline!");
+        this.size = size;
+        this.idle = new ArrayBlockingQueue<>(size);
+    }
+
+    /**
+     * Get the pool shared by the whole process.
+     *
+     * @return The shared pool.
+     */
+    public static NlpPipelinePool getShared() {
+        return Shared.POOL;
+    }
+
+    /**
+     * Take a pipeline out of the pool. Creates a new pipeline if none is idle and
+     * the pool is not full yet, waits for a released pipeline otherwise. The
+     * pipeline needs to be given back with release() after use.
+     *
+     * @return A pipeline only used by the calling thread until it is released.
+     */
+    public StanfordCoreNLP borrow() {
+        StanfordCoreNLP pipeline = idle.poll();
+        if (pipeline != null)
+            return pipeline;
+        synchronized (this) {
+            if (created < size) {
+                created++;
+                try {
+                    return createPipeline();
+                } catch (RuntimeException e) {
+                    created--;
+                    throw e;
+                }
+            }
+        }
+        try {
+            return idle.take();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IllegalStateException("NlpPipelinePool: Interrupted while waiting for a pipeline!", e);
+        }
+    }
+
+    /**
+     * Give a borrowed pipeline back to the pool.
+     *
+     * @param pipeline The pipeline returned by borrow().
+     */
+    public void release(StanfordCoreNLP pipeline) {
+        idle.offer(pipeline);
+    }
+
+    /**
+     * Get the maximum number of pipelines of the pool.
+     *
+     * @return The size of the pool.
+     */
+    public int getSize() {
+        return size;
+    }
+
+    /**
+     * Get the number of pipelines the pool created so far.
+     *
+     * @return The number of created pipelines.
+     */
+    public synchronized int getCreatedPipelines() {
+        return created;
+    }
+
+    /**
+     * Create a new pipeline running the annotators of the indices.
+     */
+    private static StanfordCoreNLP createPipeline() {
+        Properties props = new Properties();
+        props.setProperty("annotators", REVERSEINDEX_PIPELINE_ANNOTATORS);
+        return new StanfordCoreNLP(props);
+    }
+}
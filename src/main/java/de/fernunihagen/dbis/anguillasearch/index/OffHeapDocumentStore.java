@@ -0,0 +1,134 @@
+package de.fernunihagen.dbis.anguillasearch.index;
+
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+
+import de.fernunihagen.dbis.anguillasearch.helpers.Site;
+
+/**
+ * An append only store of Sites outside of the Java heap.
+ *
+ * Each Site is serialized into a direct ByteBuffer, the Java heap only holds
+ * the two buffer handles. get() decodes a new Site object on every call. The
+ * token vector of a Site is not stored.
+ *
+ * <pre>
+ * starts  int[size]   offset of each record in data
+ * data    record*     string url, string title, int headingCount,
+ *                     string[headingCount] headings, string paragraphs
+ * string  int length (-1 for null), byte[length] UTF-8
+ * </pre>
+ *
+ * @author Nico Beyer
+ */
+public class OffHeapDocumentStore {
+    private final DirectBufferOutputStream data = new DirectBufferOutputStream(1 << 16);
+    private final DirectBufferOutputStream starts = new DirectBufferOutputStream(1 << 12);
+    private int size = 0;
+
+    /**
+     * Create a new empty OffHeapDocumentStore.
+     */
+    public OffHeapDocumentStore() {
+        // The buffers are allocated with the fields.
+    }
+
+    /**
+     * Append a Site to the store.
+     *
+     * @param site The Site to be stored.
+     * @return The number of the stored Site.
+     */
+    public int add(Site site) {
+        starts.writeInt(data.size());
+        writeString(site.url);
+        writeString(site.title);
+        if (site.headings == null)
+            data.writeInt(-1);
+        else {
+            data.writeInt(site.headings.size());
+            for (String heading : site.headings)
+                writeString(heading);
+        }
+        writeString(site.paragraphs);
+        return size++;
+    }
+
+    /**
+     * Decode the Site with the given number.
+     *
+     * @param doc The number of the Site.
+     * @return A new Site object holding the stored content.
+     * @throws IndexOutOfBoundsException If no Site has the given number.
+     */
+    public Site get(int doc) throws IndexOutOfBoundsException {
+        if (doc < 0 || doc >= size)
+            throw new IndexOutOfBoundsException("OffHeapDocumentStore: No Site with number " + doc + "!");
+        ByteBuffer buffer = data.getBuffer();
+        int[] pos = { starts.getBuffer().getInt(doc * Integer.BYTES) };
+        String url = readString(buffer, pos);
+        String title = readString(buffer, pos);
+        int headingCount = buffer.getInt(pos[0]);
+        pos[0] += Integer.BYTES;
+        List<String> headings = null;
+        if (headingCount >= 0) {
+            headings = new ArrayList<>(headingCount);
+            for (int i = 0; i < headingCount; i++)
+                headings.add(readString(buffer, pos));
+        }
+        return new Site(url, title, headings, readString(buffer, pos));
+    }
+
+    /**
+     * Get the number of stored Sites.
+     *
+     * @return The number of Sites.
+     */
+    public int size() {
+        return size;
+    }
+
+    /**
+     * Get the memory reserved outside of the Java heap.
+     *
+     * @return The capacity of the buffers in bytes.
+     */
+    public long getOffHeapSize() {
+        return (long) data.capacity() + starts.capacity();
+    }
+
+    /**
+     * Append a string, null is stored with length -1.
+     *
+     * @param value The string to be written.
+     */
+    private void writeString(String value) {
+        if (value == null) {
+            data.writeInt(-1);
+            return;
+        }
+        byte[] bytes = value.getBytes(StandardCharsets.UTF_8);
+        data.writeInt(bytes.length);
+        data.write(bytes, 0, bytes.length);
+    }
+
+    /**
+     * Read a string written by writeString().
+     *
+     * @param buffer The buffer to be read from.
+     * @param pos    The read position, advanced past the string.
+     * @return The string read.
+     */
+    private static String readString(ByteBuffer buffer, int[] pos) {
+        int length = buffer.getInt(pos[0]);
+        pos[0] += Integer.BYTES;
+        if (length == -1)
+            return null;
+        byte[] bytes = new byte[length];
+        buffer.get(pos[0], bytes);
+        pos[0] += length;
+        return new String(bytes, StandardCharsets.UTF_8);
+    }
+}
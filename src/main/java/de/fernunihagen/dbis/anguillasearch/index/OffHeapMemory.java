@@ -0,0 +1,55 @@
+package de.fernunihagen.dbis.anguillasearch.index;
+
+import java.lang.management.BufferPoolMXBean;
+import java.lang.management.ManagementFactory;
+
+/**
+ * Reports the memory the JVM uses outside of the Java heap for direct and
+ * memory mapped ByteBuffers, e.g. by an OffHeapDocumentStore or a
+ * MappedVectorIndex.
+ */
+public final class OffHeapMemory {
+    private OffHeapMemory() {
+    }
+
+    /**
+     * Get the memory used by all direct ByteBuffers of the JVM.
+     *
+     * @return The used direct memory in bytes.
+     */
+    public static long getDirectMemoryUsed() {
+        return getPoolMemoryUsed("direct");
+    }
+
+    /**
+     * Get the memory used by all memory mapped ByteBuffers of the JVM.
+     *
+     * @return The used mapped memory in bytes.
+     */
+    public static long getMappedMemoryUsed() {
+        return getPoolMemoryUsed("mapped");
+    }
+
+    /**
+     * Format the off heap memory usage for logging.
+     *
+     * @return A one line report of the direct and mapped memory used.
+     */
+    public static String report() {
+        return String.format("off heap memory: direct %.1f MB, mapped %.1f MB", getDirectMemoryUsed() / 1e6,
+                getMappedMemoryUsed() / 1e6);
+    }
+
+    /**
+     * Get the memory used by the buffer pool with the given name.
+     *
+     * @param name The name of the pool.
+     * @return The used memory in bytes or 0 if the pool doesn't exist.
+     */
+    private static long getPoolMemoryUsed(String name) {
+        for (BufferPoolMXBean pool : ManagementFactory.getPlatformMXBeans(BufferPoolMXBean.class))
+            if (pool.getName().equals(name))
+                return pool.getMemoryUsed();
+        return 0;
+    }
+}
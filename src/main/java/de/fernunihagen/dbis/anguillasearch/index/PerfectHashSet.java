@@ -0,0 +1,156 @@
+package de.fernunihagen.dbis.anguillasearch.index;
+
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.LinkedHashSet;
+
+/**
+ * An immutable set of words that is looked up by characters, e.g. the current
+ * token of a TokenStream, without creating a String.
+ *
+ * The hash function is seeded and the table sized so that no two words share a
+ * slot. The seed changes the multiplier of every character, so words colliding
+ * under one seed are separated by another. A lookup therefore hashes the characters once and compares them with
+ * at most one word. Each word has a number, the index of the word in the order
+ * it was given in, so the set can be used as a map to a parallel array as well.
+ */
+final class PerfectHashSet {
+    private static final int MAX_SEEDS = 64;
+    // The largest table tried, in slots per word.
+    private static final int MAX_SLOTS_PER_WORD = 64;
+
+    private final String[] words;
+    // The number of the word in each slot, -1 for empty slots.
+    private final int[] table;
+    private final int mask;
+    private final int seed;
+
+    /**
+     * Build a new set of the given words. Duplicate words are only stored once.
+     *
+     * @param wordList The words of the set.
+     * @throws IllegalArgumentException If no seed places the words without a
+     *                                  collision.
+     */
+    PerfectHashSet(Collection<String> wordList) {
+        this.words = new LinkedHashSet<>(wordList).toArray(new String[0]);
+        int size = Integer.highestOneBit(Math.max(1, words.length * 2 - 1)) << 1;
+        long maxSize = Math.max(size, (long) words.length * MAX_SLOTS_PER_WORD);
+        while (size <= maxSize) {
+            for (int s = 1; s <= MAX_SEEDS; s++) {
+                int[] slots = fill(size, s);
+                if (slots != null) {
+                    this.table = slots;
+                    this.mask = size - 1;
+                    this.seed = s;
+                    return;
+                }
+            }
+            size <<= 1;
+        }
+        throw new IllegalArgumentException("PerfectHashSet: No seed places the " + words.length
+                + " words without a collision!");
+    }
+
+    /**
+     * Try to place all words into a table of the given size without a collision.
+     *
+     * @return The filled table or null if two words share a slot.
+     */
+    private int[] fill(int size, int s) {
+        int[] slots = new int[size];
+        Arrays.fill(slots, -1);
+        for (int i = 0; i < words.length; i++) {
+            int slot = hash(s, words[i], 0, words[i].length()) & (size - 1);
+            if (slots[slot] != -1)
+                return null;
+            slots[slot] = i;
+        }
+        return slots;
+    }
+
+    /**
+     * Find the number of the word stored in buffer[offset..offset+length).
+     *
+     * @param buffer The characters of the word.
+     * @param offset The start of the word in buffer.
+     * @param length The length of the word.
+     * @return The number of the word or -1 if it isn't contained.
+     */
+    int indexOf(char[] buffer, int offset, int length) {
+        int index = table[hash(seed, buffer, offset, length) & mask];
+        if (index == -1)
+            return -1;
+        String word = words[index];
+        if (word.length() != length)
+            return -1;
+        for (int i = 0; i < length; i++)
+            if (word.charAt(i) != buffer[offset + i])
+                return -1;
+        return index;
+    }
+
+    /**
+     * Find the number of the given word.
+     *
+     * @param word The word to be found.
+     * @return The number of the word or -1 if it isn't contained.
+     */
+    int indexOf(CharSequence word) {
+        int index = table[hash(seed, word, 0, word.length()) & mask];
+        return index != -1 && words[index].contentEquals(word) ? index : -1;
+    }
+
+    /**
+     * Check if the word stored in buffer[offset..offset+length) is contained.
+     */
+    boolean contains(char[] buffer, int offset, int length) {
+        return indexOf(buffer, offset, length) != -1;
+    }
+
+    /**
+     * Check if the given word is contained.
+     */
+    boolean contains(CharSequence word) {
+        return indexOf(word) != -1;
+    }
+
+    /**
+     * Get the word with the given number.
+     */
+    String get(int index) {
+        return words[index];
+    }
+
+    /**
+     * Get the number of words of the set.
+     */
+    int size() {
+        return words.length;
+    }
+
+    private static int hash(int seed, CharSequence chars, int offset, int length) {
+        int h = seed;
+        for (int i = offset; i < offset + length; i++)
+            h = (h ^ chars.charAt(i)) * (0x01000193 + 2 * seed);
+        return mix(h, seed);
+    }
+
+    private static int hash(int seed, char[] chars, int offset, int length) {
+        int h = seed;
+        for (int i = offset; i < offset + length; i++)
+            h = (h ^ chars[i]) * (0x01000193 + 2 * seed);
+        return mix(h, seed);
+    }
+
+    /**
+     * Spread the bits of a hash so the low bits used for the slot depend on all
+     * characters.
+     */
+    private static int mix(int h, int seed) {
+        h ^= h >>> 16;
+        h *= 0x85ebca6b + 2 * seed;
+        h ^= h >>> 13;
+        return h;
+    }
+}
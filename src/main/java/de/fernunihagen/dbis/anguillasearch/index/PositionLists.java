@@ -0,0 +1,103 @@
+package de.fernunihagen.dbis.anguillasearch.index;
+
+import java.nio.ByteBuffer;
+
+/**
+ * A compressed format for the token positions of a document.
+ *
+ * The positions of all terms of a document are stored in one byte array, in
+ * the order of the documents term numbers. Each position list holds the number
+ * of positions followed by the gaps between the ascending positions, all as
+ * variable length ints, so most positions take a single byte.
+ *
+ * <pre>
+ * list    varint count, varint[count] gaps
+ * </pre>
+ */
+final class PositionLists {
+    private PositionLists() {
+    }
+
+    /**
+     * Encode the position lists of a document from its tokens sorted by term.
+     *
+     * @param tokens The tokens of the document, each with the term number in the
+     *               upper and the position in the lower 32 bits, in ascending
+     *               order.
+     * @param count  The number of tokens.
+     * @param starts Filled with the start of each list in the returned data,
+     *               followed by the end of the last list. Needs to hold the
+     *               number of different terms + 1 values.
+     * @param out    A reused buffer for the encoded lists.
+     * @return The encoded position lists.
+     */
+    static byte[] encode(long[] tokens, int count, int[] starts, ByteBuffer out) {
+        out.clear();
+        int list = 0;
+        int i = 0;
+        while (i < count) {
+            int term = (int) (tokens[i] >>> 32);
+            int end = i + 1;
+            while (end < count && (int) (tokens[end] >>> 32) == term)
+                end++;
+            starts[list++] = out.position();
+            writeVarInt(out, end - i);
+            int prev = 0;
+            for (; i < end; i++) {
+                int position = (int) tokens[i];
+                writeVarInt(out, position - prev);
+                prev = position;
+            }
+        }
+        starts[list] = out.position();
+        byte[] data = new byte[out.position()];
+        out.flip();
+        out.get(data);
+        return data;
+    }
+
+    /**
+     * Decode a single position list.
+     *
+     * @param data  The encoded position lists of a document.
+     * @param start The start of the list in data.
+     * @return The ascending positions.
+     */
+    static int[] decode(byte[] data, int start) {
+        int[] pos = { start };
+        int[] positions = new int[readVarInt(data, pos)];
+        int position = 0;
+        for (int i = 0; i < positions.length; i++) {
+            position += readVarInt(data, pos);
+            positions[i] = position;
+        }
+        return positions;
+    }
+
+    /**
+     * Put an unsigned variable length int, 7 bits per byte. The buffer needs to
+     * have room for 5 bytes.
+     */
+    private static void writeVarInt(ByteBuffer out, int value) {
+        while ((value & ~0x7F) != 0) {
+            out.put((byte) ((value & 0x7F) | 0x80));
+            value >>>= 7;
+        }
+        out.put((byte) value);
+    }
+
+    /**
+     * Read a variable length int at pos[0] and advance pos[0] past it.
+     */
+    private static int readVarInt(byte[] data, int[] pos) {
+        int value = 0;
+        int shift = 0;
+        byte b;
+        do {
+            b = data[pos[0]++];
+            value |= (b & 0x7F) << shift;
+            shift += 7;
+        } while (b < 0);
+        return value;
+    }
+}
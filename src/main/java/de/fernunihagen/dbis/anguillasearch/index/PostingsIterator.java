@@ -0,0 +1,54 @@
+package de.fernunihagen.dbis.anguillasearch.index;
+
+/**
+ * A PostingsIterator walks over the posting list of a single term in ascending
+ * order of document numbers. Each posting holds the document number and the
+ * weight (TFIDF score) of the term in that document.
+ *
+ * Before the first call of nextDoc() or advance() the iterator is not
+ * positioned and docId() returns -1.
+ */
+public interface PostingsIterator {
+    /**
+     * The document number returned once all postings have been visited.
+     */
+    int NO_MORE_DOCS = Integer.MAX_VALUE;
+
+    /**
+     * Get the document number of the current posting.
+     *
+     * @return The current document number, -1 if the iterator is not positioned
+     *         yet or NO_MORE_DOCS if the iterator is exhausted.
+     */
+    int docId();
+
+    /**
+     * Move on to the next posting.
+     *
+     * @return The document number of the next posting or NO_MORE_DOCS.
+     */
+    int nextDoc();
+
+    /**
+     * Move on to the first posting with a document number greater or equal to
+     * target.
+     *
+     * @param target The document number to be advanced to.
+     * @return The document number of the found posting or NO_MORE_DOCS.
+     */
+    int advance(int target);
+
+    /**
+     * Get the weight of the term in the current document.
+     *
+     * @return The weight of the current posting.
+     */
+    double weight();
+
+    /**
+     * Get the total number of postings in this list.
+     *
+     * @return The number of documents containing the term.
+     */
+    int cost();
+}
@@ -0,0 +1,185 @@
+package de.fernunihagen.dbis.anguillasearch.index;
+
+/**
+ * The posting weights of a VectorIndex stored in a reduced precision
+ * WeightFormat.
+ *
+ * The weights are decoded on access, so searches score directly on the
+ * quantized form and the full precision weights don't need to be kept.
+ */
+final class QuantizedWeights {
+    private static final int INT8_LEVELS = 0xFF;
+
+    private final WeightFormat format;
+    private float[] floats = null;
+    private short[] halfs = null;
+    private byte[] levels = null;
+    // The scale of each term or document for the 8 bit formats.
+    private double[] scales = null;
+
+    /**
+     * Quantize the given posting weights.
+     *
+     * @param format        The format to store the weights in.
+     * @param weights       The full precision weights of all postings.
+     * @param postingDocs   The document number of each posting.
+     * @param postingStarts The start of each terms postings, followed by the end
+     *                      of the last terms postings.
+     * @param docCount      The number of documents.
+     */
+    QuantizedWeights(WeightFormat format, double[] weights, int[] postingDocs, int[] postingStarts, int docCount) {
+        this.format = format;
+        switch (format) {
+            case FLOAT32:
+                floats = new float[weights.length];
+                for (int p = 0; p < weights.length; p++)
+                    floats[p] = (float) weights[p];
+                break;
+            case FLOAT16:
+                halfs = new short[weights.length];
+                for (int p = 0; p < weights.length; p++)
+                    halfs[p] = toHalf((float) weights[p]);
+                break;
+            case INT8_TERM_SCALE:
+                scales = new double[postingStarts.length - 1];
+                for (int t = 0; t < scales.length; t++)
+                    for (int p = postingStarts[t]; p < postingStarts[t + 1]; p++)
+                        scales[t] = Math.max(scales[t], weights[p] / INT8_LEVELS);
+                levels = new byte[weights.length];
+                for (int t = 0; t < scales.length; t++)
+                    for (int p = postingStarts[t]; p < postingStarts[t + 1]; p++)
+                        levels[p] = toLevel(weights[p], scales[t]);
+                break;
+            case INT8_DOCUMENT_SCALE:
+                scales = new double[docCount];
+                for (int p = 0; p < weights.length; p++)
+                    scales[postingDocs[p]] = Math.max(scales[postingDocs[p]], weights[p] / INT8_LEVELS);
+                levels = new byte[weights.length];
+                for (int p = 0; p < weights.length; p++)
+                    levels[p] = toLevel(weights[p], scales[postingDocs[p]]);
+                break;
+            default:
+                throw new IllegalArgumentException("quantized weights: " + format + " is not a quantized format!");
+        }
+    }
+
+    /**
+     * Get the decoded weight of a posting.
+     *
+     * @param posting The position of the posting.
+     * @param term    The term number of the posting.
+     * @param doc     The document number of the posting.
+     * @return The decoded weight.
+     */
+    double get(int posting, int term, int doc) {
+        switch (format) {
+            case FLOAT32:
+                return floats[posting];
+            case FLOAT16:
+                return fromHalf(halfs[posting]);
+            case INT8_TERM_SCALE:
+                return (levels[posting] & 0xFF) * scales[term];
+            default:
+                return (levels[posting] & 0xFF) * scales[doc];
+        }
+    }
+
+    /**
+     * Get the format the weights are stored in.
+     *
+     * @return The weight format.
+     */
+    WeightFormat getFormat() {
+        return format;
+    }
+
+    /**
+     * Get the memory used by the quantized weights.
+     *
+     * @return The size of the weights and their scales in bytes.
+     */
+    long getSizeInBytes() {
+        long size = scales == null ? 0 : (long) scales.length * Double.BYTES;
+        if (floats != null)
+            size += (long) floats.length * Float.BYTES;
+        if (halfs != null)
+            size += (long) halfs.length * Short.BYTES;
+        if (levels != null)
+            size += levels.length;
+        return size;
+    }
+
+    /**
+     * Round a weight to the nearest 8 bit level of the given scale.
+     *
+     * @param weight The non negative weight.
+     * @param scale  The weight of one level.
+     * @return The level as an unsigned byte.
+     */
+    private static byte toLevel(double weight, double scale) {
+        if (scale == 0.0)
+            return 0;
+        return (byte) Math.min(INT8_LEVELS, Math.round(weight / scale));
+    }
+
+    /**
+     * Convert a float to the nearest IEEE 754 half precision float, rounding ties
+     * to even.
+     *
+     * @param value The value to be converted.
+     * @return The bits of the half precision float.
+     */
+    static short toHalf(float value) {
+        int bits = Float.floatToRawIntBits(value);
+        int sign = (bits >>> 16) & 0x8000;
+        int exponent = ((bits >>> 23) & 0xFF) - 127 + 15;
+        int mantissa = bits & 0x7FFFFF;
+
+        // Infinity and NaN.
+        if (exponent == 0xFF - 127 + 15)
+            return (short) (sign | 0x7C00 | (mantissa != 0 ? 0x200 : 0));
+        // Too large, round to infinity.
+        if (exponent >= 0x1F)
+            return (short) (sign | 0x7C00);
+
+        int shift = 13;
+        int half;
+        if (exponent <= 0) {
+            // Subnormal half, or too small and rounded to zero.
+            if (exponent < -10)
+                return (short) sign;
+            mantissa |= 0x800000;
+            shift = 14 - exponent;
+            half = mantissa >> shift;
+        } else
+            half = (exponent << 10) | (mantissa >> 13);
+
+        // Round to nearest even, a carry may correctly overflow into the exponent.
+        int rest = mantissa & ((1 << shift) - 1);
+        int halfway = 1 << (shift - 1);
+        if (rest > halfway || (rest == halfway && (half & 1) != 0))
+            half++;
+        return (short) (sign | half);
+    }
+
+    /**
+     * Convert an IEEE 754 half precision float to a float.
+     *
+     * @param half The bits of the half precision float.
+     * @return The exact float value.
+     */
+    static float fromHalf(short half) {
+        int bits = half & 0xFFFF;
+        int sign = (bits & 0x8000) << 16;
+        int exponent = (bits >>> 10) & 0x1F;
+        int mantissa = bits & 0x3FF;
+
+        if (exponent == 0x1F)
+            return Float.intBitsToFloat(sign | 0x7F800000 | (mantissa << 13));
+        if (exponent == 0) {
+            float value = mantissa * 0x1p-24f;
+            return sign != 0 ? -value : value;
+        }
+        return Float.intBitsToFloat(sign | ((exponent + 112) << 23) | (mantissa << 13));
+    }
+}
@@ -0,0 +1,242 @@
+package de.fernunihagen.dbis.anguillasearch.index;
+
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.Objects;
+import java.util.TreeMap;
+import java.util.function.Supplier;
+
+import de.fernunihagen.dbis.anguillasearch.pagerank.PageRankIndex;
+
+/**
+ * A bounded cache of the results of repeated searches of an IndexSearcher.
+ *
+ * Results are cached by scoring mode, normalized query, query weights and page
+ * rank index. The cache is bounded by the total number of results it holds,
+ * each query counts with its number of results plus one. If the cache is full
+ * the least recently used queries are evicted.
+ *
+ * A cache belongs to the first index searched through it, IndexSearchers of
+ * other indices can't share it. All results belong to one generation of that
+ * index. As soon as the index generation changes, all cached results are
+ * dropped. Results fused with page ranks are cached per generation of the
+ * PageRankIndex as well.
+ *
+ * The cache can be used by multiple threads.
+ *
+ * @author Nico Beyer
+ */
+public final class QueryResultCache {
+
+    /**
+     * The scoring modes of cached searches.
+     */
+    public enum Mode {
+        TF_IDF, COSINE, COSINE_PAGE_RANK
+    }
+
+    /**
+     * The cache key of a search.
+     */
+    static final class Key {
+        private final Mode mode;
+        private final String query;
+        private final Map<String, Double> weights;
+        private final PageRankIndex pageRankIndex;
+        private final long pageRankGeneration;
+        private final int hash;
+
+        /**
+         * Get a new Key of a search.
+         *
+         * @param mode          The scoring mode.
+         * @param query         The search query, queries only differing in case
+         *                      and whitespace share a key.
+         * @param weights       The weights of the query, null for the default
+         *                      weights.
+         * @param pageRankIndex The PageRankIndex the results are fused with or null.
+         */
+        Key(Mode mode, String query, Map<String, Double> weights, PageRankIndex pageRankIndex) {
+            this.mode = mode;
+            this.query = query.trim().toLowerCase().replaceAll("\\s+", " ");
+            this.weights = weights == null ? null : new TreeMap<>(weights);
+            this.pageRankIndex = pageRankIndex;
+            this.pageRankGeneration = pageRankIndex == null ? 0 : pageRankIndex.getGeneration();
+            this.hash = Objects.hash(mode, this.query, this.weights, System.identityHashCode(pageRankIndex),
+                    pageRankGeneration);
+        }
+
+        @Override
+        public boolean equals(Object other) {
+            if (!(other instanceof Key))
+                return false;
+            Key key = (Key) other;
+            return hash == key.hash && mode == key.mode && query.equals(key.query)
+                    && Objects.equals(weights, key.weights) && pageRankIndex == key.pageRankIndex
+                    && pageRankGeneration == key.pageRankGeneration;
+        }
+
+        @Override
+        public int hashCode() {
+            return hash;
+        }
+    }
+
+    private final long maxWeight;
+    private final LinkedHashMap<Key, SearchResults> entries = new LinkedHashMap<>(16, 0.75f, true);
+    private long weight = 0;
+    // The index the cached results belong to, set by the first search.
+    private SearchableIndex index = null;
+    private long generation = -1;
+
+    private long hits = 0;
+    private long misses = 0;
+    private long evictions = 0;
+    private long invalidations = 0;
+
+    /**
+     * Get a new empty QueryResultCache.
+     *
+     * @param maxWeight The maximum number of results plus queries to be cached.
+     */
+    public QueryResultCache(long maxWeight) {
+        if (maxWeight < 1)
+            throw new IllegalArgumentException("QueryResultCache: The cache needs room for at least one query!");
+        this.maxWeight = maxWeight;
+    }
+
+    /**
+     * Bind the cache to the index searched through it.
+     *
+     * @param searchedIndex The index of an IndexSearcher using this cache.
+     * @throws IllegalArgumentException If the cache belongs to another index.
+     */
+    synchronized void bind(SearchableIndex searchedIndex) {
+        if (index == null)
+            index = searchedIndex;
+        else if (index != searchedIndex)
+            throw new IllegalArgumentException("QueryResultCache: The cache already belongs to another index!");
+    }
+
+    /**
+     * Get the cached results of a search or run the search and cache its results.
+     *
+     * @param searchedIndex The searched index.
+     * @param key           The key of the search.
+     * @param search        Runs the search on a cache miss.
+     * @return The results of the search.
+     * @throws IllegalArgumentException If the cache belongs to another index.
+     */
+    SearchResults get(SearchableIndex searchedIndex, Key key, Supplier<SearchResults> search) {
+        long indexGeneration = searchedIndex.getGeneration();
+        synchronized (this) {
+            bind(searchedIndex);
+            invalidate(indexGeneration);
+            SearchResults results = entries.get(key);
+            if (results != null) {
+                hits++;
+                return results;
+            }
+            misses++;
+        }
+
+        // Search without holding the lock, concurrent misses of one key may search
+        // twice.
+        SearchResults results = search.get();
+        long resultWeight = results.size() + 1L;
+        synchronized (this) {
+            if (indexGeneration != generation || resultWeight > maxWeight)
+                return results;
+            SearchResults old = entries.put(key, results);
+            weight += resultWeight - (old == null ? 0 : old.size() + 1L);
+
+            // Evict the least recently used queries.
+            Iterator<SearchResults> eldest = entries.values().iterator();
+            while (weight > maxWeight) {
+                weight -= eldest.next().size() + 1L;
+                eldest.remove();
+                evictions++;
+            }
+        }
+        return results;
+    }
+
+    /**
+     * Drop all results if the index generation has changed.
+     */
+    private void invalidate(long indexGeneration) {
+        if (indexGeneration == generation)
+            return;
+        invalidations += entries.size();
+        entries.clear();
+        weight = 0;
+        generation = indexGeneration;
+    }
+
+    /**
+     * Remove all cached results.
+     */
+    public synchronized void clear() {
+        entries.clear();
+        weight = 0;
+    }
+
+    /**
+     * Get the number of cached queries.
+     */
+    public synchronized int size() {
+        return entries.size();
+    }
+
+    /**
+     * Get the number of cached results plus the number of cached queries.
+     */
+    public synchronized long getWeight() {
+        return weight;
+    }
+
+    /**
+     * Get the maximum weight of the cache.
+     */
+    public long getMaxWeight() {
+        return maxWeight;
+    }
+
+    /**
+     * Get the number of searches answered from the cache.
+     */
+    public synchronized long getHitCount() {
+        return hits;
+    }
+
+    /**
+     * Get the number of searches that had to be run.
+     */
+    public synchronized long getMissCount() {
+        return misses;
+    }
+
+    /**
+     * Get the share of searches answered from the cache.
+     *
+     * @return The hit rate or 0.0 if nothing was searched yet.
+     */
+    public synchronized double getHitRate() {
+        return hits + misses == 0 ? 0.0 : (double) hits / (hits + misses);
+    }
+
+    /**
+     * Get the number of queries evicted to make room for others.
+     */
+    public synchronized long getEvictionCount() {
+        return evictions;
+    }
+
+    /**
+     * Get the number of queries dropped because the index changed.
+     */
+    public synchronized long getInvalidationCount() {
+        return invalidations;
+    }
+}
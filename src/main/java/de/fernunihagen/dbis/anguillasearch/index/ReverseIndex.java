@@ -1,17 +1,12 @@
 package de.fernunihagen.dbis.anguillasearch.index;
 
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
 import java.util.List;
-import java.util.Properties;
-import java.util.LinkedList;
-import java.util.TreeMap;
-import java.util.Collections;
 
-import de.fernunihagen.dbis.anguillasearch.helpers.AVLTree;
 import de.fernunihagen.dbis.anguillasearch.helpers.Site;
 import static de.fernunihagen.dbis.anguillasearch.index.IndexConfig.*;
-import edu.stanford.nlp.ling.CoreLabel;
-import edu.stanford.nlp.pipeline.CoreDocument;
-import edu.stanford.nlp.pipeline.StanfordCoreNLP;
 
 /**
  * This class is now deprecated and has been replaced by the VectorIndex class.
@@ -20,76 +15,40 @@ import edu.stanford.nlp.pipeline.StanfordCoreNLP;
  * Tokens for use with a pagerank algorithm. The tokens are free of stopwords,
  * lemmatized and contain their TFIDF score for each of the Sites parsed.
  * 
+ * Sites can be added at any time. Each term keeps a compact posting list of
+ * the numbers of its documents and their term frequencies, new postings are
+ * appended to the end. The IDF of a term depends on all documents and is only
+ * applied when the index is searched, so adding Sites costs no more than
+ * their own postings.
+ * 
  * @author Nico Beyer
  */
 public class ReverseIndex {
 
     private List<String> specialCharacters;
     private List<String> stopwords;
-    private StanfordCoreNLP pipeline;
-
-    /**
-     * An object of the SearchToken class saves all relevant information of a single
-     * token for the searchQuery() method.
-     */
-    private class SearchToken implements Comparable<SearchToken> {
-
-        private String documentId;
-        private Double searchScore;
-
-        /**
-         * Create a new SearchToken object for the document with documentId.
-         * 
-         * @param documentId The id of the document the token represents.
-         */
-        public SearchToken(String documentId) {
-            searchScore = 0.0d;
-            this.documentId = documentId;
-        }
-
-        /**
-         * Increment the searchScore by tfIdfScore.
-         * 
-         * @param tfIdfScore The value to increment the SearchScore by.
-         */
-        public void updateSearchScore(double tfIdfScore) {
-            searchScore += tfIdfScore;
-        }
-
-        /**
-         * Define a comparison function between tokens to establish a total order.
-         */
-        @Override
-        public int compareTo(SearchToken other) {
-            return this.searchScore.compareTo(other.searchScore);
-        }
-
-        /**
-         * Just added for compliance with the Comparable contract.
-         */
-        @Override
-        public boolean equals(Object other) {
-            return this.searchScore.equals(other);
-        }
-
-        /**
-         * Just added for compliance with the Comparable contract.
-         */
-        @Override
-        public int hashCode() {
-            return super.hashCode();
-        }
-    }
-
-    private AVLTree<Token> index = new AVLTree<>();
+    private Analyzer analyzer;
+    private TokenStream tokenStream;
+
+    // The URL of each document and the document number of each URL.
+    private ArrayList<String> documentIds = new ArrayList<>();
+    private HashMap<String, Integer> documentNrs = new HashMap<>();
+    // The number of each term, the term of each number and its posting list.
+    // The postings of term j are postingDocs/postingTfs[j][0..postingCounts[j]).
+    private TermLookup termNrs = new TermLookup();
+    private ArrayList<String> terms = new ArrayList<>();
+    private int[][] postingDocs = new int[16][];
+    private double[][] postingTfs = new double[16][];
+    private int[] postingCounts = new int[16];
+    // The term numbers of the tokens of the last added Site.
+    private int[] siteTerms = new int[256];
 
     /**
      * Create a new empty reverse index.
-     * If this option is used use the parseSiteList() method to initialize the
-     * index.
+     * Sites can be added with addSite() or the parseSiteList() method.
      */
     public ReverseIndex() {
-        init();
+        init(new CoreNlpAnalyzer());
     }
 
     /**
@@ -98,87 +57,180 @@ public class ReverseIndex {
      * @param siteList The List of Sites to initialize the index.
      */
     public ReverseIndex(List<Site> siteList) {
-        init();
-        parseSiteList(siteList);
+        this(siteList, new CoreNlpAnalyzer());
+    }
+
+    /**
+     * Create a new reverse index from the given List of Sites analyzed with the
+     * given Analyzer.
+     * 
+     * @param siteList The List of Sites to initialize the index.
+     * @param analyzer The Analyzer for the Sites and search queries.
+     */
+    public ReverseIndex(List<Site> siteList, Analyzer analyzer) {
+        init(analyzer);
+        addSites(siteList);
     }
 
     /**
      * Initialize basic lists and settings for the tokenization and lemmatization.
      */
-    private void init() {
+    private void init(Analyzer analyzer) {
         this.specialCharacters = REVERSEINDEX_SPECIAL_CHARACTERS;
         this.stopwords = REVERSEINDEX_STOPWORDS;
-        Properties props = new Properties();
-        props.setProperty("annotators", REVERSEINDEX_PIPELINE_ANNOTATORS);
-        pipeline = new StanfordCoreNLP(props);
+        this.analyzer = analyzer;
+        this.tokenStream = analyzer.tokenStream();
     }
 
     /**
      * Parse a List of sites to create a new index.
      * A previously created index will be deleted upon calling this method!
+     * Use addSites() to add the Sites to the current index instead.
      * 
      * @param siteList The List of Sites to be parsed.
      */
     public void parseSiteList(List<Site> siteList) {
-        index = new AVLTree<>();
-
-        TreeMap<String, DocInfo> documents = new TreeMap<>();
-
-        for (Site site : siteList) {
-            DocInfo docInfo = new DocInfo();
+        documentIds = new ArrayList<>();
+        documentNrs = new HashMap<>();
+        termNrs = new TermLookup();
+        terms = new ArrayList<>();
+        postingDocs = new int[16][];
+        postingTfs = new double[16][];
+        postingCounts = new int[16];
+        addSites(siteList);
+    }
 
-            // Convert site content into one lowercase string.
-            StringBuilder siteContent = new StringBuilder(site.title.toLowerCase());
+    /**
+     * Add a List of Sites to the index.
+     * 
+     * @param siteList The Sites to be added.
+     */
+    public void addSites(List<Site> siteList) {
+        for (Site site : siteList)
+            addSite(site);
+    }
 
-            for (String heading : site.headings)
-                siteContent.append(heading.toLowerCase());
+    /**
+     * Add a Site to the index. Sites with an URL that is already indexed are
+     * ignored.
+     * 
+     * @param site The Site to be added.
+     */
+    public void addSite(Site site) {
+        if (documentNrs.containsKey(site.url))
+            return;
+        int doc = documentIds.size();
+        documentIds.add(site.url);
+        documentNrs.put(site.url, doc);
+
+        // Convert site content into one lowercase string.
+        StringBuilder siteContent = new StringBuilder(site.title.toLowerCase());
+        for (String heading : site.headings)
+            siteContent.append(heading.toLowerCase());
+        siteContent.append(site.paragraphs.toLowerCase());
+
+        // Tokenize and lemmatize the site.
+        tokenStream.reset(siteContent);
+        int totalWordCount = 0;
+        int tokenCount = 0;
+        while (tokenStream.incrementToken()) {
+            char[] term = tokenStream.termBuffer();
+            int length = tokenStream.termLength();
+            if (SPECIAL_CHARACTER_SET.contains(term, 0, length))
+                continue;
+            totalWordCount++;
+            // Remove stopwords.
+            if (STOPWORD_SET.contains(term, 0, length))
+                continue;
+            int termNr = termNrs.get(term, 0, length);
+            if (termNr == -1)
+                termNr = addTerm(new String(term, 0, length));
+            if (tokenCount == siteTerms.length)
+                siteTerms = Arrays.copyOf(siteTerms, tokenCount * 2);
+            siteTerms[tokenCount++] = termNr;
+        }
 
-            siteContent.append(site.paragraphs.toLowerCase());
+        // Append a posting with the term frequency to each terms posting list.
+        Arrays.sort(siteTerms, 0, tokenCount);
+        for (int i = 0; i < tokenCount;) {
+            int termNr = siteTerms[i];
+            int end = i + 1;
+            while (end < tokenCount && siteTerms[end] == termNr)
+                end++;
+            addPosting(termNr, doc, (end - i) / (double) totalWordCount);
+            i = end;
+        }
+    }
 
-            // Tokenize and lemmatize the sites.
-            CoreDocument content = new CoreDocument(siteContent.toString());
-            pipeline.annotate(content);
+    /**
+     * Give a new term the next term number.
+     */
+    private int addTerm(String word) {
+        int termNr = terms.size();
+        if (termNr == postingCounts.length) {
+            postingDocs = Arrays.copyOf(postingDocs, termNr * 2);
+            postingTfs = Arrays.copyOf(postingTfs, termNr * 2);
+            postingCounts = Arrays.copyOf(postingCounts, termNr * 2);
+        }
+        postingDocs[termNr] = new int[2];
+        postingTfs[termNr] = new double[2];
+        terms.add(word);
+        termNrs.put(word, termNr);
+        return termNr;
+    }
 
-            for (CoreLabel tok : content.tokens()) {
-                String lemma = tok.lemma();
-                if (specialCharacters.contains(lemma))
-                    continue;
-                docInfo.incrementTotalWordcount();
-                // Remove stopwords.
-                if (stopwords.contains(lemma))
-                    continue;
-                // Count how much each word has been used.
-                docInfo.incrementWordCountOf(lemma);
-                // Save processed tokens.
-                addToken(lemma, site.url);
-            }
-            documents.put(site.url, docInfo);
+    /**
+     * Append a posting to the end of the posting list of a term.
+     */
+    private void addPosting(int termNr, int doc, double tf) {
+        int count = postingCounts[termNr];
+        if (count == postingDocs[termNr].length) {
+            postingDocs[termNr] = Arrays.copyOf(postingDocs[termNr], count * 2);
+            postingTfs[termNr] = Arrays.copyOf(postingTfs[termNr], count * 2);
         }
+        postingDocs[termNr][count] = doc;
+        postingTfs[termNr][count] = tf;
+        postingCounts[termNr]++;
+    }
 
-        // Calculate the TFIDF scores for each token.
-        for (Token tok : index.getValuesInorder()) {
-            String word = tok.getToken();
-            double documentCount = documents.size();
-            double docPerTerm = tok.getNrOfDocuments();
+    /**
+     * Get the IDF of a term for the current number of documents.
+     */
+    private double getIdf(int termNr) {
+        double documentCount = documentIds.size();
+        double docPerTerm = postingCounts[termNr];
+        return Math.log(documentCount / docPerTerm);
+    }
 
-            for (String docId : tok.getDocuments()) {
-                DocInfo docInfo = documents.get(docId);
-                double tf = docInfo.getTfOf(word);
-                double idf = Math.log(documentCount / docPerTerm);
-                tok.setTfIdfScore(docId, tf * idf);
-            }
-        }
+    /**
+     * Get the number of Sites in the index.
+     * 
+     * @return The number of indexed Sites.
+     */
+    public int getNrOfSites() {
+        return documentIds.size();
     }
 
     /**
-     * Find the Token object of the given tokenWord in the index.
+     * Find the Token object of the given tokenWord in the index. The Token holds
+     * the TFIDF scores for the current documents of the index.
      * 
      * @param tokenWord The token word to be found.
      * @return The Token object that belongs to tokenWord or null if the token is
      *         not contained in the index.
      */
     public Token findToken(String tokenWord) {
-        return index.retrieve(new Token(tokenWord));
+        int termNr = termNrs.get(tokenWord);
+        if (termNr == -1)
+            return null;
+        Token token = new Token(tokenWord);
+        double idf = getIdf(termNr);
+        for (int i = 0; i < postingCounts[termNr]; i++) {
+            String documentId = documentIds.get(postingDocs[termNr][i]);
+            token.addDocument(documentId);
+            token.setTfIdfScore(documentId, postingTfs[termNr][i] * idf);
+        }
+        return token;
     }
 
     /**
@@ -188,60 +240,78 @@ public class ReverseIndex {
      * @return true if tokenWord is part of the index, false otherwise.
      */
     public boolean containsToken(String tokenWord) {
-        return this.index.contains(new Token(tokenWord));
+        return termNrs.get(tokenWord) != -1;
     }
 
     /**
      * Search for documents relevant to the search query.
      * 
+     * Only the best maxNrOfDocuments documents are kept while the found documents
+     * are ranked, so a small limit doesn't sort all of them.
+     * 
      * @param query            The search query to be used.
-     * @param maxNrOfDocuments The maximum number of results to be returned.
+     * @param maxNrOfDocuments The maximum number of results to be returned, -1 for
+     *                         all results.
      * @return A List of String[] with String[0]= documentId, String[1]= document
      *         TFIDF-searchscore.
      */
     public List<String[]> searchQuery(String query, int maxNrOfDocuments) {
-        LinkedList<String[]> formatedDocList = new LinkedList<>();
-
-        // Tokenize and lemmatize the query.
-        CoreDocument content = new CoreDocument(query.toLowerCase());
-        pipeline.annotate(content);
-
-        TreeMap<String, SearchToken> searchTree = new TreeMap<>();
+        return searchQueryResults(query, maxNrOfDocuments).toStringArrays();
+    }
 
-        for (CoreLabel tok : content.tokens()) {
-            String lemma = tok.lemma();
+    /**
+     * Search for documents relevant to the search query, see
+     * searchQuery(String, int).
+     * 
+     * @param query            The search query to be used.
+     * @param maxNrOfDocuments The maximum number of results to be returned, -1 for
+     *                         all results.
+     * @return The found documents sorted by TFIDF-searchscore in decending order.
+     *         The document numbers are the ones of this index.
+     */
+    public SearchResults searchQueryResults(String query, int maxNrOfDocuments) {
+        // Add up the TFIDF of each query token per document.
+        double[] scores = new double[documentIds.size()];
+        boolean[] found = new boolean[documentIds.size()];
+        int[] foundDocs = new int[documentIds.size()];
+        int foundCount = 0;
 
+        // Tokenize and lemmatize the query.
+        for (String lemma : analyzer.lemmatize(query.toLowerCase())) {
             // Remove stopwords and special characters.
             if (specialCharacters.contains(lemma) || stopwords.contains(lemma))
                 continue;
 
             // Find out which documents belong to the token.
-            Token foundToken = index.retrieve(new Token(lemma));
-            if (foundToken == null)
+            int termNr = termNrs.get(lemma);
+            if (termNr == -1)
                 continue;
 
-            for (String docId : foundToken.getDocuments()) {
-                // For each document add up the TFIDF(token) to a sum per document.
-                SearchToken searchToken = searchTree.getOrDefault(docId, new SearchToken(docId));
-                searchToken.updateSearchScore(foundToken.getTfIdfScore(docId));
-                searchTree.put(docId, searchToken);
+            double idf = getIdf(termNr);
+            for (int i = 0; i < postingCounts[termNr]; i++) {
+                int doc = postingDocs[termNr][i];
+                scores[doc] += postingTfs[termNr][i] * idf;
+                if (!found[doc]) {
+                    found[doc] = true;
+                    foundDocs[foundCount++] = doc;
+                }
             }
         }
 
-        // Get a list sorted by TF-IDF score of the documents.
-        List<SearchToken> sortedDocList = new LinkedList<>(searchTree.values());
-        Collections.sort(sortedDocList, Collections.reverseOrder());
-
-        // format a string from the top x documents and return.
-        int i = 1;
-        for (SearchToken token : sortedDocList) {
-            formatedDocList.addLast(new String[] { token.documentId, token.searchScore.toString() });
-
-            i++;
-            if ((maxNrOfDocuments != -1) && (i > maxNrOfDocuments))
-                break;
+        // Rank the top x documents by TF-IDF score, documents with the same score
+        // are ranked by their id.
+        int k = maxNrOfDocuments < 0 ? foundCount : Math.min(maxNrOfDocuments, foundCount);
+        TopKHeap topDocs = new TopKHeap(k, (a, b) -> documentIds.get(a).compareTo(documentIds.get(b)));
+        for (int i = 0; i < foundCount; i++)
+            topDocs.offer(foundDocs[i], scores[foundDocs[i]]);
+        topDocs.sort();
+
+        SearchResults results = new SearchResults(topDocs.size());
+        for (int rank = 0; rank < topDocs.size(); rank++) {
+            int doc = topDocs.getDoc(rank);
+            results.add(doc, documentIds.get(doc), topDocs.getScore(rank));
         }
-        return formatedDocList;
+        return results;
     }
 
     /**
@@ -256,19 +326,12 @@ public class ReverseIndex {
     }
 
     /**
-     * Add a document to the Token object that belongs to the tokenWord.
-     * If the Token is not part of the index yet a Token will be created and added.
+     * Search for documents relevant to the search query, see searchQuery(String).
      * 
-     * @param tokenWord The word that the Token object represents.
-     * @param document  The document id to be added to the Token.
+     * @param query The search query to be used.
+     * @return The found documents sorted by TFIDF-searchscore in decending order.
      */
-    private void addToken(String tokenWord, String document) {
-        Token foundToken = findToken(tokenWord);
-        if (foundToken == null) {
-            Token newToken = new Token(tokenWord);
-            newToken.addDocument(document);
-            index.insert(newToken);
-        } else
-            foundToken.addDocument(document);
+    public SearchResults searchQueryResults(String query) {
+        return searchQueryResults(query, -1);
     }
 }
@@ -0,0 +1,356 @@
+package de.fernunihagen.dbis.anguillasearch.index;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * A fast Analyzer that tokenizes and lemmatizes by fixed rules instead of a
+ * part of speech tagger.
+ *
+ * The tokenizer follows the conventions of the CoreNLP tokenizer: words are
+ * runs of letters and digits that may contain hyphens and dots between digits,
+ * clitics like "n't" and "'s" are split off, every other
+ * character is a token of its own, double quotes become `` and '' and URLs are
+ * kept as a single token.
+ *
+ * A word is lemmatized by a dictionary of irregular forms first. Otherwise the
+ * inflection suffixes of plural nouns, third person verbs, participles and
+ * gerunds are removed, restoring a final e or undoubling a final consonant
+ * where the remaining stem suggests it. Without the part of speech of a word
+ * some lemmas differ from the CoreNLP ones, e.g. "leaves" always becomes
+ * "leave".
+ *
+ * The analysis runs on a TokenStream that reuses its character buffer, the
+ * dictionaries are PerfectHashSets looked up by characters, so analyzing a
+ * text creates no objects for its tokens.
+ *
+ * @author Nico Beyer
+ */
+public class RuleBasedAnalyzer implements Analyzer {
+    // Irregular forms, each followed by its lemma.
+    private static final String[] IRREGULAR_FORMS = {
+            // Verbs.
+            "is be", "are be", "am be", "was be", "were be", "been be", "being be", "'re be", "'m be",
+            "has have", "had have", "having have", "'ve have", "'d have", "does do", "did do", "done do",
+            "doing do", "goes go", "went go", "gone go", "made make", "found find", "given give", "gave give",
+            "known know", "knew know", "met meet", "meant mean", "took take", "taken take", "came come",
+            "saw see", "seen see", "got get", "gotten get", "began begin", "begun begin", "brought bring",
+            "bought buy", "thought think", "told tell", "said say", "felt feel", "kept keep", "left leave",
+            "built build", "sent send", "spent spend", "wrote write", "written write", "ran run",
+            "held hold", "stood stand", "understood understand", "became become", "chose choose",
+            "chosen choose", "ate eat", "eaten eat", "grew grow", "grown grow", "fell fall", "fallen fall",
+            "drove drive", "driven drive", "spoke speak", "spoken speak", "broke break", "broken break",
+            "paid pay", "led lead", "lost lose", "won win", "sold sell", "shown show", "used use",
+            "uses use", "using use", "agreed agree", "freed free", "'ll will", "wo will", "ca can",
+            "n't not", "lay lie", "laid lay", "hid hide", "hidden hide", "rose rise", "risen rise",
+            "ground grind", "fed feed", "bred breed", "sped speed", "shook shake", "shaken shake",
+            // Pronouns.
+            "your you", "yours you", "them they", "their they", "theirs they", "his he", "him he",
+            "her she", "hers she", "its it", "my i", "me i", "mine i", "our we", "ours we", "us we",
+            // Nouns.
+            "children child", "men man", "women woman", "feet foot", "teeth tooth", "mice mouse",
+            "geese goose", "knives knife", "lives life", "wives wife", "halves half", "calves calf",
+            "wolves wolf", "shelves shelf", "loaves loaf", "indices index", "matrices matrix",
+            "vertices vertex", "analyses analysis", "crises crisis", "theses thesis", "data datum",
+            "criteria criterion", "phenomena phenomenon", "buses bus" };
+    private static final PerfectHashSet IRREGULAR;
+    private static final String[] IRREGULAR_LEMMAS;
+    // Words that look inflected but are lemmas already.
+    private static final PerfectHashSet UNINFLECTED = new PerfectHashSet(List.of(
+            "this", "thus", "yes", "always", "perhaps", "news", "series", "species", "less", "unless",
+            "various", "previous", "famous", "delicious", "gas", "plus", "lens", "chaos", "bias", "alias",
+            "atlas", "canvas", "christmas", "during", "nothing", "something", "anything", "everything",
+            "morning", "evening", "ceiling", "wedding", "pudding", "spring", "sterling", "herring", "indeed",
+            "hundred", "kindred", "sacred", "naked", "wicked"));
+    // Stem endings that lost a final e, e.g. "locat" of "located".
+    private static final String[] E_ENDINGS = { "at", "ut", "ot", "iz", "yz", "ir", "ur", "ar", "iv", "av", "ov",
+            "ev", "uv", "uc", "ac", "id", "ud", "od", "in", "am", "im", "om", "um", "ak", "ik", "ok", "uk", "il" };
+    private static final String[] E_CLUSTERS = { "rv", "lv", "bl", "pl", "tl", "gl", "dl", "kl", "fl", "uir",
+            "let", "cret", "pet" };
+    private static final String[] URL_PREFIXES = { "http://", "https://", "www." };
+    private static final String URL_TRAILERS = ".,;:!?)'\"";
+
+    static {
+        List<String> forms = new ArrayList<>();
+        List<String> lemmas = new ArrayList<>();
+        for (String form : IRREGULAR_FORMS) {
+            String[] pair = form.split(" ");
+            forms.add(pair[0]);
+            lemmas.add(pair[1]);
+        }
+        IRREGULAR = new PerfectHashSet(forms);
+        IRREGULAR_LEMMAS = lemmas.toArray(new String[0]);
+    }
+
+    @Override
+    public List<String> lemmatize(String text) {
+        List<String> lemmas = new ArrayList<>();
+        TokenStream stream = tokenStream();
+        stream.reset(text);
+        while (stream.incrementToken())
+            lemmas.add(new String(stream.termBuffer(), 0, stream.termLength()));
+        return lemmas;
+    }
+
+    @Override
+    public TokenStream tokenStream() {
+        return new RuleBasedTokenStream();
+    }
+
+    /**
+     * Splits a text into tokens and lemmatizes each token in place in its
+     * buffer.
+     */
+    private static final class RuleBasedTokenStream implements TokenStream {
+        private CharSequence text = "";
+        private int next = 0;
+        private boolean openQuote = true;
+        // Set if the next token is the "not" of a split off "n't".
+        private boolean pendingNot = false;
+        private char[] buffer = new char[32];
+        private int length = 0;
+
+        @Override
+        public void reset(CharSequence text) {
+            this.text = text;
+            next = 0;
+            openQuote = true;
+            pendingNot = false;
+            length = 0;
+        }
+
+        @Override
+        public char[] termBuffer() {
+            return buffer;
+        }
+
+        @Override
+        public int termLength() {
+            return length;
+        }
+
+        @Override
+        public boolean incrementToken() {
+            if (pendingNot) {
+                pendingNot = false;
+                set("not");
+                return true;
+            }
+            int textLength = text.length();
+            while (next < textLength && Character.isWhitespace(text.charAt(next)))
+                next++;
+            if (next == textLength)
+                return false;
+            int i = next;
+            char c = text.charAt(i);
+
+            // URLs end at the next whitespace, without trailing punctuation.
+            if (isUrlStart(i)) {
+                int end = i;
+                while (end < textLength && !Character.isWhitespace(text.charAt(end)))
+                    end++;
+                while (URL_TRAILERS.indexOf(text.charAt(end - 1)) != -1)
+                    end--;
+                copy(i, end);
+                next = end;
+                return true;
+            }
+
+            if (!Character.isLetterOrDigit(c)) {
+                if (c == '"') {
+                    set(openQuote ? "``" : "''");
+                    openQuote = !openQuote;
+                } else if (c == '\'' && i + 1 < textLength && Character.isLetter(text.charAt(i + 1))) {
+                    // A clitic like 's or 're.
+                    int end = i + 1;
+                    while (end < textLength && Character.isLetter(text.charAt(end)))
+                        end++;
+                    copy(i, end);
+                    lemmatizeBuffer();
+                    next = end;
+                    return true;
+                } else {
+                    length = 0;
+                    append(c);
+                }
+                next = i + 1;
+                return true;
+            }
+
+            // A word with inner hyphens and dots between digits.
+            int end = i + 1;
+            while (end < textLength) {
+                char following = text.charAt(end);
+                if (Character.isLetterOrDigit(following)) {
+                    end++;
+                    continue;
+                }
+                boolean inner = end + 1 < textLength && Character.isLetterOrDigit(text.charAt(end + 1));
+                if (inner && (following == '-' || (following == '.' && Character.isDigit(text.charAt(end - 1))
+                        && Character.isDigit(text.charAt(end + 1)))))
+                    end++;
+                else
+                    break;
+            }
+            // Split off n't, the other clitics are split off as their own token.
+            if (end + 1 < textLength && text.charAt(end) == '\'' && text.charAt(end + 1) == 't'
+                    && text.charAt(end - 1) == 'n' && end - i > 1) {
+                copy(i, end - 1);
+                pendingNot = true;
+                end += 2;
+            } else
+                copy(i, end);
+            lemmatizeBuffer();
+            next = end;
+            return true;
+        }
+
+        /**
+         * Check if a URL starts at the given position of the text.
+         */
+        private boolean isUrlStart(int start) {
+            for (String prefix : URL_PREFIXES) {
+                if (start + prefix.length() > text.length())
+                    continue;
+                int i = 0;
+                while (i < prefix.length() && text.charAt(start + i) == prefix.charAt(i))
+                    i++;
+                if (i == prefix.length())
+                    return true;
+            }
+            return false;
+        }
+
+        /**
+         * Replace the buffer with text[start..end).
+         */
+        private void copy(int start, int end) {
+            length = 0;
+            ensureCapacity(end - start);
+            for (int i = start; i < end; i++)
+                buffer[length++] = text.charAt(i);
+        }
+
+        /**
+         * Replace the buffer with the given word.
+         */
+        private void set(String word) {
+            ensureCapacity(word.length());
+            word.getChars(0, word.length(), buffer, 0);
+            length = word.length();
+        }
+
+        private void append(char c) {
+            ensureCapacity(length + 1);
+            buffer[length++] = c;
+        }
+
+        private void ensureCapacity(int capacity) {
+            if (capacity > buffer.length) {
+                char[] grown = new char[Math.max(capacity, buffer.length * 2)];
+                System.arraycopy(buffer, 0, grown, 0, length);
+                buffer = grown;
+            }
+        }
+
+        /**
+         * Check if the first end characters of the buffer end with the suffix.
+         */
+        private boolean endsWith(int end, String suffix) {
+            int start = end - suffix.length();
+            if (start < 0)
+                return false;
+            for (int i = 0; i < suffix.length(); i++)
+                if (buffer[start + i] != suffix.charAt(i))
+                    return false;
+            return true;
+        }
+
+        /**
+         * Replace the lowercase word in the buffer by its lemma.
+         */
+        private void lemmatizeBuffer() {
+            int irregular = IRREGULAR.indexOf(buffer, 0, length);
+            if (irregular != -1) {
+                set(IRREGULAR_LEMMAS[irregular]);
+                return;
+            }
+            if (length <= 3 || UNINFLECTED.contains(buffer, 0, length)
+                    || !Character.isLetter(buffer[length - 1]))
+                return;
+
+            if (endsWith(length, "ies")) {
+                if (length > 4) {
+                    length -= 3;
+                    append('y');
+                } else
+                    length--;
+            } else if (endsWith(length, "sses") || endsWith(length, "xes") || endsWith(length, "ches")
+                    || endsWith(length, "shes") || endsWith(length, "zzes"))
+                length -= 2;
+            else if (endsWith(length, "s")) {
+                if (!endsWith(length, "ss") && !endsWith(length, "us") && !endsWith(length, "is")
+                        && !endsWith(length, "'s"))
+                    length--;
+            } else if (endsWith(length, "ied") && length > 4) {
+                length -= 3;
+                append('y');
+            } else if (endsWith(length, "eed"))
+                return;
+            else if (endsWith(length, "ed") && length > 4)
+                restoreStem(length - 2);
+            else if (endsWith(length, "ing") && length > 4)
+                restoreStem(length - 3);
+        }
+
+        /**
+         * Turn the stem left after removing -ed or -ing into a lemma, the word is
+         * kept if the stem has no vowel.
+         *
+         * @param stemLength The length of the word without its suffix.
+         */
+        private void restoreStem(int stemLength) {
+            boolean hasVowel = false;
+            for (int i = 0; i < stemLength && !hasVowel; i++)
+                hasVowel = isVowel(buffer[i]);
+            if (!hasVowel)
+                return;
+            length = stemLength;
+
+            // "running" and "stopped" double their final consonant.
+            char last = buffer[length - 1];
+            if (length >= 4 && last == buffer[length - 2] && !isVowel(last) && "lsz".indexOf(last) == -1) {
+                length--;
+                return;
+            }
+            // "using" and "aging" lost a final e of a short stem.
+            if (length == 2 && isVowel(buffer[0]) && !isVowel(last)) {
+                append('e');
+                return;
+            }
+            // Short stems like "mak" of "making".
+            if (length <= 4 && length >= 3 && !isVowel(buffer[length - 3]) && isVowel(buffer[length - 2])
+                    && !isVowel(last) && "wxy".indexOf(last) == -1) {
+                append('e');
+                return;
+            }
+            for (String cluster : E_CLUSTERS)
+                if (endsWith(length, cluster)) {
+                    append('e');
+                    return;
+                }
+            for (String ending : E_ENDINGS)
+                if (length > 2 && endsWith(length, ending) && !isVowel(buffer[length - 3])) {
+                    append('e');
+                    return;
+                }
+        }
+    }
+
+    /**
+     * Check if the given character is a vowel.
+     */
+    private static boolean isVowel(char c) {
+        return "aeiou".indexOf(c) != -1;
+    }
+}
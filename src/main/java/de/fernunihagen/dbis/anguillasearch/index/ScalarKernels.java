@@ -0,0 +1,52 @@
+package de.fernunihagen.dbis.anguillasearch.index;
+
+/**
+ * The scalar ScoringKernels. The products are added up in index order.
+ */
+final class ScalarKernels implements ScoringKernels {
+    static final ScalarKernels INSTANCE = new ScalarKernels();
+
+    private ScalarKernels() {
+    }
+
+    @Override
+    public double dot(double[] a, double[] b, int length) {
+        double sum = 0.0;
+        for (int i = 0; i < length; i++)
+            sum += a[i] * b[i];
+        return sum;
+    }
+
+    @Override
+    public double sparseDot(int[] indices, double[] values, int count, double[] dense) {
+        double sum = 0.0;
+        for (int i = 0; i < count; i++)
+            sum += values[i] * dense[indices[i]];
+        return sum;
+    }
+
+    @Override
+    public double squaredNorm(double[] a, int length) {
+        double sum = 0.0;
+        for (int i = 0; i < length; i++)
+            sum += a[i] * a[i];
+        return sum;
+    }
+
+    @Override
+    public double cosine(double[] a, double[] b, int length) {
+        double numerator = 0.0;
+        double denomA = 0.0;
+        double denomB = 0.0;
+        for (int i = 0; i < length; i++) {
+            double ai = a[i];
+            double bi = b[i];
+            numerator += ai * bi;
+            denomA += ai * ai;
+            denomB += bi * bi;
+        }
+        if (denomA == 0.0 || denomB == 0.0 || numerator == 0.0)
+            return 0.0;
+        return numerator / (Math.sqrt(denomA) * Math.sqrt(denomB));
+    }
+}
@@ -0,0 +1,83 @@
+package de.fernunihagen.dbis.anguillasearch.index;
+
+/**
+ * Primitive kernels for the dot products and cosine similarities of vectors
+ * stored in double arrays, without boxing.
+ *
+ * There are two implementations: a scalar one and one using the SIMD
+ * instructions of the CPU through the incubating Vector API. The Vector API is
+ * only used if the JVM runs with --add-modules jdk.incubator.vector and the
+ * system property anguillasearch.vectorKernels isn't set to false, else the
+ * scalar kernels are used. The SIMD kernels add up the products in a different
+ * order, so their results may differ from the scalar ones in the last bits.
+ *
+ * @author Nico Beyer
+ */
+public interface ScoringKernels {
+
+    /**
+     * Get the dot product of two dense vectors.
+     *
+     * @param a      The first vector.
+     * @param b      The second vector.
+     * @param length The number of entries of both vectors to be used.
+     * @return The dot product of a and b.
+     */
+    double dot(double[] a, double[] b, int length);
+
+    /**
+     * Get the dot product of a sparse and a dense vector.
+     *
+     * @param indices The index of each non zero entry of the sparse vector.
+     * @param values  The value of each non zero entry of the sparse vector.
+     * @param count   The number of non zero entries.
+     * @param dense   The dense vector, containing each of the indices.
+     * @return The dot product of both vectors.
+     */
+    double sparseDot(int[] indices, double[] values, int count, double[] dense);
+
+    /**
+     * Get the squared euclidean norm of a dense vector.
+     *
+     * @param a      The vector.
+     * @param length The number of entries to be used.
+     * @return The dot product of a with itself.
+     */
+    double squaredNorm(double[] a, int length);
+
+    /**
+     * Get the cosine similarity of two dense vectors in a single pass.
+     *
+     * @param a      The first vector.
+     * @param b      The second vector.
+     * @param length The number of entries of both vectors to be used.
+     * @return The cosine similarity or 0.0 if a vector is zero or both are
+     *         orthogonal.
+     */
+    double cosine(double[] a, double[] b, int length);
+
+    /**
+     * Get the kernels selected for this JVM, the SIMD kernels if they are
+     * available and enabled, else the scalar kernels.
+     */
+    static ScoringKernels getDefault() {
+        return KernelLoader.DEFAULT;
+    }
+
+    /**
+     * Get the scalar kernels.
+     */
+    static ScoringKernels scalar() {
+        return ScalarKernels.INSTANCE;
+    }
+
+    /**
+     * Get the SIMD kernels.
+     *
+     * @return The kernels using the Vector API or null if the module
+     *         jdk.incubator.vector isn't available.
+     */
+    static ScoringKernels vectorized() {
+        return KernelLoader.VECTORIZED;
+    }
+}
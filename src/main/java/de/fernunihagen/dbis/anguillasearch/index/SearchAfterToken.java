@@ -0,0 +1,58 @@
+package de.fernunihagen.dbis.anguillasearch.index;
+
+/**
+ * The position of a result in a ranking by descending score and ascending url,
+ * encoded as a String. A search after a token only returns results ranked
+ * behind it, so the next page of a ranking can be found without the pages
+ * before it.
+ */
+final class SearchAfterToken {
+    final double score;
+    final String url;
+
+    SearchAfterToken(double score, String url) {
+        this.score = score;
+        this.url = url;
+    }
+
+    /**
+     * Parse a token created by toString().
+     *
+     * @param token The encoded token.
+     * @return The position the token encodes.
+     */
+    static SearchAfterToken parse(String token) {
+        int separator = token.indexOf(':');
+        if (separator <= 0)
+            throw new IllegalArgumentException("SearchAfterToken: Invalid token " + token + "!");
+        try {
+            long bits = Long.parseUnsignedLong(token.substring(0, separator), 16);
+            return new SearchAfterToken(Double.longBitsToDouble(bits), token.substring(separator + 1));
+        } catch (NumberFormatException e) {
+            throw new IllegalArgumentException("SearchAfterToken: Invalid token " + token + "!", e);
+        }
+    }
+
+    /**
+     * Check if a result is ranked behind this position. The url of the result is
+     * only looked up if it has the same score.
+     *
+     * @param resultScore The score of the result.
+     * @param doc         The document number of the result.
+     * @param index       The index the document number belongs to.
+     * @return True if the result has a lower score or the same score and a
+     *         greater url.
+     */
+    boolean ranksBefore(double resultScore, int doc, SearchableIndex index) {
+        int cmp = Double.compare(score, resultScore);
+        return cmp != 0 ? cmp > 0 : url.compareTo(index.getDocumentId(doc)) < 0;
+    }
+
+    /**
+     * Encode the token, the exact bits of the score and the url.
+     */
+    @Override
+    public String toString() {
+        return Long.toHexString(Double.doubleToRawLongBits(score)) + ":" + url;
+    }
+}
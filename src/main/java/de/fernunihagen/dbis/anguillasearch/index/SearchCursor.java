@@ -0,0 +1,73 @@
+package de.fernunihagen.dbis.anguillasearch.index;
+
+import java.util.Iterator;
+import java.util.NoSuchElementException;
+
+/**
+ * Iterates over the pages of the results of a cosine search. Each page is
+ * searched when it is needed, after the search after token of the page before,
+ * so no page is selected twice and the pages before it are not kept.
+ *
+ * The token of the last page returned can be stored, e.g. in a link to the
+ * next page, and used to open a new cursor resuming after it.
+ *
+ * @author Nico Beyer
+ */
+public final class SearchCursor implements Iterator<SearchResults> {
+    private final IndexSearcher searcher;
+    private final String query;
+    private final int pageSize;
+    private String searchAfter;
+    private SearchResults nextPage = null;
+    private boolean exhausted = false;
+
+    /**
+     * Get a new SearchCursor, see IndexSearcher.openCursor().
+     */
+    SearchCursor(IndexSearcher searcher, String query, int pageSize, String searchAfter) {
+        if (pageSize < 1)
+            throw new IllegalArgumentException("SearchCursor: A page needs room for at least one result!");
+        this.searcher = searcher;
+        this.query = query;
+        this.pageSize = pageSize;
+        this.searchAfter = searchAfter;
+    }
+
+    /**
+     * Check if there is another page of results. The next page is searched by
+     * this method if needed.
+     */
+    @Override
+    public boolean hasNext() {
+        if (nextPage == null && !exhausted)
+            nextPage = searcher.searchQueryCosineAfter(query, searchAfter, pageSize);
+        return nextPage != null && !nextPage.isEmpty();
+    }
+
+    /**
+     * Get the next page of results.
+     *
+     * @return The results of the next page, at most pageSize.
+     */
+    @Override
+    public SearchResults next() {
+        if (!hasNext())
+            throw new NoSuchElementException("SearchCursor: There are no more results!");
+        SearchResults page = nextPage;
+        nextPage = null;
+        searchAfter = page.getSearchAfterToken();
+        // A page that isn't full is the last one.
+        exhausted = page.size() < pageSize;
+        return page;
+    }
+
+    /**
+     * Get the search after token of the last page returned.
+     *
+     * @return The token or the token the cursor was opened with if no page was
+     *         returned yet, null for the start of the results.
+     */
+    public String getSearchAfterToken() {
+        return searchAfter;
+    }
+}
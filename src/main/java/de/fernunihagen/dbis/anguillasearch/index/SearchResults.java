@@ -0,0 +1,170 @@
+package de.fernunihagen.dbis.anguillasearch.index;
+
+import java.util.AbstractList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.RandomAccess;
+
+/**
+ * The ranked results of a search, stored in parallel arrays: the document number
+ * in the searched index, the url and the score of each found site.
+ *
+ * The scores stay doubles, so results can be combined and sorted without
+ * formatting and parsing them. toStringArrays() offers the results in the
+ * List of String[2] form of the older search methods.
+ *
+ * @author Nico Beyer
+ */
+public final class SearchResults {
+    private int[] docs;
+    private String[] urls;
+    private double[] scores;
+    private int size = 0;
+
+    /**
+     * Get a new empty SearchResults object.
+     *
+     * @param capacity The expected number of results.
+     */
+    SearchResults(int capacity) {
+        capacity = Math.max(1, capacity);
+        docs = new int[capacity];
+        urls = new String[capacity];
+        scores = new double[capacity];
+    }
+
+    /**
+     * Get the ranked documents of a TopKHeap as SearchResults.
+     *
+     * @param topDocs The selected documents, the heap will be sorted.
+     * @param index   The index the document numbers belong to.
+     * @return The results ordered by rank.
+     */
+    static SearchResults of(TopKHeap topDocs, SearchableIndex index) {
+        topDocs.sort();
+        SearchResults results = new SearchResults(topDocs.size());
+        for (int rank = 0; rank < topDocs.size(); rank++)
+            results.add(topDocs.getDoc(rank), index.getDocumentId(topDocs.getDoc(rank)), topDocs.getScore(rank));
+        return results;
+    }
+
+    /**
+     * Append a result.
+     *
+     * @param doc   The document number in the searched index.
+     * @param url   The url of the document.
+     * @param score The search score of the document.
+     */
+    void add(int doc, String url, double score) {
+        if (size == docs.length) {
+            docs = Arrays.copyOf(docs, size * 2);
+            urls = Arrays.copyOf(urls, size * 2);
+            scores = Arrays.copyOf(scores, size * 2);
+        }
+        docs[size] = doc;
+        urls[size] = url;
+        scores[size] = score;
+        size++;
+    }
+
+    /**
+     * Get the number of results.
+     */
+    public int size() {
+        return size;
+    }
+
+    /**
+     * Check if nothing was found.
+     */
+    public boolean isEmpty() {
+        return size == 0;
+    }
+
+    /**
+     * Get the document number of the given rank in the searched index.
+     *
+     * @param rank The rank, starting at 0.
+     * @return The document number.
+     */
+    public int getDoc(int rank) {
+        checkRank(rank);
+        return docs[rank];
+    }
+
+    /**
+     * Get the url of the site of the given rank.
+     *
+     * @param rank The rank, starting at 0.
+     * @return The url of the site.
+     */
+    public String getUrl(int rank) {
+        checkRank(rank);
+        return urls[rank];
+    }
+
+    /**
+     * Get the search score of the site of the given rank.
+     *
+     * @param rank The rank, starting at 0.
+     * @return The search score.
+     */
+    public double getScore(int rank) {
+        checkRank(rank);
+        return scores[rank];
+    }
+
+    /**
+     * Get the results of the ranks from to to.
+     *
+     * @param from The first rank.
+     * @param to   The rank after the last one, at most size().
+     * @return The results of the ranks, starting at rank 0.
+     */
+    SearchResults range(int from, int to) {
+        SearchResults results = new SearchResults(to - from);
+        for (int rank = from; rank < to; rank++)
+            results.add(docs[rank], urls[rank], scores[rank]);
+        return results;
+    }
+
+    /**
+     * Get the search after token of the last result. Searching the same query
+     * after the token returns the results ranked behind the last one, see
+     * IndexSearcher.searchQueryCosineAfter().
+     *
+     * @return The token or null if there are no results.
+     */
+    public String getSearchAfterToken() {
+        return size == 0 ? null : new SearchAfterToken(scores[size - 1], urls[size - 1]).toString();
+    }
+
+    /**
+     * Get a view of the results as a List of String[2] with
+     * String[0] = each sites url
+     * String[1] = each sites search score
+     * The arrays are created when they are accessed.
+     *
+     * @return An unmodifiable list of the results ordered by rank.
+     */
+    public List<String[]> toStringArrays() {
+        return new StringArrayView();
+    }
+
+    private void checkRank(int rank) {
+        if (rank < 0 || rank >= size)
+            throw new IndexOutOfBoundsException("SearchResults: There is no result of rank " + rank + "!");
+    }
+
+    private final class StringArrayView extends AbstractList<String[]> implements RandomAccess {
+        @Override
+        public String[] get(int rank) {
+            return new String[] { getUrl(rank), Double.toString(scores[rank]) };
+        }
+
+        @Override
+        public int size() {
+            return size;
+        }
+    }
+}
@@ -0,0 +1,193 @@
+package de.fernunihagen.dbis.anguillasearch.index;
+
+import java.util.List;
+
+import de.fernunihagen.dbis.anguillasearch.helpers.UrlDictionary;
+
+/**
+ * The read only view of a reverse index that an IndexSearcher works on.
+ *
+ * Documents and terms are referenced by dense int numbers, starting at 0. A
+ * document number maps onto the document id (the URL) of the site and a term
+ * number maps onto the lemmatized token word. For each term the index holds a
+ * posting list of the documents containing the term.
+ */
+public interface SearchableIndex {
+
+    /**
+     * Get the number of documents in the index.
+     *
+     * @return The number of documents indexed.
+     */
+    int getNrOfSites();
+
+    /**
+     * Get the number of document numbers in use, including deleted documents. All
+     * document numbers are smaller than this.
+     *
+     * @return The number of document numbers.
+     */
+    int getDocumentCapacity();
+
+    /**
+     * Check if the given document is live, i.e. has not been deleted. Searches
+     * skip deleted documents.
+     *
+     * @param doc The document number.
+     * @return True if the document is live, false if it has been deleted.
+     */
+    boolean isLive(int doc);
+
+    /**
+     * Get the number of distinct terms in the index.
+     *
+     * @return The number of terms indexed.
+     */
+    int getNrOfTerms();
+
+    /**
+     * Check if the document vectors of this index are normalized.
+     *
+     * @return True if the index is normalized, false otherwise.
+     */
+    boolean isNormalized();
+
+    /**
+     * Get the document id (URL) of the given document number.
+     *
+     * @param doc The document number.
+     * @return The document id.
+     */
+    String getDocumentId(int doc);
+
+    /**
+     * Find the document number of the given document id.
+     *
+     * @param documentId The document id (URL) to be found.
+     * @return The document number or -1 if the document is not indexed.
+     */
+    int getDocumentNr(String documentId);
+
+    /**
+     * Get the UrlDictionary the URLs of this index are taken from. Indices sharing
+     * a dictionary can join their documents by URL id.
+     *
+     * @return The dictionary or null if the index stores its URLs on its own.
+     */
+    UrlDictionary getUrlDictionary();
+
+    /**
+     * Get the id of the given documents URL in the UrlDictionary of this index.
+     *
+     * @param doc The document number.
+     * @return The URL id or -1 if the index has no UrlDictionary.
+     */
+    int getUrlId(int doc);
+
+    /**
+     * Get the term word of the given term number.
+     *
+     * @param termId The term number.
+     * @return The lemmatized term word.
+     */
+    String getTerm(int termId);
+
+    /**
+     * Find the term number of the given lemmatized token.
+     *
+     * @param token The token to be found.
+     * @return The term number or -1 if the token is not indexed.
+     */
+    int getTermId(String token);
+
+    /**
+     * Get the terms of this index sorted in a TermDictionary, e.g. to find all
+     * terms with a prefix. The term number of a dictionary term is found by
+     * getTermId().
+     *
+     * @return The sorted terms of the index.
+     */
+    TermDictionary getTermDictionary();
+
+    /**
+     * Get the number of documents containing the given term.
+     *
+     * @param termId The term number.
+     * @return The document frequency of the term.
+     */
+    int getDocFrequency(int termId);
+
+    /**
+     * Get an iterator over the posting list of the given term.
+     *
+     * @param termId The term number.
+     * @return A new, not yet positioned PostingsIterator.
+     */
+    PostingsIterator getPostings(int termId);
+
+    /**
+     * Check if the index stores the positions of the tokens in each document.
+     *
+     * @return True if getPositions() can be used, false otherwise.
+     */
+    boolean hasPositions();
+
+    /**
+     * Get the positions of a term in a document. Positions count the words of the
+     * document starting at 0, removed stopwords keep their position.
+     *
+     * @param termId The term number.
+     * @param doc    The document number.
+     * @return The ascending positions, empty if the document doesn't contain the
+     *         term.
+     * @throws UnsupportedOperationException If the index stores no positions.
+     */
+    int[] getPositions(int termId, int doc);
+
+    /**
+     * Get the posting lists of this index ordered by descending impact, if the
+     * index has been given this layout.
+     *
+     * @return The impact ordered postings or null if the index has none.
+     */
+    ImpactPostings getImpactPostings();
+
+    /**
+     * Get the euclidean norm of the stored vector of the given document.
+     *
+     * @param doc The document number.
+     * @return The norm of the document vector.
+     */
+    double getNorm(int doc);
+
+    /**
+     * Get the special characters filtered out by this index.
+     *
+     * @return A List of special characters used by this index.
+     */
+    List<String> getSpecialCharacters();
+
+    /**
+     * Get the stopwords filtered out by this index.
+     *
+     * @return A List of stopwords used by this index.
+     */
+    List<String> getStopWords();
+
+    /**
+     * Get the Analyzer the documents of this index have been analyzed with.
+     * Queries need to be analyzed with the same Analyzer.
+     *
+     * @return The Analyzer of this index.
+     */
+    Analyzer getAnalyzer();
+
+    /**
+     * Get the generation of this index. It changes with every change of the index
+     * that may change search results, so results of an older generation can be
+     * recognized as outdated.
+     *
+     * @return The current generation.
+     */
+    long getGeneration();
+}
@@ -0,0 +1,76 @@
+package de.fernunihagen.dbis.anguillasearch.index;
+
+import jdk.incubator.vector.DoubleVector;
+import jdk.incubator.vector.VectorOperators;
+import jdk.incubator.vector.VectorSpecies;
+
+/**
+ * The ScoringKernels using the Vector API. Each lane of a vector adds up its own
+ * products, the lanes are added up at the end and the entries left over are
+ * added one by one.
+ *
+ * This class needs the module jdk.incubator.vector and is only loaded by
+ * KernelLoader if the module is available.
+ */
+final class SimdKernels implements ScoringKernels {
+    private static final VectorSpecies<Double> SPECIES = DoubleVector.SPECIES_PREFERRED;
+
+    @Override
+    public double dot(double[] a, double[] b, int length) {
+        DoubleVector sum = DoubleVector.zero(SPECIES);
+        int i = 0;
+        for (int bound = SPECIES.loopBound(length); i < bound; i += SPECIES.length())
+            sum = sum.add(DoubleVector.fromArray(SPECIES, a, i).mul(DoubleVector.fromArray(SPECIES, b, i)));
+        double result = sum.reduceLanes(VectorOperators.ADD);
+        for (; i < length; i++)
+            result += a[i] * b[i];
+        return result;
+    }
+
+    @Override
+    public double sparseDot(int[] indices, double[] values, int count, double[] dense) {
+        // Gathering the dense entries by a vector of indices is slower than
+        // loading them one by one on common CPUs, so this kernel stays scalar.
+        return ScalarKernels.INSTANCE.sparseDot(indices, values, count, dense);
+    }
+
+    @Override
+    public double squaredNorm(double[] a, int length) {
+        DoubleVector sum = DoubleVector.zero(SPECIES);
+        int i = 0;
+        for (int bound = SPECIES.loopBound(length); i < bound; i += SPECIES.length()) {
+            DoubleVector va = DoubleVector.fromArray(SPECIES, a, i);
+            sum = sum.add(va.mul(va));
+        }
+        double result = sum.reduceLanes(VectorOperators.ADD);
+        for (; i < length; i++)
+            result += a[i] * a[i];
+        return result;
+    }
+
+    @Override
+    public double cosine(double[] a, double[] b, int length) {
+        DoubleVector numerators = DoubleVector.zero(SPECIES);
+        DoubleVector denomsA = DoubleVector.zero(SPECIES);
+        DoubleVector denomsB = DoubleVector.zero(SPECIES);
+        int i = 0;
+        for (int bound = SPECIES.loopBound(length); i < bound; i += SPECIES.length()) {
+            DoubleVector va = DoubleVector.fromArray(SPECIES, a, i);
+            DoubleVector vb = DoubleVector.fromArray(SPECIES, b, i);
+            numerators = numerators.add(va.mul(vb));
+            denomsA = denomsA.add(va.mul(va));
+            denomsB = denomsB.add(vb.mul(vb));
+        }
+        double numerator = numerators.reduceLanes(VectorOperators.ADD);
+        double denomA = denomsA.reduceLanes(VectorOperators.ADD);
+        double denomB = denomsB.reduceLanes(VectorOperators.ADD);
+        for (; i < length; i++) {
+            numerator += a[i] * b[i];
+            denomA += a[i] * a[i];
+            denomB += b[i] * b[i];
+        }
+        if (denomA == 0.0 || denomB == 0.0 || numerator == 0.0)
+            return 0.0;
+        return numerator / (Math.sqrt(denomA) * Math.sqrt(denomB));
+    }
+}
@@ -0,0 +1,361 @@
+package de.fernunihagen.dbis.anguillasearch.index;
+
+import java.io.ByteArrayOutputStream;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.function.Predicate;
+
+/**
+ * An immutable, compact dictionary of sorted terms.
+ *
+ * The terms are sorted bytewise by their UTF-8 encoding and front coded in
+ * blocks of BLOCK_SIZE terms: the first term of a block is stored in full,
+ * every other term only stores the length of the prefix it shares with its
+ * predecessor and the remaining suffix. The start of each block is kept in a
+ * sampled index, so a lookup is a binary search over the first terms of the
+ * blocks followed by a scan of a single block.
+ *
+ * The id of a term is its rank in the sorted order. All terms sharing a prefix
+ * or lying in a range therefore have consecutive ids.
+ *
+ * <pre>
+ * int termCount, int blockCount, int dataBytes, int maxTermBytes,
+ * int[blockCount] blockStarts, byte[dataBytes] data
+ * block   varint length, byte[] first term,
+ *         (varint shared, varint suffixLength, byte[] suffix)*
+ * </pre>
+ */
+public class TermDictionary {
+    static final int BLOCK_SIZE = 16;
+    static final int HEADER_SIZE = 4 * Integer.BYTES;
+
+    private final ByteBuffer buffer;
+    private final int offset;
+    private final int termCount;
+    private final int blockCount;
+    private final int maxTermBytes;
+    private final int blockStarts;
+    private final int data;
+
+    /**
+     * Open a dictionary encoded by encode() at the given offset of buffer.
+     *
+     * @param buffer The buffer holding the encoded dictionary.
+     * @param offset The start of the dictionary in buffer.
+     */
+    public TermDictionary(ByteBuffer buffer, int offset) {
+        this.buffer = buffer;
+        this.offset = offset;
+        this.termCount = buffer.getInt(offset);
+        this.blockCount = buffer.getInt(offset + 4);
+        this.maxTermBytes = buffer.getInt(offset + 12);
+        this.blockStarts = offset + HEADER_SIZE;
+        this.data = blockStarts + blockCount * Integer.BYTES;
+    }
+
+    /**
+     * Build a new heap backed dictionary of the given terms.
+     *
+     * @param terms The terms of the dictionary, in any order and without
+     *              duplicates.
+     * @return The new dictionary.
+     */
+    public static TermDictionary build(Collection<String> terms) {
+        byte[][] encoded = new byte[terms.size()][];
+        int i = 0;
+        for (String term : terms)
+            encoded[i++] = term.getBytes(StandardCharsets.UTF_8);
+        Arrays.sort(encoded, Arrays::compareUnsigned);
+        return new TermDictionary(ByteBuffer.wrap(encode(encoded)), 0);
+    }
+
+    /**
+     * Encode the given UTF-8 terms into the dictionary format.
+     *
+     * @param terms The encoded terms, sorted bytewise and without duplicates.
+     * @return The encoded dictionary.
+     * @throws IllegalArgumentException If the terms are not sorted or contain
+     *                                  duplicates.
+     */
+    public static byte[] encode(byte[][] terms) throws IllegalArgumentException {
+        int blocks = (terms.length + BLOCK_SIZE - 1) / BLOCK_SIZE;
+        int[] starts = new int[blocks];
+        int maxTermBytes = 0;
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+
+        for (int i = 0; i < terms.length; i++) {
+            byte[] term = terms[i];
+            maxTermBytes = Math.max(maxTermBytes, term.length);
+            if (i > 0 && Arrays.compareUnsigned(terms[i - 1], term) >= 0)
+                throw new IllegalArgumentException("term dictionary: Terms need to be sorted and unique!");
+            if (i % BLOCK_SIZE == 0) {
+                starts[i / BLOCK_SIZE] = out.size();
+                writeVarInt(out, term.length);
+                out.write(term, 0, term.length);
+                continue;
+            }
+            byte[] prev = terms[i - 1];
+            int shared = Math.max(0, Arrays.mismatch(prev, term));
+            writeVarInt(out, shared);
+            writeVarInt(out, term.length - shared);
+            out.write(term, shared, term.length - shared);
+        }
+
+        ByteBuffer result = ByteBuffer.allocate(HEADER_SIZE + blocks * Integer.BYTES + out.size());
+        result.putInt(terms.length);
+        result.putInt(blocks);
+        result.putInt(out.size());
+        result.putInt(maxTermBytes);
+        for (int start : starts)
+            result.putInt(start);
+        result.put(out.toByteArray());
+        return result.array();
+    }
+
+    /**
+     * Append an unsigned variable length int, 7 bits per byte.
+     *
+     * @param out   The stream to be written to.
+     * @param value The non negative value to be written.
+     */
+    private static void writeVarInt(ByteArrayOutputStream out, int value) {
+        while ((value & ~0x7F) != 0) {
+            out.write((value & 0x7F) | 0x80);
+            value >>>= 7;
+        }
+        out.write(value);
+    }
+
+    /**
+     * A cursor decoding the terms of one block in order into a reusable buffer.
+     */
+    private final class BlockReader {
+        private final byte[] term = new byte[maxTermBytes];
+        private int length;
+        private int pos;
+
+        /**
+         * Position the reader on the first term of the given block.
+         *
+         * @param block The block number.
+         */
+        void start(int block) {
+            pos = data + buffer.getInt(blockStarts + block * Integer.BYTES);
+            length = readVarInt();
+            buffer.get(pos, term, 0, length);
+            pos += length;
+        }
+
+        /**
+         * Decode the next term of the block.
+         */
+        void next() {
+            int shared = readVarInt();
+            int suffix = readVarInt();
+            buffer.get(pos, term, shared, suffix);
+            pos += suffix;
+            length = shared + suffix;
+        }
+
+        /**
+         * Read a variable length int at the read position.
+         *
+         * @return The int read.
+         */
+        private int readVarInt() {
+            int value = 0;
+            int shift = 0;
+            byte b;
+            do {
+                b = buffer.get(pos++);
+                value |= (b & 0x7F) << shift;
+                shift += 7;
+            } while (b < 0);
+            return value;
+        }
+
+        /**
+         * Compare key bytewise with the current term.
+         *
+         * @param key The encoded key.
+         * @return A negative number, zero or a positive number if key is less,
+         *         equal or greater than the current term.
+         */
+        int compare(byte[] key) {
+            return Arrays.compareUnsigned(key, 0, key.length, term, 0, length);
+        }
+    }
+
+    /**
+     * Find the last block whose first term is less or equal to key.
+     *
+     * @param reader A reader used for decoding.
+     * @param key    The encoded key.
+     * @return The block number or -1 if key is less than all terms.
+     */
+    private int findBlock(BlockReader reader, byte[] key) {
+        int low = 0;
+        int high = blockCount - 1;
+        while (low <= high) {
+            int mid = (low + high) >>> 1;
+            reader.start(mid);
+            if (reader.compare(key) >= 0)
+                low = mid + 1;
+            else
+                high = mid - 1;
+        }
+        return high;
+    }
+
+    /**
+     * Get the id of the first term that is greater or equal to key.
+     *
+     * @param key   The encoded key.
+     * @param exact If true -1 is returned unless the term equals key.
+     * @return The found id, size() if all terms are less than key.
+     */
+    private int ceiling(byte[] key, boolean exact) {
+        if (termCount == 0)
+            return exact ? -1 : 0;
+        BlockReader reader = new BlockReader();
+        int block = Math.max(0, findBlock(reader, key));
+        int id = block * BLOCK_SIZE;
+        int end = Math.min(termCount, id + BLOCK_SIZE);
+        reader.start(block);
+        while (true) {
+            int cmp = reader.compare(key);
+            if (cmp <= 0)
+                return exact && cmp != 0 ? -1 : id;
+            id++;
+            if (id == end)
+                return exact ? -1 : id;
+            reader.next();
+        }
+    }
+
+    /**
+     * Get the id of the given term.
+     *
+     * @param term The term to be found.
+     * @return The id of the term or -1 if the term is not in the dictionary.
+     */
+    public int getTermId(String term) {
+        return ceiling(term.getBytes(StandardCharsets.UTF_8), true);
+    }
+
+    /**
+     * Get the id of the first term that is greater or equal to the given term.
+     *
+     * @param term The term to be found.
+     * @return The found id or size() if all terms are less than term.
+     */
+    public int getCeilingId(String term) {
+        return ceiling(term.getBytes(StandardCharsets.UTF_8), false);
+    }
+
+    /**
+     * Get the range of ids of all terms between from (inclusive) and to
+     * (exclusive).
+     *
+     * @param from The lower bound of the range.
+     * @param to   The upper bound of the range.
+     * @return An int[2] holding the first id and the end id of the range.
+     */
+    public int[] getRange(String from, String to) {
+        int start = getCeilingId(from);
+        int end = Math.max(start, getCeilingId(to));
+        return new int[] { start, end };
+    }
+
+    /**
+     * Get the range of ids of all terms starting with prefix.
+     *
+     * @param prefix The prefix of the terms.
+     * @return An int[2] holding the first id and the end id of the range.
+     */
+    public int[] getPrefixRange(String prefix) {
+        byte[] key = prefix.getBytes(StandardCharsets.UTF_8);
+        int start = ceiling(key, false);
+
+        // The first key after all terms with the prefix: increment the last byte
+        // that can be incremented and cut off the rest.
+        int last = key.length - 1;
+        while (last >= 0 && key[last] == (byte) 0xFF)
+            last--;
+        if (last < 0)
+            return new int[] { start, termCount };
+        byte[] upper = Arrays.copyOf(key, last + 1);
+        upper[last]++;
+        return new int[] { start, ceiling(upper, false) };
+    }
+
+    /**
+     * Get the term with the given id.
+     *
+     * @param id The id of the term.
+     * @return The term.
+     */
+    public String getTerm(int id) {
+        BlockReader reader = new BlockReader();
+        reader.start(id / BLOCK_SIZE);
+        for (int i = 0; i < id % BLOCK_SIZE; i++)
+            reader.next();
+        return new String(reader.term, 0, reader.length, StandardCharsets.UTF_8);
+    }
+
+    /**
+     * Visit the terms with ids from start (inclusive) to end (exclusive) in
+     * order, until the visitor returns false. Each block is decoded once, so
+     * visiting a range costs the same per term as a lookup of its first term.
+     *
+     * @param start   The id of the first term.
+     * @param end     The id after the last term.
+     * @param visitor Receives each term, returns false to stop.
+     */
+    public void forEachTerm(int start, int end, Predicate<String> visitor) {
+        end = Math.min(end, termCount);
+        if (start >= end)
+            return;
+        BlockReader reader = new BlockReader();
+        reader.start(start / BLOCK_SIZE);
+        for (int i = 0; i < start % BLOCK_SIZE; i++)
+            reader.next();
+        for (int id = start; id < end; id++) {
+            if (id > start && id % BLOCK_SIZE == 0)
+                reader.start(id / BLOCK_SIZE);
+            else if (id > start)
+                reader.next();
+            if (!visitor.test(new String(reader.term, 0, reader.length, StandardCharsets.UTF_8)))
+                return;
+        }
+    }
+
+    /**
+     * Get the number of terms in the dictionary.
+     *
+     * @return The number of terms.
+     */
+    public int size() {
+        return termCount;
+    }
+
+    /**
+     * Get the size of the encoded dictionary.
+     *
+     * @return The size in bytes, including the sampled block index.
+     */
+    public int getSizeInBytes() {
+        return HEADER_SIZE + blockCount * Integer.BYTES + buffer.getInt(offset + 8);
+    }
+
+    /**
+     * Get the average number of bytes used per term.
+     *
+     * @return The average size of a term in bytes.
+     */
+    public double getBytesPerTerm() {
+        return termCount == 0 ? 0.0 : (double) getSizeInBytes() / termCount;
+    }
+}
@@ -0,0 +1,111 @@
+package de.fernunihagen.dbis.anguillasearch.index;
+
+import java.util.Arrays;
+
+/**
+ * A growing hash map from terms to their term numbers that is looked up by
+ * characters, e.g. the current token of a TokenStream, without creating a
+ * String. Uses open addressing with linear probing.
+ */
+final class TermLookup {
+    private String[] keys = new String[64];
+    private int[] values = new int[64];
+    private int size = 0;
+
+    /**
+     * Get the number of the term stored in buffer[offset..offset+length).
+     *
+     * @return The term number or -1 if the term isn't contained.
+     */
+    int get(char[] buffer, int offset, int length) {
+        int mask = keys.length - 1;
+        for (int slot = hash(buffer, offset, length) & mask;; slot = (slot + 1) & mask) {
+            String key = keys[slot];
+            if (key == null)
+                return -1;
+            if (equals(key, buffer, offset, length))
+                return values[slot];
+        }
+    }
+
+    /**
+     * Get the number of the given term.
+     *
+     * @return The term number or -1 if the term isn't contained.
+     */
+    int get(CharSequence term) {
+        int mask = keys.length - 1;
+        for (int slot = hash(term) & mask;; slot = (slot + 1) & mask) {
+            String key = keys[slot];
+            if (key == null)
+                return -1;
+            if (key.contentEquals(term))
+                return values[slot];
+        }
+    }
+
+    /**
+     * Set the number of a term, the term may already be contained.
+     */
+    void put(String term, int value) {
+        if ((size + 1) * 2 > keys.length)
+            grow();
+        int mask = keys.length - 1;
+        int slot = hash(term) & mask;
+        while (keys[slot] != null && !keys[slot].equals(term))
+            slot = (slot + 1) & mask;
+        if (keys[slot] == null)
+            size++;
+        keys[slot] = term;
+        values[slot] = value;
+    }
+
+    /**
+     * Remove all terms.
+     */
+    void clear() {
+        Arrays.fill(keys, null);
+        size = 0;
+    }
+
+    /**
+     * Get the number of contained terms.
+     */
+    int size() {
+        return size;
+    }
+
+    private void grow() {
+        String[] oldKeys = keys;
+        int[] oldValues = values;
+        keys = new String[oldKeys.length * 2];
+        values = new int[oldKeys.length * 2];
+        size = 0;
+        for (int i = 0; i < oldKeys.length; i++)
+            if (oldKeys[i] != null)
+                put(oldKeys[i], oldValues[i]);
+    }
+
+    private static boolean equals(String key, char[] buffer, int offset, int length) {
+        if (key.length() != length)
+            return false;
+        for (int i = 0; i < length; i++)
+            if (key.charAt(i) != buffer[offset + i])
+                return false;
+        return true;
+    }
+
+    private static int hash(CharSequence chars) {
+        int h = 0;
+        for (int i = 0; i < chars.length(); i++)
+            h = h * 31 + chars.charAt(i);
+        return h ^ (h >>> 16);
+    }
+
+    private static int hash(char[] chars, int offset, int length) {
+        int h = 0;
+        for (int i = offset; i < offset + length; i++)
+            h = h * 31 + chars[i];
+        return h ^ (h >>> 16);
+    }
+}
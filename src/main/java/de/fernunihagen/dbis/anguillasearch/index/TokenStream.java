@@ -0,0 +1,43 @@
+package de.fernunihagen.dbis.anguillasearch.index;
+
+/**
+ * A TokenStream hands out the lemmas of a text one after another in a reused
+ * character buffer, so the indices can look up terms and filter stopwords
+ * without creating a String for each token.
+ *
+ * A stream is used by a single thread. It can be reset to analyze any number
+ * of texts, the buffer is only valid until the next call of incrementToken()
+ * or reset().
+ *
+ * @author Nico Beyer
+ */
+public interface TokenStream {
+
+    /**
+     * Start analyzing a new text.
+     *
+     * @param text The lowercase text to be analyzed.
+     */
+    void reset(CharSequence text);
+
+    /**
+     * Advance to the next token of the text.
+     *
+     * @return True if there is another token, false at the end of the text.
+     */
+    boolean incrementToken();
+
+    /**
+     * Get the buffer holding the lemma of the current token, starting at 0.
+     *
+     * @return The reused buffer of the current lemma.
+     */
+    char[] termBuffer();
+
+    /**
+     * Get the length of the current lemma in termBuffer().
+     *
+     * @return The length of the current lemma.
+     */
+    int termLength();
+}
@@ -0,0 +1,177 @@
+package de.fernunihagen.dbis.anguillasearch.index;
+
+import java.util.function.IntBinaryOperator;
+
+/**
+ * A fixed size min-heap that keeps the k best (document number, score) pairs
+ * offered to it, without boxing and without storing the other documents.
+ *
+ * Documents are ranked by score in descending order. Documents with the same
+ * score are ranked by the given tie order, e.g. by their id, so the top k are
+ * the same as the first k documents of a full sort. The root of the heap is the
+ * worst document kept, offering a document costs O(log k) at most and nothing
+ * if it can't beat the root.
+ *
+ * @author Nico Beyer
+ */
+public final class TopKHeap {
+    private final int[] docs;
+    private final double[] scores;
+    private final IntBinaryOperator tieOrder;
+    private int size = 0;
+    private boolean sorted = false;
+
+    /**
+     * Get a new empty TopKHeap.
+     *
+     * @param k        The number of documents to be kept.
+     * @param tieOrder Compares two document numbers of the same score, a negative
+     *                 value ranks the first one higher.
+     */
+    public TopKHeap(int k, IntBinaryOperator tieOrder) {
+        if (k < 0)
+            throw new IllegalArgumentException("TopKHeap: k can't be negative!");
+        this.docs = new int[k];
+        this.scores = new double[k];
+        this.tieOrder = tieOrder;
+    }
+
+    /**
+     * Offer a document to the heap. The document is kept if there are less than k
+     * documents or if it ranks higher than the worst document kept.
+     *
+     * @param doc   The document number.
+     * @param score The score of the document.
+     * @return True if the document was kept.
+     */
+    public boolean offer(int doc, double score) {
+        if (sorted)
+            throw new IllegalStateException("TopKHeap: The heap has already been sorted!");
+        if (size < docs.length) {
+            docs[size] = doc;
+            scores[size] = score;
+            siftUp(size++);
+            return true;
+        }
+        if (size == 0 || !ranksLower(docs[0], scores[0], doc, score))
+            return false;
+        docs[0] = doc;
+        scores[0] = score;
+        siftDown(0, size);
+        return true;
+    }
+
+    /**
+     * Check if the heap holds k documents, so a document needs to beat
+     * getMinScore() to be kept.
+     */
+    public boolean isFull() {
+        return size == docs.length;
+    }
+
+    /**
+     * Get the score of the worst document kept.
+     *
+     * @return The lowest score kept or negative infinity if the heap is empty.
+     */
+    public double getMinScore() {
+        return size == 0 ? Double.NEGATIVE_INFINITY : scores[0];
+    }
+
+    /**
+     * Get the number of documents kept.
+     */
+    public int size() {
+        return size;
+    }
+
+    /**
+     * Sort the documents kept from the highest to the lowest rank in place. No
+     * documents can be offered afterwards.
+     */
+    public void sort() {
+        if (sorted)
+            return;
+        // Move the worst document to the end until the heap is empty.
+        for (int end = size - 1; end > 0; end--) {
+            swap(0, end);
+            siftDown(0, end);
+        }
+        sorted = true;
+    }
+
+    /**
+     * Get the document number of the given rank, sort() needs to be called first.
+     *
+     * @param rank The rank, starting at 0.
+     * @return The document number.
+     */
+    public int getDoc(int rank) {
+        checkSorted(rank);
+        return docs[rank];
+    }
+
+    /**
+     * Get the score of the document of the given rank, sort() needs to be called
+     * first.
+     *
+     * @param rank The rank, starting at 0.
+     * @return The score of the document.
+     */
+    public double getScore(int rank) {
+        checkSorted(rank);
+        return scores[rank];
+    }
+
+    private void checkSorted(int rank) {
+        if (!sorted)
+            throw new IllegalStateException("TopKHeap: The heap needs to be sorted first!");
+        if (rank < 0 || rank >= size)
+            throw new IndexOutOfBoundsException("TopKHeap: There is no document of rank " + rank + "!");
+    }
+
+    /**
+     * Check if document a ranks lower than document b.
+     */
+    private boolean ranksLower(int a, double scoreA, int b, double scoreB) {
+        int cmp = Double.compare(scoreA, scoreB);
+        return cmp != 0 ? cmp < 0 : tieOrder.applyAsInt(a, b) > 0;
+    }
+
+    private boolean ranksLower(int i, int j) {
+        return ranksLower(docs[i], scores[i], docs[j], scores[j]);
+    }
+
+    private void siftUp(int i) {
+        while (i > 0) {
+            int parent = (i - 1) >>> 1;
+            if (!ranksLower(i, parent))
+                return;
+            swap(i, parent);
+            i = parent;
+        }
+    }
+
+    private void siftDown(int i, int end) {
+        while (true) {
+            int child = 2 * i + 1;
+            if (child >= end)
+                return;
+            if (child + 1 < end && ranksLower(child + 1, child))
+                child++;
+            if (!ranksLower(child, i))
+                return;
+            swap(i, child);
+            i = child;
+        }
+    }
+
+    private void swap(int i, int j) {
+        int doc = docs[i];
+        docs[i] = docs[j];
+        docs[j] = doc;
+        double score = scores[i];
+        scores[i] = scores[j];
+        scores[j] = score;
+    }
+}
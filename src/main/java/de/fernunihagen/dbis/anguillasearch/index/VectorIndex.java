@@ -1,11 +1,15 @@
 package de.fernunihagen.dbis.anguillasearch.index;
 
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.file.Path;
 import java.util.ArrayList;
-import java.util.HashMap;
+import java.util.Arrays;
+import java.util.BitSet;
+import java.util.HashSet;
 
 import java.util.List;
 import java.util.Map;
-import java.util.Properties;
 import java.util.Set;
 import java.util.TreeMap;
 import java.util.TreeSet;
@@ -14,10 +18,7 @@ import java.util.Collections;
 
 import static de.fernunihagen.dbis.anguillasearch.index.IndexConfig.*;
 import de.fernunihagen.dbis.anguillasearch.helpers.Site;
-
-import edu.stanford.nlp.ling.CoreLabel;
-import edu.stanford.nlp.pipeline.CoreDocument;
-import edu.stanford.nlp.pipeline.StanfordCoreNLP;
+import de.fernunihagen.dbis.anguillasearch.helpers.UrlDictionary;
 
 /**
  * 
@@ -28,137 +29,475 @@ import edu.stanford.nlp.pipeline.StanfordCoreNLP;
  * This implementation handles the tokens as vectors.
  * 
  * Each object contains a forward index of the added Sites.
+ * The URLs of the Sites are taken from a UrlDictionary that may be shared with
+ * the other indices, each matrix row knows the URL id of its document.
  * The index may be searched by term-frequency-inverse-document-frequency or by
  * cosine similarity.
  * 
+ * When the index is finished a posting list is built for each token, so that
+ * searches only need to visit the documents containing the query tokens.
+ * A finished index can be saved to an index file with save() and reopened as a
+ * MappedVectorIndex. The posting weights can be stored in a reduced precision
+ * WeightFormat with quantize().
+ * 
+ * Sites can be updated and deleted at any time. Deleted documents are marked
+ * in a live documents bit set that searches consult, their share of the
+ * document frequencies is removed right away. The next finish() recomputes the
+ * weights from the stored term frequencies without annotating any Site again,
+ * compact() reclaims the space of deleted documents.
+ * 
+ * The position of each token in its Site is recorded as well and kept in
+ * compressed position lists, so the IndexSearcher can match phrases and
+ * proximity queries without scanning the text of the Sites again.
+ * 
+ * Sites are read through the TokenStream of the Analyzer. Each token is
+ * filtered and resolved to its term number on the reused buffer of the stream,
+ * so only the terms new to the index are turned into Strings.
+ * 
  * @author Nico Beyer
  */
-public class VectorIndex {
-    // Saves the index in the matrix for each added document.
-    private TreeMap<String, Integer> documentIndex = new TreeMap<>();
+public class VectorIndex implements SearchableIndex {
+    // The URL id of each matrix row and the matrix row of each URL id (-1 if none).
+    private UrlDictionary dictionary;
+    private int[] docUrlIds = new int[16];
+    private int[] urlDocs = new int[0];
     // Saves the matrix index for each token.
-    private HashMap<String, Integer> tokenIndex = new HashMap<>();
+    private TermLookup tokenIndex = new TermLookup();
     // This is matrix[i,j] with i = documents and j = tokens of that document.
     private ArrayList<ArrayList<Double>> matrix = new ArrayList<>();
     // The number of documents for each token.
     private TreeMap<Integer, Integer> docsPerTokIndex = new TreeMap<>();
+    // The token of each matrix column.
+    private ArrayList<String> terms = new ArrayList<>();
+    // The sparse term frequencies of each document, sorted by term number, null
+    // for deleted documents.
+    private ArrayList<int[]> docTermIds = new ArrayList<>();
+    private ArrayList<double[]> docTfs = new ArrayList<>();
+    // The compressed token positions of each document and the start of the
+    // position list of each term in the documents row, null for deleted documents.
+    private ArrayList<byte[]> docPositions = new ArrayList<>();
+    private ArrayList<int[]> docPositionStarts = new ArrayList<>();
+    // The documents that have not been deleted.
+    private BitSet liveDocs = new BitSet();
+
+    // Posting lists of all tokens built by finish(). The postings of token j are
+    // stored in postingDocs/postingWeights[postingStarts[j]..postingStarts[j+1]).
+    private int[] postingStarts = null;
+    private int[] postingDocs = null;
+    private double[] postingWeights = null;
+    // The posting weights in a reduced precision format, set by quantize().
+    private QuantizedWeights quantizedWeights = null;
+    // The posting lists ordered by impact, built by orderByImpact().
+    private ImpactPostings impactPostings = null;
+    // The norm of each document vector.
+    private double[] norms = null;
+    // The sorted terms, built by getTermDictionary() and dropped whenever terms
+    // are added or removed.
+    private TermDictionary termDictionary = null;
 
     private ForwardIndex forwardIndex = null;
 
     private List<String> specialCharacters;
     private List<String> stopwords;
-    private StanfordCoreNLP pipeline;
+    private Analyzer analyzer;
     private double totalDocCount = 0;
     private boolean normalized = false;
+    // Changed by every change that may change search results.
+    private long generation = 0;
+
+    // Reused by addSite(): the lowercase content of the Site, the stream of its
+    // lemmas, its tokens as pairs of term number and position and the buffer
+    // of the encoded positions.
+    private final StringBuilder content = new StringBuilder();
+    private TokenStream tokenStream;
+    private long[] docTokens = new long[256];
+    private ByteBuffer positionBuffer = ByteBuffer.allocate(2560);
+    // The terms of the Site that are new to the index and their temporary number.
+    private final TermLookup addedTermLookup = new TermLookup();
+    private final ArrayList<String> addedTerms = new ArrayList<>();
 
     /**
      * Initialize basic lists and settings for the tokenization and lemmatization.
      */
-    private void init() {
+    private void init(Analyzer analyzer) {
         this.specialCharacters = REVERSEINDEX_SPECIAL_CHARACTERS;
         this.stopwords = REVERSEINDEX_STOPWORDS;
-        Properties props = new Properties();
-        props.setProperty("annotators", REVERSEINDEX_PIPELINE_ANNOTATORS);
-        pipeline = new StanfordCoreNLP(props);
+        this.analyzer = analyzer;
+        this.tokenStream = analyzer.tokenStream();
     }
 
     /**
-     * Initialize a new empty vectorIndex object.
+     * Initialize a new empty vectorIndex object with its own UrlDictionary.
      */
     public VectorIndex() {
-        init();
+        this(new UrlDictionary());
+    }
+
+    /**
+     * Initialize a new empty vectorIndex object on the given UrlDictionary.
+     * 
+     * @param dictionary The dictionary assigning the ids of the Sites URLs.
+     */
+    public VectorIndex(UrlDictionary dictionary) {
+        this(dictionary, new CoreNlpAnalyzer());
     }
 
     /**
-     * Initialize a new empty vectorIndex object.
+     * Initialize a new empty vectorIndex object on the given UrlDictionary that
+     * analyzes the Sites with the given Analyzer.
+     * 
+     * @param dictionary The dictionary assigning the ids of the Sites URLs.
+     * @param analyzer   The Analyzer for the Sites and search queries.
+     */
+    public VectorIndex(UrlDictionary dictionary, Analyzer analyzer) {
+        this.dictionary = dictionary;
+        init(analyzer);
+    }
+
+    /**
+     * Initialize a new empty vectorIndex object that adds the Site vectors to the
+     * given forward index and shares its UrlDictionary.
+     * 
+     * @param forwardIndex The forward index of the added Sites.
      */
     public VectorIndex(ForwardIndex forwardIndex) {
+        this(forwardIndex, new CoreNlpAnalyzer());
+    }
+
+    /**
+     * Initialize a new empty vectorIndex object that adds the Site vectors to the
+     * given forward index, shares its UrlDictionary and analyzes the Sites with
+     * the given Analyzer.
+     * 
+     * @param forwardIndex The forward index of the added Sites.
+     * @param analyzer     The Analyzer for the Sites and search queries.
+     */
+    public VectorIndex(ForwardIndex forwardIndex, Analyzer analyzer) {
+        this(forwardIndex.getUrlDictionary(), analyzer);
         this.forwardIndex = forwardIndex;
-        init();
     }
 
     /**
      * Add a Site to the index.
-     * Sites with the same URL will not be added.
+     * Sites with the same URL will not be added, use update() to replace them.
+     * Sites added to a finished index become searchable with the next finish().
      * 
      * @param site The Site to be added.
      */
     public void addSite(Site site) {
-        if (documentIndex.containsKey(site.url))
+        int urlId = dictionary.add(site.url);
+        if (getDocOfUrlId(urlId) != -1)
             return;
 
-        TreeSet<Token> tokens = new TreeSet<>();
-
-        DocInfo docInfo = new DocInfo();
-        // Convert site content into one lowercase string.
-        StringBuilder siteContent = new StringBuilder(site.title.toLowerCase());
-        for (String heading : site.headings)
-            siteContent.append(" " + heading.toLowerCase());
-        siteContent.append(" " + site.paragraphs.toLowerCase());
-
-        // Tokenize and lemmatize the sites.
-        CoreDocument content = new CoreDocument(siteContent.toString());
-        pipeline.annotate(content);
-
-        for (CoreLabel tok : content.tokens()) {
-            String lemma = tok.lemma();
+        // Convert site content into one lowercase text.
+        content.setLength(0);
+        appendLowerCase(site.title);
+        for (String heading : site.headings) {
+            content.append(' ');
+            appendLowerCase(heading);
+        }
+        content.append(' ');
+        appendLowerCase(site.paragraphs);
+
+        // Tokenize and lemmatize the site into pairs of term number and position.
+        // Stopwords keep their position, so phrases don't match across them. Terms
+        // new to the index get a temporary negative number first.
+        tokenStream.reset(content);
+        addedTermLookup.clear();
+        addedTerms.clear();
+        int position = 0;
+        int tokenCount = 0;
+        while (tokenStream.incrementToken()) {
+            char[] term = tokenStream.termBuffer();
+            int length = tokenStream.termLength();
             // Filter out stopwords and special characters.
-            if (specialCharacters.contains(lemma))
+            if (SPECIAL_CHARACTER_SET.contains(term, 0, length))
                 continue;
-            docInfo.incrementTotalWordcount();
-            if (stopwords.contains(lemma))
+            position++;
+            if (STOPWORD_SET.contains(term, 0, length))
                 continue;
-            // Count how much each word has been used.
-            docInfo.incrementWordCountOf(lemma);
-            // Save processed tokens and filter out douplicates.
-            tokens.add(new Token(lemma));
+            int termId = tokenIndex.get(term, 0, length);
+            if (termId == -1) {
+                int newTerm = addedTermLookup.get(term, 0, length);
+                if (newTerm == -1) {
+                    newTerm = addedTerms.size();
+                    String word = new String(term, 0, length);
+                    addedTermLookup.put(word, newTerm);
+                    addedTerms.add(word);
+                }
+                termId = -newTerm - 1;
+            }
+            if (tokenCount == docTokens.length)
+                docTokens = Arrays.copyOf(docTokens, tokenCount * 2);
+            docTokens[tokenCount++] = ((long) termId << 32) | (position - 1);
         }
 
         // Add a new row for the document to the matrix and save the rows index to the
         // document index.
         int thisDocumentsIndex = matrix.size();
-        documentIndex.put(site.url, thisDocumentsIndex);
+        if (thisDocumentsIndex == docUrlIds.length)
+            docUrlIds = Arrays.copyOf(docUrlIds, thisDocumentsIndex * 2);
+        docUrlIds[thisDocumentsIndex] = urlId;
+        if (urlId >= urlDocs.length) {
+            int oldLength = urlDocs.length;
+            urlDocs = Arrays.copyOf(urlDocs, Math.max(urlId + 1, oldLength * 2));
+            Arrays.fill(urlDocs, oldLength, urlDocs.length, -1);
+        }
+        urlDocs[urlId] = thisDocumentsIndex;
         int rowSize = 0;
         if (!matrix.isEmpty())
             rowSize = getVectorSize();
         matrix.add(new ArrayList<>(Collections.nCopies(rowSize, 0.0)));
-
-        // Add each tokens TF to the matrix and tokenIndex.
-        for (Token tok : tokens) {
-            String word = tok.getToken();
-            Integer foundIndex = tokenIndex.computeIfAbsent(word, k -> {
+        liveDocs.set(thisDocumentsIndex);
+
+        // Number the new terms in alphabetical order and add them to all documents
+        // in the matrix.
+        if (!addedTerms.isEmpty()) {
+            int[] newTermIds = new int[addedTerms.size()];
+            String[] sortedTerms = addedTerms.toArray(new String[0]);
+            Arrays.sort(sortedTerms);
+            for (String word : sortedTerms) {
                 int index = getVectorSize();
-                // Add the token to all other documents in the matrix.
                 for (ArrayList<Double> doc : matrix)
                     doc.add(0.0);
-                // Add the token to the index and set foundIndex to the new index.
-                return index;
-            });
-
-            // Set the TF score in the matrix.
-            matrix.get(thisDocumentsIndex).set(tokenIndex.get(word), docInfo.getTfOf(word));
+                terms.add(word);
+                tokenIndex.put(word, index);
+                newTermIds[addedTermLookup.get(word)] = index;
+            }
+            termDictionary = null;
+            for (int i = 0; i < tokenCount; i++) {
+                int termId = (int) (docTokens[i] >> 32);
+                if (termId < 0)
+                    docTokens[i] = ((long) newTermIds[-termId - 1] << 32) | (docTokens[i] & 0xFFFFFFFFL);
+            }
+        }
 
+        // Count the tokens of each term and add their TF to the matrix.
+        Arrays.sort(docTokens, 0, tokenCount);
+        int termCount = 0;
+        for (int i = 0; i < tokenCount; i++)
+            if (i == 0 || (docTokens[i] >>> 32) != (docTokens[i - 1] >>> 32))
+                termCount++;
+        int[] termIds = new int[termCount];
+        double[] tfs = new double[termCount];
+        ArrayList<Double> row = matrix.get(thisDocumentsIndex);
+        TreeMap<String, Integer> wordCounts = this.forwardIndex != null ? new TreeMap<>() : null;
+        double totalWordCount = position;
+        int n = 0;
+        for (int i = 0; i < tokenCount;) {
+            int termId = (int) (docTokens[i] >>> 32);
+            int end = i + 1;
+            while (end < tokenCount && (int) (docTokens[end] >>> 32) == termId)
+                end++;
+            Integer wordCount = end - i;
+            termIds[n] = termId;
+            tfs[n] = wordCount / totalWordCount;
+            row.set(termId, tfs[n]);
             // The token has been found in one more document to count.
-            docsPerTokIndex.put(foundIndex, docsPerTokIndex.getOrDefault(foundIndex, 0) + 1);
+            docsPerTokIndex.put(termId, docsPerTokIndex.getOrDefault(termId, 0) + 1);
+            if (wordCounts != null)
+                wordCounts.put(terms.get(termId), wordCount);
+            n++;
+            i = end;
         }
-        if (this.forwardIndex != null)
-            this.forwardIndex.addVector(site.url, docInfo.getDocVectorized());
+
+        // Keep the term frequencies to recompute the weights on later changes.
+        docTermIds.add(termIds);
+        docTfs.add(tfs);
+        if (positionBuffer.capacity() < tokenCount * 10)
+            positionBuffer = ByteBuffer.allocate(tokenCount * 10);
+        int[] positionStarts = new int[termCount + 1];
+        docPositions.add(PositionLists.encode(docTokens, tokenCount, positionStarts, positionBuffer));
+        docPositionStarts.add(positionStarts);
+        if (wordCounts != null)
+            this.forwardIndex.addVector(site.url, wordCounts.entrySet());
         this.totalDocCount++;
+        generation++;
+    }
+
+    /**
+     * Append the lowercase form of the given text to the content buffer.
+     */
+    private void appendLowerCase(String text) {
+        int length = text.length();
+        for (int i = 0; i < length; i++) {
+            // Leave the rare non ASCII texts to the locale rules of toLowerCase().
+            if (text.charAt(i) >= 0x80) {
+                content.append(text.toLowerCase());
+                return;
+            }
+        }
+        for (int i = 0; i < length; i++) {
+            char c = text.charAt(i);
+            content.append(c >= 'A' && c <= 'Z' ? (char) (c + ('a' - 'A')) : c);
+        }
     }
 
     /**
-     * Do some finishing steps to enable searching on the index. After finishing the
-     * index no more sites may be added.
+     * Replace the Site with the same URL, or add it if it isn't indexed yet.
+     * The new content becomes searchable with the next finish(), the old content
+     * is not found anymore right away.
+     * 
+     * @param site The new version of the Site.
+     */
+    public void update(Site site) {
+        delete(site.url);
+        addSite(site);
+    }
+
+    /**
+     * Delete the Site with the given URL from the index. The document is skipped
+     * by searches right away and the document frequencies are adjusted, the
+     * weights of the other documents are recomputed by the next finish().
+     * 
+     * @param url The URL of the Site to be deleted.
+     * @return True if the Site was deleted, false if it wasn't indexed.
+     */
+    public boolean delete(String url) {
+        int doc = getDocumentNr(url);
+        if (doc == -1)
+            return false;
+
+        for (int termId : docTermIds.get(doc))
+            docsPerTokIndex.put(termId, docsPerTokIndex.get(termId) - 1);
+        docTermIds.set(doc, null);
+        docTfs.set(doc, null);
+        docPositions.set(doc, null);
+        docPositionStarts.set(doc, null);
+        liveDocs.clear(doc);
+        urlDocs[docUrlIds[doc]] = -1;
+        this.totalDocCount--;
+        generation++;
+        return true;
+    }
+
+    /**
+     * Reclaim the space of deleted documents and of tokens that are not contained
+     * in any document anymore. Document and term numbers change.
+     * 
+     * A finished index is finished again, normalized and quantized in the same
+     * way as before.
+     */
+    public void compact() {
+        boolean finished = postingStarts != null;
+        boolean wasNormalized = normalized;
+        boolean impactOrdered = impactPostings != null;
+        WeightFormat format = getWeightFormat();
+
+        // The new number of each token, -1 for unused tokens.
+        int[] newTermIds = new int[getVectorSize()];
+        ArrayList<String> newTerms = new ArrayList<>();
+        TreeMap<Integer, Integer> newDocsPerTok = new TreeMap<>();
+        tokenIndex.clear();
+        for (int i = 0; i < newTermIds.length; i++) {
+            int df = docsPerTokIndex.getOrDefault(i, 0);
+            if (df == 0) {
+                newTermIds[i] = -1;
+                continue;
+            }
+            newTermIds[i] = newTerms.size();
+            newDocsPerTok.put(newTerms.size(), df);
+            tokenIndex.put(terms.get(i), newTerms.size());
+            newTerms.add(terms.get(i));
+        }
+
+        // Keep the live documents in their order.
+        ArrayList<ArrayList<Double>> newMatrix = new ArrayList<>();
+        ArrayList<int[]> newDocTermIds = new ArrayList<>();
+        ArrayList<double[]> newDocTfs = new ArrayList<>();
+        ArrayList<byte[]> newDocPositions = new ArrayList<>();
+        ArrayList<int[]> newDocPositionStarts = new ArrayList<>();
+        int[] newDocUrlIds = new int[Math.max(16, (int) totalDocCount)];
+        for (int d = liveDocs.nextSetBit(0); d >= 0; d = liveDocs.nextSetBit(d + 1)) {
+            ArrayList<Double> row = new ArrayList<>(Collections.nCopies(newTerms.size(), 0.0));
+            int[] termIds = docTermIds.get(d);
+            for (int j = 0; j < termIds.length; j++) {
+                termIds[j] = newTermIds[termIds[j]];
+                row.set(termIds[j], docTfs.get(d)[j]);
+            }
+            urlDocs[docUrlIds[d]] = newMatrix.size();
+            newDocUrlIds[newMatrix.size()] = docUrlIds[d];
+            newMatrix.add(row);
+            newDocTermIds.add(termIds);
+            newDocTfs.add(docTfs.get(d));
+            newDocPositions.add(docPositions.get(d));
+            newDocPositionStarts.add(docPositionStarts.get(d));
+        }
+
+        matrix = newMatrix;
+        docTermIds = newDocTermIds;
+        docTfs = newDocTfs;
+        docPositions = newDocPositions;
+        docPositionStarts = newDocPositionStarts;
+        docUrlIds = newDocUrlIds;
+        terms = newTerms;
+        termDictionary = null;
+        docsPerTokIndex = newDocsPerTok;
+        liveDocs = new BitSet();
+        liveDocs.set(0, matrix.size());
+        postingStarts = null;
+        postingDocs = null;
+        postingWeights = null;
+        quantizedWeights = null;
+        norms = null;
+        normalized = false;
+
+        if (finished) {
+            finish();
+            if (wasNormalized)
+                normalize();
+            quantize(format);
+            if (impactOrdered)
+                orderByImpact();
+        }
+    }
+
+    /**
+     * Do some finishing steps to enable searching on the index.
      * 
      * This needs to be called after adding all Sites to the index and before
-     * calling any of the search methods, getTfIdfOf() or normalize().
+     * calling any of the search methods, getTfIdfOf() or normalize(). After
+     * adding, updating or deleting Sites it needs to be called again to recompute
+     * the weights, the index is not normalized or quantized anymore afterwards.
      */
     public void finish() {
-        for (ArrayList<Double> doc : matrix) {
-            for (int i = 0; i < doc.size(); i++) {
-                double tfIdf = doc.get(i) * Math.log(this.totalDocCount / docsPerTokIndex.get(i));
+        generation++;
+        normalized = false;
+        quantizedWeights = null;
+        impactPostings = null;
+        int vectorSize = getVectorSize();
+        int postingCount = 0;
+        postingStarts = new int[vectorSize + 1];
+        for (int i = 0; i < vectorSize; i++) {
+            postingStarts[i] = postingCount;
+            postingCount += docsPerTokIndex.get(i);
+        }
+        postingStarts[vectorSize] = postingCount;
+        postingDocs = new int[postingCount];
+        postingWeights = new double[postingCount];
+        norms = new double[matrix.size()];
+
+        // Next free position in each tokens posting list.
+        int[] fill = new int[vectorSize];
+        System.arraycopy(postingStarts, 0, fill, 0, vectorSize);
+
+        for (int d = liveDocs.nextSetBit(0); d >= 0; d = liveDocs.nextSetBit(d + 1)) {
+            ArrayList<Double> doc = matrix.get(d);
+            int[] termIds = docTermIds.get(d);
+            double norm = 0.0;
+            for (int j = 0; j < termIds.length; j++) {
+                int i = termIds[j];
+                double tf = docTfs.get(d)[j];
+                double tfIdf = tf * Math.log(this.totalDocCount / docsPerTokIndex.get(i));
                 doc.set(i, tfIdf);
+                norm += tfIdf * tfIdf;
+
+                // Documents are visited in order, so each posting list stays sorted.
+                postingDocs[fill[i]] = d;
+                postingWeights[fill[i]] = tfIdf;
+                fill[i]++;
             }
+            norms[d] = Math.sqrt(norm);
         }
     }
 
@@ -170,20 +509,116 @@ public class VectorIndex {
      * 
      */
     public void normalize() {
+        if (quantizedWeights != null)
+            throw new IllegalStateException("VectorIndex: A quantized index can't be normalized!");
+        generation++;
+        impactPostings = null;
         for (ArrayList<Double> doc : matrix) {
             // Find the norm of the finished document vector
             Double norm = 0.0;
             for (Double tfIdf : doc)
                 norm += Math.pow(tfIdf, 2);
             norm = Math.sqrt(norm);
+            // A document without any weighted token can't be normalized.
+            if (norm == 0.0)
+                continue;
 
             // Normalize the document vector.
             for (int i = 0; i < doc.size(); i++)
                 doc.set(i, doc.get(i) / norm);
         }
+
+        // Apply the same scaling to the posting lists.
+        if (postingDocs != null) {
+            for (int p = 0; p < postingDocs.length; p++) {
+                double norm = norms[postingDocs[p]];
+                if (norm != 0.0)
+                    postingWeights[p] /= norm;
+            }
+            for (int d = 0; d < norms.length; d++)
+                norms[d] = norms[d] == 0.0 ? 0.0 : 1.0;
+        }
         this.normalized = true;
     }
 
+    /**
+     * Store the posting weights in the given reduced precision format. Searches
+     * will score on the quantized weights and the full precision posting weights
+     * are released. This can't be undone.
+     * 
+     * finish() and normalize(), if wanted, need to be called before using this
+     * method. The document vectors returned by getVectorOf() keep their full
+     * precision.
+     * 
+     * @param format The format to store the posting weights in.
+     */
+    public void quantize(WeightFormat format) {
+        if (postingStarts == null)
+            throw new IllegalStateException("VectorIndex: The index needs to be finished first!");
+        if (format == WeightFormat.FLOAT64 || quantizedWeights != null)
+            return;
+        quantizedWeights = new QuantizedWeights(format, postingWeights, postingDocs, postingStarts, matrix.size());
+        postingWeights = null;
+        impactPostings = null;
+        generation++;
+    }
+
+    /**
+     * Additionally store the posting lists ordered by descending impact, so
+     * IndexSearcher.searchQueryCosineTopK() can stop early.
+     * 
+     * This needs to be called after finish(), normalize() and quantize(), if
+     * wanted, since each of them drops the impact ordered postings.
+     */
+    public void orderByImpact() {
+        if (postingStarts == null)
+            throw new IllegalStateException("VectorIndex: The index needs to be finished first!");
+        impactPostings = ImpactPostings.build(this);
+    }
+
+    /**
+     * Get the format the posting weights are stored in.
+     * 
+     * @return The weight format, FLOAT64 unless quantize() has been called.
+     */
+    public WeightFormat getWeightFormat() {
+        return quantizedWeights == null ? WeightFormat.FLOAT64 : quantizedWeights.getFormat();
+    }
+
+    /**
+     * Get the memory used by the posting weights.
+     * 
+     * @return The size of the posting weights in bytes.
+     */
+    public long getPostingWeightsSize() {
+        if (quantizedWeights != null)
+            return quantizedWeights.getSizeInBytes();
+        return postingWeights == null ? 0 : (long) postingWeights.length * Double.BYTES;
+    }
+
+    /**
+     * Save the finished index to the given file. The file can be opened with
+     * MappedVectorIndex.open() to search the index without rebuilding it.
+     * 
+     * @param file The path of the index file to be written.
+     * @throws IOException If the file can't be written.
+     */
+    public void save(Path file) throws IOException {
+        IndexFile.write(this, file);
+    }
+
+    /**
+     * Save the finished index to the given file with compressed posting lists.
+     * The posting weights will be quantized to 16 bit, see BlockPostings.
+     * 
+     * @param file       The path of the index file to be written.
+     * @param compressed If true the posting lists will be compressed.
+     * @throws IOException If the file can't be written.
+     */
+    public void save(Path file, boolean compressed) throws IOException {
+        IndexFile.write(this, file, compressed);
+    }
+
     /**
      * Get the size of all vectors saved in the index.
      * 
@@ -200,6 +635,7 @@ public class VectorIndex {
      * 
      * @return True if the index is normalized, false otherwise.
      */
+    @Override
     public boolean isNormalized() {
         return this.normalized;
     }
@@ -210,7 +646,10 @@ public class VectorIndex {
      * @return A Set of all document identifiers in this index.
      */
     public Set<String> getStoredDocumentIds() {
-        return documentIndex.keySet();
+        TreeSet<String> documentIds = new TreeSet<>();
+        for (int doc = liveDocs.nextSetBit(0); doc >= 0; doc = liveDocs.nextSetBit(doc + 1))
+            documentIds.add(getDocumentId(doc));
+        return documentIds;
     }
 
     /**
@@ -236,8 +675,8 @@ public class VectorIndex {
             queryVector.add(0.0);
 
         for (String tok : tokens) {
-            Integer tokenIndx = tokenIndex.get(tok);
-            if (tokenIndx == null)
+            int tokenIndx = tokenIndex.get(tok);
+            if (tokenIndx == -1)
                 continue;
 
             queryVector.set(tokenIndx, weights.getOrDefault(tok, 0.0));
@@ -253,7 +692,7 @@ public class VectorIndex {
      * @return A List of TFIDF values, one for each token in the index.
      */
     public List<Double> getVectorOf(String documentId) {
-        return matrix.get(documentIndex.get(documentId));
+        return matrix.get(getDocumentNr(documentId));
     }
 
     /**
@@ -263,7 +702,7 @@ public class VectorIndex {
      * @return True if the token is contained, else false.
      */
     public boolean containsToken(String token) {
-        return tokenIndex.containsKey(token);
+        return tokenIndex.get(token) != -1;
     }
 
     /**
@@ -275,11 +714,11 @@ public class VectorIndex {
      * @return The sum of all tokens TFIDF in the given document.
      */
     public double getTfIdfSumOf(String docId, List<String> tokens) {
-        Integer docIndex = documentIndex.get(docId);
+        int docIndex = getDocumentNr(docId);
         double tfIdfScore = 0.0;
         for (String token : tokens) {
-            Integer tokIndex = tokenIndex.get(token);
-            if (tokIndex == null)
+            int tokIndex = tokenIndex.get(token);
+            if (tokIndex == -1)
                 continue;
             tfIdfScore += matrix.get(docIndex).get(tokIndex);
         }
@@ -295,10 +734,10 @@ public class VectorIndex {
      *         in the index.
      */
     public Double getTfIdfOf(String token, String docId) {
-        Integer tokIndex = tokenIndex.get(token);
-        Integer docIndex = documentIndex.get(docId);
+        int tokIndex = tokenIndex.get(token);
+        int docIndex = getDocumentNr(docId);
 
-        if (tokIndex == null || docIndex == null)
+        if (tokIndex == -1 || docIndex == -1)
             return null;
 
         return matrix.get(docIndex).get(tokIndex);
@@ -320,6 +759,7 @@ public class VectorIndex {
      * 
      * @return A List of special characters used by this index.
      */
+    @Override
     public List<String> getSpecialCharacters() {
         return this.specialCharacters;
     }
@@ -329,21 +769,165 @@ public class VectorIndex {
      * 
      * @return A List of stopwords used by this index.
      */
+    @Override
     public List<String> getStopWords() {
         return this.stopwords;
     }
 
     /**
-     * Get the StanfordCoreNLP pipeline of this index.
+     * Get the Analyzer of this index.
+     * 
+     * @return The Analyzer of this index.
+     */
+    @Override
+    public Analyzer getAnalyzer() {
+        return this.analyzer;
+    }
+
+    /**
+     * Get the generation of this index. It changes when Sites are added or
+     * deleted and when the weights are recomputed, normalized or quantized.
      * 
-     * @return The StanfordCoreNLP pipeline of this index.
+     * @return The current generation.
      */
-    public StanfordCoreNLP getNlpPipeline() {
-        return this.pipeline;
+    @Override
+    public long getGeneration() {
+        return generation;
     }
 
     public Set<String> getTokens() {
-        return tokenIndex.keySet();
+        return Collections.unmodifiableSet(new HashSet<>(terms));
+    }
+
+    /**
+     * Get the sorted terms of this index. The dictionary is built on first use
+     * and again after terms were added or removed by compact(), its ids are not
+     * the term numbers of this index.
+     * 
+     * @return The sorted terms of the index.
+     */
+    @Override
+    public TermDictionary getTermDictionary() {
+        TermDictionary current = termDictionary;
+        if (current == null) {
+            current = TermDictionary.build(terms);
+            termDictionary = current;
+        }
+        return current;
+    }
+
+    @Override
+    public int getNrOfTerms() {
+        return getVectorSize();
+    }
+
+    @Override
+    public String getDocumentId(int doc) {
+        return dictionary.getUrl(docUrlIds[doc]);
+    }
+
+    @Override
+    public int getDocumentNr(String documentId) {
+        return getDocOfUrlId(dictionary.getId(documentId));
+    }
+
+    /**
+     * Get the document number of the given URL id.
+     * 
+     * @param urlId The id of the documents URL in the UrlDictionary.
+     * @return The document number or -1 if the document is not indexed.
+     */
+    private int getDocOfUrlId(int urlId) {
+        if (urlId < 0 || urlId >= urlDocs.length)
+            return -1;
+        return urlDocs[urlId];
+    }
+
+    @Override
+    public UrlDictionary getUrlDictionary() {
+        return dictionary;
+    }
+
+    @Override
+    public int getUrlId(int doc) {
+        return docUrlIds[doc];
+    }
+
+    @Override
+    public String getTerm(int termId) {
+        return terms.get(termId);
+    }
+
+    @Override
+    public int getTermId(String token) {
+        return tokenIndex.get(token);
+    }
+
+    @Override
+    public int getDocFrequency(int termId) {
+        return docsPerTokIndex.getOrDefault(termId, 0);
+    }
+
+    /**
+     * Get an iterator over the posting list of the given term.
+     * The posting lists are built by finish(), before that all lists are empty.
+     * 
+     * @param termId The term number.
+     * @return A new, not yet positioned PostingsIterator.
+     */
+    @Override
+    public PostingsIterator getPostings(int termId) {
+        if (postingStarts == null)
+            return new ArrayPostingsIterator(new int[0], new double[0], 0, 0);
+        if (quantizedWeights != null)
+            return new ArrayPostingsIterator(postingDocs, quantizedWeights, termId, postingStarts[termId],
+                    postingStarts[termId + 1]);
+        return new ArrayPostingsIterator(postingDocs, postingWeights, postingStarts[termId],
+                postingStarts[termId + 1]);
+    }
+
+    @Override
+    public int[] getPositions(int termId, int doc) {
+        int[] termIds = docTermIds.get(doc);
+        int j = termIds == null ? -1 : Arrays.binarySearch(termIds, termId);
+        if (j < 0)
+            return new int[0];
+        return PositionLists.decode(docPositions.get(doc), docPositionStarts.get(doc)[j]);
+    }
+
+    @Override
+    public boolean hasPositions() {
+        return true;
+    }
+
+    /**
+     * Get the memory used by the compressed token positions.
+     * 
+     * @return The size of the position lists in bytes.
+     */
+    public long getPositionsSize() {
+        long size = 0;
+        for (byte[] positions : docPositions)
+            if (positions != null)
+                size += positions.length;
+        return size;
+    }
+
+    @Override
+    public ImpactPostings getImpactPostings() {
+        return impactPostings;
+    }
+
+    /**
+     * Get the norm of the given documents vector.
+     * The norms are calculated by finish(), before that 0 is returned.
+     * 
+     * @param doc The document number.
+     * @return The norm of the document vector.
+     */
+    @Override
+    public double getNorm(int doc) {
+        return norms == null ? 0.0 : norms[doc];
     }
 
     /**
@@ -351,7 +935,18 @@ public class VectorIndex {
      * 
      * @return The number of sites indexed.
      */
+    @Override
     public int getNrOfSites() {
         return (int) totalDocCount;
     }
+
+    @Override
+    public int getDocumentCapacity() {
+        return matrix.size();
+    }
+
+    @Override
+    public boolean isLive(int doc) {
+        return liveDocs.get(doc);
+    }
 }
@@ -0,0 +1,36 @@
+package de.fernunihagen.dbis.anguillasearch.index;
+
+/**
+ * The storage formats of the posting weights of a VectorIndex.
+ *
+ * TF-IDF weights are never negative, so the 8 bit formats store an unsigned
+ * level 0..255 that is multiplied with a scale, the largest weight of the term
+ * or the document divided by 255.
+ */
+public enum WeightFormat {
+    // Full precision, 64 bit per weight.
+    FLOAT64(8),
+    // 32 bit IEEE 754 floats.
+    FLOAT32(4),
+    // 16 bit IEEE 754 half precision floats.
+    FLOAT16(2),
+    // 8 bit levels with one scale per term.
+    INT8_TERM_SCALE(1),
+    // 8 bit levels with one scale per document.
+    INT8_DOCUMENT_SCALE(1);
+
+    private final int bytesPerWeight;
+
+    WeightFormat(int bytesPerWeight) {
+        this.bytesPerWeight = bytesPerWeight;
+    }
+
+    /**
+     * Get the number of bytes used to store a single weight.
+     *
+     * @return The size of a weight in bytes.
+     */
+    public int getBytesPerWeight() {
+        return bytesPerWeight;
+    }
+}
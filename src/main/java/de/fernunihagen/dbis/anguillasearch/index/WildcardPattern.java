@@ -0,0 +1,114 @@
+package de.fernunihagen.dbis.anguillasearch.index;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.function.Predicate;
+
+/**
+ * A query word with wildcards: '*' matches any number of characters and '?'
+ * matches exactly one character, e.g. "chedd*" or "br?e".
+ *
+ * The terms matching a pattern are found in a TermDictionary. Only the terms
+ * starting with the literal prefix of the pattern, the characters before its
+ * first wildcard, are visited, so a pattern with a prefix costs a lookup of the
+ * prefix plus the terms visited until enough are found. A pattern starting with
+ * a wildcard visits the whole dictionary.
+ */
+final class WildcardPattern {
+    static final char ANY_STRING = '*';
+    static final char ANY_CHAR = '?';
+
+    private final String pattern;
+    private final String prefix;
+
+    /**
+     * Get a new WildcardPattern.
+     *
+     * @param pattern The lowercase query word with wildcards.
+     */
+    WildcardPattern(String pattern) {
+        this.pattern = pattern;
+        int firstWildcard = 0;
+        while (firstWildcard < pattern.length() && !isWildcard(pattern.charAt(firstWildcard)))
+            firstWildcard++;
+        this.prefix = pattern.substring(0, firstWildcard);
+    }
+
+    private static boolean isWildcard(char c) {
+        return c == ANY_STRING || c == ANY_CHAR;
+    }
+
+    /**
+     * Check if a query word contains wildcards.
+     *
+     * @param word The query word.
+     * @return True if the word is a wildcard pattern.
+     */
+    static boolean hasWildcards(String word) {
+        return word.indexOf(ANY_STRING) >= 0 || word.indexOf(ANY_CHAR) >= 0;
+    }
+
+    /**
+     * Get the characters of the pattern before its first wildcard.
+     *
+     * @return The literal prefix, empty if the pattern starts with a wildcard.
+     */
+    String getPrefix() {
+        return prefix;
+    }
+
+    /**
+     * Check if a term matches the pattern.
+     *
+     * @param term The term to be matched.
+     * @return True if the term matches the whole pattern.
+     */
+    boolean matches(String term) {
+        // Match greedily and return to the last '*' on a mismatch, letting it
+        // match one character more.
+        int p = 0;
+        int t = 0;
+        int starP = -1;
+        int starT = 0;
+        while (t < term.length()) {
+            if (p < pattern.length() && pattern.charAt(p) == ANY_STRING) {
+                starP = p++;
+                starT = t;
+            } else if (p < pattern.length() && (pattern.charAt(p) == ANY_CHAR || pattern.charAt(p) == term.charAt(t))) {
+                p++;
+                t++;
+            } else if (starP >= 0) {
+                p = starP + 1;
+                t = ++starT;
+            } else {
+                return false;
+            }
+        }
+        while (p < pattern.length() && pattern.charAt(p) == ANY_STRING)
+            p++;
+        return p == pattern.length();
+    }
+
+    /**
+     * Find the first terms of a dictionary matching the pattern, in dictionary
+     * order.
+     *
+     * @param dictionary The sorted terms.
+     * @param maxTerms   The maximum number of terms to be found.
+     * @param accept     Filters the matching terms, e.g. terms without live
+     *                   documents.
+     * @return At most maxTerms matching and accepted terms.
+     */
+    List<String> expand(TermDictionary dictionary, int maxTerms, Predicate<String> accept) {
+        List<String> found = new ArrayList<>();
+        if (maxTerms <= 0)
+            return found;
+        int[] range = dictionary.getPrefixRange(prefix);
+        dictionary.forEachTerm(range[0], range[1], term -> {
+            if (matches(term) && accept.test(term))
+                found.add(term);
+            return found.size() < maxTerms;
+        });
+        return found;
+    }
+}
@@ -1,14 +1,14 @@
 package de.fernunihagen.dbis.anguillasearch.pagerank;
 
-import java.util.Collection;
-import java.util.LinkedList;
+import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.List;
 import java.util.Map;
 import java.util.TreeMap;
-import java.util.Map.Entry;
 import static de.fernunihagen.dbis.anguillasearch.pagerank.PageRankConfig.*;
 
 import de.fernunihagen.dbis.anguillasearch.helpers.HelperFunctions;
+import de.fernunihagen.dbis.anguillasearch.helpers.UrlDictionary;
 
 /**
  * A PageRankIndex object calculates and contains the page rank scores to a list
@@ -19,6 +19,10 @@ import de.fernunihagen.dbis.anguillasearch.helpers.HelperFunctions;
  * After the page ranks have been calculated no more links may be added, but the
  * final page ranks can be accessed.
  * 
+ * The pages are stored by the id their URL has in a UrlDictionary, which may be
+ * shared with the other indices. Links are kept as URL ids, so an iteration of
+ * the algorithm only does array lookups.
+ * 
  */
 public class PageRankIndex {
     /**
@@ -28,8 +32,9 @@ public class PageRankIndex {
      * next iteration.
      */
     private class Page {
-        public List<String> linksIn;
-        public String url;
+        public int[] linksIn;
+        public int nrOfLinksIn;
+        public int urlId;
         public int linksOut;
         public double pageRank;
         public double nextPageRank;
@@ -37,16 +42,28 @@ public class PageRankIndex {
         /**
          * Get an empty Page object for the specified website.
          * 
-         * @param url The url of the website.
+         * @param urlId The id of the websites url.
          */
-        public Page(String url) {
-            this.url = url;
-            this.linksIn = new LinkedList<>();
+        public Page(int urlId) {
+            this.urlId = urlId;
+            this.linksIn = new int[4];
+            this.nrOfLinksIn = 0;
             this.linksOut = 0;
             this.pageRank = 0.0;
             this.nextPageRank = 0.0;
         }
 
+        /**
+         * Add an incoming link from the given page.
+         * 
+         * @param sourceId The url id of the linking page.
+         */
+        public void addLinkIn(int sourceId) {
+            if (nrOfLinksIn == linksIn.length)
+                linksIn = Arrays.copyOf(linksIn, nrOfLinksIn * 2);
+            linksIn[nrOfLinksIn++] = sourceId;
+        }
+
         /**
          * Apply the changes of a finished iteration of the page-rank-algorithm for the
          * next iteration.
@@ -57,8 +74,60 @@ public class PageRankIndex {
         }
     }
 
-    private TreeMap<String, Page> pageIndex = new TreeMap<>();
+    private UrlDictionary dictionary;
+    // The page of each url id, null for urls without a page in this index.
+    private ArrayList<Page> pageIndex = new ArrayList<>();
     private int pageCount = 0;
+    // Changed by every change of the links or page ranks.
+    private long generation = 0;
+
+    /**
+     * Create a new empty PageRankIndex object with its own UrlDictionary.
+     */
+    public PageRankIndex() {
+        this(new UrlDictionary());
+    }
+
+    /**
+     * Create a new empty PageRankIndex object on the given UrlDictionary.
+     * 
+     * @param dictionary The dictionary assigning the ids of the pages urls.
+     */
+    public PageRankIndex(UrlDictionary dictionary) {
+        this.dictionary = dictionary;
+    }
+
+    /**
+     * Find or create the page of the given url.
+     * 
+     * @param url The url of the website.
+     * @return The page of the website.
+     */
+    private Page getOrCreatePage(String url) {
+        int urlId = dictionary.add(url);
+        while (pageIndex.size() <= urlId)
+            pageIndex.add(null);
+        Page page = pageIndex.get(urlId);
+        if (page == null) {
+            page = new Page(urlId);
+            pageIndex.set(urlId, page);
+            pageCount++;
+        }
+        return page;
+    }
+
+    /**
+     * Get all pages of this index in the order of their url ids.
+     * 
+     * @return A List of all pages.
+     */
+    private List<Page> getPages() {
+        ArrayList<Page> pages = new ArrayList<>(pageCount);
+        for (Page page : pageIndex)
+            if (page != null)
+                pages.add(page);
+        return pages;
+    }
 
     /**
      * Add a List of links from the source website to other websites to the index.
@@ -70,20 +139,15 @@ public class PageRankIndex {
      */
     public void addLinks(String source, List<String> newLinks) {
         // Find/create the node for the source and add the links.
-        Page sourcePage = pageIndex.computeIfAbsent(source, k -> {
-            pageCount++;
-            return new Page(source);
-        });
+        generation++;
+        Page sourcePage = getOrCreatePage(source);
 
         // Find/create all linked pages and increase their outgoing links.
         for (String link : newLinks) {
             if (link.equals(source))
                 continue;
-            Page destPage = pageIndex.computeIfAbsent(link, k -> {
-                pageCount++;
-                return new Page(link);
-            });
-            destPage.linksIn.add(source);
+            Page destPage = getOrCreatePage(link);
+            destPage.addLinkIn(sourcePage.urlId);
             sourcePage.linksOut++;
         }
     }
@@ -106,7 +170,8 @@ public class PageRankIndex {
      *                console.
      */
     public void calcPageRanks(int timeout, double dFactor, boolean verbose) {
-        Collection<Page> pages = pageIndex.values();
+        generation++;
+        List<Page> pages = getPages();
         // Initialize the pages with 1/n.
         double startRank = 1.0 / pageCount;
         for (Page page : pages) {
@@ -124,14 +189,14 @@ public class PageRankIndex {
                 System.out.println("--------------------------------- " + i + " ---------------------------------");
             for (Page page : pages) {
                 double oldPageRank = page.pageRank;
-                for (String link : page.linksIn) {
-                    Page linkedPage = pageIndex.get(link);
+                for (int l = 0; l < page.nrOfLinksIn; l++) {
+                    Page linkedPage = pageIndex.get(page.linksIn[l]);
                     page.nextPageRank = page.nextPageRank + dFactor * (linkedPage.pageRank / linkedPage.linksOut);
                 }
                 page.nextPageRank += (1 - dFactor) / this.pageCount;
                 maxDiff = HelperFunctions.max(maxDiff, Math.abs(page.nextPageRank - oldPageRank));
                 if (verbose)
-                    System.out.println(String.format("Node:%-40s", page.url) + "pageRank:" + page.pageRank);
+                    System.out.println(String.format("Node:%-40s", dictionary.getUrl(page.urlId)) + "pageRank:" + page.pageRank);
             }
             for (Page page : pages)
                 page.update();
@@ -163,6 +228,16 @@ public class PageRankIndex {
         calcPageRanks(PAGERANK_STD_TIMEOUT, PAGERANK_STD_DFACTOR, false);
     }
 
+    /**
+     * Get the generation of this index. It changes when links are added or the
+     * page ranks are calculated.
+     * 
+     * @return The current generation.
+     */
+    public long getGeneration() {
+        return generation;
+    }
+
     /**
      * Get the page rank of a given website.
      * This will only produce sensible results if calcPageRanks() was called before.
@@ -171,8 +246,32 @@ public class PageRankIndex {
      * @return The page rank of the given site.
      */
     public Double getPageRankOf(String url) {
-        Page page = pageIndex.getOrDefault(url, null);
-        return page == null ? null : page.pageRank;
+        int urlId = dictionary.getId(url);
+        if (urlId == -1 || urlId >= pageIndex.size() || pageIndex.get(urlId) == null)
+            return null;
+        return pageIndex.get(urlId).pageRank;
+    }
+
+    /**
+     * Get the page rank of the website with the given url id.
+     * This will only produce sensible results if calcPageRanks() was called before.
+     * 
+     * @param urlId The id of the sites url in the UrlDictionary of this index.
+     * @return The page rank of the given site or 0.0 if the site is not indexed.
+     */
+    public double getPageRank(int urlId) {
+        if (urlId < 0 || urlId >= pageIndex.size() || pageIndex.get(urlId) == null)
+            return 0.0;
+        return pageIndex.get(urlId).pageRank;
+    }
+
+    /**
+     * Get the UrlDictionary the ids of the indexed websites are taken from.
+     * 
+     * @return The dictionary of this index.
+     */
+    public UrlDictionary getUrlDictionary() {
+        return dictionary;
     }
 
     /**
@@ -183,8 +282,8 @@ public class PageRankIndex {
      */
     public Map<String, Double> getPageRankMap() {
         TreeMap<String, Double> result = new TreeMap<>();
-        for (Entry<String, Page> entry : pageIndex.entrySet())
-            result.put(entry.getKey(), entry.getValue().pageRank);
+        for (Page page : getPages())
+            result.put(dictionary.getUrl(page.urlId), page.pageRank);
         return result;
     }
 
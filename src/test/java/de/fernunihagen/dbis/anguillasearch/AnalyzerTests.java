@@ -0,0 +1,245 @@
+package de.fernunihagen.dbis.anguillasearch;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.Test;
+
+import com.google.gson.Gson;
+import com.google.gson.JsonObject;
+
+import de.fernunihagen.dbis.anguillasearch.crawler.Crawler;
+import de.fernunihagen.dbis.anguillasearch.helpers.Site;
+import de.fernunihagen.dbis.anguillasearch.helpers.UrlDictionary;
+import de.fernunihagen.dbis.anguillasearch.index.Analyzer;
+import de.fernunihagen.dbis.anguillasearch.index.CoreNlpAnalyzer;
+import de.fernunihagen.dbis.anguillasearch.index.ForwardIndex;
+import de.fernunihagen.dbis.anguillasearch.index.IndexSearcher;
+import de.fernunihagen.dbis.anguillasearch.index.MappedVectorIndex;
+import de.fernunihagen.dbis.anguillasearch.index.ReverseIndex;
+import de.fernunihagen.dbis.anguillasearch.index.RuleBasedAnalyzer;
+import de.fernunihagen.dbis.anguillasearch.index.VectorIndex;
+
+/**
+ * Unit tests, a throughput benchmark and an agreement report for the rule based
+ * analyzer compared to the CoreNLP analyzer.
+ */
+class AnalyzerTests {
+
+    static final String[] QUERIES = { "search engine", "install docker image", "running the extensions",
+            "code style reports", "web browser", "executed jar files", "dependencies", "intranet host",
+            "locally installed vscodium", "working with the development environment" };
+    static final int TOP = 10;
+
+    static String text;
+    static List<Site> sites;
+    static CoreNlpAnalyzer coreNlpAnalyzer;
+    static RuleBasedAnalyzer ruleBasedAnalyzer;
+
+    @BeforeAll
+    static void setUp() throws IOException {
+        // The paragraphs of the README serve as text and as a small network of sites.
+        text = new String(Files.readAllBytes(Paths.get("README.md"))).toLowerCase();
+        sites = new ArrayList<>();
+        for (String paragraph : text.split("\n\\s*\n")) {
+            if (paragraph.isBlank())
+                continue;
+            sites.add(new Site("http://readme" + sites.size() + ".anguilla", "readme", Arrays.asList("section"),
+                    paragraph));
+        }
+        coreNlpAnalyzer = new CoreNlpAnalyzer();
+        ruleBasedAnalyzer = new RuleBasedAnalyzer();
+    }
+
+    /**
+     * Count the URLs shared by the first TOP results of both lists.
+     */
+    static int countOverlap(List<String[]> expected, List<String[]> found) {
+        HashSet<String> expectedUrls = new HashSet<>();
+        for (int i = 0; i < Math.min(TOP, expected.size()); i++)
+            expectedUrls.add(expected.get(i)[0]);
+        int overlap = 0;
+        for (int i = 0; i < Math.min(TOP, found.size()); i++)
+            if (expectedUrls.contains(found.get(i)[0]))
+                overlap++;
+        return overlap;
+    }
+
+    static VectorIndex buildIndex(List<Site> siteList, Analyzer analyzer) {
+        VectorIndex index = new VectorIndex(new UrlDictionary(), analyzer);
+        for (Site site : siteList)
+            index.addSite(site);
+        index.finish();
+        return index;
+    }
+
+    @Test
+    void ruleBasedLemmas() {
+        assertEquals(List.of("cheese", "be", "make", "of", "milk", "."),
+                ruleBasedAnalyzer.lemmatize("cheeses are made of milk."));
+        assertEquals(List.of("i", "do", "not", "like", "run", "and", "swim"),
+                ruleBasedAnalyzer.lemmatize("i don't like running and swimming"));
+        assertEquals(List.of("she", "locate", "the", "study", "of", "box", "and", "city"),
+                ruleBasedAnalyzer.lemmatize("she located the studies of boxes and cities"));
+        assertEquals(List.of("the", "child", "be", "use", "they", "knife"),
+                ruleBasedAnalyzer.lemmatize("the children were using their knives"));
+        // Words that only look inflected.
+        assertEquals(List.of("this", "series", "need", "glass", "and", "gas"),
+                ruleBasedAnalyzer.lemmatize("this series needs glass and gas"));
+    }
+
+    @Test
+    void ruleBasedTokens() {
+        assertEquals(List.of("``", "well-known", "''", "version", "1.2", "at", "http://cheesy1.anguilla/page.html",
+                ",", "e-mail", "(", "now", ")", "!"),
+                ruleBasedAnalyzer.lemmatize("\"well-known\" version 1.2 at http://cheesy1.anguilla/page.html, "
+                        + "e-mail (now)!"));
+        assertEquals(List.of("the", "farmer", "'s", "cheese", "be", "not", "aged"),
+                ruleBasedAnalyzer.lemmatize("the farmer's cheese isn't aged"));
+        assertTrue(ruleBasedAnalyzer.lemmatize("").isEmpty());
+        assertTrue(ruleBasedAnalyzer.lemmatize(" \n\t").isEmpty());
+    }
+
+    @Test
+    void sameAnalyzerForQueries() throws IOException {
+        VectorIndex index = buildIndex(sites, ruleBasedAnalyzer);
+        assertTrue(index.getAnalyzer() == ruleBasedAnalyzer);
+        assertTrue(index.getTermId("install") != -1);
+        assertEquals(-1, index.getTermId("installed"));
+
+        // Index files keep the analyzer of the documents.
+        MappedVectorIndex mappedIndex = MappedVectorIndex.loadOffHeap(index, false);
+        assertTrue(mappedIndex.getAnalyzer() instanceof RuleBasedAnalyzer);
+        IndexSearcher searcher = new IndexSearcher(index);
+        IndexSearcher mappedSearcher = new IndexSearcher(mappedIndex);
+        for (String query : QUERIES)
+            assertEquals(searcher.searchQueryCosine(query).size(), mappedSearcher.searchQueryCosine(query).size());
+
+        ReverseIndex reverseIndex = new ReverseIndex(sites, ruleBasedAnalyzer);
+        assertTrue(reverseIndex.containsToken("install"));
+        assertTrue(!reverseIndex.containsToken("installed"));
+    }
+
+    @Test
+    void throughputAndAgreement() {
+        // Warm up both analyzers.
+        for (int run = 0; run < 3; run++) {
+            coreNlpAnalyzer.lemmatize(text);
+            ruleBasedAnalyzer.lemmatize(text);
+        }
+        int runs = 5;
+        long start = System.nanoTime();
+        List<String> coreNlpLemmas = null;
+        for (int run = 0; run < runs; run++)
+            coreNlpLemmas = coreNlpAnalyzer.lemmatize(text);
+        long coreNlpTime = System.nanoTime() - start;
+        start = System.nanoTime();
+        List<String> ruleBasedLemmas = null;
+        for (int run = 0; run < runs; run++)
+            ruleBasedLemmas = ruleBasedAnalyzer.lemmatize(text);
+        long ruleBasedTime = System.nanoTime() - start;
+
+        System.out.println(String.format("CoreNLP:    %d tokens, %.0f tokens/s", coreNlpLemmas.size(),
+                coreNlpLemmas.size() * runs / (coreNlpTime / 1e9)));
+        System.out.println(String.format("rule based: %d tokens, %.0f tokens/s", ruleBasedLemmas.size(),
+                ruleBasedLemmas.size() * runs / (ruleBasedTime / 1e9)));
+
+        // Count the word lemmas of CoreNLP the rule based analyzer found as well.
+        Map<String, Integer> ruleBasedCounts = new HashMap<>();
+        for (String lemma : ruleBasedLemmas)
+            ruleBasedCounts.merge(lemma, 1, Integer::sum);
+        int compared = 0;
+        int agreed = 0;
+        for (String lemma : coreNlpLemmas) {
+            if (!Character.isLetter(lemma.charAt(0)))
+                continue;
+            compared++;
+            int count = ruleBasedCounts.getOrDefault(lemma, 0);
+            if (count > 0) {
+                ruleBasedCounts.put(lemma, count - 1);
+                agreed++;
+            }
+        }
+        System.out.println(String.format("lemma agreement: %d of %d words (%.1f%%)", agreed, compared,
+                100.0 * agreed / compared));
+        assertTrue(agreed >= compared * 0.85);
+
+        // The rankings of both analyzers mostly agree.
+        IndexSearcher coreNlpSearcher = new IndexSearcher(buildIndex(sites, coreNlpAnalyzer));
+        IndexSearcher ruleBasedSearcher = new IndexSearcher(buildIndex(sites, ruleBasedAnalyzer));
+        int overlap = 0;
+        int possible = 0;
+        for (String query : QUERIES) {
+            List<String[]> expected = coreNlpSearcher.searchQueryCosine(query);
+            List<String[]> found = ruleBasedSearcher.searchQueryCosine(query);
+            int queryOverlap = countOverlap(expected, found);
+            System.out.println(String.format("%-42s results: %3d / %3d, top-%d overlap: %d", query,
+                    expected.size(), found.size(), TOP, queryOverlap));
+            overlap += queryOverlap;
+            possible += Math.min(TOP, expected.size());
+        }
+        System.out.println(String.format("top-%d agreement: %.2f", TOP, (double) overlap / possible));
+        assertTrue(overlap >= possible * 0.7);
+    }
+
+    /**
+     * Compare the rankings of both analyzers on the intranet test networks. Needs
+     * the intranet to be reachable.
+     */
+    @Test
+    void intranetAgreementReport() throws IOException {
+        String[] intranets = { "cheesy1-f126d0d3", "cheesy2-c79b0581", "cheesy3-7fdaa098", "cheesy4-a31d2f0d",
+                "cheesy5-d861877d", "cheesy6-54ae2b2e" };
+        for (String intranet : intranets) {
+            JsonObject testJSON = Utils.parseJSONFile("intranet/" + intranet + ".json");
+            String[] seedUrls = new Gson().fromJson(testJSON.get("Seed-URLs"), String[].class);
+            String query = String.join(" ", new Gson().fromJson(testJSON.get("Query-Token"), String[].class));
+            String[] expectedURLs = new Gson().fromJson(testJSON.get("Query-URLs"), String[].class);
+
+            // Crawl the network once and keep the sites to build each index from.
+            UrlDictionary dictionary = new UrlDictionary();
+            ForwardIndex forwardIndex = new ForwardIndex(dictionary);
+            Crawler crawler = new Crawler(forwardIndex);
+            crawler.setSeed(seedUrls);
+            try {
+                crawler.crawl();
+            } catch (Exception e) {
+                System.out.println(e.getMessage());
+            }
+            List<Site> crawledSites = new ArrayList<>();
+            for (int id = 0; id < dictionary.size(); id++)
+                if (forwardIndex.getSite(id) != null)
+                    crawledSites.add(forwardIndex.getSite(id));
+
+            long start = System.nanoTime();
+            VectorIndex coreNlpIndex = buildIndex(crawledSites, coreNlpAnalyzer);
+            long coreNlpTime = System.nanoTime() - start;
+            start = System.nanoTime();
+            VectorIndex ruleBasedIndex = buildIndex(crawledSites, ruleBasedAnalyzer);
+            long ruleBasedTime = System.nanoTime() - start;
+
+            List<String[]> expected = new IndexSearcher(coreNlpIndex).searchQueryCosine(query);
+            List<String[]> found = new IndexSearcher(ruleBasedIndex).searchQueryCosine(query);
+            System.out.println(String.format(
+                    "%s sites: %d, indexing CoreNLP: %.0f ms, rule based: %.0f ms, results: %d / %d, top-%d overlap: %d",
+                    intranet, crawledSites.size(), coreNlpTime / 1e6, ruleBasedTime / 1e6, expected.size(),
+                    found.size(), TOP, countOverlap(expected, found)));
+
+            List<String> foundURLs = new ArrayList<>();
+            for (String[] entry : found)
+                foundURLs.add(entry[0]);
+            assertTrue(foundURLs.containsAll(Arrays.asList(expectedURLs)));
+        }
+    }
+}
@@ -0,0 +1,134 @@
+package de.fernunihagen.dbis.anguillasearch;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.io.ByteArrayOutputStream;
+import java.nio.ByteBuffer;
+import java.util.Random;
+
+import org.junit.jupiter.api.Test;
+
+import de.fernunihagen.dbis.anguillasearch.index.BlockPostings;
+import de.fernunihagen.dbis.anguillasearch.index.PostingsIterator;
+
+/**
+ * Unit tests and a small benchmark for the compressed posting lists.
+ */
+class BlockPostingsTests {
+
+    /**
+     * Create a random posting list with gaps of up to maxGap.
+     */
+    private static int[] randomDocs(Random random, int count, int maxGap) {
+        int[] docs = new int[count];
+        int doc = -1;
+        for (int i = 0; i < count; i++) {
+            doc += 1 + random.nextInt(maxGap);
+            docs[i] = doc;
+        }
+        return docs;
+    }
+
+    private static double[] randomWeights(Random random, int count) {
+        double[] weights = new double[count];
+        for (int i = 0; i < count; i++)
+            weights[i] = random.nextDouble();
+        return weights;
+    }
+
+    private static ByteBuffer encode(int[] docs, double[] weights) {
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        BlockPostings.encode(docs, weights, docs.length, out);
+        return ByteBuffer.wrap(out.toByteArray());
+    }
+
+    @Test
+    void decodeAllPostings() {
+        Random random = new Random(42);
+        // Test empty, single block, partial block and multi block lists.
+        for (int count : new int[] { 0, 1, 127, 128, 129, 1000 }) {
+            for (int maxGap : new int[] { 1, 7, 100000 }) {
+                int[] docs = randomDocs(random, count, maxGap);
+                double[] weights = randomWeights(random, count);
+                BlockPostings.Iterator postings = new BlockPostings.Iterator(encode(docs, weights), 0);
+
+                assertEquals(count, postings.cost());
+                for (int i = 0; i < count; i++) {
+                    assertEquals(docs[i], postings.nextDoc());
+                    // 16 bit quantization relative to the block maximum (< 1).
+                    assertTrue(Math.abs(weights[i] - postings.weight()) < 0.0001);
+                    assertTrue(postings.weight() <= postings.blockMaxWeight());
+                }
+                assertEquals(PostingsIterator.NO_MORE_DOCS, postings.nextDoc());
+            }
+        }
+    }
+
+    @Test
+    void advancePostings() {
+        Random random = new Random(7);
+        int[] docs = randomDocs(random, 5000, 50);
+        BlockPostings.Iterator postings = new BlockPostings.Iterator(encode(docs, randomWeights(random, 5000)), 0);
+
+        int i = 0;
+        int target = 0;
+        while (true) {
+            target += random.nextInt(2000);
+            while (i < docs.length && docs[i] < target)
+                i++;
+            int expected = i < docs.length ? docs[i] : PostingsIterator.NO_MORE_DOCS;
+            assertEquals(expected, postings.advance(target));
+            if (expected == PostingsIterator.NO_MORE_DOCS)
+                break;
+            i++;
+            target = expected + 1;
+        }
+
+        // A reset iterator starts over.
+        postings.reset(0);
+        assertEquals(docs[0], postings.nextDoc());
+    }
+
+    @Test
+    void benchmarkDecoding() {
+        Random random = new Random(1);
+        int count = 200000;
+        int[] docs = randomDocs(random, count, 20);
+        double[] weights = randomWeights(random, count);
+
+        // The uncompressed layout: int[] documents followed by double[] weights.
+        ByteBuffer plain = ByteBuffer.allocate(count * (Integer.BYTES + Double.BYTES));
+        for (int doc : docs)
+            plain.putInt(doc);
+        for (double weight : weights)
+            plain.putDouble(weight);
+        ByteBuffer compressed = encode(docs, weights);
+
+        double plainSum = 0.0;
+        double compressedSum = 0.0;
+        long plainTime = 0;
+        long compressedTime = 0;
+        BlockPostings.Iterator postings = new BlockPostings.Iterator(compressed, 0);
+        for (int run = 0; run < 20; run++) {
+            long start = System.nanoTime();
+            for (int i = 0; i < count; i++)
+                plainSum += plain.getInt(i * Integer.BYTES)
+                        + plain.getDouble(count * Integer.BYTES + i * Double.BYTES);
+            plainTime += System.nanoTime() - start;
+
+            start = System.nanoTime();
+            postings.reset(0);
+            while (postings.nextDoc() != PostingsIterator.NO_MORE_DOCS)
+                compressedSum += postings.docId() + postings.weight();
+            compressedTime += System.nanoTime() - start;
+        }
+        assertTrue(Math.abs(plainSum - compressedSum) / plainSum < 0.0001);
+
+        System.out.println(String.format("postings: %d, plain: %d bytes, %.1f M postings/s", count,
+                plain.capacity(), 20.0 * count / plainTime * 1000));
+        System.out.println(String.format("postings: %d, compressed: %d bytes, %.1f M postings/s", count,
+                compressed.capacity(), 20.0 * count / compressedTime * 1000));
+        assertTrue(compressed.capacity() < plain.capacity() / 3);
+    }
+}
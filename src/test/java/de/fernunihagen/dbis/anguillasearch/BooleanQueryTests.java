@@ -0,0 +1,213 @@
+package de.fernunihagen.dbis.anguillasearch;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+import java.util.Set;
+
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.Test;
+
+import de.fernunihagen.dbis.anguillasearch.helpers.Site;
+import de.fernunihagen.dbis.anguillasearch.index.IndexSearcher;
+import de.fernunihagen.dbis.anguillasearch.index.MappedVectorIndex;
+import de.fernunihagen.dbis.anguillasearch.index.PostingsIterator;
+import de.fernunihagen.dbis.anguillasearch.index.SearchResults;
+import de.fernunihagen.dbis.anguillasearch.index.SearchableIndex;
+import de.fernunihagen.dbis.anguillasearch.index.VectorIndex;
+
+/**
+ * Unit tests and a benchmark for boolean queries and the intersection of
+ * posting lists.
+ */
+class BooleanQueryTests {
+
+    static String[] vocabulary;
+    static List<Site> sites;
+    static VectorIndex index;
+
+    @BeforeAll
+    static void setUp() {
+        // A synthetic network with a Zipf like word distribution, so the words
+        // range from very common to rare.
+        vocabulary = SyntheticNetwork.vocabulary("feta", 800);
+        sites = SyntheticNetwork.zipf("feta", vocabulary, new Random(43), 20000, 10, 40, 0);
+        index = SyntheticNetwork.createIndex(sites);
+    }
+
+    static String word(int rank) {
+        return vocabulary[rank];
+    }
+
+    /**
+     * Get the urls of the sites containing a word, found by scoring all postings.
+     */
+    static Set<String> sitesWith(IndexSearcher searcher, String word) {
+        Set<String> urls = new HashSet<>();
+        SearchResults results = searcher.searchQueryCosineResults(word);
+        for (int rank = 0; rank < results.size(); rank++)
+            urls.add(results.getUrl(rank));
+        return urls;
+    }
+
+    static Set<String> and(Set<String> a, Set<String> b) {
+        Set<String> result = new HashSet<>(a);
+        result.retainAll(b);
+        return result;
+    }
+
+    static Set<String> or(Set<String> a, Set<String> b) {
+        Set<String> result = new HashSet<>(a);
+        result.addAll(b);
+        return result;
+    }
+
+    static Set<String> not(Set<String> a, Set<String> b) {
+        Set<String> result = new HashSet<>(a);
+        result.removeAll(b);
+        return result;
+    }
+
+    /**
+     * Check that a boolean query matches the expected sites, ranked and scored
+     * like the cosine search for its included words.
+     */
+    static void assertMatches(IndexSearcher searcher, String query, Set<String> expected, String includedWords) {
+        SearchResults results = searcher.searchQueryBooleanResults(query);
+        assertEquals(expected.size(), results.size(), query);
+        Map<String, Double> scores = new HashMap<>();
+        SearchResults cosineResults = searcher.searchQueryCosineResults(includedWords);
+        for (int rank = 0; rank < cosineResults.size(); rank++)
+            scores.put(cosineResults.getUrl(rank), cosineResults.getScore(rank));
+        for (int rank = 0; rank < results.size(); rank++) {
+            assertTrue(expected.contains(results.getUrl(rank)), query);
+            assertEquals((double) scores.get(results.getUrl(rank)), results.getScore(rank));
+            if (rank > 0)
+                assertTrue(results.getScore(rank - 1) >= results.getScore(rank));
+        }
+        SearchResults topResults = searcher.searchQueryBooleanResults(query, 10);
+        assertEquals(Math.min(10, results.size()), topResults.size());
+        for (int rank = 0; rank < topResults.size(); rank++)
+            assertEquals(results.getUrl(rank), topResults.getUrl(rank));
+    }
+
+    static void assertCorrectMatches(SearchableIndex searchableIndex) {
+        IndexSearcher searcher = new IndexSearcher(searchableIndex);
+        Set<String> a = sitesWith(searcher, word(0));
+        Set<String> b = sitesWith(searcher, word(3));
+        Set<String> c = sitesWith(searcher, word(40));
+        Set<String> d = sitesWith(searcher, word(300));
+        String wa = word(0);
+        String wb = word(3);
+        String wc = word(40);
+        String wd = word(300);
+
+        assertMatches(searcher, wa, a, wa);
+        assertMatches(searcher, wa + " " + wd, or(a, d), wa + " " + wd);
+        assertMatches(searcher, wa + " OR " + wd, or(a, d), wa + " " + wd);
+        assertMatches(searcher, wa + " AND " + wd, and(a, d), wa + " " + wd);
+        assertMatches(searcher, wd + " AND " + wc + " AND " + wa, and(and(a, c), d), wd + " " + wc + " " + wa);
+        assertMatches(searcher, wa + " NOT " + wb, not(a, b), wa);
+        assertMatches(searcher, wa + " AND NOT " + wb + " AND NOT " + wc, not(not(a, b), c), wa);
+        assertMatches(searcher, wa + " AND (" + wc + " OR " + wd + ")", and(a, or(c, d)), wa + " " + wc + " " + wd);
+        assertMatches(searcher, "(" + wc + " " + wd + ") NOT (" + wa + " AND " + wb + ")", not(or(c, d), and(a, b)),
+                wc + " " + wd);
+        assertMatches(searcher, wc + " AND " + wd + " OR " + wa + " AND " + wb, or(and(c, d), and(a, b)),
+                wc + " " + wd + " " + wa + " " + wb);
+
+        // Stopwords are left out, unknown words match nothing.
+        assertMatches(searcher, "the AND " + wd, d, wd);
+        assertMatches(searcher, "nothinghere AND " + wd, new HashSet<>(), "nothinghere " + wd);
+        assertMatches(searcher, "nothinghere OR " + wd, d, "nothinghere " + wd);
+        assertEquals(0, searcher.searchQueryBooleanResults("the").size());
+        assertEquals(0, searcher.searchQueryBooleanResults(" ").size());
+    }
+
+    @Test
+    void correctMatches() throws IOException {
+        assertCorrectMatches(index);
+        assertCorrectMatches(MappedVectorIndex.loadOffHeap(index, false));
+        assertCorrectMatches(MappedVectorIndex.loadOffHeap(index, true));
+
+        VectorIndex changedIndex = SyntheticNetwork.createIndex(sites);
+        changedIndex.normalize();
+        for (int i = 0; i < sites.size(); i += 5)
+            changedIndex.delete(sites.get(i).url);
+        assertCorrectMatches(changedIndex);
+    }
+
+    @Test
+    void invalidQueries() {
+        IndexSearcher searcher = new IndexSearcher(index);
+        for (String query : new String[] { "NOT feta0", "feta0 AND", "AND feta0", "feta0 OR OR feta1", "(feta0",
+                "feta0)", "()", "feta0 OR NOT feta1", "NOT feta0 AND NOT feta1", "feta0 NOT NOT feta1" })
+            assertThrows(IllegalArgumentException.class, () -> searcher.searchQueryBoolean(query));
+    }
+
+    @Test
+    void gallopingAdvance() throws IOException {
+        // Every advance finds the same posting as walking the list one by one.
+        Random random = new Random(47);
+        for (SearchableIndex searchableIndex : new SearchableIndex[] { index,
+                MappedVectorIndex.loadOffHeap(index, false), MappedVectorIndex.loadOffHeap(index, true) }) {
+            for (int rank : new int[] { 0, 5, 100, 700 }) {
+                int termId = searchableIndex.getTermId(word(rank));
+                List<Integer> docs = new ArrayList<>();
+                PostingsIterator postings = searchableIndex.getPostings(termId);
+                for (int doc = postings.nextDoc(); doc != PostingsIterator.NO_MORE_DOCS; doc = postings.nextDoc())
+                    docs.add(doc);
+                for (int maxJump : new int[] { 2, 50, 5000 }) {
+                    postings = searchableIndex.getPostings(termId);
+                    int target = 0;
+                    while (true) {
+                        int found = postings.advance(target);
+                        int i = 0;
+                        while (i < docs.size() && docs.get(i) < target)
+                            i++;
+                        assertEquals(i < docs.size() ? docs.get(i) : PostingsIterator.NO_MORE_DOCS, found);
+                        if (found == PostingsIterator.NO_MORE_DOCS)
+                            break;
+                        target = found + 1 + random.nextInt(maxJump);
+                    }
+                }
+            }
+        }
+    }
+
+    @Test
+    void benchmarkConjunctions() {
+        IndexSearcher searcher = new IndexSearcher(index);
+        String[] queries = { word(0) + " AND " + word(400), word(1) + " AND " + word(2) + " AND " + word(150),
+                word(0) + " AND " + word(1) + " AND " + word(3) };
+        int runs = 200;
+        for (String query : queries) {
+            String words = query.replace(" AND ", " ");
+            long[] times = new long[2];
+            long[] postings = new long[2];
+            for (int round = 0; round < 2; round++) {
+                // The first round warms up.
+                long start = System.nanoTime();
+                for (int run = 0; run < runs; run++)
+                    searcher.searchQueryCosineTopKResults(words, 10);
+                times[0] = System.nanoTime() - start;
+                postings[0] = searcher.getLastScoredPostings();
+                start = System.nanoTime();
+                for (int run = 0; run < runs; run++)
+                    searcher.searchQueryBooleanResults(query, 10);
+                times[1] = System.nanoTime() - start;
+                postings[1] = searcher.getLastScoredPostings();
+            }
+            System.out.println(String.format("%-30s %5d matches: OR scored %6d postings %.3f ms, AND scored %5d "
+                    + "postings %.3f ms", query, searcher.searchQueryBooleanResults(query).size(), postings[0],
+                    times[0] / 1e6 / runs, postings[1], times[1] / 1e6 / runs));
+        }
+    }
+}
@@ -0,0 +1,227 @@
+package de.fernunihagen.dbis.anguillasearch;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Random;
+import java.util.Set;
+
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.Test;
+
+import de.fernunihagen.dbis.anguillasearch.helpers.Site;
+import de.fernunihagen.dbis.anguillasearch.helpers.UrlDictionary;
+import de.fernunihagen.dbis.anguillasearch.index.IndexSearcher;
+import de.fernunihagen.dbis.anguillasearch.index.MappedVectorIndex;
+import de.fernunihagen.dbis.anguillasearch.index.RuleBasedAnalyzer;
+import de.fernunihagen.dbis.anguillasearch.index.SearchResults;
+import de.fernunihagen.dbis.anguillasearch.index.SearchableIndex;
+import de.fernunihagen.dbis.anguillasearch.index.VectorIndex;
+
+/**
+ * Unit tests and a benchmark for the fuzzy queries expanded by Levenshtein
+ * automata.
+ */
+class FuzzyQueryTests {
+
+    static List<String> vocabulary;
+    static List<String> queryWords;
+    static VectorIndex index;
+
+    @BeforeAll
+    static void setUp() {
+        // Random words from a small alphabet, so many of them are close to each
+        // other. The last digit keeps the analyzer from changing them.
+        Random random = new Random(61);
+        Set<String> words = new HashSet<>();
+        while (words.size() < 3000) {
+            StringBuilder word = new StringBuilder();
+            for (int i = 3 + random.nextInt(5); i >= 0; i--)
+                word.append("abcdefghik".charAt(random.nextInt(10)));
+            words.add(word.append(random.nextInt(2)).toString());
+        }
+        vocabulary = new ArrayList<>(words);
+        List<Site> sites = new ArrayList<>();
+        for (int i = 0; i < 1500; i++) {
+            StringBuilder text = new StringBuilder();
+            for (int j = 3 + random.nextInt(15); j >= 0; j--)
+                text.append(vocabulary.get(random.nextInt(vocabulary.size()))).append(' ');
+            sites.add(new Site("http://fuzzy" + i + ".cheesy", "", Arrays.asList(), text.toString()));
+        }
+        index = createIndex(sites);
+
+        // Indexed words with a few random edits.
+        queryWords = new ArrayList<>();
+        for (int q = 0; q < 30; q++) {
+            StringBuilder word = new StringBuilder(vocabulary.get(random.nextInt(vocabulary.size())));
+            for (int edit = q % 3; edit > 0; edit--) {
+                int position = random.nextInt(word.length() - 1);
+                switch (random.nextInt(3)) {
+                    case 0 -> word.deleteCharAt(position);
+                    case 1 -> word.insert(position, "abcdefghik".charAt(random.nextInt(10)));
+                    default -> word.setCharAt(position, "abcdefghik".charAt(random.nextInt(10)));
+                }
+            }
+            queryWords.add(word.toString());
+        }
+    }
+
+    static VectorIndex createIndex(List<Site> sites) {
+        VectorIndex vectorIndex = new VectorIndex(new UrlDictionary(), new RuleBasedAnalyzer());
+        for (Site site : sites)
+            vectorIndex.addSite(site);
+        vectorIndex.finish();
+        return vectorIndex;
+    }
+
+    /**
+     * The Levenshtein distance of two words by the full edit distance matrix.
+     */
+    static int distance(String a, String b) {
+        int[] row = new int[b.length() + 1];
+        for (int j = 0; j <= b.length(); j++)
+            row[j] = j;
+        for (int i = 1; i <= a.length(); i++) {
+            int diagonal = row[0];
+            row[0] = i;
+            for (int j = 1; j <= b.length(); j++) {
+                int above = row[j];
+                row[j] = Math.min(Math.min(row[j] + 1, row[j - 1] + 1),
+                        diagonal + (a.charAt(i - 1) == b.charAt(j - 1) ? 0 : 1));
+                diagonal = above;
+            }
+        }
+        return row[b.length()];
+    }
+
+    /**
+     * Find the urls of the sites containing a term within maxEdits of the word
+     * by comparing the word with every term.
+     */
+    static Set<String> sitesNear(SearchableIndex searchableIndex, String word, int maxEdits) {
+        IndexSearcher searcher = new IndexSearcher(searchableIndex);
+        Set<String> urls = new HashSet<>();
+        for (int termId = 0; termId < searchableIndex.getNrOfTerms(); termId++) {
+            if (distance(word, searchableIndex.getTerm(termId)) > maxEdits)
+                continue;
+            SearchResults results = searcher.searchQueryCosineResults(searchableIndex.getTerm(termId));
+            for (int rank = 0; rank < results.size(); rank++)
+                urls.add(results.getUrl(rank));
+        }
+        return urls;
+    }
+
+    static void assertCorrectExpansions(SearchableIndex searchableIndex) {
+        IndexSearcher searcher = new IndexSearcher(searchableIndex);
+        searcher.setMaxExpansions(10000);
+        for (int q = 0; q < queryWords.size(); q += 3) {
+            for (int maxEdits = 0; maxEdits <= 2; maxEdits++) {
+                String word = queryWords.get(q + maxEdits);
+                SearchResults results = searcher.searchQueryFuzzyResults(word, maxEdits);
+                Set<String> expected = sitesNear(searchableIndex, word, maxEdits);
+                assertEquals(expected.size(), results.size(), word);
+                for (int rank = 0; rank < results.size(); rank++) {
+                    assertTrue(expected.contains(results.getUrl(rank)));
+                    if (rank > 0)
+                        assertTrue(results.getScore(rank - 1) >= results.getScore(rank));
+                }
+            }
+        }
+
+        // Without edits only the exact terms are found, scored like the cosine
+        // search.
+        String query = vocabulary.get(0) + " " + vocabulary.get(1);
+        SearchResults exact = searcher.searchQueryCosineResults(query);
+        SearchResults results = searcher.searchQueryFuzzyResults(query, 0);
+        assertEquals(exact.size(), results.size());
+        for (int rank = 0; rank < results.size(); rank++) {
+            assertEquals(exact.getUrl(rank), results.getUrl(rank));
+            assertEquals(exact.getScore(rank), results.getScore(rank), 1e-12);
+        }
+    }
+
+    @Test
+    void correctExpansions() throws IOException {
+        assertCorrectExpansions(index);
+        assertCorrectExpansions(MappedVectorIndex.loadOffHeap(index, false));
+        assertCorrectExpansions(MappedVectorIndex.loadOffHeap(index, true));
+    }
+
+    @Test
+    void penaltiesAndExpansions() {
+        VectorIndex smallIndex = createIndex(List.of(
+                new Site("http://exact.cheesy", "", Arrays.asList(), "brie12"),
+                new Site("http://one.cheesy", "", Arrays.asList(), "brie112"),
+                new Site("http://two.cheesy", "", Arrays.asList(), "brie1122"),
+                new Site("http://three.cheesy", "", Arrays.asList(), "brie11223"),
+                new Site("http://parmesan.cheesy", "", Arrays.asList(), "parmesan")));
+        IndexSearcher searcher = new IndexSearcher(smallIndex);
+
+        // Each edit costs a share of the weight.
+        searcher.setFuzzyPenalty(0.3);
+        SearchResults results = searcher.searchQueryFuzzyResults("brie12", 2);
+        assertEquals(3, results.size());
+        assertEquals("http://exact.cheesy", results.getUrl(0));
+        assertEquals("http://one.cheesy", results.getUrl(1));
+        assertEquals("http://two.cheesy", results.getUrl(2));
+        assertEquals(0.7, results.getScore(1) / results.getScore(0), 1e-12);
+        assertEquals(0.49, results.getScore(2) / results.getScore(0), 1e-12);
+        searcher.setFuzzyPenalty(0.0);
+        results = searcher.searchQueryFuzzyResults("brie12", 2);
+        assertEquals(results.getScore(0), results.getScore(2), 1e-12);
+
+        // Only the closest terms are used.
+        searcher.setMaxExpansions(2);
+        results = searcher.searchQueryFuzzyResults("brie12", 2);
+        assertEquals(Set.of("http://exact.cheesy", "http://one.cheesy"),
+                Set.of(results.getUrl(0), results.getUrl(1)));
+        assertEquals(2, results.size());
+
+        assertEquals("http://parmesan.cheesy", searcher.searchQueryFuzzyResults("parmesean", 1).getUrl(0));
+        assertEquals(0, searcher.searchQueryFuzzyResults("parmesean", 0).size());
+
+        assertThrows(IllegalArgumentException.class, () -> searcher.searchQueryFuzzyResults("brie12", 3));
+        assertThrows(IllegalArgumentException.class, () -> searcher.searchQueryFuzzyResults("brie12", -1));
+        assertThrows(IllegalArgumentException.class, () -> searcher.setFuzzyPenalty(1.0));
+        assertThrows(IllegalArgumentException.class, () -> searcher.setFuzzyPenalty(-0.1));
+        assertThrows(IllegalArgumentException.class, () -> searcher.setFuzzyPenalty(Double.NaN));
+    }
+
+    @Test
+    void benchmarkFuzzyExpansion() {
+        IndexSearcher searcher = new IndexSearcher(index);
+        List<String> terms = new ArrayList<>();
+        for (int termId = 0; termId < index.getNrOfTerms(); termId++)
+            terms.add(index.getTerm(termId));
+        int runs = 20;
+        for (int maxEdits = 1; maxEdits <= 2; maxEdits++) {
+            long[] times = new long[2];
+            int checksum = 0;
+            for (int round = 0; round < 2; round++) {
+                // The first round warms up.
+                long start = System.nanoTime();
+                for (int run = 0; run < runs; run++)
+                    for (String word : queryWords)
+                        for (String term : terms)
+                            if (distance(word, term) <= maxEdits)
+                                checksum++;
+                times[0] = System.nanoTime() - start;
+                start = System.nanoTime();
+                for (int run = 0; run < runs; run++)
+                    for (String word : queryWords)
+                        checksum += searcher.searchQueryFuzzyResults(word, maxEdits, 10).size();
+                times[1] = System.nanoTime() - start;
+            }
+            int searches = runs * queryWords.size();
+            System.out.println(String.format("%d edits, %d terms: distance to every term %.3f ms, automaton search "
+                    + "%.3f ms per query (checksum %d)", maxEdits, terms.size(), times[0] / 1e6 / searches,
+                    times[1] / 1e6 / searches, checksum));
+        }
+    }
+}
@@ -0,0 +1,229 @@
+package de.fernunihagen.dbis.anguillasearch;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Random;
+import java.util.Set;
+
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.Test;
+
+import com.google.gson.Gson;
+import com.google.gson.JsonObject;
+
+import de.fernunihagen.dbis.anguillasearch.crawler.Crawler;
+import de.fernunihagen.dbis.anguillasearch.helpers.Site;
+import de.fernunihagen.dbis.anguillasearch.helpers.UrlDictionary;
+import de.fernunihagen.dbis.anguillasearch.index.ForwardIndex;
+import de.fernunihagen.dbis.anguillasearch.index.HnswIndex;
+import de.fernunihagen.dbis.anguillasearch.index.IndexSearcher;
+import de.fernunihagen.dbis.anguillasearch.index.MappedVectorIndex;
+import de.fernunihagen.dbis.anguillasearch.index.SearchResults;
+import de.fernunihagen.dbis.anguillasearch.index.SearchableIndex;
+import de.fernunihagen.dbis.anguillasearch.index.VectorIndex;
+
+/**
+ * Unit tests and recall reports for the approximate cosine search on the HNSW
+ * graph of an index.
+ */
+class HnswTests {
+
+    static final int K = 10;
+
+    static String[] vocabulary;
+    static List<Site> sites;
+    static List<String> queries;
+    static VectorIndex normalizedIndex;
+
+    @BeforeAll
+    static void setUp() {
+        // A synthetic network of sites about 40 topics, each topic prefers its own
+        // words besides a few common ones.
+        Random random = new Random(29);
+        vocabulary = SyntheticNetwork.vocabulary("whey", 1200);
+        sites = new ArrayList<>();
+        for (int i = 0; i < 4000; i++) {
+            int topic = random.nextInt(40);
+            StringBuilder text = new StringBuilder();
+            int length = 20 + random.nextInt(60);
+            for (int j = 0; j < length; j++)
+                text.append(randomWord(random, topic)).append(' ');
+            sites.add(new Site("http://whey" + i + ".cheesy", randomWord(random, topic) + " ",
+                    Arrays.asList(randomWord(random, topic) + " "), text.toString()));
+        }
+        normalizedIndex = SyntheticNetwork.createIndex(sites);
+        normalizedIndex.normalize();
+
+        queries = new ArrayList<>();
+        for (int q = 0; q < 60; q++) {
+            int topic = random.nextInt(40);
+            StringBuilder query = new StringBuilder();
+            for (int i = 0; i <= q % 4; i++)
+                query.append(randomWord(random, topic)).append(' ');
+            queries.add(query.toString().trim());
+        }
+    }
+
+    static String randomWord(Random random, int topic) {
+        if (random.nextDouble() < 0.3)
+            return vocabulary[random.nextInt(50)];
+        return vocabulary[50 + topic * 25 + (int) Math.min(24, Math.abs(random.nextGaussian()) * 8)];
+    }
+
+    /**
+     * Get the share of the exact top k results found by the approximate search.
+     */
+    static double recall(SearchResults exact, SearchResults approximate) {
+        Set<String> found = new HashSet<>();
+        for (int rank = 0; rank < approximate.size(); rank++)
+            found.add(approximate.getUrl(rank));
+        int hits = 0;
+        for (int rank = 0; rank < exact.size(); rank++)
+            if (found.contains(exact.getUrl(rank)))
+                hits++;
+        return exact.isEmpty() ? 1.0 : (double) hits / exact.size();
+    }
+
+    /**
+     * Get the mean recall@k of the test queries and check the scores of the
+     * approximate results against the exact scores.
+     */
+    static double meanRecall(SearchableIndex index, HnswIndex hnswIndex, List<String> testQueries) {
+        IndexSearcher searcher = new IndexSearcher(index);
+        double recallSum = 0.0;
+        for (String query : testQueries) {
+            SearchResults exact = searcher.searchQueryCosineTopKResults(query, K);
+            SearchResults approximate = searcher.searchQueryCosineHnswResults(query, null, hnswIndex, K);
+            assertTrue(approximate.size() <= K);
+            SearchResults all = searcher.searchQueryCosineResults(query);
+            for (int rank = 0; rank < approximate.size(); rank++) {
+                if (rank > 0)
+                    assertTrue(approximate.getScore(rank - 1) >= approximate.getScore(rank));
+                for (int i = 0; i < all.size(); i++)
+                    if (all.getUrl(i).equals(approximate.getUrl(rank)))
+                        assertEquals(all.getScore(i), approximate.getScore(rank), 1e-12);
+            }
+            recallSum += recall(exact, approximate);
+        }
+        return recallSum / testQueries.size();
+    }
+
+    /**
+     * Get the time the exhaustive and the HNSW search take for all test queries,
+     * after a warm up.
+     */
+    static long[] searchTimes(SearchableIndex index, HnswIndex hnswIndex) {
+        IndexSearcher searcher = new IndexSearcher(index);
+        long[] times = new long[2];
+        for (int run = 0; run < 2; run++) {
+            long start = System.nanoTime();
+            for (String query : queries)
+                searcher.searchQueryCosineTopKResults(query, K);
+            times[0] = System.nanoTime() - start;
+            start = System.nanoTime();
+            for (String query : queries)
+                searcher.searchQueryCosineHnswResults(query, null, hnswIndex, K);
+            times[1] = System.nanoTime() - start;
+        }
+        return times;
+    }
+
+    @Test
+    void recallReport() throws IOException {
+        VectorIndex index = SyntheticNetwork.createIndex(sites);
+        for (SearchableIndex searchableIndex : new SearchableIndex[] { normalizedIndex, index,
+                MappedVectorIndex.loadOffHeap(normalizedIndex, true) }) {
+            long start = System.nanoTime();
+            HnswIndex hnswIndex = HnswIndex.build(searchableIndex);
+            long buildTime = System.nanoTime() - start;
+            assertEquals(sites.size(), hnswIndex.getNrOfNodes());
+            double previousRecall = 0.0;
+            for (int ef : new int[] { 10, 40, 160 }) {
+                hnswIndex.setEf(ef);
+                double recall = meanRecall(searchableIndex, hnswIndex, queries);
+                long[] times = searchTimes(searchableIndex, hnswIndex);
+                System.out.println(String.format("%s normalized: %b, M: %d, efConstruction: %d, ef: %3d, "
+                        + "recall@%d: %.3f, build: %.0f ms, exact: %.3f ms, HNSW: %.3f ms per query",
+                        searchableIndex.getClass().getSimpleName(), searchableIndex.isNormalized(),
+                        hnswIndex.getM(), hnswIndex.getEfConstruction(), ef, K, recall, buildTime / 1e6,
+                        times[0] / 1e6 / queries.size(), times[1] / 1e6 / queries.size()));
+                assertTrue(recall >= previousRecall - 0.02);
+                previousRecall = recall;
+            }
+            assertTrue(previousRecall >= 0.9);
+        }
+    }
+
+    @Test
+    void buildParameters() {
+        // A sparser graph finds less of the exact results.
+        HnswIndex sparseGraph = HnswIndex.build(normalizedIndex, 2, 4);
+        HnswIndex denseGraph = HnswIndex.build(normalizedIndex, 24, 200);
+        sparseGraph.setEf(10);
+        denseGraph.setEf(10);
+        double sparseRecall = meanRecall(normalizedIndex, sparseGraph, queries);
+        double denseRecall = meanRecall(normalizedIndex, denseGraph, queries);
+        System.out.println(String.format("ef 10: recall@%d M 2: %.3f, M 24: %.3f", K, sparseRecall, denseRecall));
+        assertTrue(sparseRecall < denseRecall);
+        assertTrue(denseGraph.getMaxLevel() >= 1);
+
+        assertThrows(IllegalArgumentException.class, () -> HnswIndex.build(normalizedIndex, 1, 10));
+        assertThrows(IllegalArgumentException.class, () -> HnswIndex.build(normalizedIndex, 16, 0));
+        assertThrows(IllegalArgumentException.class, () -> denseGraph.setEf(0));
+    }
+
+    @Test
+    void changedIndex() {
+        VectorIndex index = SyntheticNetwork.createIndex(sites.subList(0, 500));
+        HnswIndex hnswIndex = HnswIndex.build(index);
+        IndexSearcher searcher = new IndexSearcher(index);
+        assertThrows(IllegalArgumentException.class,
+                () -> new IndexSearcher(normalizedIndex).searchQueryCosineHnsw(queries.get(0), hnswIndex, K));
+        assertTrue(searcher.searchQueryCosineHnswResults("nothinghere", null, hnswIndex, K).isEmpty());
+
+        // The graph needs to be built again after the index changed.
+        index.delete(sites.get(0).url);
+        assertThrows(IllegalStateException.class, () -> searcher.searchQueryCosineHnsw(queries.get(0), hnswIndex, K));
+        assertEquals(499, HnswIndex.build(index).getNrOfNodes());
+    }
+
+    @Test
+    void intranetRecallReport() throws IOException {
+        String[] intranets = { "cheesy1-f126d0d3", "cheesy2-c79b0581", "cheesy3-7fdaa098", "cheesy4-a31d2f0d",
+                "cheesy5-d861877d", "cheesy6-54ae2b2e" };
+        for (String intranet : intranets) {
+            JsonObject testJSON = Utils.parseJSONFile("intranet/" + intranet + ".json");
+            String[] seedUrls = new Gson().fromJson(testJSON.get("Seed-URLs"), String[].class);
+            String query = String.join(" ", new Gson().fromJson(testJSON.get("Query-Token"), String[].class));
+
+            UrlDictionary dictionary = new UrlDictionary();
+            ForwardIndex forwardIndex = new ForwardIndex(dictionary);
+            Crawler crawler = new Crawler(forwardIndex);
+            crawler.setSeed(seedUrls);
+            try {
+                crawler.crawl();
+            } catch (Exception e) {
+                System.out.println(e.getMessage());
+            }
+            List<Site> crawledSites = new ArrayList<>();
+            for (int id = 0; id < dictionary.size(); id++)
+                if (forwardIndex.getSite(id) != null)
+                    crawledSites.add(forwardIndex.getSite(id));
+
+            VectorIndex index = SyntheticNetwork.createIndex(crawledSites);
+            index.normalize();
+            HnswIndex hnswIndex = HnswIndex.build(index);
+            double recall = meanRecall(index, hnswIndex, List.of(query));
+            System.out.println(String.format("%s sites: %d, recall@%d: %.3f", intranet, crawledSites.size(), K,
+                    recall));
+            assertTrue(recall >= 0.9);
+        }
+    }
+}
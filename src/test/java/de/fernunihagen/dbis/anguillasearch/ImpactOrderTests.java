@@ -0,0 +1,159 @@
+package de.fernunihagen.dbis.anguillasearch;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.io.IOException;
+import java.util.Arrays;
+import java.util.List;
+
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.Test;
+
+import de.fernunihagen.dbis.anguillasearch.helpers.Site;
+import de.fernunihagen.dbis.anguillasearch.index.ImpactPostings;
+import de.fernunihagen.dbis.anguillasearch.index.IndexSearcher;
+import de.fernunihagen.dbis.anguillasearch.index.MappedVectorIndex;
+import de.fernunihagen.dbis.anguillasearch.index.SearchableIndex;
+import de.fernunihagen.dbis.anguillasearch.index.VectorIndex;
+
+/**
+ * Unit tests and a benchmark for the impact ordered postings and the early
+ * terminating top k search.
+ */
+class ImpactOrderTests {
+
+    static final String[] QUERIES = { "cheddar", "gouda brie", "aged cheddar", "creamy blue goat",
+            "parmesan wheel", "brie camembert farm", "soft sheep milk", "cheese" };
+    static final int[] KS = { 1, 3, 10, 50 };
+
+    static List<Site> sites;
+    static VectorIndex index;
+    static VectorIndex normalizedIndex;
+
+    @BeforeAll
+    static void setUp() {
+        // A synthetic network with a skewed word distribution, "cheese" is contained
+        // in every site.
+        sites = SyntheticNetwork.gaussian(0, 300, 11);
+
+        index = new VectorIndex();
+        normalizedIndex = new VectorIndex();
+        for (Site site : sites) {
+            index.addSite(site);
+            normalizedIndex.addSite(site);
+        }
+        index.finish();
+        index.orderByImpact();
+        normalizedIndex.finish();
+        normalizedIndex.normalize();
+        normalizedIndex.orderByImpact();
+    }
+
+    /**
+     * Check that the top k search finds the first k results of the exhaustive
+     * search for all test queries.
+     */
+    static void assertSameResults(SearchableIndex searchableIndex) {
+        IndexSearcher searcher = new IndexSearcher(searchableIndex);
+        for (String query : QUERIES) {
+            List<String[]> expected = searcher.searchQueryCosine(query);
+            for (int k : KS) {
+                List<String[]> found = searcher.searchQueryCosineTopK(query, k);
+                assertEquals(Math.min(k, expected.size()), found.size());
+                for (int i = 0; i < found.size(); i++)
+                    assertArrayEquals(expected.get(i), found.get(i));
+            }
+        }
+    }
+
+    @Test
+    void impactOrder() {
+        ImpactPostings impactPostings = index.getImpactPostings();
+        for (int term = 0; term < index.getNrOfTerms(); term++) {
+            int start = impactPostings.getStart(term);
+            int end = impactPostings.getEnd(term);
+            assertTrue(end - start <= index.getDocFrequency(term));
+            for (int pos = start + 1; pos < end; pos++)
+                assertTrue(impactPostings.getImpact(pos - 1) >= impactPostings.getImpact(pos));
+        }
+
+        // A term contained in every site has no impact.
+        int cheese = index.getTermId("cheese");
+        assertEquals(index.getNrOfSites(), index.getDocFrequency(cheese));
+        assertEquals(impactPostings.getStart(cheese), impactPostings.getEnd(cheese));
+
+        // Changing the weights drops the impact order.
+        VectorIndex copy = new VectorIndex();
+        copy.addSite(new Site("http://brie.cheesy", "Brie", Arrays.asList("Brie"), "soft cheese"));
+        copy.finish();
+        copy.orderByImpact();
+        copy.normalize();
+        assertEquals(null, copy.getImpactPostings());
+    }
+
+    @Test
+    void sameResultsAsExhaustiveSearch() throws IOException {
+        assertSameResults(index);
+        assertSameResults(normalizedIndex);
+
+        MappedVectorIndex offHeapIndex = MappedVectorIndex.loadOffHeap(normalizedIndex, true);
+        offHeapIndex.orderByImpact();
+        assertSameResults(offHeapIndex);
+
+        // Without impact ordered postings all postings are scored.
+        assertSameResults(MappedVectorIndex.loadOffHeap(index, false));
+    }
+
+    @Test
+    void deletedDocuments() {
+        VectorIndex changedIndex = new VectorIndex();
+        for (Site site : sites)
+            changedIndex.addSite(site);
+        changedIndex.finish();
+        changedIndex.normalize();
+        changedIndex.orderByImpact();
+
+        // Deleted documents are skipped until the index is finished again.
+        IndexSearcher searcher = new IndexSearcher(changedIndex);
+        String deleted = searcher.searchQueryCosineTopK("aged cheddar", 1).get(0)[0];
+        changedIndex.delete(deleted);
+        assertSameResults(changedIndex);
+        assertTrue(!deleted.equals(searcher.searchQueryCosineTopK("aged cheddar", 1).get(0)[0]));
+    }
+
+    @Test
+    void benchmarkScoredPostings() {
+        IndexSearcher searcher = new IndexSearcher(normalizedIndex);
+        int k = 10;
+        int runs = 50;
+        long exhaustivePostings = 0;
+        long topKPostings = 0;
+        long exhaustiveTime = 0;
+        long topKTime = 0;
+        for (int run = 0; run < runs; run++) {
+            for (String query : QUERIES) {
+                long start = System.nanoTime();
+                searcher.searchQueryCosine(query);
+                exhaustiveTime += System.nanoTime() - start;
+                exhaustivePostings += searcher.getLastScoredPostings();
+
+                start = System.nanoTime();
+                searcher.searchQueryCosineTopK(query, k);
+                topKTime += System.nanoTime() - start;
+                topKPostings += searcher.getLastScoredPostings();
+            }
+        }
+        int searches = runs * QUERIES.length;
+        System.out.println(String.format("exhaustive: %.1f postings, %.3f ms per query", (double) exhaustivePostings
+                / searches, exhaustiveTime / 1e6 / searches));
+        System.out.println(String.format("top %d:     %.1f postings, %.3f ms per query", k, (double) topKPostings
+                / searches, topKTime / 1e6 / searches));
+
+        // Terms contained in every site don't need to be scored at all.
+        searcher.searchQueryCosineTopK("cheese", k);
+        assertEquals(0, searcher.getLastScoredPostings());
+        assertTrue(topKPostings < exhaustivePostings);
+    }
+}
@@ -0,0 +1,94 @@
+package de.fernunihagen.dbis.anguillasearch;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.Test;
+
+import de.fernunihagen.dbis.anguillasearch.helpers.Site;
+import de.fernunihagen.dbis.anguillasearch.index.ReverseIndex;
+import de.fernunihagen.dbis.anguillasearch.index.RuleBasedAnalyzer;
+import de.fernunihagen.dbis.anguillasearch.index.Token;
+
+/**
+ * Unit tests and a benchmark for adding Sites to a ReverseIndex incrementally.
+ */
+class IncrementalReverseIndexTests {
+
+    static final String[] QUERIES = { "cheddar", "gouda brie", "aged cheddar", "creamy blue goat",
+            "parmesan wheel", "brie camembert farm", "soft sheep milk", "cheese" };
+
+    static List<Site> sites;
+
+    @BeforeAll
+    static void setUp() {
+        sites = SyntheticNetwork.gaussian(0, 400, 11);
+    }
+
+    @Test
+    void sameResultsAsBatchBuild() {
+        ReverseIndex batchIndex = new ReverseIndex(sites, new RuleBasedAnalyzer());
+        ReverseIndex incrementalIndex = new ReverseIndex(new ArrayList<>(), new RuleBasedAnalyzer());
+        for (int start = 0; start < sites.size(); start += 50)
+            incrementalIndex.addSites(sites.subList(start, start + 50));
+        assertEquals(sites.size(), incrementalIndex.getNrOfSites());
+
+        for (String query : QUERIES) {
+            List<String[]> expected = batchIndex.searchQuery(query);
+            List<String[]> found = incrementalIndex.searchQuery(query);
+            assertEquals(expected.size(), found.size());
+            for (int i = 0; i < expected.size(); i++)
+                assertArrayEquals(expected.get(i), found.get(i));
+            assertEquals(Math.min(5, expected.size()), incrementalIndex.searchQuery(query, 5).size());
+        }
+    }
+
+    @Test
+    void idfAtQueryTime() {
+        // The title, headings and paragraphs of a Site are joined without spaces.
+        ReverseIndex index = new ReverseIndex(new ArrayList<>(), new RuleBasedAnalyzer());
+        index.addSite(new Site("http://goat.cheesy1", "Goat ", Arrays.asList("Cheese "), "goat cheese"));
+        index.addSite(new Site("http://blue.cheesy1", "Blue ", Arrays.asList("Cheese "), "blue cheese"));
+        // A term in every document has no weight.
+        Token cheese = index.findToken("cheese");
+        assertEquals(List.of("http://blue.cheesy1", "http://goat.cheesy1"), cheese.getDocuments());
+        assertEquals(0.0, cheese.getTfIdfScore("http://goat.cheesy1"));
+
+        // Adding a document changes the IDF of the terms of the other documents.
+        index.addSite(new Site("http://farm.cheesy1", "Farm ", Arrays.asList("Milk "), "goat milk"));
+        cheese = index.findToken("cheese");
+        assertEquals(0.5 * Math.log(3.0 / 2.0), cheese.getTfIdfScore("http://goat.cheesy1"), 1e-12);
+        assertEquals("http://farm.cheesy1", index.searchQuery("goat milk").get(0)[0]);
+
+        // Sites with the same URL are ignored, parseSiteList() starts a new index.
+        index.addSite(new Site("http://farm.cheesy1", "Farm", Arrays.asList("Cheese"), "cheese"));
+        assertEquals(3, index.getNrOfSites());
+        index.parseSiteList(List.of(new Site("http://cave.cheesy2", "Cave ", Arrays.asList("Cheese "), "cave")));
+        assertEquals(1, index.getNrOfSites());
+        assertTrue(!index.containsToken("goat"));
+        assertTrue(index.containsToken("cave"));
+    }
+
+    @Test
+    void benchmarkAddingBatches() {
+        // Adding a batch costs the same no matter how many Sites are indexed.
+        ReverseIndex index = new ReverseIndex(new ArrayList<>(), new RuleBasedAnalyzer());
+        List<Site> batch = SyntheticNetwork.gaussian(100000, 100, 12);
+        for (int round = 0; round < 4; round++) {
+            index.addSites(SyntheticNetwork.gaussian(round * 2000, 2000, round));
+
+            long start = System.nanoTime();
+            index.addSites(batch.subList(round * 25, round * 25 + 25));
+            long time = System.nanoTime() - start;
+            System.out.println(String.format("%5d sites indexed, adding 25 sites: %.3f ms", index.getNrOfSites() - 25,
+                    time / 1e6));
+        }
+        assertEquals(8100, index.getNrOfSites());
+    }
+}
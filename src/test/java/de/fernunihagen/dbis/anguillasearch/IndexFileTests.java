@@ -0,0 +1,162 @@
+package de.fernunihagen.dbis.anguillasearch;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.io.IOException;
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Proxy;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Arrays;
+import java.util.LinkedList;
+import java.util.List;
+import java.util.Map.Entry;
+
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.Test;
+
+import com.google.gson.JsonElement;
+import com.google.gson.JsonObject;
+
+import de.fernunihagen.dbis.anguillasearch.helpers.Site;
+import de.fernunihagen.dbis.anguillasearch.helpers.UrlDictionary;
+import de.fernunihagen.dbis.anguillasearch.index.Analyzer;
+import de.fernunihagen.dbis.anguillasearch.index.IndexFile;
+import de.fernunihagen.dbis.anguillasearch.index.IndexSearcher;
+import de.fernunihagen.dbis.anguillasearch.index.MappedVectorIndex;
+import de.fernunihagen.dbis.anguillasearch.index.SearchableIndex;
+import de.fernunihagen.dbis.anguillasearch.index.VectorIndex;
+
+/**
+ * Unit tests for the index file and the memory mapped index.
+ */
+class IndexFileTests {
+
+    static JsonObject correctReverseIdex;
+    static VectorIndex testIndex;
+    static MappedVectorIndex mappedIndex;
+
+    @BeforeAll
+    static void setUp() throws IOException {
+        List<JsonObject> testPages = Utils.parseAllJSONFiles(java.util.Optional.of("src/test/resources/tf-idf/pages"));
+        correctReverseIdex = Utils.parseJSONFile("src/test/resources/tf-idf/index.json");
+
+        testIndex = new VectorIndex();
+        for (JsonObject testPage : testPages) {
+            LinkedList<String> headings = new LinkedList<>();
+            headings.add(testPage.get("headings").toString());
+            String url = testPage.get("url").toString();
+            url = url.substring(1, url.length() - 1);
+
+            testIndex.addSite(new Site(url, testPage.get("title").toString(), headings,
+                    testPage.get("paragraphs").toString()));
+        }
+        testIndex.finish();
+
+        // Write the index and map it back in.
+        Path file = Files.createTempFile("anguilla", ".idx");
+        file.toFile().deleteOnExit();
+        testIndex.save(file);
+        mappedIndex = MappedVectorIndex.open(file);
+    }
+
+    @Test
+    void mappedIndexTFIDF() {
+        assertEquals(testIndex.getNrOfSites(), mappedIndex.getNrOfSites());
+        assertEquals(testIndex.getNrOfTerms(), mappedIndex.getNrOfTerms());
+
+        for (Entry<String, JsonElement> entry : correctReverseIdex.entrySet()) {
+            String token = entry.getKey();
+            assertTrue(mappedIndex.containsToken(token));
+            for (Entry<String, JsonElement> pageEntry : entry.getValue().getAsJsonObject().entrySet()) {
+                Double tfidf = pageEntry.getValue().getAsDouble();
+                Double mappedTfidf = mappedIndex.getTfIdfOf(token, pageEntry.getKey());
+                assertTrue(Math.abs(tfidf - mappedTfidf) < 0.0001);
+            }
+        }
+
+        // Unknown tokens and documents are not found.
+        assertEquals(-1, mappedIndex.getTermId("anguilla"));
+        assertEquals(-1, mappedIndex.getDocumentNr("https://www.p9.local"));
+    }
+
+    @Test
+    void mappedIndexSearch() {
+        IndexSearcher searcher = new IndexSearcher(testIndex);
+        IndexSearcher mappedSearcher = new IndexSearcher(mappedIndex);
+
+        for (String query : new String[] { "house", "garden pool", "flower house garden" }) {
+            List<String[]> expected = searcher.searchQueryCosine(query);
+            List<String[]> found = mappedSearcher.searchQueryCosine(query);
+            assertEquals(expected.size(), found.size());
+            for (int i = 0; i < expected.size(); i++)
+                assertArrayEquals(expected.get(i), found.get(i));
+        }
+    }
+
+    @Test
+    void compressedIndexFile() throws IOException {
+        Path file = Files.createTempFile("anguilla", ".idx");
+        file.toFile().deleteOnExit();
+        testIndex.save(file, true);
+        MappedVectorIndex compressedIndex = MappedVectorIndex.open(file);
+        assertTrue(compressedIndex.isCompressed());
+
+        // The quantized weights stay within the precision of the test data.
+        for (Entry<String, JsonElement> entry : correctReverseIdex.entrySet()) {
+            for (Entry<String, JsonElement> pageEntry : entry.getValue().getAsJsonObject().entrySet()) {
+                Double tfidf = pageEntry.getValue().getAsDouble();
+                Double compressedTfidf = compressedIndex.getTfIdfOf(entry.getKey(), pageEntry.getKey());
+                assertTrue(Math.abs(tfidf - compressedTfidf) < 0.0001);
+            }
+        }
+        assertTrue(compressedIndex.getPostingsSize() < mappedIndex.getPostingsSize());
+    }
+
+    @Test
+    void oversizedIndexFile() throws IOException {
+        // The test index with a few hundred million postings per term, whose
+        // posting bytes overflow an int.
+        SearchableIndex oversizedIndex = (SearchableIndex) Proxy.newProxyInstance(
+                SearchableIndex.class.getClassLoader(), new Class<?>[] { SearchableIndex.class },
+                (proxy, method, args) -> {
+                    if (method.getName().equals("getDocFrequency"))
+                        return Integer.MAX_VALUE / 8;
+                    try {
+                        return method.invoke(testIndex, args);
+                    } catch (InvocationTargetException e) {
+                        throw e.getCause();
+                    }
+                });
+        Path file = Files.createTempFile("anguilla", ".idx");
+        file.toFile().deleteOnExit();
+        IOException e = assertThrows(IOException.class, () -> IndexFile.write(oversizedIndex, file));
+        assertTrue(e.getMessage().startsWith("index file: The index needs"));
+        assertEquals(0, Files.size(file));
+    }
+
+    @Test
+    void unknownAnalyzer() throws IOException {
+        // The file can't tell how to analyze queries for Analyzers it doesn't know.
+        Analyzer splitter = text -> Arrays.asList(text.split(" "));
+        VectorIndex splitIndex = new VectorIndex(new UrlDictionary(), splitter);
+        splitIndex.addSite(new Site("http://split.cheesy", "", Arrays.asList(), "aged cheddar"));
+        splitIndex.finish();
+        Path file = Files.createTempFile("anguilla", ".idx");
+        file.toFile().deleteOnExit();
+        assertThrows(IOException.class, () -> IndexFile.write(splitIndex, file));
+        assertThrows(IOException.class, () -> MappedVectorIndex.loadOffHeap(splitIndex, false));
+    }
+
+    @Test
+    void invalidIndexFile() throws IOException {
+        Path file = Files.createTempFile("anguilla", ".idx");
+        file.toFile().deleteOnExit();
+        Files.writeString(file, "This is not an index file.");
+
+        assertThrows(IOException.class, () -> MappedVectorIndex.open(file));
+    }
+}
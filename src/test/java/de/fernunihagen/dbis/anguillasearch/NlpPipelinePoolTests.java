@@ -0,0 +1,114 @@
+package de.fernunihagen.dbis.anguillasearch;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Properties;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+import org.junit.jupiter.api.Test;
+
+import de.fernunihagen.dbis.anguillasearch.index.CoreNlpAnalyzer;
+import de.fernunihagen.dbis.anguillasearch.index.NlpPipelinePool;
+import de.fernunihagen.dbis.anguillasearch.index.VectorIndex;
+import edu.stanford.nlp.pipeline.StanfordCoreNLP;
+
+/**
+ * Unit tests and a startup benchmark for the shared pool of CoreNLP pipelines.
+ */
+class NlpPipelinePoolTests {
+
+    static final String[] TEXTS = { "cheeses are made of milk", "the goats were grazing on the farms",
+            "aged cheddar tastes sharper", "she bought two wheels of gouda", "blue cheese is ripened in caves",
+            "the farmers sold their cheeses" };
+
+    static long usedHeap() {
+        Runtime runtime = Runtime.getRuntime();
+        System.gc();
+        return runtime.totalMemory() - runtime.freeMemory();
+    }
+
+    @Test
+    void lazyPipelines() {
+        NlpPipelinePool pool = new NlpPipelinePool(2);
+        CoreNlpAnalyzer analyzer = new CoreNlpAnalyzer(pool);
+        assertEquals(0, pool.getCreatedPipelines());
+
+        // Sequential use keeps reusing the first pipeline.
+        assertEquals(List.of("cheese", "be", "make", "of", "milk"), analyzer.lemmatize(TEXTS[0]));
+        analyzer.lemmatize(TEXTS[1]);
+        assertEquals(1, pool.getCreatedPipelines());
+
+        // Indices share the pipelines of the shared pool.
+        assertTrue(new CoreNlpAnalyzer().getPool() == NlpPipelinePool.getShared());
+        assertTrue(((CoreNlpAnalyzer) new VectorIndex().getAnalyzer()).getPool() == NlpPipelinePool.getShared());
+    }
+
+    @Test
+    void concurrentUse() throws Exception {
+        NlpPipelinePool pool = new NlpPipelinePool(2);
+        CoreNlpAnalyzer analyzer = new CoreNlpAnalyzer(pool);
+        List<List<String>> expected = new ArrayList<>();
+        for (String text : TEXTS)
+            expected.add(analyzer.lemmatize(text));
+
+        ExecutorService executor = Executors.newFixedThreadPool(6);
+        try {
+            List<Future<List<String>>> results = new ArrayList<>();
+            for (int run = 0; run < 10; run++)
+                for (String text : TEXTS)
+                    results.add(executor.submit(() -> analyzer.lemmatize(text)));
+            for (int i = 0; i < results.size(); i++)
+                assertEquals(expected.get(i % TEXTS.length), results.get(i).get());
+        } finally {
+            executor.shutdown();
+        }
+        assertTrue(pool.getCreatedPipelines() <= pool.getSize());
+    }
+
+    @Test
+    void benchmarkStartup() {
+        int indices = 4;
+
+        // The shared pool loads the models on the first analyzed text.
+        NlpPipelinePool shared = NlpPipelinePool.getShared();
+        int createdBefore = shared.getCreatedPipelines();
+        long heapBefore = usedHeap();
+        long start = System.nanoTime();
+        List<VectorIndex> pooled = new ArrayList<>();
+        for (int i = 0; i < indices; i++)
+            pooled.add(new VectorIndex());
+        long pooledCreation = System.nanoTime() - start;
+        assertEquals(createdBefore, shared.getCreatedPipelines());
+        for (VectorIndex index : pooled)
+            index.getAnalyzer().lemmatize(TEXTS[0]);
+        long pooledTime = System.nanoTime() - start;
+        long pooledHeap = usedHeap() - heapBefore;
+
+        // Previously each index created a pipeline of its own. CoreNLP keeps the
+        // loaded models at this point, so this is a lower bound of the old startup.
+        heapBefore = usedHeap();
+        start = System.nanoTime();
+        List<StanfordCoreNLP> dedicated = new ArrayList<>();
+        for (int i = 0; i < indices; i++) {
+            Properties props = new Properties();
+            props.setProperty("annotators", "tokenize, ssplit, pos, lemma");
+            dedicated.add(new StanfordCoreNLP(props));
+        }
+        long dedicatedTime = System.nanoTime() - start;
+        long dedicatedHeap = usedHeap() - heapBefore;
+
+        System.out.println(String.format("%d indices, shared pool: %.1f ms to create, %.1f ms to first result, "
+                + "%+.1f MB heap, %d pipelines", indices, pooledCreation / 1e6, pooledTime / 1e6, pooledHeap / 1e6,
+                shared.getCreatedPipelines()));
+        System.out.println(String.format("%d indices, own pipelines: %.1f ms to create, %+.1f MB heap", indices,
+                dedicatedTime / 1e6, dedicatedHeap / 1e6));
+        assertTrue(dedicated.size() == indices);
+        // The indices used one after another share a single pipeline.
+        assertEquals(Math.max(1, createdBefore), shared.getCreatedPipelines());
+    }
+}
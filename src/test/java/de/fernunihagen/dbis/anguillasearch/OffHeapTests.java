@@ -0,0 +1,149 @@
+package de.fernunihagen.dbis.anguillasearch;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.io.IOException;
+import java.lang.management.GarbageCollectorMXBean;
+import java.lang.management.ManagementFactory;
+import java.util.Arrays;
+import java.util.LinkedList;
+import java.util.List;
+import java.util.Random;
+
+import org.junit.jupiter.api.Test;
+
+import com.google.gson.JsonObject;
+
+import de.fernunihagen.dbis.anguillasearch.helpers.Site;
+import de.fernunihagen.dbis.anguillasearch.helpers.UrlDictionary;
+import de.fernunihagen.dbis.anguillasearch.index.ForwardIndex;
+import de.fernunihagen.dbis.anguillasearch.index.IndexSearcher;
+import de.fernunihagen.dbis.anguillasearch.index.MappedVectorIndex;
+import de.fernunihagen.dbis.anguillasearch.index.OffHeapMemory;
+import de.fernunihagen.dbis.anguillasearch.index.VectorIndex;
+
+/**
+ * Unit tests and a garbage collection benchmark for the off heap storage.
+ */
+class OffHeapTests {
+
+    @Test
+    void offHeapForwardIndex() {
+        ForwardIndex forwardIndex = new ForwardIndex(new UrlDictionary(), true);
+        String[] testURLs = { "http://cheddar1.cheesy1", "http://brie2.cheesy1", "http://chevre3.cheesy2" };
+        int i = 0;
+        for (String url : testURLs) {
+            forwardIndex.addSite(new Site(url, "" + i, Arrays.asList(url.split("/")), "Käse " + i));
+            i++;
+        }
+        // Duplicates are ignored, Sites may have missing content.
+        forwardIndex.addSite(new Site(testURLs[0], null, null, null));
+        forwardIndex.addSite(new Site("http://empty.cheesy3", null, null, null));
+        assertEquals(testURLs.length + 1, forwardIndex.getNrOfSites());
+
+        i = 0;
+        for (String url : testURLs) {
+            Site site = forwardIndex.getSiteWithUrl(url);
+            assertEquals(url, site.url);
+            assertEquals("" + i, forwardIndex.getTitleOf(url));
+            assertEquals(Arrays.asList(url.split("/")), site.headings);
+            assertEquals("Käse " + i, site.paragraphs);
+            i++;
+        }
+        Site empty = forwardIndex.getSiteWithUrl("http://empty.cheesy3");
+        assertEquals(null, empty.title);
+        assertEquals(null, empty.headings);
+        assertEquals(null, forwardIndex.getSiteWithUrl("http://gouda.cheesy3"));
+        assertTrue(forwardIndex.getOffHeapSize() > 0);
+    }
+
+    @Test
+    void offHeapVectorIndex() throws IOException {
+        VectorIndex testIndex = new VectorIndex();
+        for (JsonObject testPage : Utils.parseAllJSONFiles(java.util.Optional.of("src/test/resources/tf-idf/pages"))) {
+            LinkedList<String> headings = new LinkedList<>();
+            headings.add(testPage.get("headings").toString());
+            String url = testPage.get("url").toString();
+            url = url.substring(1, url.length() - 1);
+            testIndex.addSite(new Site(url, testPage.get("title").toString(), headings,
+                    testPage.get("paragraphs").toString()));
+        }
+        testIndex.finish();
+        testIndex.normalize();
+
+        long directBefore = OffHeapMemory.getDirectMemoryUsed();
+        MappedVectorIndex offHeapIndex = MappedVectorIndex.loadOffHeap(testIndex, false);
+        assertTrue(OffHeapMemory.getDirectMemoryUsed() - directBefore >= offHeapIndex.getOffHeapSize());
+        System.out.println(OffHeapMemory.report());
+
+        IndexSearcher searcher = new IndexSearcher(testIndex);
+        IndexSearcher offHeapSearcher = new IndexSearcher(offHeapIndex);
+        for (String query : new String[] { "house", "garden pool", "flower house garden" }) {
+            List<String[]> expected = searcher.searchQueryCosine(query);
+            List<String[]> found = offHeapSearcher.searchQueryCosine(query);
+            assertEquals(expected.size(), found.size());
+            for (int i = 0; i < expected.size(); i++)
+                assertArrayEquals(expected.get(i), found.get(i));
+        }
+    }
+
+    /**
+     * Get the total time spent in garbage collection so far.
+     */
+    private static long getGcTime() {
+        long time = 0;
+        for (GarbageCollectorMXBean gc : ManagementFactory.getGarbageCollectorMXBeans())
+            time += Math.max(0, gc.getCollectionTime());
+        return time;
+    }
+
+    /**
+     * Fill a ForwardIndex with synthetic Sites and measure the heap it occupies and
+     * the time full garbage collections take with it alive.
+     *
+     * @return {heap used in bytes, average full gc time in ms, off heap size in
+     *         bytes}
+     */
+    private static long[] measureGc(boolean offHeap, int siteCount) {
+        Runtime runtime = Runtime.getRuntime();
+        System.gc();
+        long heapBefore = runtime.totalMemory() - runtime.freeMemory();
+
+        Random random = new Random(3);
+        ForwardIndex forwardIndex = new ForwardIndex(new UrlDictionary(), offHeap);
+        for (int i = 0; i < siteCount; i++) {
+            StringBuilder text = new StringBuilder();
+            for (int j = 0; j < 40; j++)
+                text.append("cheese").append(random.nextInt(1000)).append(' ');
+            forwardIndex.addSite(new Site("http://cheese" + i + ".cheesy", "Cheese " + i,
+                    Arrays.asList("Heading " + i, "Subheading " + i), text.toString()));
+        }
+
+        System.gc();
+        long heapUsed = runtime.totalMemory() - runtime.freeMemory() - heapBefore;
+        int runs = 5;
+        long gcTime = getGcTime();
+        for (int run = 0; run < runs; run++)
+            System.gc();
+        gcTime = (getGcTime() - gcTime) / runs;
+
+        // Keep the index reachable until after the measurement.
+        assertEquals(siteCount, forwardIndex.getNrOfSites());
+        return new long[] { heapUsed, gcTime, forwardIndex.getOffHeapSize() };
+    }
+
+    @Test
+    void benchmarkGcPauses() {
+        int siteCount = 100000;
+        long[] onHeap = measureGc(false, siteCount);
+        long[] offHeap = measureGc(true, siteCount);
+
+        System.out.println(String.format("sites: %d, on heap:  heap %.1f MB, full gc %d ms", siteCount,
+                onHeap[0] / 1e6, onHeap[1]));
+        System.out.println(String.format("sites: %d, off heap: heap %.1f MB, off heap %.1f MB, full gc %d ms",
+                siteCount, offHeap[0] / 1e6, offHeap[2] / 1e6, offHeap[1]));
+        assertTrue(offHeap[0] < onHeap[0]);
+    }
+}
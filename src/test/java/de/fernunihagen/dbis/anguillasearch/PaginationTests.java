@@ -0,0 +1,155 @@
+package de.fernunihagen.dbis.anguillasearch;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.NoSuchElementException;
+import java.util.Random;
+
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.Test;
+
+import de.fernunihagen.dbis.anguillasearch.helpers.Site;
+import de.fernunihagen.dbis.anguillasearch.index.IndexSearcher;
+import de.fernunihagen.dbis.anguillasearch.index.SearchCursor;
+import de.fernunihagen.dbis.anguillasearch.index.SearchResults;
+import de.fernunihagen.dbis.anguillasearch.index.VectorIndex;
+
+/**
+ * Unit tests and a benchmark for the paged search by offset and by search
+ * after tokens.
+ */
+class PaginationTests {
+
+    static String[] vocabulary;
+    static List<String> queries;
+    static VectorIndex index;
+    static VectorIndex impactIndex;
+
+    @BeforeAll
+    static void setUp() {
+        // A synthetic network with many sites of the same score, some of them
+        // are exact copies with different urls.
+        Random random = new Random(37);
+        vocabulary = SyntheticNetwork.vocabulary("brie", 300);
+        List<Site> sites = new ArrayList<>();
+        for (int i = 0; i < 6000; i++) {
+            StringBuilder text = new StringBuilder();
+            int length = i % 3 == 0 ? 3 : 5 + random.nextInt(30);
+            for (int j = 0; j < length; j++)
+                text.append(vocabulary[random.nextInt(i % 3 == 0 ? 5 : vocabulary.length)]).append(' ');
+            sites.add(new Site("http://brie" + random.nextInt(1000000) + "-" + i + ".cheesy", "", Arrays.asList(),
+                    text.toString()));
+        }
+        index = SyntheticNetwork.createIndex(sites);
+        impactIndex = SyntheticNetwork.createIndex(sites);
+        impactIndex.orderByImpact();
+        queries = List.of(vocabulary[0], vocabulary[1] + " " + vocabulary[2], vocabulary[100] + " " + vocabulary[3],
+                "nothinghere");
+    }
+
+    static void assertSameResults(SearchResults expected, int from, SearchResults found) {
+        for (int rank = 0; rank < found.size(); rank++) {
+            assertEquals(expected.getUrl(from + rank), found.getUrl(rank));
+            assertEquals(expected.getScore(from + rank), found.getScore(rank));
+        }
+    }
+
+    @Test
+    void pagesByOffset() {
+        for (VectorIndex searchedIndex : new VectorIndex[] { index, impactIndex }) {
+            IndexSearcher searcher = new IndexSearcher(searchedIndex);
+            for (String query : queries) {
+                SearchResults all = searcher.searchQueryCosineResults(query);
+                for (int offset : new int[] { 0, 1, 17, 500, all.size() - 3, all.size(), all.size() + 10 }) {
+                    if (offset < 0)
+                        continue;
+                    for (int limit : new int[] { 0, 1, 10, 250 }) {
+                        SearchResults page = searcher.searchQueryCosinePage(query, offset, limit);
+                        assertEquals(Math.max(0, Math.min(limit, all.size() - offset)), page.size());
+                        assertSameResults(all, offset, page);
+                    }
+                }
+                assertEquals(all.size(), searcher.searchQueryCosinePage(query, 0, Integer.MAX_VALUE).size());
+            }
+            assertThrows(IllegalArgumentException.class, () -> searcher.searchQueryCosinePage(queries.get(0), -1, 10));
+            assertThrows(IllegalArgumentException.class, () -> searcher.searchQueryCosinePage(queries.get(0), 0, -1));
+        }
+    }
+
+    @Test
+    void pagesBySearchAfter() {
+        IndexSearcher searcher = new IndexSearcher(index);
+        for (String query : queries) {
+            SearchResults all = searcher.searchQueryCosineResults(query);
+            for (int pageSize : new int[] { 1, 7, 100 }) {
+                // The cursor walks over all results once, ties included.
+                SearchCursor cursor = searcher.openCursor(query, pageSize);
+                int rank = 0;
+                while (cursor.hasNext()) {
+                    SearchResults page = cursor.next();
+                    assertTrue(page.size() <= pageSize);
+                    assertSameResults(all, rank, page);
+                    rank += page.size();
+                    assertEquals(page.getSearchAfterToken(), cursor.getSearchAfterToken());
+                }
+                assertEquals(all.size(), rank);
+                assertThrows(NoSuchElementException.class, cursor::next);
+            }
+
+            // A new cursor resumes after the token of another one.
+            if (all.size() > 30) {
+                SearchCursor cursor = searcher.openCursor(query, 20);
+                cursor.next();
+                SearchCursor resumed = searcher.openCursor(query, 10, cursor.getSearchAfterToken());
+                assertSameResults(all, 20, resumed.next());
+                assertSameResults(all, 30, searcher.searchQueryCosineAfter(query, resumed.getSearchAfterToken(), 5));
+            }
+        }
+        assertNull(searcher.searchQueryCosineResults("nothinghere").getSearchAfterToken());
+        assertFalse(searcher.openCursor("nothinghere", 10).hasNext());
+        assertThrows(IllegalArgumentException.class, () -> searcher.openCursor(queries.get(0), 0));
+        assertThrows(IllegalArgumentException.class,
+                () -> searcher.searchQueryCosineAfter(queries.get(0), "notatoken", 10));
+        assertThrows(IllegalArgumentException.class,
+                () -> searcher.searchQueryCosineAfter(queries.get(0), "xyz:http://brie.cheesy", 10));
+    }
+
+    @Test
+    void benchmarkDeepPages() {
+        IndexSearcher searcher = new IndexSearcher(index);
+        String query = queries.get(0);
+        int pageSize = 10;
+        int total = searcher.searchQueryCosineResults(query).size();
+        int offset = total / 2;
+        String token = searcher.searchQueryCosinePage(query, offset - 1, 1).getSearchAfterToken();
+        assertSameResults(searcher.searchQueryCosinePage(query, offset, pageSize), 0,
+                searcher.searchQueryCosineAfter(query, token, pageSize));
+        int runs = 200;
+        long[] times = new long[3];
+        for (int round = 0; round < 2; round++) {
+            // The first round warms up.
+            long start = System.nanoTime();
+            for (int run = 0; run < runs; run++)
+                searcher.searchQueryCosineResults(query);
+            times[0] = System.nanoTime() - start;
+            start = System.nanoTime();
+            for (int run = 0; run < runs; run++)
+                searcher.searchQueryCosinePage(query, offset, pageSize);
+            times[1] = System.nanoTime() - start;
+            start = System.nanoTime();
+            for (int run = 0; run < runs; run++)
+                searcher.searchQueryCosineAfter(query, token, pageSize);
+            times[2] = System.nanoTime() - start;
+        }
+        System.out.println(String.format("page of %d at %d of %d results: full sort %.3f ms, offset %.3f ms, "
+                + "search after %.3f ms", pageSize, offset, total, times[0] / 1e6 / runs, times[1] / 1e6 / runs,
+                times[2] / 1e6 / runs));
+    }
+}
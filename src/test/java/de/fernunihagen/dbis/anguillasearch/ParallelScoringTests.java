@@ -0,0 +1,143 @@
+package de.fernunihagen.dbis.anguillasearch;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.ForkJoinPool;
+
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.Test;
+
+import de.fernunihagen.dbis.anguillasearch.helpers.Site;
+import de.fernunihagen.dbis.anguillasearch.index.IndexSearcher;
+import de.fernunihagen.dbis.anguillasearch.index.MappedVectorIndex;
+import de.fernunihagen.dbis.anguillasearch.index.SearchResults;
+import de.fernunihagen.dbis.anguillasearch.index.SearchableIndex;
+import de.fernunihagen.dbis.anguillasearch.index.VectorIndex;
+import de.fernunihagen.dbis.anguillasearch.index.WeightFormat;
+
+/**
+ * Unit tests and a benchmark for the parallel scoring of large queries by
+ * partitions of the document numbers.
+ */
+class ParallelScoringTests {
+
+    static String[] vocabulary;
+    static List<String> queries;
+    static List<Site> sites;
+    static VectorIndex index;
+    static ForkJoinPool pool;
+
+    @BeforeAll
+    static void setUp() {
+        // A synthetic network large enough to be split into several partitions,
+        // with a Zipf like word distribution.
+        Random random = new Random(23);
+        vocabulary = SyntheticNetwork.vocabulary("curd", 1000);
+        sites = SyntheticNetwork.zipf("curd", vocabulary, random, 30000, 10, 40, 50);
+        index = SyntheticNetwork.createIndex(sites);
+
+        queries = new ArrayList<>();
+        for (int length : new int[] { 1, 2, 4, 8 }) {
+            for (int q = 0; q < 3; q++) {
+                StringBuilder query = new StringBuilder();
+                for (int i = 0; i < length; i++)
+                    query.append(vocabulary[random.nextInt(30 * (q + 1))]).append(' ');
+                queries.add(query.toString().trim());
+            }
+        }
+        pool = new ForkJoinPool(4);
+    }
+
+    static void assertSameResults(SearchResults expected, SearchResults found) {
+        assertEquals(expected.size(), found.size());
+        for (int rank = 0; rank < expected.size(); rank++) {
+            assertEquals(expected.getUrl(rank), found.getUrl(rank));
+            assertEquals(expected.getScore(rank), found.getScore(rank));
+        }
+    }
+
+    /**
+     * Check that the parallel search finds the same results with the same scores
+     * as the sequential search for all test queries.
+     */
+    static void assertSameResults(SearchableIndex searchableIndex) {
+        IndexSearcher sequentialSearcher = new IndexSearcher(searchableIndex);
+        sequentialSearcher.setParallelScoring(null, 0);
+        IndexSearcher parallelSearcher = new IndexSearcher(searchableIndex);
+        parallelSearcher.setParallelScoring(pool, 0);
+        for (String query : queries) {
+            assertSameResults(sequentialSearcher.searchQueryCosineResults(query),
+                    parallelSearcher.searchQueryCosineResults(query));
+            for (int k : new int[] { 1, 10, 100 })
+                assertSameResults(sequentialSearcher.searchQueryCosineTopKResults(query, k),
+                        parallelSearcher.searchQueryCosineTopKResults(query, k));
+            assertEquals(sequentialSearcher.getLastScoredPostings(), parallelSearcher.getLastScoredPostings());
+        }
+    }
+
+    @Test
+    void sameResultsAsSequentialScoring() throws IOException {
+        assertSameResults(index);
+        assertSameResults(MappedVectorIndex.loadOffHeap(index, false));
+        assertSameResults(MappedVectorIndex.loadOffHeap(index, true));
+
+        VectorIndex changedIndex = SyntheticNetwork.createIndex(sites);
+        changedIndex.normalize();
+        changedIndex.quantize(WeightFormat.INT8_TERM_SCALE);
+        for (int i = 0; i < sites.size(); i += 7)
+            changedIndex.delete(sites.get(i).url);
+        assertSameResults(changedIndex);
+    }
+
+    @Test
+    void smallQueriesStaySingleThreaded() {
+        ForkJoinPool unusedPool = new ForkJoinPool(4);
+        IndexSearcher searcher = new IndexSearcher(index);
+        searcher.setParallelScoring(unusedPool, Long.MAX_VALUE);
+        for (String query : queries)
+            searcher.searchQueryCosineResults(query);
+        assertEquals(0, unusedPool.getPoolSize());
+
+        searcher.setParallelScoring(unusedPool, 0);
+        searcher.searchQueryCosineResults(queries.get(queries.size() - 1));
+        assertTrue(unusedPool.getPoolSize() > 0);
+        unusedPool.shutdown();
+        assertThrows(IllegalArgumentException.class, () -> searcher.setParallelScoring(pool, -1));
+    }
+
+    @Test
+    void benchmarkParallelScoring() {
+        IndexSearcher sequentialSearcher = new IndexSearcher(index);
+        sequentialSearcher.setParallelScoring(null, 0);
+        IndexSearcher parallelSearcher = new IndexSearcher(index);
+        parallelSearcher.setParallelScoring(pool, 0);
+        int runs = 20;
+        long sequentialTime = 0;
+        long parallelTime = 0;
+        for (int run = 0; run <= runs; run++) {
+            // The first run warms up.
+            long start = System.nanoTime();
+            for (String query : queries)
+                sequentialSearcher.searchQueryCosineTopKResults(query, 10);
+            long time = System.nanoTime() - start;
+            if (run > 0)
+                sequentialTime += time;
+            start = System.nanoTime();
+            for (String query : queries)
+                parallelSearcher.searchQueryCosineTopKResults(query, 10);
+            time = System.nanoTime() - start;
+            if (run > 0)
+                parallelTime += time;
+        }
+        int searches = runs * queries.size();
+        System.out.println(String.format("%d queries on %d processors: sequential %.3f ms, parallel %.3f ms per "
+                + "query", searches, Runtime.getRuntime().availableProcessors(), sequentialTime / 1e6 / searches,
+                parallelTime / 1e6 / searches));
+    }
+}
@@ -0,0 +1,130 @@
+package de.fernunihagen.dbis.anguillasearch;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.TreeSet;
+
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.Test;
+
+import de.fernunihagen.dbis.anguillasearch.helpers.Site;
+import de.fernunihagen.dbis.anguillasearch.index.IndexSearcher;
+import de.fernunihagen.dbis.anguillasearch.index.MappedVectorIndex;
+import de.fernunihagen.dbis.anguillasearch.index.VectorIndex;
+
+/**
+ * Unit tests for the token positions and the phrase and proximity searches.
+ */
+class PositionalIndexTests {
+
+    static final String A = "http://goat.cheesy1";
+    static final String B = "http://farm.cheesy1";
+    static final String C = "http://blue.cheesy2";
+    static final String D = "http://cave.cheesy2";
+
+    static VectorIndex index;
+    static IndexSearcher searcher;
+
+    @BeforeAll
+    static void setUp() {
+        // The title and heading take the positions 0 and 1.
+        index = new VectorIndex();
+        index.addSite(new Site(A, "Page", Arrays.asList("Text"), "goat cheese from the farm"));
+        index.addSite(new Site(B, "Page", Arrays.asList("Text"), "cheese of the goat farm"));
+        index.addSite(new Site(C, "Page", Arrays.asList("Text"), "goat milk and blue cheese"));
+        index.addSite(new Site(D, "Page", Arrays.asList("Text"), "farm cheese"));
+        index.finish();
+        searcher = new IndexSearcher(index);
+    }
+
+    static TreeSet<String> getUrls(List<String[]> results) {
+        TreeSet<String> urls = new TreeSet<>();
+        for (String[] entry : results)
+            urls.add(entry[0]);
+        return urls;
+    }
+
+    @Test
+    void tokenPositions() {
+        int goat = index.getTermId("goat");
+        int cheese = index.getTermId("cheese");
+        assertArrayEquals(new int[] { 2 }, index.getPositions(goat, index.getDocumentNr(A)));
+        assertArrayEquals(new int[] { 3 }, index.getPositions(cheese, index.getDocumentNr(A)));
+        assertArrayEquals(new int[] { 5 }, index.getPositions(goat, index.getDocumentNr(B)));
+        assertArrayEquals(new int[] { 0 }, index.getPositions(index.getTermId("page"), index.getDocumentNr(D)));
+        assertArrayEquals(new int[0], index.getPositions(goat, index.getDocumentNr(D)));
+
+        // Most gaps between positions fit into a single byte.
+        long positionCount = 0;
+        for (String url : index.getStoredDocumentIds())
+            for (int term = 0; term < index.getNrOfTerms(); term++)
+                positionCount += index.getPositions(term, index.getDocumentNr(url)).length;
+        System.out.println(String.format("positions: %d, compressed: %d bytes", positionCount,
+                index.getPositionsSize()));
+        assertTrue(index.getPositionsSize() < positionCount * Integer.BYTES);
+    }
+
+    @Test
+    void phraseSearch() {
+        assertEquals(new TreeSet<>(List.of(A)), getUrls(searcher.searchPhrase("goat cheese")));
+        assertEquals(new TreeSet<>(List.of(B)), getUrls(searcher.searchPhrase("goat farm")));
+        assertEquals(new TreeSet<>(List.of(D)), getUrls(searcher.searchPhrase("farm cheese")));
+        // Stopwords keep their position and match any word.
+        assertEquals(new TreeSet<>(List.of(A)), getUrls(searcher.searchPhrase("cheese from the farm")));
+        assertEquals(new TreeSet<>(List.of(A)), getUrls(searcher.searchPhrase("cheese of a farm")));
+        assertEquals(new TreeSet<>(List.of(A, B, C, D)), getUrls(searcher.searchPhrase("cheese")));
+
+        assertTrue(searcher.searchPhrase("cheese goat").isEmpty());
+        assertTrue(searcher.searchPhrase("goat anguilla").isEmpty());
+        assertTrue(searcher.searchPhrase("the").isEmpty());
+    }
+
+    @Test
+    void proximitySearch() {
+        assertEquals(new TreeSet<>(List.of(A)), getUrls(searcher.searchProximity("goat cheese", 1)));
+        assertEquals(new TreeSet<>(List.of(A, B)), getUrls(searcher.searchProximity("goat cheese", 3)));
+        assertEquals(new TreeSet<>(List.of(A, B, C)), getUrls(searcher.searchProximity("cheese goat", 4)));
+        assertEquals(new TreeSet<>(List.of(A, B)), getUrls(searcher.searchProximity("farm goat cheese", 4)));
+        assertTrue(searcher.searchProximity("farm goat cheese", 3).isEmpty());
+        assertEquals(new TreeSet<>(List.of(D)), getUrls(searcher.searchProximity("farm cheese", 1)));
+        assertTrue(searcher.searchProximity("blue farm", 10).isEmpty());
+
+        // The results are sorted like the cosine search results.
+        List<String> expected = new ArrayList<>();
+        for (String[] entry : searcher.searchQueryCosine("goat cheese"))
+            if (!entry[0].equals(C))
+                expected.add(entry[0]);
+        List<String> found = new ArrayList<>();
+        for (String[] entry : searcher.searchProximity("goat cheese", 3))
+            found.add(entry[0]);
+        assertEquals(expected, found);
+    }
+
+    @Test
+    void changedDocuments() throws IOException {
+        VectorIndex changedIndex = new VectorIndex();
+        changedIndex.addSite(new Site(A, "Page", Arrays.asList("Text"), "goat cheese from the farm"));
+        changedIndex.addSite(new Site(B, "Page", Arrays.asList("Text"), "goat cheese of the farm"));
+        changedIndex.addSite(new Site(C, "Page", Arrays.asList("Text"), "blue cheese"));
+        changedIndex.finish();
+        IndexSearcher changedSearcher = new IndexSearcher(changedIndex);
+
+        changedIndex.delete(A);
+        assertEquals(new TreeSet<>(List.of(B)), getUrls(changedSearcher.searchPhrase("goat cheese")));
+        changedIndex.update(new Site(C, "Page", Arrays.asList("Text"), "a goat cheese"));
+        changedIndex.finish();
+        changedIndex.compact();
+        assertEquals(new TreeSet<>(List.of(B, C)), getUrls(changedSearcher.searchPhrase("goat cheese")));
+
+        // Index files store no positions.
+        IndexSearcher mappedSearcher = new IndexSearcher(MappedVectorIndex.loadOffHeap(changedIndex, false));
+        assertThrows(IllegalStateException.class, () -> mappedSearcher.searchPhrase("goat cheese"));
+    }
+}
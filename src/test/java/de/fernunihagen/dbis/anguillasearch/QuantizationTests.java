@@ -0,0 +1,188 @@
+package de.fernunihagen.dbis.anguillasearch;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.Test;
+
+import com.google.gson.Gson;
+import com.google.gson.JsonObject;
+
+import de.fernunihagen.dbis.anguillasearch.crawler.Crawler;
+import de.fernunihagen.dbis.anguillasearch.helpers.Site;
+import de.fernunihagen.dbis.anguillasearch.helpers.UrlDictionary;
+import de.fernunihagen.dbis.anguillasearch.index.ForwardIndex;
+import de.fernunihagen.dbis.anguillasearch.index.IndexSearcher;
+import de.fernunihagen.dbis.anguillasearch.index.PostingsIterator;
+import de.fernunihagen.dbis.anguillasearch.index.VectorIndex;
+import de.fernunihagen.dbis.anguillasearch.index.WeightFormat;
+
+/**
+ * Unit tests and an accuracy report for the quantized posting weights.
+ */
+class QuantizationTests {
+
+    static final String[] QUERIES = { "chevre", "aged cheddar", "creamy blue goat", "parmesan wheel",
+            "brie camembert farm", "soft sheep milk cheese" };
+    static final int TOP = 10;
+
+    static List<Site> sites;
+
+    @BeforeAll
+    static void setUp() {
+        // A synthetic network with a skewed word distribution and sentences.
+        sites = SyntheticNetwork.gaussian(0, 150, 42, "", 60, 10, 7);
+    }
+
+    /**
+     * Build a finished and normalized index of the given sites with the given
+     * weight format.
+     */
+    static VectorIndex buildIndex(List<Site> sites, WeightFormat format) {
+        VectorIndex index = new VectorIndex();
+        for (Site site : sites)
+            index.addSite(site);
+        index.finish();
+        index.normalize();
+        index.quantize(format);
+        return index;
+    }
+
+    /**
+     * Compare the results of a quantized search with the full precision results.
+     *
+     * @return {overlap of the top results, number of equal top positions, largest
+     *         score error}
+     */
+    static double[] compareResults(List<String[]> expected, List<String[]> found) {
+        Map<String, Double> foundScores = new HashMap<>();
+        for (String[] entry : found)
+            foundScores.put(entry[0], Double.parseDouble(entry[1]));
+
+        int top = Math.min(TOP, expected.size());
+        HashSet<String> expectedTop = new HashSet<>();
+        for (int i = 0; i < top; i++)
+            expectedTop.add(expected.get(i)[0]);
+        int overlap = 0;
+        int samePositions = 0;
+        for (int i = 0; i < Math.min(top, found.size()); i++) {
+            if (expectedTop.contains(found.get(i)[0]))
+                overlap++;
+            if (found.get(i)[0].equals(expected.get(i)[0]))
+                samePositions++;
+        }
+        double maxError = 0.0;
+        for (String[] entry : expected)
+            maxError = Math.max(maxError,
+                    Math.abs(Double.parseDouble(entry[1]) - foundScores.getOrDefault(entry[0], 0.0)));
+        return new double[] { top == 0 ? 1.0 : (double) overlap / top, samePositions, maxError };
+    }
+
+    @Test
+    void quantizedWeights() {
+        VectorIndex fullIndex = buildIndex(sites, WeightFormat.FLOAT64);
+        for (WeightFormat format : WeightFormat.values()) {
+            VectorIndex index = buildIndex(sites, format);
+            assertEquals(format, index.getWeightFormat());
+            // The weights shrink with the format, the 8 bit formats add their scales.
+            long scales = (long) (fullIndex.getNrOfSites() + fullIndex.getNrOfTerms()) * Double.BYTES;
+            assertTrue(index.getPostingWeightsSize() <= fullIndex.getPostingWeightsSize() / Double.BYTES
+                    * format.getBytesPerWeight() + scales);
+
+            // Each weight stays within the precision of its format.
+            for (int term = 0; term < fullIndex.getNrOfTerms(); term++) {
+                PostingsIterator expected = fullIndex.getPostings(term);
+                PostingsIterator found = index.getPostings(term);
+                double maxWeight = 0.0;
+                while (expected.nextDoc() != PostingsIterator.NO_MORE_DOCS)
+                    maxWeight = Math.max(maxWeight, expected.weight());
+                expected = fullIndex.getPostings(term);
+                while (expected.nextDoc() != PostingsIterator.NO_MORE_DOCS) {
+                    assertEquals(expected.docId(), found.nextDoc());
+                    double error = Math.abs(expected.weight() - found.weight());
+                    if (format == WeightFormat.FLOAT64)
+                        assertEquals(expected.weight(), found.weight());
+                    else if (format == WeightFormat.FLOAT32)
+                        assertTrue(error <= expected.weight() * 0x1p-24);
+                    else if (format == WeightFormat.FLOAT16)
+                        assertTrue(error <= expected.weight() * (0x1p-11 + 0x1p-23) + 0x1p-25);
+                    else if (format == WeightFormat.INT8_TERM_SCALE)
+                        assertTrue(error <= maxWeight / 510 + 1e-12);
+                    else
+                        assertTrue(error <= 1.0 / 510 + 1e-12);
+                }
+                assertEquals(PostingsIterator.NO_MORE_DOCS, found.nextDoc());
+            }
+        }
+    }
+
+    @Test
+    void rankingAccuracy() {
+        IndexSearcher fullSearcher = new IndexSearcher(buildIndex(sites, WeightFormat.FLOAT64));
+        for (WeightFormat format : WeightFormat.values()) {
+            IndexSearcher searcher = new IndexSearcher(buildIndex(sites, format));
+            double minOverlap = 1.0;
+            double maxError = 0.0;
+            for (String query : QUERIES) {
+                double[] comparison = compareResults(fullSearcher.searchQueryCosine(query),
+                        searcher.searchQueryCosine(query));
+                minOverlap = Math.min(minOverlap, comparison[0]);
+                maxError = Math.max(maxError, comparison[2]);
+            }
+            System.out.println(String.format("%-20s min top-%d overlap: %.2f, max score error: %.6f", format, TOP,
+                    minOverlap, maxError));
+            assertTrue(minOverlap >= 0.8);
+        }
+    }
+
+    @Test
+    void intranetAccuracyReport() throws IOException {
+        String[] intranets = { "cheesy1-f126d0d3", "cheesy2-c79b0581", "cheesy3-7fdaa098", "cheesy4-a31d2f0d",
+                "cheesy5-d861877d", "cheesy6-54ae2b2e" };
+        for (String intranet : intranets) {
+            JsonObject testJSON = Utils.parseJSONFile("intranet/" + intranet + ".json");
+            String[] seedUrls = new Gson().fromJson(testJSON.get("Seed-URLs"), String[].class);
+            String query = String.join(" ", new Gson().fromJson(testJSON.get("Query-Token"), String[].class));
+            String[] expectedURLs = new Gson().fromJson(testJSON.get("Query-URLs"), String[].class);
+
+            // Crawl the network once and keep the sites to build each index from.
+            UrlDictionary dictionary = new UrlDictionary();
+            ForwardIndex forwardIndex = new ForwardIndex(dictionary);
+            Crawler crawler = new Crawler(forwardIndex);
+            crawler.setSeed(seedUrls);
+            try {
+                crawler.crawl();
+            } catch (Exception e) {
+                System.out.println(e.getMessage());
+            }
+            List<Site> crawledSites = new ArrayList<>();
+            for (int id = 0; id < dictionary.size(); id++)
+                if (forwardIndex.getSite(id) != null)
+                    crawledSites.add(forwardIndex.getSite(id));
+
+            List<String[]> fullResults = new IndexSearcher(buildIndex(crawledSites, WeightFormat.FLOAT64))
+                    .searchQueryCosine(query);
+            for (WeightFormat format : WeightFormat.values()) {
+                List<String[]> results = new IndexSearcher(buildIndex(crawledSites, format)).searchQueryCosine(query);
+                double[] comparison = compareResults(fullResults, results);
+                System.out.println(String.format(
+                        "%s %-20s results: %d, top-%d overlap: %.2f, same positions: %.0f, max score error: %.6f",
+                        intranet, format, results.size(), TOP, comparison[0], comparison[1], comparison[2]));
+
+                List<String> foundURLs = new ArrayList<>();
+                for (String[] entry : results)
+                    foundURLs.add(entry[0]);
+                assertTrue(foundURLs.containsAll(Arrays.asList(expectedURLs)));
+            }
+        }
+    }
+}
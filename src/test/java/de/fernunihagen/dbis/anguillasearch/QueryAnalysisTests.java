@@ -0,0 +1,220 @@
+package de.fernunihagen.dbis.anguillasearch;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.Test;
+
+import de.fernunihagen.dbis.anguillasearch.helpers.Site;
+import de.fernunihagen.dbis.anguillasearch.helpers.UrlDictionary;
+import de.fernunihagen.dbis.anguillasearch.index.Analyzer;
+import de.fernunihagen.dbis.anguillasearch.index.CoreNlpAnalyzer;
+import de.fernunihagen.dbis.anguillasearch.index.IndexSearcher;
+import de.fernunihagen.dbis.anguillasearch.index.RuleBasedAnalyzer;
+import de.fernunihagen.dbis.anguillasearch.index.SearchResults;
+import de.fernunihagen.dbis.anguillasearch.index.TokenStream;
+import de.fernunihagen.dbis.anguillasearch.index.VectorIndex;
+
+/**
+ * Unit tests and a benchmark for the single pass query analysis of the
+ * IndexSearcher and its memo of query lemmas.
+ */
+class QueryAnalysisTests {
+
+    static final String[] QUERIES = IncrementalReverseIndexTests.QUERIES;
+
+    static List<Site> sites;
+
+    /**
+     * An Analyzer counting how often the queries are lemmatized.
+     */
+    static class CountingAnalyzer implements Analyzer {
+        final Analyzer analyzer;
+        final AtomicInteger calls = new AtomicInteger();
+
+        CountingAnalyzer(Analyzer analyzer) {
+            this.analyzer = analyzer;
+        }
+
+        @Override
+        public List<String> lemmatize(String text) {
+            calls.incrementAndGet();
+            return analyzer.lemmatize(text);
+        }
+
+        @Override
+        public TokenStream tokenStream() {
+            return analyzer.tokenStream();
+        }
+    }
+
+    @BeforeAll
+    static void setUp() {
+        sites = SyntheticNetwork.gaussian(0, 300, 11);
+    }
+
+    static VectorIndex createIndex(Analyzer analyzer, List<Site> indexedSites) {
+        VectorIndex index = new VectorIndex(new UrlDictionary(), analyzer);
+        for (Site site : indexedSites)
+            index.addSite(site);
+        index.finish();
+        return index;
+    }
+
+    static void assertSameResults(SearchResults expected, SearchResults found) {
+        assertEquals(expected.size(), found.size());
+        for (int rank = 0; rank < expected.size(); rank++) {
+            assertEquals(expected.getUrl(rank), found.getUrl(rank));
+            assertEquals(expected.getScore(rank), found.getScore(rank));
+        }
+    }
+
+    @Test
+    void eachQueryAnalyzedOnce() {
+        CountingAnalyzer analyzer = new CountingAnalyzer(new RuleBasedAnalyzer());
+        IndexSearcher searcher = new IndexSearcher(createIndex(analyzer, sites));
+        IndexSearcher otherSearcher = new IndexSearcher(createIndex(analyzer, sites.subList(0, 50)));
+
+        // A query is analyzed in a single pass, neither the default weights nor a
+        // second search analyze it again.
+        analyzer.calls.set(0);
+        searcher.searchQueryCosineResults("aged cheddar aged cheese");
+        assertEquals(1, analyzer.calls.get());
+        searcher.searchQueryCosineResults(" Aged  cheddar aged CHEESE");
+        searcher.searchQueryCosineTopKResults("aged cheddar aged cheese", 5);
+        assertEquals(1, analyzer.calls.get());
+
+        // Weighted words are analyzed on their own.
+        searcher.searchQueryCosineResults("aged cheddar", Map.of("aged", 0.2, "cheddar", 0.8));
+        searcher.searchQueryCosineResults("aged cheddar", Map.of("aged", 0.2, "cheddar", 0.8));
+        assertEquals(4, analyzer.calls.get());
+
+        // Searchers of the same Analyzer share the analyzed queries.
+        otherSearcher.searchQueryTfIdfResults("aged cheddar aged cheese");
+        assertEquals(4, analyzer.calls.get());
+    }
+
+    @Test
+    void queriesAnalyzedInContext() {
+        // An Analyzer whose lemmas depend on the next word, like the part of speech
+        // tags of CoreNLP do.
+        Analyzer contextAnalyzer = text -> {
+            List<String> lemmas = new ArrayList<>();
+            List<String> words = Arrays.asList(text.trim().split("\\s+"));
+            for (int i = 0; i < words.size(); i++) {
+                boolean compound = words.get(i).equals("blue") && i + 1 < words.size()
+                        && words.get(i + 1).equals("cheese");
+                lemmas.add(compound ? "bluecheese" : words.get(i));
+                if (compound)
+                    i++;
+            }
+            return lemmas;
+        };
+        VectorIndex index = createIndex(contextAnalyzer, List.of(
+                new Site("http://blue.cheesy", "", List.of(), "blue cheese farm"),
+                new Site("http://sky.cheesy", "", List.of(), "blue sky")));
+        IndexSearcher searcher = new IndexSearcher(index);
+
+        // The query is analyzed like the documents, not word by word.
+        SearchResults results = searcher.searchQueryCosineResults("Blue Cheese");
+        assertEquals(1, results.size());
+        assertEquals("http://blue.cheesy", results.getUrl(0));
+        assertEquals("http://sky.cheesy", searcher.searchQueryCosineResults("blue").getUrl(0));
+    }
+
+    @Test
+    void defaultWeights() {
+        // The default weights are the same as weighting each query word by 1.0.
+        IndexSearcher searcher = new IndexSearcher(createIndex(new RuleBasedAnalyzer(), sites));
+        for (String query : QUERIES) {
+            Map<String, Double> weights = new TreeMap<>();
+            for (String word : query.split(" "))
+                weights.put(word, 1.0);
+            assertSameResults(searcher.searchQueryCosineResults(query, weights),
+                    searcher.searchQueryCosineResults(query));
+            assertSameResults(searcher.searchQueryCosineTopKResults(query, weights, 3),
+                    searcher.searchQueryCosineTopKResults(query, 3));
+        }
+    }
+
+    @Test
+    void concurrentSearches() throws Exception {
+        VectorIndex index = createIndex(new RuleBasedAnalyzer(), sites);
+        List<SearchResults> expected = new ArrayList<>();
+        for (String query : QUERIES)
+            expected.add(new IndexSearcher(index).searchQueryCosineResults(query));
+
+        // Searchers in multiple threads fill the shared memo at the same time.
+        ExecutorService executor = Executors.newFixedThreadPool(8);
+        try {
+            List<Future<List<SearchResults>>> futures = new ArrayList<>();
+            for (int thread = 0; thread < 8; thread++) {
+                futures.add(executor.submit(() -> {
+                    IndexSearcher searcher = new IndexSearcher(index);
+                    List<SearchResults> found = new ArrayList<>();
+                    for (String query : QUERIES)
+                        found.add(searcher.searchQueryCosineResults(query + " " + query.toUpperCase()));
+                    return found;
+                }));
+            }
+            for (Future<List<SearchResults>> future : futures) {
+                List<SearchResults> found = future.get();
+                for (int i = 0; i < QUERIES.length; i++)
+                    assertSameResults(expected.get(i), found.get(i));
+            }
+        } finally {
+            executor.shutdown();
+        }
+    }
+
+    @Test
+    void benchmarkQueryAnalysis() {
+        CountingAnalyzer analyzer = new CountingAnalyzer(new CoreNlpAnalyzer());
+        VectorIndex index = createIndex(analyzer, sites.subList(0, 100));
+        IndexSearcher searcher = new IndexSearcher(index);
+        int runs = 50;
+
+        // The former analysis: the whole query once and each query word again.
+        analyzer.calls.set(0);
+        long start = System.nanoTime();
+        for (int run = 0; run < runs; run++) {
+            for (String query : QUERIES) {
+                analyzer.lemmatize(query);
+                for (String word : query.split(" "))
+                    analyzer.lemmatize(word);
+            }
+        }
+        long formerTime = System.nanoTime() - start;
+        int formerCalls = analyzer.calls.get();
+
+        // The searches only analyze the queries of the first run.
+        analyzer.calls.set(0);
+        start = System.nanoTime();
+        for (String query : QUERIES)
+            searcher.searchQueryCosineResults(query);
+        int firstRunCalls = analyzer.calls.get();
+        for (int run = 1; run < runs; run++)
+            for (String query : QUERIES)
+                searcher.searchQueryCosineResults(query);
+        long searchTime = System.nanoTime() - start;
+
+        int searches = runs * QUERIES.length;
+        System.out.println(String.format("%d queries: former analysis %.3f ms per query, %d analyzer calls, search "
+                + "with cached analysis %.3f ms per query, %d analyzer calls", searches, formerTime / 1e6 / searches,
+                formerCalls, searchTime / 1e6 / searches, analyzer.calls.get()));
+        // All searches together analyze less than a single former run.
+        assertEquals(firstRunCalls, analyzer.calls.get());
+        assertTrue(analyzer.calls.get() < formerCalls / runs);
+    }
+}
@@ -0,0 +1,193 @@
+package de.fernunihagen.dbis.anguillasearch;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertSame;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Map;
+
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.Test;
+
+import de.fernunihagen.dbis.anguillasearch.helpers.Site;
+import de.fernunihagen.dbis.anguillasearch.helpers.UrlDictionary;
+import de.fernunihagen.dbis.anguillasearch.index.CoreNlpAnalyzer;
+import de.fernunihagen.dbis.anguillasearch.index.IndexSearcher;
+import de.fernunihagen.dbis.anguillasearch.index.QueryResultCache;
+import de.fernunihagen.dbis.anguillasearch.index.RuleBasedAnalyzer;
+import de.fernunihagen.dbis.anguillasearch.index.SearchResults;
+import de.fernunihagen.dbis.anguillasearch.index.VectorIndex;
+import de.fernunihagen.dbis.anguillasearch.pagerank.PageRankIndex;
+
+/**
+ * Unit tests and a benchmark for the query result cache of the IndexSearcher.
+ */
+class QueryResultCacheTests {
+
+    static final String[] QUERIES = IncrementalReverseIndexTests.QUERIES;
+
+    static List<Site> sites;
+
+    @BeforeAll
+    static void setUp() {
+        sites = SyntheticNetwork.gaussian(0, 300, 11);
+    }
+
+    static VectorIndex createIndex(UrlDictionary dictionary) {
+        VectorIndex index = new VectorIndex(dictionary, new RuleBasedAnalyzer());
+        for (Site site : sites)
+            index.addSite(site);
+        index.finish();
+        return index;
+    }
+
+    static void assertSameResults(SearchResults expected, SearchResults found) {
+        assertEquals(expected.size(), found.size());
+        for (int rank = 0; rank < expected.size(); rank++) {
+            assertEquals(expected.getUrl(rank), found.getUrl(rank));
+            assertEquals(expected.getScore(rank), found.getScore(rank));
+        }
+    }
+
+    @Test
+    void hitsAndMisses() {
+        VectorIndex index = createIndex(new UrlDictionary());
+        IndexSearcher searcher = new IndexSearcher(index, new QueryResultCache(100000));
+        IndexSearcher uncachedSearcher = new IndexSearcher(index);
+        QueryResultCache cache = searcher.getResultCache();
+
+        SearchResults results = searcher.searchQueryCosineResults("aged cheddar");
+        assertEquals(1, cache.getMissCount());
+        assertSameResults(uncachedSearcher.searchQueryCosineResults("aged cheddar"), results);
+
+        // Queries only differing in case and whitespace share their results.
+        assertSame(results, searcher.searchQueryCosineResults(" Aged   CHEDDAR"));
+        assertEquals(1, cache.getHitCount());
+        assertEquals(0, searcher.getLastScoredPostings());
+
+        // The scoring mode and the weights are part of the key.
+        searcher.searchQueryTfIdfResults("aged cheddar");
+        searcher.searchQueryCosineResults("aged cheddar", Map.of("aged", 0.2, "cheddar", 0.8));
+        assertEquals(3, cache.getMissCount());
+        assertSameResults(uncachedSearcher.searchQueryTfIdfResults("aged cheddar"),
+                searcher.searchQueryTfIdfResults("aged cheddar"));
+        assertEquals(3, cache.size());
+        assertEquals(2.0 / 5.0, cache.getHitRate());
+
+        // The String[] form is answered from the cache as well.
+        assertEquals(results.getUrl(0), searcher.searchQueryCosine("aged cheddar").get(0)[0]);
+        assertEquals(3, cache.getHitCount());
+        assertThrows(IllegalArgumentException.class, () -> new QueryResultCache(0));
+    }
+
+    @Test
+    void singleIndex() {
+        // Searchers of the same index share a cache, searchers of other indices
+        // can't use it.
+        VectorIndex index = createIndex(new UrlDictionary());
+        QueryResultCache cache = new QueryResultCache(100000);
+        IndexSearcher searcher = new IndexSearcher(index, cache);
+        SearchResults results = searcher.searchQueryCosineResults("aged cheddar");
+        assertSame(results, new IndexSearcher(index, cache).searchQueryCosineResults("aged cheddar"));
+        VectorIndex otherIndex = createIndex(new UrlDictionary());
+        assertThrows(IllegalArgumentException.class, () -> new IndexSearcher(otherIndex, cache));
+        assertEquals(1, cache.getMissCount());
+    }
+
+    @Test
+    void generationInvalidation() {
+        UrlDictionary dictionary = new UrlDictionary();
+        VectorIndex index = createIndex(dictionary);
+        PageRankIndex pageRankIndex = new PageRankIndex(dictionary);
+        for (int i = 0; i < sites.size(); i++)
+            pageRankIndex.addLinks(sites.get(i).url, List.of(sites.get((i * 7) % sites.size()).url));
+        pageRankIndex.calcPageRanks();
+        IndexSearcher searcher = new IndexSearcher(index, new QueryResultCache(100000));
+        QueryResultCache cache = searcher.getResultCache();
+
+        SearchResults results = searcher.searchQueryCosinePageRankResults("aged cheddar", pageRankIndex);
+        assertSame(results, searcher.searchQueryCosinePageRankResults("aged cheddar", pageRankIndex));
+
+        // New page ranks need new results.
+        pageRankIndex.addLinks(sites.get(0).url, List.of(sites.get(1).url));
+        pageRankIndex.calcPageRanks();
+        assertTrue(results != searcher.searchQueryCosinePageRankResults("aged cheddar", pageRankIndex));
+        assertEquals(2, cache.getMissCount());
+
+        // Changing the index drops all results.
+        searcher.searchQueryCosineResults("aged cheddar");
+        index.addSite(new Site("http://aged.cheesy", "Aged ", Arrays.asList("Cheddar "), "aged cheddar"));
+        index.finish();
+        assertEquals("http://aged.cheesy", searcher.searchQueryCosineResults("aged cheddar").getUrl(0));
+        assertEquals(3, cache.getInvalidationCount());
+        assertEquals(1, cache.size());
+        index.delete("http://aged.cheesy");
+        assertTrue(!"http://aged.cheesy".equals(searcher.searchQueryCosineResults("aged cheddar").getUrl(0)));
+    }
+
+    @Test
+    void leastRecentlyUsedEviction() {
+        VectorIndex index = createIndex(new UrlDictionary());
+        IndexSearcher uncachedSearcher = new IndexSearcher(index);
+        int weight = 0;
+        for (String query : new String[] { "gouda brie", "parmesan wheel", "soft sheep milk" })
+            weight += uncachedSearcher.searchQueryTfIdfResults(query).size() + 1;
+
+        // The cache can't hold the results of all three queries.
+        IndexSearcher searcher = new IndexSearcher(index, new QueryResultCache(weight - 1));
+        QueryResultCache cache = searcher.getResultCache();
+        SearchResults gouda = searcher.searchQueryTfIdfResults("gouda brie");
+        searcher.searchQueryTfIdfResults("parmesan wheel");
+        assertSame(gouda, searcher.searchQueryTfIdfResults("gouda brie"));
+        searcher.searchQueryTfIdfResults("soft sheep milk");
+        assertTrue(cache.getEvictionCount() > 0);
+        assertTrue(cache.getWeight() <= cache.getMaxWeight());
+
+        // The least recently used query is evicted first.
+        long misses = cache.getMissCount();
+        searcher.searchQueryTfIdfResults("soft sheep milk");
+        assertEquals(misses, cache.getMissCount());
+        searcher.searchQueryTfIdfResults("parmesan wheel");
+        assertEquals(misses + 1, cache.getMissCount());
+    }
+
+    @Test
+    void benchmarkRepeatedQueries() {
+        // Repeated queries skip the CoreNLP analysis and the scoring.
+        VectorIndex index = new VectorIndex(new UrlDictionary(), new CoreNlpAnalyzer());
+        for (Site site : sites.subList(0, 100))
+            index.addSite(site);
+        index.finish();
+        IndexSearcher uncachedSearcher = new IndexSearcher(index);
+        IndexSearcher searcher = new IndexSearcher(index, new QueryResultCache(100000));
+        List<String> queryLog = new ArrayList<>();
+        for (int i = 0; i < 200; i++)
+            queryLog.add(QUERIES[(i * i) % QUERIES.length]);
+
+        long distinctQueries = queryLog.stream().distinct().count();
+
+        long start = System.nanoTime();
+        for (String query : queryLog)
+            uncachedSearcher.searchQueryCosineResults(query);
+        long uncachedTime = System.nanoTime() - start;
+        start = System.nanoTime();
+        for (String query : queryLog)
+            searcher.searchQueryCosineResults(query);
+        long cachedTime = System.nanoTime() - start;
+
+        QueryResultCache cache = searcher.getResultCache();
+        System.out.println(String.format("%d queries: uncached %.3f ms, cached %.3f ms per query, hit rate %.2f",
+                queryLog.size(), uncachedTime / 1e6 / queryLog.size(), cachedTime / 1e6 / queryLog.size(),
+                cache.getHitRate()));
+        // Only the first search of each query is run, the others return its
+        // results.
+        assertEquals(distinctQueries, cache.getMissCount());
+        assertEquals(queryLog.size() - distinctQueries, cache.getHitCount());
+        assertSame(searcher.searchQueryCosineResults(queryLog.get(0)),
+                searcher.searchQueryCosineResults(queryLog.get(0)));
+    }
+}
@@ -0,0 +1,160 @@
+package de.fernunihagen.dbis.anguillasearch;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertSame;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+
+import org.junit.jupiter.api.Test;
+
+import de.fernunihagen.dbis.anguillasearch.index.IndexSearcher;
+import de.fernunihagen.dbis.anguillasearch.index.ScoringKernels;
+import de.fernunihagen.dbis.anguillasearch.index.VectorIndex;
+
+/**
+ * Unit tests and a benchmark for the scalar and SIMD scoring kernels.
+ */
+class ScoringKernelsTests {
+
+    static double[] randomVector(Random random, int length) {
+        double[] vector = new double[length];
+        for (int i = 0; i < length; i++)
+            vector[i] = random.nextDouble() < 0.2 ? 0.0 : random.nextDouble() - 0.3;
+        return vector;
+    }
+
+    static List<Double> toList(double[] vector) {
+        List<Double> list = new ArrayList<>();
+        for (double value : vector)
+            list.add(value);
+        return list;
+    }
+
+    /**
+     * The cosine similarity of boxed vectors, as calculated before the kernels.
+     */
+    static double listCosine(List<Double> a, List<Double> b) {
+        double numerator = 0.0;
+        double denomA = 0.0;
+        double denomB = 0.0;
+        for (int i = 0; i < a.size(); i++) {
+            double ai = a.get(i);
+            double bi = b.get(i);
+            numerator += ai * bi;
+            denomA += Math.pow(ai, 2);
+            denomB += Math.pow(bi, 2);
+        }
+        if ((denomA == 0.0) || (denomB == 0.0) || (numerator == 0.0))
+            return 0.0;
+        return numerator / (Math.sqrt(denomA) * Math.sqrt(denomB));
+    }
+
+    /**
+     * Check all kernels against the definitions for vectors of each length up
+     * to 70, so the vector loops and the entries left over are both covered.
+     */
+    static void assertCorrectKernels(ScoringKernels kernels) {
+        Random random = new Random(31);
+        for (int length = 0; length <= 70; length++) {
+            double[] a = randomVector(random, length);
+            double[] b = randomVector(random, length);
+            double dot = 0.0;
+            double normA = 0.0;
+            int[] indices = new int[length];
+            double[] values = new double[length];
+            int count = 0;
+            for (int i = 0; i < length; i++) {
+                dot += a[i] * b[i];
+                normA += a[i] * a[i];
+                if (a[i] != 0.0) {
+                    indices[count] = i;
+                    values[count++] = a[i];
+                }
+            }
+            assertEquals(dot, kernels.dot(a, b, length), 1e-12);
+            assertEquals(dot, kernels.sparseDot(indices, values, count, b), 1e-12);
+            assertEquals(normA, kernels.squaredNorm(a, length), 1e-12);
+            assertEquals(listCosine(toList(a), toList(b)), kernels.cosine(a, b, length), 1e-12);
+        }
+        assertEquals(0.0, kernels.cosine(new double[] { 1.0, 0.0 }, new double[] { 0.0, 0.0 }, 2));
+    }
+
+    @Test
+    void scalarKernels() {
+        assertCorrectKernels(ScoringKernels.scalar());
+
+        // The primitive methods of the IndexSearcher agree with the boxed ones.
+        IndexSearcher searcher = new IndexSearcher(new VectorIndex());
+        double[] a = randomVector(new Random(5), 300);
+        double[] b = randomVector(new Random(6), 300);
+        assertEquals(searcher.calcCosineSimilarity(a, b), searcher.calcCosineSimilarity(toList(a), toList(b)));
+        assertEquals(searcher.calcCosineSimilarityNormalized(a, b),
+                searcher.calcCosineSimilarityNormalized(toList(a), toList(b)));
+    }
+
+    @Test
+    void vectorizedKernels() {
+        ScoringKernels vectorized = ScoringKernels.vectorized();
+        boolean available = ModuleLayer.boot().findModule("jdk.incubator.vector").isPresent();
+        assertEquals(available, vectorized != null);
+        if (vectorized == null) {
+            // Without the module the scalar kernels are used.
+            assertSame(ScoringKernels.scalar(), ScoringKernels.getDefault());
+            return;
+        }
+        assertCorrectKernels(vectorized);
+        boolean disabled = "false".equalsIgnoreCase(System.getProperty("anguillasearch.vectorKernels"));
+        assertSame(disabled ? ScoringKernels.scalar() : vectorized, ScoringKernels.getDefault());
+    }
+
+    @Test
+    void benchmarkKernels() {
+        Random random = new Random(41);
+        double[] a = randomVector(random, 4096);
+        double[] b = randomVector(random, 4096);
+        List<Double> listA = toList(a);
+        List<Double> listB = toList(b);
+        int[] indices = new int[256];
+        double[] values = randomVector(random, indices.length);
+        for (int i = 0; i < indices.length; i++)
+            indices[i] = i * 16 + random.nextInt(16);
+        ScoringKernels vectorized = ScoringKernels.vectorized();
+        int runs = 20000;
+
+        double checksum = 0.0;
+        long[] times = new long[5];
+        for (int round = 0; round < 2; round++) {
+            // The first round warms up.
+            long start = System.nanoTime();
+            for (int run = 0; run < runs; run++)
+                checksum += listCosine(listA, listB);
+            times[0] = System.nanoTime() - start;
+            start = System.nanoTime();
+            for (int run = 0; run < runs; run++)
+                checksum += ScoringKernels.scalar().cosine(a, b, a.length);
+            times[1] = System.nanoTime() - start;
+            start = System.nanoTime();
+            for (int run = 0; run < runs; run++)
+                checksum += ScoringKernels.scalar().sparseDot(indices, values, indices.length, a);
+            times[3] = System.nanoTime() - start;
+            if (vectorized != null) {
+                start = System.nanoTime();
+                for (int run = 0; run < runs; run++)
+                    checksum += vectorized.cosine(a, b, a.length);
+                times[2] = System.nanoTime() - start;
+                start = System.nanoTime();
+                for (int run = 0; run < runs; run++)
+                    checksum += vectorized.sparseDot(indices, values, indices.length, a);
+                times[4] = System.nanoTime() - start;
+            }
+        }
+        System.out.println(String.format("cosine of %d entries: List<Double> %.0f ns, scalar %.0f ns, SIMD %s",
+                a.length, (double) times[0] / runs, (double) times[1] / runs,
+                vectorized == null ? "unavailable" : String.format("%.0f ns", (double) times[2] / runs)));
+        System.out.println(String.format("sparse dot of %d entries: scalar %.0f ns, SIMD %s (checksum %.1f)",
+                indices.length, (double) times[3] / runs,
+                vectorized == null ? "unavailable" : String.format("%.0f ns", (double) times[4] / runs), checksum));
+    }
+}
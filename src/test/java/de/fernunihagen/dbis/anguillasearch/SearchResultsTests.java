@@ -0,0 +1,118 @@
+package de.fernunihagen.dbis.anguillasearch;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.Test;
+
+import de.fernunihagen.dbis.anguillasearch.helpers.Site;
+import de.fernunihagen.dbis.anguillasearch.helpers.UrlDictionary;
+import de.fernunihagen.dbis.anguillasearch.index.IndexSearcher;
+import de.fernunihagen.dbis.anguillasearch.index.ReverseIndex;
+import de.fernunihagen.dbis.anguillasearch.index.RuleBasedAnalyzer;
+import de.fernunihagen.dbis.anguillasearch.index.SearchResults;
+import de.fernunihagen.dbis.anguillasearch.index.VectorIndex;
+import de.fernunihagen.dbis.anguillasearch.pagerank.PageRankIndex;
+
+/**
+ * Unit tests for the typed search results and their String[] form.
+ */
+class SearchResultsTests {
+
+    static final String[] QUERIES = IncrementalReverseIndexTests.QUERIES;
+
+    static List<Site> sites;
+    static ReverseIndex reverseIndex;
+    static VectorIndex vectorIndex;
+    static PageRankIndex pageRankIndex;
+
+    @BeforeAll
+    static void setUp() {
+        sites = SyntheticNetwork.gaussian(0, 300, 11);
+        reverseIndex = new ReverseIndex(sites, new RuleBasedAnalyzer());
+        UrlDictionary dictionary = new UrlDictionary();
+        vectorIndex = new VectorIndex(dictionary, new RuleBasedAnalyzer());
+        pageRankIndex = new PageRankIndex(dictionary);
+        Random random = new Random(7);
+        for (Site site : sites) {
+            vectorIndex.addSite(site);
+            List<String> links = new ArrayList<>();
+            for (int i = 0; i < 3; i++)
+                links.add(sites.get(random.nextInt(sites.size())).url);
+            pageRankIndex.addLinks(site.url, links);
+        }
+        vectorIndex.finish();
+        pageRankIndex.calcPageRanks();
+    }
+
+    static void assertSameResults(SearchResults results, List<String[]> strings) {
+        assertEquals(results.size(), strings.size());
+        for (int rank = 0; rank < results.size(); rank++)
+            assertArrayEquals(new String[] { results.getUrl(rank), Double.toString(results.getScore(rank)) },
+                    strings.get(rank));
+    }
+
+    static void assertSortedByScore(SearchResults results) {
+        for (int rank = 1; rank < results.size(); rank++) {
+            double previous = results.getScore(rank - 1);
+            double score = results.getScore(rank);
+            assertTrue(previous > score || previous == score
+                    && results.getUrl(rank - 1).compareTo(results.getUrl(rank)) < 0);
+        }
+    }
+
+    @Test
+    void stringArraysAdapter() {
+        IndexSearcher searcher = new IndexSearcher(vectorIndex);
+        for (String query : QUERIES) {
+            assertSameResults(reverseIndex.searchQueryResults(query), reverseIndex.searchQuery(query));
+            assertSameResults(searcher.searchQueryTfIdfResults(query), searcher.searchQueryTfIdf(query));
+            assertSameResults(searcher.searchQueryCosineResults(query), searcher.searchQueryCosine(query));
+            assertSameResults(searcher.searchQueryCosineTopKResults(query, 5),
+                    searcher.searchQueryCosineTopK(query, 5));
+            assertSortedByScore(searcher.searchQueryTfIdfResults(query));
+        }
+
+        // The document numbers belong to the searched index.
+        SearchResults results = searcher.searchQueryCosineResults("aged cheddar");
+        assertEquals(vectorIndex.getDocumentNr(results.getUrl(0)), results.getDoc(0));
+        assertThrows(IndexOutOfBoundsException.class, () -> results.getScore(results.size()));
+        assertTrue(searcher.searchQueryCosineResults("nothinghere").isEmpty());
+    }
+
+    @Test
+    void pageRankSortedByScore() {
+        // The combined scores are sorted as numbers, not as Strings.
+        IndexSearcher searcher = new IndexSearcher(vectorIndex);
+        for (String query : QUERIES) {
+            SearchResults results = searcher.searchQueryCosinePageRankResults(query, pageRankIndex);
+            SearchResults cosineResults = searcher.searchQueryCosineResults(query);
+            assertEquals(cosineResults.size(), results.size());
+            assertSortedByScore(results);
+            assertSameResults(results, searcher.searchQueryCosinePageRank(query, pageRankIndex));
+            if (results.isEmpty())
+                continue;
+
+            // Each combined score is the sum of the relative similarity and page rank.
+            double maxSimilarity = cosineResults.getScore(0);
+            double maxPageRank = 0.0;
+            for (int rank = 0; rank < cosineResults.size(); rank++)
+                maxPageRank = Math.max(maxPageRank, pageRankIndex.getPageRankOf(cosineResults.getUrl(rank)));
+            for (int rank = 0; rank < cosineResults.size(); rank++) {
+                String url = cosineResults.getUrl(rank);
+                double expected = cosineResults.getScore(rank) / maxSimilarity
+                        + pageRankIndex.getPageRankOf(url) / maxPageRank;
+                for (int i = 0; i < results.size(); i++)
+                    if (results.getUrl(i).equals(url))
+                        assertEquals(expected, results.getScore(i), 1e-12);
+            }
+        }
+    }
+}
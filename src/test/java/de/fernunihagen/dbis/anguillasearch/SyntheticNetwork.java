@@ -0,0 +1,144 @@
+package de.fernunihagen.dbis.anguillasearch;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Random;
+
+import de.fernunihagen.dbis.anguillasearch.helpers.Site;
+import de.fernunihagen.dbis.anguillasearch.helpers.UrlDictionary;
+import de.fernunihagen.dbis.anguillasearch.index.RuleBasedAnalyzer;
+import de.fernunihagen.dbis.anguillasearch.index.VectorIndex;
+
+/**
+ * Synthetic networks of sites for the tests and benchmarks of the indices.
+ */
+final class SyntheticNetwork {
+    static final String[] CHEESE_VOCABULARY = ("cheddar gouda brie camembert chevre parmesan feta mozzarella "
+            + "stilton burrata pecorino asiago munster emmental gruyere aged creamy rich bold buttery sharp mild "
+            + "soft hard blue goat sheep cow milk farm cave wheel slice taste flavor aroma").split(" ");
+
+    private SyntheticNetwork() {
+    }
+
+    /**
+     * Create sites with a skewed word distribution, "cheese" is contained in
+     * every site.
+     *
+     * @param first The number of the first site, used in its URL.
+     * @param count The number of sites.
+     * @param seed  The seed of the random words.
+     * @return The sites http://cheese[first].cheesy and following.
+     */
+    static List<Site> gaussian(int first, int count, long seed) {
+        return gaussian(first, count, seed, "cheese ", 80, 8, 0);
+    }
+
+    /**
+     * Create sites of the words of CHEESE_VOCABULARY, the word of each position
+     * picked by a half normal distribution over the vocabulary, so the first
+     * words are the most common. Titles and headings are single random words.
+     *
+     * @param first          The number of the first site, used in its URL.
+     * @param count          The number of sites.
+     * @param seed           The seed of the random words.
+     * @param start          The text every site starts with.
+     * @param lengthRange    Each site has 20 to 20 + lengthRange - 1 random
+     *                       words.
+     * @param spread         The standard deviation of the word picks.
+     * @param sentenceLength Words between the ends of sentences, 0 for sites
+     *                       without sentences.
+     * @return The sites http://cheese[first].cheesy and following.
+     */
+    static List<Site> gaussian(int first, int count, long seed, String start, int lengthRange, double spread,
+            int sentenceLength) {
+        Random random = new Random(seed);
+        List<Site> sites = new ArrayList<>();
+        for (int i = first; i < first + count; i++) {
+            StringBuilder text = new StringBuilder(start);
+            int length = 20 + random.nextInt(lengthRange);
+            for (int j = 0; j < length; j++) {
+                int word = (int) Math.min(CHEESE_VOCABULARY.length - 1, Math.abs(random.nextGaussian()) * spread);
+                text.append(CHEESE_VOCABULARY[word]).append(sentenceLength > 0 && j % sentenceLength == 0 ? ". " : " ");
+            }
+            sites.add(new Site("http://cheese" + i + ".cheesy",
+                    CHEESE_VOCABULARY[random.nextInt(CHEESE_VOCABULARY.length)],
+                    Arrays.asList(CHEESE_VOCABULARY[random.nextInt(CHEESE_VOCABULARY.length)]), text.toString()));
+        }
+        return sites;
+    }
+
+    /**
+     * Create a vocabulary of numbered words. The words end in letters the rule
+     * based analyzer leaves unchanged.
+     *
+     * @param prefix The start of each word.
+     * @param size   The number of words.
+     * @return The words prefix + the word number in base 26.
+     */
+    static String[] vocabulary(String prefix, int size) {
+        String[] vocabulary = new String[size];
+        for (int word = 0; word < size; word++)
+            vocabulary[word] = prefix + Integer.toString(word, 26);
+        return vocabulary;
+    }
+
+    /**
+     * Pick a random word number with a Zipf like distribution, word w is picked
+     * with a probability of about 1 / w.
+     *
+     * @param random         The source of the pick.
+     * @param vocabularySize The number of words.
+     * @return A word number below vocabularySize.
+     */
+    static int zipfWord(Random random, int vocabularySize) {
+        return (int) Math.exp(random.nextDouble() * Math.log(vocabularySize)) - 1;
+    }
+
+    /**
+     * Create sites of words picked by zipfWord(), so the words range from very
+     * common to rare.
+     *
+     * @param prefix      The host of site i is prefix + i.
+     * @param vocabulary  The words of the sites.
+     * @param random      The source of the words.
+     * @param count       The number of sites.
+     * @param minLength   The smallest number of words of a site.
+     * @param lengthRange Each site has minLength to minLength + lengthRange - 1
+     *                    words.
+     * @param titleWords  The title and the heading are picked uniformly from the
+     *                    first titleWords words, 0 for sites without them.
+     * @return The sites http://[prefix]0.cheesy and following.
+     */
+    static List<Site> zipf(String prefix, String[] vocabulary, Random random, int count, int minLength,
+            int lengthRange, int titleWords) {
+        List<Site> sites = new ArrayList<>();
+        for (int i = 0; i < count; i++) {
+            StringBuilder text = new StringBuilder();
+            int length = minLength + random.nextInt(lengthRange);
+            for (int j = 0; j < length; j++)
+                text.append(vocabulary[zipfWord(random, vocabulary.length)]).append(' ');
+            if (titleWords == 0)
+                sites.add(new Site("http://" + prefix + i + ".cheesy", "", Arrays.asList(), text.toString()));
+            else
+                sites.add(new Site("http://" + prefix + i + ".cheesy", vocabulary[random.nextInt(titleWords)] + " ",
+                        Arrays.asList(vocabulary[random.nextInt(titleWords)] + " "), text.toString()));
+        }
+        return sites;
+    }
+
+    /**
+     * Create a finished VectorIndex of the given sites, analyzed by the rule based
+     * analyzer.
+     *
+     * @param sites The sites to be indexed.
+     * @return The finished index.
+     */
+    static VectorIndex createIndex(List<Site> sites) {
+        VectorIndex index = new VectorIndex(new UrlDictionary(), new RuleBasedAnalyzer());
+        for (Site site : sites)
+            index.addSite(site);
+        index.finish();
+        return index;
+    }
+}
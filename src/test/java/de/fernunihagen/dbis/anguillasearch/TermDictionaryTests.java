@@ -0,0 +1,117 @@
+package de.fernunihagen.dbis.anguillasearch;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.TreeSet;
+
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.Test;
+
+import de.fernunihagen.dbis.anguillasearch.index.TermDictionary;
+
+/**
+ * Unit tests for the front coded term dictionary.
+ */
+class TermDictionaryTests {
+
+    static List<String> sortedTerms;
+    static TermDictionary dictionary;
+
+    @BeforeAll
+    static void setUp() {
+        // All lowercase words of up to three letters from a small alphabet, plus a
+        // few longer ones sharing prefixes.
+        TreeSet<String> terms = new TreeSet<>();
+        String letters = "abcehs";
+        for (char a : letters.toCharArray()) {
+            terms.add("" + a);
+            for (char b : letters.toCharArray()) {
+                terms.add("" + a + b);
+                for (char c : letters.toCharArray())
+                    terms.add("" + a + b + c);
+            }
+        }
+        for (String term : new String[] { "cheese", "cheddar", "chevre", "cheesecake", "brie", "camembert" })
+            terms.add(term);
+        sortedTerms = new ArrayList<>(terms);
+        dictionary = TermDictionary.build(terms);
+    }
+
+    @Test
+    void exactLookup() {
+        assertEquals(sortedTerms.size(), dictionary.size());
+        for (int i = 0; i < sortedTerms.size(); i++) {
+            assertEquals(i, dictionary.getTermId(sortedTerms.get(i)));
+            assertEquals(sortedTerms.get(i), dictionary.getTerm(i));
+        }
+
+        // Terms that are missing, before all and after all terms.
+        assertEquals(-1, dictionary.getTermId("chees"));
+        assertEquals(-1, dictionary.getTermId(""));
+        assertEquals(-1, dictionary.getTermId("zzz"));
+    }
+
+    @Test
+    void prefixAndRangeLookup() {
+        int[] range = dictionary.getPrefixRange("chee");
+        assertArrayEquals(new int[] { sortedTerms.indexOf("cheese"), sortedTerms.indexOf("cheesecake") + 1 }, range);
+
+        // Every term in a prefix range starts with the prefix, no other term does.
+        for (String prefix : new String[] { "a", "ch", "che", "s", "x", "" }) {
+            range = dictionary.getPrefixRange(prefix);
+            for (int i = 0; i < sortedTerms.size(); i++)
+                assertEquals(sortedTerms.get(i).startsWith(prefix), i >= range[0] && i < range[1]);
+        }
+
+        range = dictionary.getRange("b", "c");
+        for (int i = 0; i < sortedTerms.size(); i++)
+            assertEquals(sortedTerms.get(i).compareTo("b") >= 0 && sortedTerms.get(i).compareTo("c") < 0,
+                    i >= range[0] && i < range[1]);
+
+        // An empty range.
+        range = dictionary.getRange("z", "a");
+        assertEquals(range[0], range[1]);
+    }
+
+    @Test
+    void visitRanges() {
+        // Ranges starting and ending inside and at the borders of blocks.
+        for (int start : new int[] { 0, 1, 15, 16, 17, 100 }) {
+            for (int end : new int[] { start, start + 1, start + 40, sortedTerms.size() + 5 }) {
+                List<String> visited = new ArrayList<>();
+                dictionary.forEachTerm(start, end, term -> visited.add(term));
+                assertEquals(sortedTerms.subList(start, Math.min(end, sortedTerms.size())), visited);
+            }
+        }
+
+        // The visitor stops the walk.
+        List<String> visited = new ArrayList<>();
+        dictionary.forEachTerm(3, sortedTerms.size(), term -> visited.add(term) && visited.size() < 20);
+        assertEquals(sortedTerms.subList(3, 23), visited);
+    }
+
+    @Test
+    void invalidTerms() {
+        byte[][] duplicates = { "brie".getBytes(StandardCharsets.UTF_8), "brie".getBytes(StandardCharsets.UTF_8) };
+        assertThrows(IllegalArgumentException.class, () -> TermDictionary.encode(duplicates));
+        byte[][] unsorted = { "gouda".getBytes(StandardCharsets.UTF_8), "brie".getBytes(StandardCharsets.UTF_8) };
+        assertThrows(IllegalArgumentException.class, () -> TermDictionary.encode(unsorted));
+    }
+
+    @Test
+    void dictionarySize() {
+        int plainBytes = 0;
+        for (String term : sortedTerms)
+            plainBytes += term.getBytes(StandardCharsets.UTF_8).length + Integer.BYTES;
+
+        System.out.println(String.format("terms: %d, plain: %d bytes, front coded: %d bytes, %.2f bytes/term",
+                dictionary.size(), plainBytes, dictionary.getSizeInBytes(), dictionary.getBytesPerTerm()));
+        assertTrue(dictionary.getSizeInBytes() < plainBytes);
+    }
+}
@@ -0,0 +1,152 @@
+package de.fernunihagen.dbis.anguillasearch;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.io.IOException;
+import java.lang.management.ManagementFactory;
+import java.nio.file.Files;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.Test;
+
+import de.fernunihagen.dbis.anguillasearch.helpers.Site;
+import de.fernunihagen.dbis.anguillasearch.helpers.UrlDictionary;
+import de.fernunihagen.dbis.anguillasearch.index.Analyzer;
+import de.fernunihagen.dbis.anguillasearch.index.CoreNlpAnalyzer;
+import de.fernunihagen.dbis.anguillasearch.index.RuleBasedAnalyzer;
+import de.fernunihagen.dbis.anguillasearch.index.TokenStream;
+import de.fernunihagen.dbis.anguillasearch.index.VectorIndex;
+
+/**
+ * Unit tests and an allocation benchmark for the token streams of the
+ * analyzers.
+ */
+class TokenStreamTests {
+
+    static final String[] TEXTS = { "cheeses are made of milk.", "i don't like \"running\" and swimming",
+            "the children were using their knives at http://cheesy1.anguilla/page.html, (now)!", "",
+            "well-known version 1.2 of the farmer's e-mail" };
+
+    static List<Site> sites;
+
+    @BeforeAll
+    static void setUp() throws IOException {
+        // The paragraphs of the README serve as a small network of sites.
+        String text = new String(Files.readAllBytes(Paths.get("README.md")));
+        sites = new ArrayList<>();
+        for (String paragraph : text.split("\n\\s*\n")) {
+            if (paragraph.isBlank())
+                continue;
+            sites.add(new Site("http://readme" + sites.size() + ".anguilla", "Readme", Arrays.asList("Section"),
+                    paragraph));
+        }
+    }
+
+    static List<String> collect(TokenStream stream, String text) {
+        List<String> lemmas = new ArrayList<>();
+        stream.reset(text);
+        while (stream.incrementToken())
+            lemmas.add(new String(stream.termBuffer(), 0, stream.termLength()));
+        return lemmas;
+    }
+
+    static void assertSameLemmas(Analyzer analyzer) {
+        // One stream is reused for all texts.
+        TokenStream stream = analyzer.tokenStream();
+        for (String text : TEXTS)
+            assertEquals(analyzer.lemmatize(text), collect(stream, text));
+        assertTrue(collect(stream, "").isEmpty());
+    }
+
+    @Test
+    void sameLemmasAsLemmatize() {
+        assertSameLemmas(new RuleBasedAnalyzer());
+        assertSameLemmas(new CoreNlpAnalyzer());
+
+        // Long tokens grow the buffer.
+        String longWord = "cheese".repeat(20);
+        assertEquals(List.of(longWord), collect(new RuleBasedAnalyzer().tokenStream(), longWord));
+    }
+
+    @Test
+    void termsOfStream() {
+        VectorIndex index = new VectorIndex(new UrlDictionary(), new RuleBasedAnalyzer());
+        index.addSite(new Site("http://goat.cheesy1", "Goat Cheese", Arrays.asList("The Farm"),
+                "Goats are grazing on the farm, the cheese is aged!"));
+        index.addSite(new Site("http://blue.cheesy1", "Blue Cheese", Arrays.asList("Caves"),
+                "Blue cheeses are aged in caves."));
+        index.finish();
+
+        // Stopwords and special characters are filtered out, the terms of each
+        // document are numbered alphabetically.
+        assertEquals(-1, index.getTermId("the"));
+        assertEquals(-1, index.getTermId(","));
+        List<String> terms = new ArrayList<>();
+        for (int term = 0; term < index.getNrOfTerms(); term++)
+            terms.add(index.getTerm(term));
+        assertEquals(List.of("aged", "cheese", "farm", "goat", "graze", "blue", "cave"), terms);
+        assertEquals(2, index.getDocFrequency(index.getTermId("cheese")));
+
+        // Stopwords keep their position.
+        int doc = index.getDocumentNr("http://goat.cheesy1");
+        assertArrayEquals(new int[] { 3, 9 }, index.getPositions(index.getTermId("farm"), doc));
+        assertArrayEquals(new int[] { 0, 4 }, index.getPositions(index.getTermId("goat"), doc));
+    }
+
+    @Test
+    void benchmarkAllocation() {
+        if (!(ManagementFactory.getThreadMXBean() instanceof com.sun.management.ThreadMXBean))
+            return;
+        com.sun.management.ThreadMXBean threads = (com.sun.management.ThreadMXBean) ManagementFactory
+                .getThreadMXBean();
+        long thread = Thread.currentThread().getId();
+        Analyzer analyzer = new RuleBasedAnalyzer();
+        TokenStream stream = analyzer.tokenStream();
+        List<String> texts = new ArrayList<>();
+        for (Site site : sites)
+            texts.add(site.paragraphs.toLowerCase());
+
+        long listBytes = 0;
+        long streamBytes = 0;
+        long indexBytes = 0;
+        long tokens = 0;
+        int runs = 5;
+        for (int run = 0; run <= runs; run++) {
+            // The first run warms up.
+            long start = threads.getThreadAllocatedBytes(thread);
+            for (String text : texts)
+                tokens += analyzer.lemmatize(text).size();
+            long lists = threads.getThreadAllocatedBytes(thread) - start;
+
+            start = threads.getThreadAllocatedBytes(thread);
+            for (String text : texts) {
+                stream.reset(text);
+                while (stream.incrementToken())
+                    tokens += stream.termLength();
+            }
+            long streams = threads.getThreadAllocatedBytes(thread) - start;
+
+            VectorIndex index = new VectorIndex(new UrlDictionary(), analyzer);
+            start = threads.getThreadAllocatedBytes(thread);
+            for (Site site : sites)
+                index.addSite(site);
+            long indices = threads.getThreadAllocatedBytes(thread) - start;
+            if (run > 0) {
+                listBytes += lists;
+                streamBytes += streams;
+                indexBytes += indices;
+            }
+        }
+        int docs = runs * sites.size();
+        System.out.println(String.format("bytes per document: lemmatize() %d, token stream %d, addSite() %d",
+                listBytes / docs, streamBytes / docs, indexBytes / docs));
+        assertTrue(tokens > 0);
+        assertTrue(streamBytes / docs < 64);
+    }
+}
@@ -0,0 +1,146 @@
+package de.fernunihagen.dbis.anguillasearch;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.Test;
+
+import de.fernunihagen.dbis.anguillasearch.helpers.Site;
+import de.fernunihagen.dbis.anguillasearch.helpers.UrlDictionary;
+import de.fernunihagen.dbis.anguillasearch.index.IndexSearcher;
+import de.fernunihagen.dbis.anguillasearch.index.ReverseIndex;
+import de.fernunihagen.dbis.anguillasearch.index.RuleBasedAnalyzer;
+import de.fernunihagen.dbis.anguillasearch.index.TopKHeap;
+import de.fernunihagen.dbis.anguillasearch.index.VectorIndex;
+
+/**
+ * Unit tests and a benchmark for the bounded top k selection of the searchers.
+ */
+class TopKHeapTests {
+
+    static final String[] QUERIES = IncrementalReverseIndexTests.QUERIES;
+    static final int[] KS = { 0, 1, 3, 10, 50, 1000 };
+
+    static List<Site> sites;
+    static ReverseIndex reverseIndex;
+    static VectorIndex vectorIndex;
+
+    @BeforeAll
+    static void setUp() {
+        sites = SyntheticNetwork.gaussian(0, 300, 11);
+        reverseIndex = new ReverseIndex(sites, new RuleBasedAnalyzer());
+        vectorIndex = new VectorIndex(new UrlDictionary(), new RuleBasedAnalyzer());
+        for (Site site : sites)
+            vectorIndex.addSite(site);
+        vectorIndex.finish();
+    }
+
+    static void assertPrefix(List<String[]> all, List<String[]> top, int k) {
+        assertEquals(Math.min(k, all.size()), top.size());
+        for (int i = 0; i < top.size(); i++)
+            assertArrayEquals(all.get(i), top.get(i));
+    }
+
+    @Test
+    void sameOrderAsFullSort() {
+        // Few distinct scores, so most documents are ranked by the tie order.
+        Random random = new Random(3);
+        int n = 500;
+        double[] scores = new double[n];
+        for (int doc = 0; doc < n; doc++)
+            scores[doc] = random.nextInt(20) / 4.0;
+        List<Integer> sorted = new ArrayList<>();
+        for (int doc = 0; doc < n; doc++)
+            sorted.add(doc);
+        sorted.sort((a, b) -> {
+            int cmp = Double.compare(scores[b], scores[a]);
+            return cmp != 0 ? cmp : Integer.compare(a, b);
+        });
+
+        for (int k : KS) {
+            TopKHeap heap = new TopKHeap(Math.min(k, n), Integer::compare);
+            for (int doc = n - 1; doc >= 0; doc--)
+                heap.offer(doc, scores[doc]);
+            heap.sort();
+            assertEquals(Math.min(k, n), heap.size());
+            for (int rank = 0; rank < heap.size(); rank++) {
+                assertEquals((int) sorted.get(rank), heap.getDoc(rank));
+                assertEquals(scores[sorted.get(rank)], heap.getScore(rank));
+            }
+        }
+
+        // A full heap only keeps documents ranking higher than its worst one.
+        TopKHeap heap = new TopKHeap(2, Integer::compare);
+        assertTrue(heap.offer(5, 1.0));
+        assertTrue(heap.offer(7, 1.0));
+        assertTrue(heap.isFull());
+        assertTrue(!heap.offer(9, 1.0));
+        assertTrue(heap.offer(1, 1.0));
+        assertEquals(1.0, heap.getMinScore());
+        heap.sort();
+        assertEquals(1, heap.getDoc(0));
+        assertEquals(5, heap.getDoc(1));
+    }
+
+    @Test
+    void searchersTopK() {
+        IndexSearcher searcher = new IndexSearcher(vectorIndex);
+        for (String query : QUERIES) {
+            List<String[]> reverseResults = reverseIndex.searchQuery(query);
+            List<String[]> tfIdfResults = searcher.searchQueryTfIdf(query);
+            List<String[]> cosineResults = searcher.searchQueryCosine(query);
+            for (int k : KS) {
+                assertPrefix(reverseResults, reverseIndex.searchQuery(query, k), k);
+                assertPrefix(tfIdfResults, searcher.searchQueryTfIdf(query, k), k);
+                assertPrefix(cosineResults, searcher.searchQueryCosineTopK(query, k), k);
+            }
+        }
+    }
+
+    @Test
+    void benchmarkSelection() {
+        Random random = new Random(5);
+        int n = 1000000;
+        double[] scores = new double[n];
+        for (int doc = 0; doc < n; doc++)
+            scores[doc] = random.nextDouble();
+        int k = 10;
+        int runs = 5;
+        long sortTime = 0;
+        long heapTime = 0;
+        double checksum = 0.0;
+        for (int run = 0; run <= runs; run++) {
+            // The first run warms up.
+            long start = System.nanoTime();
+            List<Integer> docs = new ArrayList<>();
+            for (int doc = 0; doc < n; doc++)
+                docs.add(doc);
+            docs.sort((a, b) -> Double.compare(scores[b], scores[a]));
+            double sortBest = scores[docs.get(0)];
+            long sorted = System.nanoTime() - start;
+
+            start = System.nanoTime();
+            TopKHeap heap = new TopKHeap(k, Integer::compare);
+            for (int doc = 0; doc < n; doc++)
+                heap.offer(doc, scores[doc]);
+            heap.sort();
+            long selected = System.nanoTime() - start;
+
+            assertEquals(sortBest, heap.getScore(0));
+            checksum += heap.getScore(k - 1);
+            if (run > 0) {
+                sortTime += sorted;
+                heapTime += selected;
+            }
+        }
+        System.out.println(String.format("top %d of %d documents: full sort %.1f ms, heap %.1f ms", k, n,
+                sortTime / 1e6 / runs, heapTime / 1e6 / runs));
+        assertTrue(checksum > 0.0);
+    }
+}
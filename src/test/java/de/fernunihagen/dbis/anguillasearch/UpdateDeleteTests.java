@@ -0,0 +1,192 @@
+package de.fernunihagen.dbis.anguillasearch;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.Test;
+
+import de.fernunihagen.dbis.anguillasearch.helpers.Site;
+import de.fernunihagen.dbis.anguillasearch.helpers.UrlDictionary;
+import de.fernunihagen.dbis.anguillasearch.index.ForwardIndex;
+import de.fernunihagen.dbis.anguillasearch.index.IndexSearcher;
+import de.fernunihagen.dbis.anguillasearch.index.MappedVectorIndex;
+import de.fernunihagen.dbis.anguillasearch.index.VectorIndex;
+
+/**
+ * Unit tests for updating and deleting indexed Sites.
+ */
+class UpdateDeleteTests {
+
+    static final String[] VOCABULARY = ("cheddar gouda brie camembert chevre parmesan feta mozzarella stilton "
+            + "aged creamy rich bold buttery sharp mild soft hard blue goat sheep cow milk farm cave").split(" ");
+    static final String[] QUERIES = { "chevre", "aged cheddar", "creamy blue goat", "soft sheep milk" };
+
+    static List<Site> sites;
+
+    @BeforeAll
+    static void setUp() {
+        Random random = new Random(7);
+        sites = new ArrayList<>();
+        for (int i = 0; i < 30; i++)
+            sites.add(randomSite(random, "http://cheese" + i + ".cheesy"));
+    }
+
+    static Site randomSite(Random random, String url) {
+        StringBuilder text = new StringBuilder();
+        int length = 10 + random.nextInt(20);
+        for (int j = 0; j < length; j++)
+            text.append(VOCABULARY[random.nextInt(VOCABULARY.length)]).append(' ');
+        return new Site(url, VOCABULARY[random.nextInt(VOCABULARY.length)],
+                Arrays.asList(VOCABULARY[random.nextInt(VOCABULARY.length)]), text.toString());
+    }
+
+    static VectorIndex buildIndex(List<Site> sites) {
+        VectorIndex index = new VectorIndex();
+        for (Site site : sites)
+            index.addSite(site);
+        index.finish();
+        index.normalize();
+        return index;
+    }
+
+    static List<String> getUrls(List<String[]> results) {
+        List<String> urls = new ArrayList<>();
+        for (String[] entry : results)
+            urls.add(entry[0]);
+        return urls;
+    }
+
+    @Test
+    void deleteAndUpdate() {
+        VectorIndex index = buildIndex(sites);
+        IndexSearcher searcher = new IndexSearcher(index);
+        String deleted = sites.get(3).url;
+        int doc = index.getDocumentNr(deleted);
+        int chevre = index.getTermId("chevre");
+        int df = index.getDocFrequency(chevre);
+        boolean hadChevre = (sites.get(3).title + sites.get(3).headings + sites.get(3).paragraphs)
+                .contains("chevre");
+
+        // Deleted Sites are skipped by searches right away.
+        assertTrue(index.delete(deleted));
+        assertTrue(!index.delete(deleted));
+        assertTrue(!index.isLive(doc));
+        assertEquals(-1, index.getDocumentNr(deleted));
+        assertEquals(sites.size() - 1, index.getNrOfSites());
+        assertEquals(sites.size(), index.getDocumentCapacity());
+        assertEquals(hadChevre ? df - 1 : df, index.getDocFrequency(chevre));
+        for (String query : QUERIES)
+            assertTrue(!getUrls(searcher.searchQueryCosine(query)).contains(deleted));
+        assertTrue(!index.getStoredDocumentIds().contains(deleted));
+
+        // An update replaces the content of a Site.
+        Site updated = new Site(sites.get(5).url, "Anguilla", Arrays.asList("Anguilla"), "anguilla anguilla eel");
+        index.update(updated);
+        index.finish();
+        index.normalize();
+        assertEquals(sites.size() - 1, index.getNrOfSites());
+        assertEquals(Arrays.asList(updated.url), getUrls(searcher.searchQueryCosine("anguilla")));
+
+        // The weights are the same as in an index built from the changed Sites.
+        List<Site> changedSites = new ArrayList<>(sites);
+        changedSites.remove(3);
+        changedSites.remove(sites.get(5));
+        changedSites.add(updated);
+        IndexSearcher freshSearcher = new IndexSearcher(buildIndex(changedSites));
+        for (String query : QUERIES) {
+            Map<String, Double> expected = new HashMap<>();
+            for (String[] entry : freshSearcher.searchQueryCosine(query))
+                expected.put(entry[0], Double.parseDouble(entry[1]));
+            List<String[]> found = searcher.searchQueryCosine(query);
+            assertEquals(expected.size(), found.size());
+            for (String[] entry : found)
+                assertTrue(Math.abs(expected.get(entry[0]) - Double.parseDouble(entry[1])) < 1e-9);
+        }
+    }
+
+    @Test
+    void compaction() throws IOException {
+        VectorIndex index = buildIndex(sites);
+        for (int i = 0; i < sites.size(); i += 3)
+            index.delete(sites.get(i).url);
+        index.finish();
+        index.normalize();
+        int terms = index.getNrOfTerms();
+
+        // Deleted documents need to be compacted before saving.
+        Path file = Files.createTempFile("anguilla", ".idx");
+        file.toFile().deleteOnExit();
+        assertThrows(IOException.class, () -> index.save(file));
+
+        IndexSearcher searcher = new IndexSearcher(index);
+        Map<String, List<String[]>> expected = new HashMap<>();
+        for (String query : QUERIES)
+            expected.put(query, searcher.searchQueryCosine(query));
+
+        index.compact();
+        assertEquals(index.getNrOfSites(), index.getDocumentCapacity());
+        assertEquals(sites.size() - 10, index.getNrOfSites());
+        assertTrue(index.getNrOfTerms() <= terms);
+        assertTrue(index.isNormalized());
+        for (int termId = 0; termId < index.getNrOfTerms(); termId++)
+            assertTrue(index.getDocFrequency(termId) > 0);
+
+        // Compaction keeps the order of documents and terms, so the results are equal.
+        index.save(file);
+        IndexSearcher mappedSearcher = new IndexSearcher(MappedVectorIndex.open(file));
+        for (String query : QUERIES) {
+            List<String[]> found = searcher.searchQueryCosine(query);
+            List<String[]> mapped = mappedSearcher.searchQueryCosine(query);
+            assertEquals(expected.get(query).size(), found.size());
+            assertEquals(found.size(), mapped.size());
+            for (int i = 0; i < found.size(); i++) {
+                assertArrayEquals(expected.get(query).get(i), found.get(i));
+                assertEquals(found.get(i)[0], mapped.get(i)[0]);
+            }
+        }
+
+        // The index keeps working after the compaction.
+        Site added = new Site("http://eel.cheesy", "Anguilla", Arrays.asList("Anguilla"), "anguilla eel");
+        index.addSite(added);
+        index.finish();
+        assertEquals(Arrays.asList(added.url), getUrls(searcher.searchQueryCosine("anguilla")));
+    }
+
+    @Test
+    void forwardIndex() {
+        for (boolean offHeap : new boolean[] { false, true }) {
+            ForwardIndex forwardIndex = new ForwardIndex(new UrlDictionary(), offHeap);
+            for (Site site : sites)
+                forwardIndex.addSite(site);
+
+            assertTrue(forwardIndex.delete(sites.get(0).url));
+            assertTrue(!forwardIndex.delete(sites.get(0).url));
+            assertTrue(!forwardIndex.delete("http://gouda.cheesy"));
+            assertEquals(null, forwardIndex.getSiteWithUrl(sites.get(0).url));
+            assertEquals(sites.size() - 1, forwardIndex.getNrOfSites());
+
+            forwardIndex.update(new Site(sites.get(1).url, "Anguilla", Arrays.asList("Anguilla"), "eel"));
+            assertEquals("Anguilla", forwardIndex.getTitleOf(sites.get(1).url));
+            assertEquals(sites.size() - 1, forwardIndex.getNrOfSites());
+
+            forwardIndex.compact();
+            assertEquals("Anguilla", forwardIndex.getTitleOf(sites.get(1).url));
+            for (int i = 2; i < sites.size(); i++)
+                assertEquals(sites.get(i).paragraphs, forwardIndex.getSiteWithUrl(sites.get(i).url).paragraphs);
+            assertEquals(sites.size() - 1, forwardIndex.getNrOfSites());
+        }
+    }
+}
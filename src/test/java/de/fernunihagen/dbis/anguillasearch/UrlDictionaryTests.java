@@ -0,0 +1,90 @@
+package de.fernunihagen.dbis.anguillasearch;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+import java.util.List;
+
+import org.junit.jupiter.api.Test;
+
+import de.fernunihagen.dbis.anguillasearch.crawler.UniqQueue;
+import de.fernunihagen.dbis.anguillasearch.helpers.Site;
+import de.fernunihagen.dbis.anguillasearch.helpers.UrlDictionary;
+import de.fernunihagen.dbis.anguillasearch.index.ForwardIndex;
+import de.fernunihagen.dbis.anguillasearch.pagerank.PageRankIndex;
+
+/**
+ * Unit tests for the URL dictionary shared by the crawler and the indices.
+ */
+class UrlDictionaryTests {
+
+    @Test
+    void denseIds() {
+        UrlDictionary dictionary = new UrlDictionary();
+        int count = 5000;
+        for (int i = 0; i < count; i++)
+            assertEquals(i, dictionary.add("http://cheesy" + (i % 7) + ".fernuni-hagen.de/page" + i + ".html"));
+
+        // Known URLs keep their id.
+        assertEquals(42, dictionary.add("http://cheesy0.fernuni-hagen.de/page42.html"));
+        assertEquals(count, dictionary.size());
+
+        long rawBytes = 0;
+        for (int i = 0; i < count; i++) {
+            String url = "http://cheesy" + (i % 7) + ".fernuni-hagen.de/page" + i + ".html";
+            assertEquals(i, dictionary.getId(url));
+            assertEquals(url, dictionary.getUrl(i));
+            rawBytes += url.getBytes(StandardCharsets.UTF_8).length;
+        }
+        assertEquals(-1, dictionary.getId("http://cheesy0.fernuni-hagen.de/page5000.html"));
+        assertTrue(!dictionary.contains("http://cheesy0.fernuni-hagen.de/"));
+        assertThrows(IndexOutOfBoundsException.class, () -> dictionary.getUrl(count));
+
+        System.out.println(String.format("urls: %d, raw: %d bytes, front coded: %d bytes", count, rawBytes,
+                dictionary.getSizeInBytes()));
+        assertTrue(dictionary.getSizeInBytes() < rawBytes);
+    }
+
+    @Test
+    void sharedDictionary() {
+        UrlDictionary dictionary = new UrlDictionary();
+        UniqQueue queue = new UniqQueue(dictionary);
+        ForwardIndex forwardIndex = new ForwardIndex(dictionary);
+        PageRankIndex pageRankIndex = new PageRankIndex(dictionary);
+
+        String a = "http://cheesy1.fernuni-hagen.de/index.html";
+        String b = "http://cheesy1.fernuni-hagen.de/brie.html";
+        String c = "http://cheesy2.fernuni-hagen.de/index.html";
+        pageRankIndex.addLinks(a, List.of(b, c));
+        pageRankIndex.addLinks(b, List.of(a));
+        pageRankIndex.addLinks(c, List.of(a, b));
+        forwardIndex.addSite(new Site(b, "Brie", Arrays.asList("Brie"), "soft cheese"));
+
+        // URLs known to the dictionary can still be queued once.
+        queue.queue(c);
+        queue.queue(a);
+        queue.queue(c);
+        assertEquals(2, queue.size());
+        assertEquals(c, queue.pop());
+        assertEquals(a, queue.pop());
+
+        // All indices refer to a site by the same id.
+        assertEquals(3, dictionary.size());
+        int id = dictionary.getId(b);
+        assertEquals("Brie", forwardIndex.getSite(id).title);
+        assertEquals(1, forwardIndex.getNrOfSites());
+
+        pageRankIndex.calcPageRanks();
+        double sum = 0.0;
+        for (String url : new String[] { a, b, c }) {
+            double pageRank = pageRankIndex.getPageRank(dictionary.getId(url));
+            assertEquals(pageRankIndex.getPageRankOf(url).doubleValue(), pageRank);
+            sum += pageRank;
+        }
+        assertTrue(Math.abs(1.0 - sum) < 0.001);
+        assertEquals(0.0, pageRankIndex.getPageRank(-1));
+    }
+}
@@ -0,0 +1,173 @@
+package de.fernunihagen.dbis.anguillasearch;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.Test;
+
+import de.fernunihagen.dbis.anguillasearch.helpers.Site;
+import de.fernunihagen.dbis.anguillasearch.index.ImpactPostings;
+import de.fernunihagen.dbis.anguillasearch.index.IndexSearcher;
+import de.fernunihagen.dbis.anguillasearch.index.MappedVectorIndex;
+import de.fernunihagen.dbis.anguillasearch.index.SearchableIndex;
+import de.fernunihagen.dbis.anguillasearch.index.VectorIndex;
+
+/**
+ * Unit tests and a benchmark for the WAND and Block-Max WAND top k search.
+ */
+class WandTests {
+
+    static final int[] KS = { 1, 3, 10, 50 };
+
+    static String[] vocabulary;
+    static List<String> queries;
+    static VectorIndex index;
+    static VectorIndex normalizedIndex;
+
+    @BeforeAll
+    static void setUp() {
+        // A synthetic network with a Zipf like word distribution over a larger
+        // vocabulary, so posting lists span many blocks.
+        Random random = new Random(17);
+        vocabulary = SyntheticNetwork.vocabulary("cheese", 2000);
+        List<Site> sites = createSites(random, 4000);
+
+        // Sites with the same text have the same score and are ranked by their url.
+        for (int i = 0; i < 20; i++)
+            sites.add(new Site("http://copy" + i + ".cheesy", sites.get(i % 3).title, sites.get(i % 3).headings,
+                    sites.get(i % 3).paragraphs));
+
+        index = createIndex(sites, false);
+        normalizedIndex = createIndex(sites, true);
+
+        queries = new ArrayList<>();
+        for (int length : new int[] { 1, 2, 3, 5, 8, 12, 16 }) {
+            for (int q = 0; q < 4; q++) {
+                StringBuilder query = new StringBuilder();
+                for (int i = 0; i < length; i++)
+                    query.append(vocabulary[(int) Math.min(vocabulary.length - 1,
+                            Math.exp(random.nextDouble() * Math.log(vocabulary.length)))]).append(' ');
+                queries.add(query.toString().trim());
+            }
+        }
+    }
+
+    static List<Site> createSites(Random random, int count) {
+        return SyntheticNetwork.zipf("cheese", vocabulary, random, count, 30, 150, 100);
+    }
+
+    static VectorIndex createIndex(List<Site> sites, boolean normalized) {
+        VectorIndex vectorIndex = SyntheticNetwork.createIndex(sites);
+        if (normalized)
+            vectorIndex.normalize();
+        vectorIndex.orderByImpact();
+        return vectorIndex;
+    }
+
+    /**
+     * Check that WAND and Block-Max WAND find the first k results of the
+     * exhaustive search for all test queries.
+     */
+    static void assertSameResults(SearchableIndex searchableIndex) {
+        IndexSearcher searcher = new IndexSearcher(searchableIndex);
+        for (String query : queries) {
+            List<String[]> expected = searcher.searchQueryCosine(query);
+            for (int k : KS) {
+                for (boolean blockMax : new boolean[] { false, true }) {
+                    List<String[]> found = searcher.searchQueryCosineWand(query, k, blockMax);
+                    assertEquals(Math.min(k, expected.size()), found.size());
+                    for (int i = 0; i < found.size(); i++)
+                        assertArrayEquals(expected.get(i), found.get(i));
+                }
+            }
+        }
+    }
+
+    @Test
+    void blockMaxImpacts() {
+        ImpactPostings impactPostings = index.getImpactPostings();
+        for (int term = 0; term < index.getNrOfTerms(); term++) {
+            // Each posting with an impact lies in a block with at least its impact.
+            for (int pos = impactPostings.getStart(term); pos < impactPostings.getEnd(term); pos++) {
+                int block = impactPostings.findBlock(term, impactPostings.getDoc(pos));
+                assertTrue(block != -1);
+                assertTrue(impactPostings.getBlockLastDoc(block) >= impactPostings.getDoc(pos));
+                assertTrue(impactPostings.getBlockMaxImpact(block) >= impactPostings.getImpact(pos));
+                assertTrue(impactPostings.getMaxImpact(term) >= impactPostings.getBlockMaxImpact(block));
+            }
+        }
+        assertEquals(-1, impactPostings.findBlock(0, index.getDocumentCapacity()));
+    }
+
+    @Test
+    void sameResultsAsExhaustiveSearch() throws IOException {
+        assertSameResults(index);
+        assertSameResults(normalizedIndex);
+
+        MappedVectorIndex offHeapIndex = MappedVectorIndex.loadOffHeap(normalizedIndex, true);
+        offHeapIndex.orderByImpact();
+        assertSameResults(offHeapIndex);
+
+        // Without impact ordered postings all postings are scored.
+        assertSameResults(MappedVectorIndex.loadOffHeap(index, false));
+    }
+
+    @Test
+    void deletedDocuments() {
+        VectorIndex changedIndex = createIndex(createSites(new Random(18), 500), true);
+        IndexSearcher searcher = new IndexSearcher(changedIndex);
+        String query = queries.get(queries.size() - 1);
+        String deleted = searcher.searchQueryCosineWand(query, 1, true).get(0)[0];
+        changedIndex.delete(deleted);
+        assertSameResults(changedIndex);
+        assertTrue(!deleted.equals(searcher.searchQueryCosineWand(query, 1, true).get(0)[0]));
+    }
+
+    @Test
+    void benchmarkSkippedPostings() {
+        IndexSearcher searcher = new IndexSearcher(normalizedIndex);
+        int k = 10;
+        int runs = 100;
+        String[] names = { "exhaustive", "WAND", "Block-Max WAND" };
+        for (int length : new int[] { 2, 8, 16 }) {
+            List<String> longQueries = new ArrayList<>();
+            for (String query : queries)
+                if (query.split(" ").length == length)
+                    longQueries.add(query);
+
+            long[] postings = new long[names.length];
+            long[] times = new long[names.length];
+            for (int run = 0; run <= runs; run++) {
+                // The first run warms up.
+                for (String query : longQueries) {
+                    for (int method = 0; method < names.length; method++) {
+                        long start = System.nanoTime();
+                        if (method == 0)
+                            searcher.searchQueryCosineResults(query);
+                        else
+                            searcher.searchQueryCosineWand(query, k, method == 2);
+                        long time = System.nanoTime() - start;
+                        if (run > 0) {
+                            times[method] += time;
+                            postings[method] += searcher.getLastScoredPostings();
+                        }
+                    }
+                }
+            }
+            int searches = runs * longQueries.size();
+            for (int method = 0; method < names.length; method++)
+                System.out.println(String.format("%2d terms, %-14s: %7.1f postings scored, %4.1f%% skipped, %.3f ms "
+                        + "per query", length, names[method], (double) postings[method] / searches,
+                        100.0 - 100.0 * postings[method] / postings[0], times[method] / 1e6 / searches));
+            assertTrue(postings[2] <= postings[1]);
+            assertTrue(postings[1] < postings[0]);
+        }
+    }
+}
@@ -0,0 +1,226 @@
+package de.fernunihagen.dbis.anguillasearch;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+import java.util.Set;
+import java.util.TreeSet;
+import java.util.regex.Pattern;
+
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.Test;
+
+import de.fernunihagen.dbis.anguillasearch.helpers.Site;
+import de.fernunihagen.dbis.anguillasearch.helpers.UrlDictionary;
+import de.fernunihagen.dbis.anguillasearch.index.IndexSearcher;
+import de.fernunihagen.dbis.anguillasearch.index.MappedVectorIndex;
+import de.fernunihagen.dbis.anguillasearch.index.RuleBasedAnalyzer;
+import de.fernunihagen.dbis.anguillasearch.index.SearchResults;
+import de.fernunihagen.dbis.anguillasearch.index.SearchableIndex;
+import de.fernunihagen.dbis.anguillasearch.index.TermDictionary;
+import de.fernunihagen.dbis.anguillasearch.index.VectorIndex;
+
+/**
+ * Unit tests and a benchmark for the prefix and wildcard queries expanded over
+ * the sorted terms of an index.
+ */
+class WildcardQueryTests {
+
+    static List<String> vocabulary;
+    static List<Site> sites;
+    static VectorIndex index;
+
+    @BeforeAll
+    static void setUp() {
+        // Words of cheeses with a few common prefixes and random endings, the last
+        // digit keeps the analyzer from changing them.
+        Random random = new Random(53);
+        String[] stems = { "chedd", "cheese", "gouda", "brie", "bries", "feta", "gruy" };
+        TreeSet<String> words = new TreeSet<>();
+        while (words.size() < 2000) {
+            StringBuilder word = new StringBuilder(stems[random.nextInt(stems.length)]);
+            for (int i = random.nextInt(4); i >= 0; i--)
+                word.append((char) ('a' + random.nextInt(26)));
+            words.add(word.append(random.nextInt(3)).toString());
+        }
+        vocabulary = new ArrayList<>(words);
+        sites = new ArrayList<>();
+        for (int i = 0; i < 3000; i++) {
+            StringBuilder text = new StringBuilder();
+            for (int j = 5 + random.nextInt(20); j >= 0; j--)
+                text.append(vocabulary.get(random.nextInt(vocabulary.size()))).append(' ');
+            sites.add(new Site("http://wild" + i + ".cheesy", "", Arrays.asList(), text.toString()));
+        }
+        index = createIndex(sites);
+    }
+
+    static VectorIndex createIndex(List<Site> indexedSites) {
+        VectorIndex vectorIndex = new VectorIndex(new UrlDictionary(), new RuleBasedAnalyzer());
+        for (Site site : indexedSites)
+            vectorIndex.addSite(site);
+        vectorIndex.finish();
+        return vectorIndex;
+    }
+
+    /**
+     * Find the sorted index terms matching a wildcard pattern by a regex over
+     * all terms.
+     */
+    static List<String> matchingTerms(SearchableIndex searchableIndex, String pattern) {
+        Pattern regex = Pattern.compile(pattern.replace("?", ".").replace("*", ".*"));
+        TreeSet<String> found = new TreeSet<>();
+        for (int termId = 0; termId < searchableIndex.getNrOfTerms(); termId++)
+            if (regex.matcher(searchableIndex.getTerm(termId)).matches())
+                found.add(searchableIndex.getTerm(termId));
+        return new ArrayList<>(found);
+    }
+
+    /**
+     * Check that a wildcard query ranks and scores like a cosine query of the
+     * terms it expands to.
+     */
+    static void assertExpandsTo(IndexSearcher searcher, String pattern, List<String> terms) {
+        SearchResults results = searcher.searchQueryWildcardResults(pattern);
+        SearchResults expected = searcher.searchQueryCosineResults(String.join(" ", terms));
+        assertEquals(expected.size(), results.size(), pattern);
+        for (int rank = 0; rank < results.size(); rank++) {
+            assertEquals(expected.getScore(rank), results.getScore(rank), 1e-12);
+            if (rank > 0)
+                assertTrue(results.getScore(rank - 1) >= results.getScore(rank));
+        }
+        Map<String, Double> scores = new HashMap<>();
+        for (int rank = 0; rank < expected.size(); rank++)
+            scores.put(expected.getUrl(rank), expected.getScore(rank));
+        for (int rank = 0; rank < results.size(); rank++)
+            assertEquals(scores.get(results.getUrl(rank)), results.getScore(rank), 1e-12);
+    }
+
+    static void assertCorrectExpansions(SearchableIndex searchableIndex) {
+        IndexSearcher searcher = new IndexSearcher(searchableIndex);
+        searcher.setMaxExpansions(10000);
+        for (String pattern : new String[] { "chedd*", "brie*", "bries??", "g*a?", "*x?", "?ouda*", "feta",
+                "nothing*", "*" })
+            assertExpandsTo(searcher, pattern, matchingTerms(searchableIndex, pattern));
+
+        // Only the first terms in sorted order are used.
+        searcher.setMaxExpansions(5);
+        assertExpandsTo(searcher, "gouda*", matchingTerms(searchableIndex, "gouda*").subList(0, 5));
+        assertExpandsTo(searcher, "*z?", matchingTerms(searchableIndex, "*z?").subList(0, 5));
+        assertThrows(IllegalArgumentException.class, () -> searcher.setMaxExpansions(0));
+    }
+
+    @Test
+    void correctExpansions() throws IOException {
+        assertCorrectExpansions(index);
+        assertCorrectExpansions(MappedVectorIndex.loadOffHeap(index, false));
+        assertCorrectExpansions(MappedVectorIndex.loadOffHeap(index, true));
+    }
+
+    @Test
+    void mixedQueries() {
+        IndexSearcher searcher = new IndexSearcher(index);
+        searcher.setMaxExpansions(10000);
+        // Words without wildcards are analyzed, stopwords are left out.
+        String word = vocabulary.get(0);
+        List<String> terms = new ArrayList<>(matchingTerms(index, "gruy*"));
+        terms.add(word);
+        assertExpandsTo(searcher, "gruy* " + word.toUpperCase() + " the", terms);
+        assertExpandsTo(searcher, word, List.of(word));
+    }
+
+    @Test
+    void newTerms() {
+        // The dictionary of a VectorIndex follows the terms added later.
+        VectorIndex growingIndex = createIndex(sites.subList(0, 100));
+        IndexSearcher searcher = new IndexSearcher(growingIndex);
+        int before = searcher.searchQueryWildcardResults("mozzarell*").size();
+        growingIndex.addSite(new Site("http://mozzarella.cheesy", "", Arrays.asList(), "mozzarella"));
+        growingIndex.finish();
+        assertEquals(0, before);
+        assertEquals(1, searcher.searchQueryWildcardResults("mozzarell*").size());
+
+        // Terms removed by compact() are replaced by the terms added afterwards,
+        // even if the number of terms stays the same.
+        VectorIndex compactedIndex = createIndex(List.of(
+                new Site("http://alpha.cheesy", "", Arrays.asList(), "alpha milk"),
+                new Site("http://beta.cheesy", "", Arrays.asList(), "beta milk")));
+        searcher = new IndexSearcher(compactedIndex);
+        assertEquals(1, searcher.searchQueryWildcardResults("bet*").size());
+        int terms = compactedIndex.getNrOfTerms();
+        compactedIndex.delete("http://beta.cheesy");
+        compactedIndex.compact();
+        compactedIndex.addSite(new Site("http://gamma.cheesy", "", Arrays.asList(), "gamma milk"));
+        compactedIndex.finish();
+        assertEquals(terms, compactedIndex.getNrOfTerms());
+        assertEquals(0, searcher.searchQueryWildcardResults("bet*").size());
+        assertEquals(1, searcher.searchQueryWildcardResults("gam*").size());
+        assertEquals(1, searcher.searchQueryFuzzyResults("gama", 1).size());
+    }
+
+    @Test
+    void benchmarkPrefixExpansion() {
+        // Dictionaries of growing vocabularies, the prefix expansion only visits
+        // the matching terms while a scan visits all of them.
+        Random random = new Random(59);
+        for (int vocabularySize : new int[] { 10000, 100000, 1000000 }) {
+            Set<String> terms = new HashSet<>();
+            while (terms.size() < vocabularySize)
+                terms.add("curd" + Integer.toString(random.nextInt(Integer.MAX_VALUE), 36));
+            terms.addAll(vocabulary);
+            long start = System.nanoTime();
+            TermDictionary dictionary = TermDictionary.build(terms);
+            long buildTime = System.nanoTime() - start;
+
+            int runs = 10;
+            long[] times = new long[2];
+            int checksum = 0;
+            List<String> found = new ArrayList<>();
+            for (int round = 0; round < 2; round++) {
+                // The first round warms up.
+                start = System.nanoTime();
+                for (int run = 0; run < runs; run++) {
+                    for (String term : terms)
+                        if (term.startsWith("chedd"))
+                            checksum++;
+                }
+                times[0] = System.nanoTime() - start;
+                start = System.nanoTime();
+                for (int run = 0; run < runs; run++) {
+                    int[] range = dictionary.getPrefixRange("chedd");
+                    found.clear();
+                    dictionary.forEachTerm(range[0], range[1], term -> found.add(term) && found.size() < 128);
+                    checksum += found.size();
+                }
+                times[1] = System.nanoTime() - start;
+            }
+            System.out.println(String.format("prefix of %7d terms: dictionary built in %6.1f ms, term scan %.3f "
+                    + "ms, dictionary %.3f ms per query, %d terms visited (checksum %d)", terms.size(),
+                    buildTime / 1e6, times[0] / 1e6 / runs, times[1] / 1e6 / runs, found.size(), checksum));
+            // Only the first matching terms are visited, however large the dictionary.
+            long matching = terms.stream().filter(term -> term.startsWith("chedd")).count();
+            assertEquals(Math.min(128, matching), found.size());
+        }
+
+        // The whole wildcard search on the test index.
+        IndexSearcher searcher = new IndexSearcher(index);
+        int runs = 200;
+        long time = 0;
+        for (int round = 0; round < 2; round++) {
+            long start = System.nanoTime();
+            for (int run = 0; run < runs; run++)
+                searcher.searchQueryWildcardResults("chedd*", 10);
+            time = System.nanoTime() - start;
+        }
+        System.out.println(String.format("wildcard search of %d terms: %.3f ms per query", index.getNrOfTerms(),
+                time / 1e6 / runs));
+    }
+}